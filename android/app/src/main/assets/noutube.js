@@ -2,20 +2,41 @@
 (function () {
   'use strict';
 
+  // Runs once per document: the native side wraps this file in a guard keyed
+  // on its content hash (see ScriptAsset.java), so no flag check here
+
   // Keys to remove from player response (ads)
   const AD_KEYS = ['adBreakHeartbeatParams', 'adPlacements', 'adSlots', 'playerAds'];
 
-  // Transform player response to remove ads
+  // Transform player response to remove ads and, on a capped connection,
+  // video formats above the cap (mirrors FormatPruner.java)
   function transformPlayerResponse(text) {
     try {
       const data = JSON.parse(text);
       AD_KEYS.forEach(key => delete data[key]);
+      pruneFormats(data.streamingData);
       return JSON.stringify(data);
     } catch (e) {
       return text;
     }
   }
 
+  function pruneFormats(streamingData) {
+    const formats = streamingData?.adaptiveFormats;
+    const capJson = formats && window.MyTubeNative?.formatCap?.();
+    if (!capJson) return;
+    const cap = JSON.parse(capJson);
+    const isVideo = f => (f.mimeType || '').startsWith('video/');
+    // The short side, as quality labels go: a 720p Short is 720x1280
+    const size = f => (f.width ? Math.min(f.width, f.height || 0) : f.height || 0);
+    const allowed = f => size(f) <= cap.maxHeight && (f.bitrate || 0) <= cap.maxBitrate;
+    const videos = formats.filter(isVideo);
+    // Over the cap everywhere: keep the smallest so the video still plays
+    const minSize = Math.min(...videos.map(size));
+    const keep = videos.some(allowed) ? allowed : f => size(f) === minSize;
+    streamingData.adaptiveFormats = formats.filter(f => !isVideo(f) || keep(f));
+  }
+
   // Transform search response to remove shorts
   function transformSearchResponse(text) {
     try {
@@ -40,15 +61,85 @@
     }
   }
 
+  // Native proxy (YoutubeiProxy.java): Java can't see POST bodies, so hand the body
+  // over and tag the URL; the response then arrives already filtered.
+  const nativeProxy = window.MyTubeNative;
+
+  async function fetchViaNative(self, request, init, url) {
+    const body = request instanceof Request ? await request.clone().text() : init && init.body;
+    if (typeof body !== 'string') return null;
+    const rid = nativeProxy.stashBody(body);
+    const tagged = url + (url.includes('?') ? '&' : '?') + 'mytube_rid=' + rid;
+    if (request instanceof Request) {
+      return originalFetch.call(self, tagged, {
+        method: request.method,
+        headers: request.headers,
+        body: body,
+        credentials: request.credentials,
+        cache: request.cache,
+        referrer: request.referrer,
+        signal: request.signal
+      });
+    }
+    return originalFetch.call(self, tagged, init);
+  }
+
+  // Thumbnail prefetch (ThumbnailBridge.java): feed, watch-next and search
+  // responses list the thumbnails of items the page renders lazily as they
+  // scroll in, so hand their URLs over while the user is still reading.
+  const thumbnailBridge = window.MyTubeThumbnails;
+  const THUMBNAIL_RE = /https:\/\/i\d?\.ytimg\.com\/vi(?:_webp)?\/[\w-]{11}\/\w+\.(?:jpg|webp)[^"\\]*(?:\\u0026[^"\\]*)*/g;
+  const MAX_PREFETCH = 40;
+
+  function prefetchThumbnails(pathname, res) {
+    if (!thumbnailBridge || !/\/youtubei\/v1\/(browse|next|search)/.test(pathname)) return;
+    res.clone().text().then(text => {
+      const idle = window.requestIdleCallback || (fn => setTimeout(fn, 200));
+      idle(() => {
+        // Items list several sizes; the native side fits one to the screen anyway
+        const urls = [];
+        const videos = new Set();
+        THUMBNAIL_RE.lastIndex = 0;
+        let match;
+        while (urls.length < MAX_PREFETCH && (match = THUMBNAIL_RE.exec(text))) {
+          const videoId = match[0].split('/')[4];
+          if (videos.has(videoId)) continue;
+          videos.add(videoId);
+          urls.push(match[0].replace(/\\u0026/g, '&'));
+        }
+        if (urls.length) thumbnailBridge.prefetch(JSON.stringify(urls));
+      });
+    }).catch(() => { });
+  }
+
   // Intercept fetch requests
   const originalFetch = window.fetch;
   window.fetch = async function (...args) {
     const request = args[0];
     const url = request instanceof Request ? request.url : request.toString();
-    let res = await originalFetch.apply(this, args);
+
+    let res = null;
+    if (nativeProxy) {
+      try {
+        const pathname = new URL(url, location.href).pathname;
+        if (pathname.includes('/youtubei/v1/player') || pathname.includes('/youtubei/v1/search')) {
+          res = await fetchViaNative(this, request, args[1], url);
+          if (res && res.headers.get('X-MyTube-Filtered')) {
+            prefetchThumbnails(pathname, res);
+            return res;
+          }
+        }
+      } catch (e) {
+        console.error('MyTube native proxy error:', e);
+      }
+    }
+
+    // Not proxied, or the native side fell back: filter here as before
+    if (!res) res = await originalFetch.apply(this, args);
 
     try {
       const pathname = new URL(url).pathname;
+      prefetchThumbnails(pathname, res);
       if (pathname.includes('/youtubei/v1/player')) {
         const text = await res.text();
         return new Response(transformPlayerResponse(text), {
@@ -289,127 +380,249 @@
     }
   }
 
-  // Auto-skip ads if they somehow appear
-  function setupAdSkipper() {
-    const observer = new MutationObserver(() => {
-      // Skip button
-      const skipBtn = document.querySelector('.ytp-ad-skip-button, .ytp-ad-skip-button-modern, .ytp-skip-ad-button');
-      if (skipBtn) {
-        skipBtn.click();
-      }
-
-      // Skip overlay ads
-      const closeBtn = document.querySelector('.ytp-ad-overlay-close-button');
-      if (closeBtn) {
-        closeBtn.click();
-      }
-
-      // If video is ad, try to skip
-      const adVideo = document.querySelector('.ad-showing video');
-      if (adVideo) {
-        adVideo.currentTime = adVideo.duration || 9999;
-      }
-
-      // Dismiss promo dialogs
-      const dismissBtn = document.querySelector('ytmusic-mealbar-promo-renderer .dismiss-button, .yt-mealbar-promo-renderer__dismiss-button');
-      if (dismissBtn) {
-        dismissBtn.click();
-      }
-
-      // Modify YouTube header to MyTube - try multiple selectors
-      const selectors = [
-        'ytm-mobile-topbar-renderer .mobile-topbar-header-content ytm-logo a yt-formatted-string',
-        'ytm-mobile-topbar-renderer ytm-logo yt-formatted-string',
-        '.mobile-topbar-header-content .yt-core-attributed-string',
-        'ytm-logo-renderer yt-formatted-string',
-        'ytm-logo a span',
-        '.topbar-header-content span.yt-core-attributed-string',
-        'header a[href="/"] span'
-      ];
-
-      for (const selector of selectors) {
-        const elements = document.querySelectorAll(selector);
-        elements.forEach(el => {
-          if (el && el.textContent && el.textContent.trim() === 'YouTube') {
-            el.textContent = 'MyTube';
-          }
-        });
+  // DOM worker (DomWorkerBridge.java). Observers only record what changed:
+  // the player and topbar get their own scoped observers, and the document
+  // observer just collects added subtrees. The work then runs once per batch in
+  // requestAnimationFrame (idle time while hidden), at most once per throttle
+  // interval. Batch timings go to Java, which answers with the next interval.
+  const domBridge = window.MyTubeDomWorker;
+
+  const PLAYER_SELECTOR = '#movie_player, .html5-video-player';
+  const TOPBAR_SELECTOR = 'ytm-mobile-topbar-renderer, .mobile-topbar-header';
+  const SKIP_SELECTOR = '.ytp-ad-skip-button, .ytp-ad-skip-button-modern, .ytp-skip-ad-button';
+  const PROMO_DISMISS_SELECTOR = 'ytmusic-mealbar-promo-renderer .dismiss-button, .yt-mealbar-promo-renderer__dismiss-button';
+  const LOGO_TEXT_SELECTOR = 'yt-formatted-string, span';
+  const LOGO_CONTAINER_SELECTOR = 'ytm-logo, ytm-logo-renderer, #logo-icon';
+  const SEARCH_SELECTOR = 'ytm-search-box-renderer, .header-search-field, #search-input';
+  const OPEN_APP_TEXT = ['Open App', 'Open app', 'OPEN APP'];
+  // Past this many pending subtrees a batch rescans the document instead
+  const MAX_PENDING_NODES = 200;
+  const REPORT_INTERVAL_MS = 5000;
+
+  function createDomWorker() {
+    let throttleMs = 100;
+    let lastRun = -Infinity;
+    let scheduled = false;
+    let timer = 0;
+    let player = null;
+    let topbar = null;
+    let playerObserver = null;
+    let topbarObserver = null;
+    let playerDirty = true;
+    let topbarDirty = true;
+    let fullScan = true;
+    let pending = [];
+    let pendingMutations = 0;
+    let lastReport = performance.now();
+    let stats = { batches: 0, mutations: 0, totalMs: 0, maxMs: 0 };
+
+    function schedule(urgent) {
+      // An urgent request cuts short a throttled wait; otherwise one pending batch is enough
+      if (scheduled && !(urgent && timer)) return;
+      if (timer) {
+        clearTimeout(timer);
+        timer = 0;
+      }
+      scheduled = true;
+      const wait = urgent ? 0 : lastRun + throttleMs - performance.now();
+      if (wait > 0) {
+        timer = setTimeout(() => {
+          timer = 0;
+          nextFrame();
+        }, wait);
+      } else {
+        nextFrame();
       }
+    }
 
-      // Also try to find any element with YouTube text in the header
-      const headerArea = document.querySelector('ytm-mobile-topbar-renderer, .mobile-topbar-header');
-      if (headerArea) {
-        const allSpans = headerArea.querySelectorAll('span, yt-formatted-string');
-        allSpans.forEach(span => {
-          if (span.textContent && span.textContent.trim() === 'YouTube') {
-            span.textContent = 'MyTube';
+    function nextFrame() {
+      // rAF never fires in a hidden page, but ads still need skipping with the screen off
+      if (document.hidden && window.requestIdleCallback) {
+        requestIdleCallback(run, { timeout: throttleMs });
+      } else {
+        requestAnimationFrame(run);
+      }
+    }
+
+    function run() {
+      scheduled = false;
+      const start = performance.now();
+      lastRun = start;
+      try {
+        bindScopes();
+        if (playerDirty) {
+          playerDirty = false;
+          if (player) skipAds(player);
+        }
+        if (fullScan) {
+          fullScan = false;
+          pending = [];
+          scanAdded(document.documentElement);
+        } else if (pending.length) {
+          const nodes = pending;
+          pending = [];
+          for (const node of nodes) {
+            if (node.isConnected) scanAdded(node);
           }
-        });
+        }
+        if (topbarDirty) {
+          topbarDirty = false;
+          if (topbar) relabelTopbar(topbar);
+        }
+      } catch (e) {
+        console.error('MyTube DOM worker error:', e);
       }
+      record(start, performance.now());
+    }
 
-      // Hide "Open App" button - specific selectors only
-      const openAppSelectors = [
-        'a[href*="youtube.app.link"]',
-        'a[href*="redirect_to_app"]',
-        '.ytm-open-app-pill-button-renderer'
-      ];
+    function record(start, end) {
+      const cost = end - start;
+      stats.batches++;
+      stats.mutations += pendingMutations;
+      stats.totalMs += cost;
+      if (cost > stats.maxMs) stats.maxMs = cost;
+      pendingMutations = 0;
+      if (end - lastReport >= REPORT_INTERVAL_MS) {
+        report(end);
+      }
+    }
 
-      for (const selector of openAppSelectors) {
-        const btns = document.querySelectorAll(selector);
-        btns.forEach(btn => {
-          if (btn) btn.style.display = 'none';
-        });
+    function report(now) {
+      const batch = stats;
+      stats = { batches: 0, mutations: 0, totalMs: 0, maxMs: 0 };
+      lastReport = now;
+      if (!domBridge) return;
+      batch.throttleMs = throttleMs;
+      const next = Number(domBridge.reportBatches(JSON.stringify(batch)));
+      if (next > 0) throttleMs = next;
+    }
+
+    // Re-attaches the scoped observers when YouTube swaps the player or topbar
+    function bindScopes() {
+      if (!player || !player.isConnected) {
+        if (playerObserver) playerObserver.disconnect();
+        player = document.querySelector(PLAYER_SELECTOR);
+        playerObserver = player ? observe(player, onPlayerMutation, {
+          childList: true, subtree: true, attributes: true, attributeFilter: ['class']
+        }) : null;
+        playerDirty = true;
+      }
+      if (!topbar || !topbar.isConnected) {
+        if (topbarObserver) topbarObserver.disconnect();
+        topbar = document.querySelector(TOPBAR_SELECTOR);
+        topbarObserver = topbar ? observe(topbar, onTopbarMutation, {
+          childList: true, subtree: true, characterData: true
+        }) : null;
+        topbarDirty = true;
       }
+    }
 
-      // Find links/buttons with EXACTLY "Open App" text and hide them
-      const allLinks = document.querySelectorAll('a, button');
-      allLinks.forEach(link => {
-        const text = link.textContent ? link.textContent.trim() : '';
-        if (text === 'Open App' || text === 'Open app' || text === 'OPEN APP') {
-          link.style.display = 'none';
-        }
-      });
+    function observe(target, callback, options) {
+      const observer = new MutationObserver(callback);
+      observer.observe(target, options);
+      return observer;
+    }
 
-      // Hide YouTube logo text SVG elements and inject "MyTube" text
-      const youtubeLogoSVGs = document.querySelectorAll('g#youtube-paths_yt10, g[id*="youtube-paths"], #logo-icon g[id*="youtube"]');
-      youtubeLogoSVGs.forEach(svg => {
-        if (svg) svg.style.display = 'none';
-      });
+    function onPlayerMutation(records) {
+      pendingMutations += records.length;
+      playerDirty = true;
+      // Ad state changes skip the throttle so an ad never plays for a whole interval
+      schedule(player && player.classList.contains('ad-showing'));
+    }
 
-      // Inject "MyTube" text in the header
-      const logoContainer = document.querySelector('ytm-logo, ytm-logo-renderer, #logo-icon, .mobile-topbar-header-content ytm-logo');
-      if (logoContainer && !logoContainer.querySelector('.mytube-custom-text')) {
-        // Create MyTube text element
-        const myTubeText = document.createElement('span');
-        myTubeText.className = 'mytube-custom-text';
-        myTubeText.textContent = 'MyTube';
-        myTubeText.style.cssText = `
-          color: white;
-          font-size: 18px;
-          font-weight: 500;
-          font-family: "YouTube Sans", "Roboto", sans-serif;
-          margin-left: 8px;
-          display: inline-block;
-          vertical-align: middle;
-        `;
-
-        // Insert the text next to the logo icon
-        const logoLink = logoContainer.querySelector('a');
-        if (logoLink) {
-          logoLink.appendChild(myTubeText);
-        } else {
-          logoContainer.appendChild(myTubeText);
+    function onTopbarMutation(records) {
+      pendingMutations += records.length;
+      // Our own label insertion would otherwise re-trigger the topbar forever
+      for (const record of records) {
+        if (!isOwnLabel(record.target) && !isOwnLabel(record.addedNodes[0])) {
+          topbarDirty = true;
+          schedule(false);
+          return;
+        }
+      }
+    }
+
+    function onDocumentMutation(records) {
+      pendingMutations += records.length;
+      for (const record of records) {
+        for (const node of record.addedNodes) {
+          if (node.nodeType !== 1) continue;
+          if (pending.length < MAX_PENDING_NODES) {
+            pending.push(node);
+          } else {
+            fullScan = true;
+          }
         }
       }
+      if (pending.length || fullScan) schedule(false);
+    }
+
+    function isOwnLabel(node) {
+      return !!node && node.nodeType === 1 && node.classList.contains('mytube-custom-text');
+    }
+
+    function skipAds(root) {
+      const skipBtn = root.querySelector(SKIP_SELECTOR);
+      if (skipBtn) skipBtn.click();
+      const closeBtn = root.querySelector('.ytp-ad-overlay-close-button');
+      if (closeBtn) closeBtn.click();
+      if (root.classList.contains('ad-showing')) {
+        const adVideo = root.querySelector('video');
+        if (adVideo) adVideo.currentTime = adVideo.duration || 9999;
+      }
+    }
 
-      // Fallback: inject directly into mobile topbar
-      if (!document.querySelector('.mytube-custom-text')) {
-        const topbar = document.querySelector('ytm-mobile-topbar-renderer, .mobile-topbar-header');
-        if (topbar) {
-          const myTubeText = document.createElement('div');
-          myTubeText.className = 'mytube-custom-text';
-          myTubeText.textContent = 'MyTube';
-          myTubeText.style.cssText = `
+    // Only the subtree that was added: promo dialogs and "Open App" buttons
+    // (the href-based ones are already hidden by CSS)
+    function scanAdded(root) {
+      const dismiss = root.matches(PROMO_DISMISS_SELECTOR) ? root : root.querySelector(PROMO_DISMISS_SELECTOR);
+      if (dismiss) dismiss.click();
+      if (root.matches('a, button')) hideOpenApp(root);
+      const links = root.querySelectorAll('a, button');
+      for (let i = 0; i < links.length; i++) {
+        hideOpenApp(links[i]);
+      }
+    }
+
+    function hideOpenApp(link) {
+      const text = link.textContent ? link.textContent.trim() : '';
+      if (OPEN_APP_TEXT.indexOf(text) >= 0) {
+        link.style.display = 'none';
+      }
+    }
+
+    function relabelTopbar(root) {
+      const labels = root.querySelectorAll(LOGO_TEXT_SELECTOR);
+      for (let i = 0; i < labels.length; i++) {
+        const label = labels[i];
+        if (label.textContent && label.textContent.trim() === 'YouTube') {
+          label.textContent = 'MyTube';
+        }
+      }
+      // The logo SVG paths are hidden by CSS
+
+      let customText = root.querySelector('.mytube-custom-text');
+      if (!customText) {
+        const logoContainer = root.querySelector(LOGO_CONTAINER_SELECTOR);
+        if (logoContainer) {
+          customText = document.createElement('span');
+          customText.className = 'mytube-custom-text';
+          customText.textContent = 'MyTube';
+          customText.style.cssText = `
+            color: white;
+            font-size: 18px;
+            font-weight: 500;
+            font-family: "YouTube Sans", "Roboto", sans-serif;
+            margin-left: 8px;
+            display: inline-block;
+            vertical-align: middle;
+          `;
+          (logoContainer.querySelector('a') || logoContainer).appendChild(customText);
+        } else {
+          customText = document.createElement('div');
+          customText.className = 'mytube-custom-text';
+          customText.textContent = 'MyTube';
+          customText.style.cssText = `
             position: absolute !important;
             left: 50px !important;
             top: 50% !important;
@@ -421,29 +634,58 @@
             z-index: 9999 !important;
             pointer-events: none !important; /* Don't interfere with clicks */
           `;
-          topbar.appendChild(myTubeText);
+          root.appendChild(customText);
         }
       }
+      updateSearchState(root);
+    }
 
-      // Explicitly hide mytube-custom-text if search input is visible/focused
-      const customText = document.querySelectorAll('.mytube-custom-text');
-      const searchBox = document.querySelector('ytm-search-box-renderer, .header-search-field, #search-input');
+    // Hide the label while the search box is open
+    function updateSearchState(root) {
+      const customText = root.querySelector('.mytube-custom-text');
+      if (!customText) return;
+      const searchBox = document.querySelector(SEARCH_SELECTOR);
       const isSearching = searchBox && (searchBox.offsetParent !== null || document.activeElement === searchBox);
-      
-      customText.forEach(el => {
-        if (isSearching || document.body.classList.contains('show-search')) {
-          el.style.setProperty('display', 'none', 'important');
-        } else {
-          // Only show if NOT in search mode (CSS will still hide it if needed)
-          el.style.removeProperty('display');
-        }
-      });
-    });
+      if (isSearching || document.body.classList.contains('show-search')) {
+        customText.style.setProperty('display', 'none', 'important');
+      } else {
+        customText.style.removeProperty('display');
+      }
+    }
 
-    observer.observe(document.documentElement, {
-      childList: true,
-      subtree: true
-    });
+    function start() {
+      observe(document.documentElement, onDocumentMutation, { childList: true, subtree: true });
+      // Search mode shows up as a body class and focus moves, not as topbar mutations
+      observe(document.body, () => {
+        topbarDirty = true;
+        schedule(false);
+      }, { attributes: true, attributeFilter: ['class'] });
+      document.addEventListener('focusin', () => {
+        topbarDirty = true;
+        schedule(false);
+      }, true);
+      schedule(true);
+    }
+
+    return {
+      start: start,
+      setThrottle(ms) {
+        if (ms > 0) throttleMs = ms;
+      },
+      throttle() {
+        return throttleMs;
+      },
+      stats() {
+        return Object.assign({ throttleMs: throttleMs }, stats);
+      }
+    };
+  }
+
+  const domWorker = createDomWorker();
+  window.__mytubeDomWorker = domWorker;
+
+  function setupAdSkipper() {
+    domWorker.start();
 
     // Inject custom minimalist home UI
     function injectMinimalistHome() {
@@ -550,6 +792,180 @@
     }
   }
 
+  // SponsorBlock skip scheduler (SponsorBlockBridge.java): segments come from the
+  // native cache, so a revisit skips without any network request.
+  const sponsorBlock = window.MyTubeSponsorBlock;
+
+  function currentVideoId() {
+    const shorts = location.pathname.match(/^\/shorts\/([A-Za-z0-9_-]{11})/);
+    if (shorts) return shorts[1];
+    return new URLSearchParams(location.search).get('v');
+  }
+
+  function setupSegmentSkipper() {
+    const segmentsById = new Map();
+    const requested = new Set();
+    let skipped = new Set();
+    let lastVideoId = null;
+
+    function segmentsFor(videoId) {
+      if (segmentsById.has(videoId)) return segmentsById.get(videoId);
+      const cached = sponsorBlock.cachedSegments(videoId);
+      if (cached != null) {
+        const segments = JSON.parse(cached);
+        segmentsById.set(videoId, segments);
+        return segments;
+      }
+      if (!requested.has(videoId)) {
+        requested.add(videoId);
+        sponsorBlock.requestSegments(videoId);
+      }
+      return null;
+    }
+
+    window.__mytubeSegments = (videoId, segments) => {
+      segmentsById.set(videoId, segments);
+    };
+
+    // timeupdate does not bubble, so listen in the capture phase for every player
+    document.addEventListener('timeupdate', (event) => {
+      const video = event.target;
+      if (!(video instanceof HTMLVideoElement) || document.querySelector('.ad-showing')) return;
+      const videoId = currentVideoId();
+      if (!videoId) return;
+      if (videoId !== lastVideoId) {
+        lastVideoId = videoId;
+        skipped = new Set();
+      }
+      const segments = segmentsFor(videoId);
+      if (!segments) return;
+      const time = video.currentTime;
+      for (const s of segments) {
+        if (s.actionType !== 'skip' || skipped.has(s.UUID)) continue;
+        const [start, end] = s.segment;
+        if (time >= start && time < end - 0.5) {
+          // Once per segment, so seeking back into it plays it
+          skipped.add(s.UUID);
+          video.currentTime = end;
+          break;
+        }
+      }
+    }, true);
+  }
+
+  if (sponsorBlock) {
+    setupSegmentSkipper();
+  }
+
+  // Background audio (AudioBridge.java): report the current video and its play
+  // state as they change, so the app can continue the audio natively the moment
+  // it is left, without a round trip to the page.
+  const audioBridge = window.MyTubeAudio;
+
+  function setupAudioReporter() {
+    let reportedVideoId = null;
+
+    function mainVideo() {
+      return document.querySelector('#player video, #movie_player video, ytmusic-player video, video');
+    }
+
+    function describe(videoId) {
+      const musicTitle = document.querySelector('ytmusic-player-bar .title');
+      const musicByline = document.querySelector('ytmusic-player-bar .byline');
+      const channel = document.querySelector('.slim-owner-channel-name, ytm-slim-owner-renderer .slim-owner-bylines, #owner #channel-name a');
+      const title = musicTitle ? musicTitle.textContent : document.title.replace(/ - YouTube( Music)?$/, '');
+      const artist = musicByline ? musicByline.textContent.split('\u2022')[0] : channel ? channel.textContent : '';
+      audioBridge.onVideo(videoId, title.trim(), artist.trim(), 'https://i.ytimg.com/vi/' + videoId + '/hqdefault.jpg');
+    }
+
+    function report(event) {
+      const video = event.target;
+      if (!(video instanceof HTMLVideoElement) || video !== mainVideo()) return;
+      const videoId = currentVideoId();
+      if (!videoId) return;
+      // Titles settle after navigation, so describe again on each play
+      if (videoId !== reportedVideoId || event.type === 'play') {
+        reportedVideoId = videoId;
+        describe(videoId);
+      }
+      const ad = document.querySelector('.ad-showing');
+      audioBridge.onPlayState(!video.paused && !video.ended && !ad, video.currentTime);
+      // The app moves on to the next queued video, from a standby page if one is ready
+      if (event.type === 'ended' && !ad) audioBridge.onEnded(videoId);
+    }
+
+    for (const type of ['loadedmetadata', 'play', 'playing', 'pause', 'seeked', 'ended']) {
+      document.addEventListener(type, report, true);
+    }
+
+    window.__mytubeAudio = {
+      pause() {
+        const video = mainVideo();
+        if (video) video.pause();
+      },
+      resume(videoId, seconds, play) {
+        const video = mainVideo();
+        if (!video || currentVideoId() !== videoId) return;
+        video.currentTime = seconds;
+        if (play) video.play().catch(() => { });
+      },
+      // A standby page loads with playback held back until it is swapped in
+      start() {
+        const video = mainVideo();
+        if (video) video.play().catch(() => { });
+      }
+    };
+  }
+
+  if (audioBridge) {
+    setupAudioReporter();
+  }
+
+  // Renderer recovery (ShellStateBridge.java): keep the app told how far the
+  // page is scrolled, and put scroll and playback back when it reloads the
+  // page after the renderer was lost. The feed and player fill in after load,
+  // so restoring retries until they are there.
+  const shellBridge = window.MyTubeShell;
+
+  function setupScrollReporter() {
+    let timer = 0;
+    window.addEventListener('scroll', () => {
+      clearTimeout(timer);
+      timer = setTimeout(() => shellBridge.onScroll(Math.round(window.scrollY)), 300);
+    }, { passive: true });
+  }
+
+  if (shellBridge) {
+    setupScrollReporter();
+  }
+
+  window.__mytubeRestore = function (scrollY, videoId, seconds, play) {
+    const deadline = Date.now() + 15000;
+    let scrolled = scrollY <= 0;
+    let seeked = !videoId;
+
+    function attempt() {
+      if (!scrolled && document.documentElement.scrollHeight >= scrollY + window.innerHeight) {
+        window.scrollTo(0, scrollY);
+        scrolled = true;
+      }
+      if (!seeked && currentVideoId() === videoId && !document.querySelector('.ad-showing')) {
+        const video = document.querySelector('#player video, #movie_player video, ytmusic-player video, video');
+        if (video && video.readyState >= 1) {
+          video.currentTime = seconds;
+          if (play) video.play().catch(() => { });
+          else video.pause();
+          seeked = true;
+        }
+      }
+      if ((!scrolled || !seeked) && Date.now() < deadline) {
+        setTimeout(attempt, 250);
+      }
+    }
+
+    attempt();
+  };
+
   // Prevent "Are you still watching?" popup
   setInterval(() => {
     window._lact = Date.now();
@@ -0,0 +1,60 @@
+package my.tube.com;
+
+import android.webkit.JavascriptInterface;
+import my.tube.core.Clock;
+import my.tube.core.media.AudioHandoff;
+
+/**
+ * Playback state from noutube.js for {@link AudioHandoff}: which video the
+ * page shows and whether it is playing. Reported on every change, so the
+ * activity can decide synchronously in onPause. A {@link Listener} hears
+ * when a video starts playing and when one ends, on the JS bridge thread.
+ */
+public final class AudioBridge {
+
+    public static final String BRIDGE_NAME = "MyTubeAudio";
+
+    private static final int MAX_VIDEOS = 32;
+
+    public interface Listener {
+        void onPlaying(AudioBridge from, String videoId);
+
+        void onEnded(AudioBridge from, String videoId);
+    }
+
+    private final AudioHandoff handoff = new AudioHandoff(Clock.SYSTEM, MAX_VIDEOS);
+    private volatile Listener listener;
+
+    public void setListener(Listener listener) {
+        this.listener = listener;
+    }
+
+    public AudioHandoff handoff() {
+        return handoff;
+    }
+
+    @JavascriptInterface
+    public void onVideo(String videoId, String title, String artist, String artworkUrl) {
+        if (videoId != null) {
+            handoff.onVideo(videoId, title, artist, artworkUrl);
+        }
+    }
+
+    @JavascriptInterface
+    public void onPlayState(boolean playing, double positionSeconds) {
+        handoff.onPlayState(playing, (long) (positionSeconds * 1000));
+        Listener current = listener;
+        String videoId = handoff.videoId();
+        if (playing && current != null && videoId != null) {
+            current.onPlaying(this, videoId);
+        }
+    }
+
+    @JavascriptInterface
+    public void onEnded(String videoId) {
+        Listener current = listener;
+        if (videoId != null && current != null) {
+            current.onEnded(this, videoId);
+        }
+    }
+}
@@ -0,0 +1,214 @@
+package my.tube.com;
+
+import android.app.PendingIntent;
+import android.content.Context;
+import android.content.Intent;
+import android.net.Uri;
+import android.util.Log;
+import android.webkit.WebSettings;
+import androidx.annotation.OptIn;
+import androidx.media3.common.AudioAttributes;
+import androidx.media3.common.C;
+import androidx.media3.common.MediaItem;
+import androidx.media3.common.MediaMetadata;
+import androidx.media3.common.util.UnstableApi;
+import androidx.media3.database.StandaloneDatabaseProvider;
+import androidx.media3.datasource.DefaultHttpDataSource;
+import androidx.media3.datasource.cache.CacheDataSource;
+import androidx.media3.datasource.cache.LeastRecentlyUsedCacheEvictor;
+import androidx.media3.datasource.cache.SimpleCache;
+import androidx.media3.exoplayer.ExoPlayer;
+import androidx.media3.exoplayer.source.DefaultMediaSourceFactory;
+import androidx.media3.session.MediaSession;
+import androidx.media3.session.MediaSessionService;
+import java.io.File;
+import java.util.Collections;
+import my.tube.core.media.AudioHandoff;
+import my.tube.core.media.StreamUrl;
+
+/**
+ * Audio-only playback of the page's current video once the activity goes to
+ * the background, with a MediaSession for the notification, lock screen and
+ * headset controls.
+ *
+ * It plays the audio stream the WebView's player already resolved (see
+ * {@link AudioHandoff}), so there is no video decode and no signature work
+ * here. Bytes go through a disk cache keyed on the stream rather than the
+ * signed URL: replaying a track or going back in the queue reads from disk.
+ */
+@OptIn(markerClass = UnstableApi.class)
+public final class AudioPlaybackService extends MediaSessionService {
+
+    private static final String TAG = "MyTube";
+
+    private static final String ACTION_PLAY = "my.tube.com.audio.PLAY";
+
+    private static final long CACHE_BYTES = 256L * 1024 * 1024;
+    private static final int MAX_QUEUE = 20;
+
+    private static SimpleCache cache;
+    // Main thread only
+    private static AudioPlaybackService running;
+    // Main thread only. The service is exported for media controllers, so any app can
+    // send it PLAY; what to play is handed over in-process and never read from extras.
+    private static AudioHandoff.Request pending;
+
+    private ExoPlayer player;
+    private MediaSession session;
+
+    /** Where background playback was when the page took over again. */
+    public static final class Handoff {
+        public final String videoId;
+        public final long positionMs;
+        public final boolean playing;
+
+        Handoff(String videoId, long positionMs, boolean playing) {
+            this.videoId = videoId;
+            this.positionMs = positionMs;
+            this.playing = playing;
+        }
+    }
+
+    /**
+     * Starts or continues background playback; call on the main thread while
+     * the activity is still in the foreground.
+     */
+    public static void play(Context context, AudioHandoff.Request request) {
+        if (!isStream(request.stream.url)) {
+            Log.w(TAG, "Not a stream URL, staying in the page: " + request.videoId);
+            return;
+        }
+        pending = request;
+        context.startService(new Intent(context, AudioPlaybackService.class).setAction(ACTION_PLAY));
+    }
+
+    private static boolean isStream(String url) {
+        return StreamUrl.isStreamHost(Uri.parse(url).getHost()) && StreamUrl.parse(url) != null;
+    }
+
+    /**
+     * Stops background playback and returns where it was, or null if nothing
+     * was playing. Main thread.
+     */
+    public static Handoff takeOver() {
+        AudioPlaybackService service = running;
+        if (service == null || service.player.getCurrentMediaItem() == null) {
+            return null;
+        }
+        ExoPlayer player = service.player;
+        Handoff handoff = new Handoff(player.getCurrentMediaItem().mediaId, player.getCurrentPosition(),
+            player.getPlayWhenReady());
+        // The queue goes with the service; the audio stays in the disk cache, so a
+        // later handoff of the same videos reads from there
+        player.pause();
+        player.stop();
+        service.stopSelf();
+        return handoff;
+    }
+
+    static synchronized SimpleCache cache(Context context) {
+        if (cache == null) {
+            File dir = new File(context.getApplicationContext().getCacheDir(), "audio");
+            cache = new SimpleCache(dir, new LeastRecentlyUsedCacheEvictor(CACHE_BYTES),
+                new StandaloneDatabaseProvider(context.getApplicationContext()));
+        }
+        return cache;
+    }
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        DefaultHttpDataSource.Factory http = new DefaultHttpDataSource.Factory()
+            .setUserAgent(WebSettings.getDefaultUserAgent(this).replace("; wv", ""))
+            .setDefaultRequestProperties(Collections.singletonMap("Referer", "https://m.youtube.com/"))
+            .setAllowCrossProtocolRedirects(true);
+        CacheDataSource.Factory cached = new CacheDataSource.Factory()
+            .setCache(cache(this))
+            .setUpstreamDataSourceFactory(http)
+            .setFlags(CacheDataSource.FLAG_IGNORE_CACHE_ON_ERROR);
+        player = new ExoPlayer.Builder(this)
+            .setMediaSourceFactory(new DefaultMediaSourceFactory(cached))
+            .setAudioAttributes(new AudioAttributes.Builder()
+                .setUsage(C.USAGE_MEDIA)
+                .setContentType(C.AUDIO_CONTENT_TYPE_MUSIC)
+                .build(), true)
+            .setHandleAudioBecomingNoisy(true)
+            .setWakeMode(C.WAKE_MODE_NETWORK)
+            .build();
+        Intent open = new Intent(this, MainActivity.class).addFlags(Intent.FLAG_ACTIVITY_SINGLE_TOP);
+        PendingIntent sessionActivity = PendingIntent.getActivity(this, 0, open,
+            PendingIntent.FLAG_IMMUTABLE | PendingIntent.FLAG_UPDATE_CURRENT);
+        session = new MediaSession.Builder(this, player).setSessionActivity(sessionActivity).build();
+        running = this;
+    }
+
+    @Override
+    public MediaSession onGetSession(MediaSession.ControllerInfo controllerInfo) {
+        return session;
+    }
+
+    @Override
+    public int onStartCommand(Intent intent, int flags, int startId) {
+        if (intent != null && ACTION_PLAY.equals(intent.getAction())) {
+            AudioHandoff.Request request = pending;
+            pending = null;
+            if (request != null) {
+                enqueue(request);
+            }
+        }
+        return super.onStartCommand(intent, flags, startId);
+    }
+
+    private void enqueue(AudioHandoff.Request request) {
+        String videoId = request.videoId;
+        MediaMetadata.Builder metadata = new MediaMetadata.Builder()
+            .setTitle(request.title)
+            .setArtist(request.artist);
+        if (request.artworkUrl != null) {
+            metadata.setArtworkUri(Uri.parse(request.artworkUrl));
+        }
+        MediaItem item = new MediaItem.Builder()
+            .setMediaId(videoId)
+            .setUri(request.stream.url)
+            .setCustomCacheKey(request.stream.cacheKey())
+            .setMediaMetadata(metadata.build())
+            .build();
+
+        // A video already in the queue gets its freshly signed URL; its cached bytes stay valid
+        int index = -1;
+        for (int i = 0; i < player.getMediaItemCount(); i++) {
+            if (videoId.equals(player.getMediaItemAt(i).mediaId)) {
+                index = i;
+                break;
+            }
+        }
+        if (index >= 0) {
+            player.replaceMediaItem(index, item);
+        } else {
+            if (player.getMediaItemCount() >= MAX_QUEUE && player.getCurrentMediaItemIndex() != 0) {
+                player.removeMediaItem(0);
+            }
+            player.addMediaItem(item);
+            index = player.getMediaItemCount() - 1;
+        }
+        player.seekTo(index, request.positionMs);
+        player.prepare();
+        player.play();
+        Log.d(TAG, "Background audio for " + videoId);
+    }
+
+    @Override
+    public void onTaskRemoved(Intent rootIntent) {
+        if (!player.getPlayWhenReady() || player.getMediaItemCount() == 0) {
+            stopSelf();
+        }
+    }
+
+    @Override
+    public void onDestroy() {
+        running = null;
+        session.release();
+        player.release();
+        super.onDestroy();
+    }
+}
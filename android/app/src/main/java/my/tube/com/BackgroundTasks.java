@@ -0,0 +1,28 @@
+package my.tube.com;
+
+import android.os.Handler;
+import android.os.Looper;
+import my.tube.core.task.TaskRunner;
+
+/**
+ * The process-wide {@link TaskRunner}: update checks, blocklist refreshes and
+ * other one-off background work share its threads instead of each spawning
+ * their own. Callbacks run on the main thread.
+ */
+public final class BackgroundTasks {
+
+    private static final int THREADS = 2;
+    private static final int QUEUE_CAPACITY = 32;
+
+    private static TaskRunner runner;
+
+    private BackgroundTasks() {}
+
+    public static synchronized TaskRunner get() {
+        if (runner == null) {
+            Handler main = new Handler(Looper.getMainLooper());
+            runner = new TaskRunner(THREADS, QUEUE_CAPACITY, main::post);
+        }
+        return runner;
+    }
+}
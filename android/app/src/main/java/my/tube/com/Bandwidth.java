@@ -0,0 +1,64 @@
+package my.tube.com;
+
+import android.content.Context;
+import android.content.SharedPreferences;
+import android.net.ConnectivityManager;
+import android.net.Network;
+import android.net.NetworkCapabilities;
+import my.tube.core.media.BandwidthPolicy;
+
+/**
+ * The stream quality cap for the connection in use right now. Asked once per
+ * player response, off the main thread, so it reads ConnectivityManager
+ * directly instead of tracking network callbacks.
+ *
+ * The caps can be overridden in MyTubePrefs ("bandwidth_*" keys); a height
+ * or bitrate of 0 means the default.
+ */
+public final class Bandwidth {
+
+    private static final String PREFS_NAME = "MyTubePrefs";
+
+    private static Bandwidth instance;
+
+    private final ConnectivityManager connectivity;
+    private final BandwidthPolicy policy;
+
+    private Bandwidth(Context context) {
+        this.connectivity = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        this.policy = policy(context.getSharedPreferences(PREFS_NAME, Context.MODE_PRIVATE));
+    }
+
+    public static synchronized Bandwidth get(Context context) {
+        if (instance == null) {
+            instance = new Bandwidth(context.getApplicationContext());
+        }
+        return instance;
+    }
+
+    public BandwidthPolicy.Cap cap() {
+        if (connectivity == null) {
+            return BandwidthPolicy.Cap.NONE;
+        }
+        Network network = connectivity.getActiveNetwork();
+        NetworkCapabilities capabilities = network != null ? connectivity.getNetworkCapabilities(network) : null;
+        boolean cellular = capabilities != null && capabilities.hasTransport(NetworkCapabilities.TRANSPORT_CELLULAR);
+        int downKbps = capabilities != null ? capabilities.getLinkDownstreamBandwidthKbps() : 0;
+        return policy.capFor(new BandwidthPolicy.Network(connectivity.isActiveNetworkMetered(), cellular, downKbps));
+    }
+
+    private static BandwidthPolicy policy(SharedPreferences prefs) {
+        BandwidthPolicy.Cap metered = cap(prefs, "metered", BandwidthPolicy.METERED);
+        BandwidthPolicy.Cap cellular = cap(prefs, "cellular", BandwidthPolicy.CELLULAR);
+        BandwidthPolicy.Cap slow = cap(prefs, "slow", BandwidthPolicy.SLOW);
+        int slowKbps = prefs.getInt("bandwidth_slow_kbps", BandwidthPolicy.SLOW_KBPS);
+        return new BandwidthPolicy(metered, cellular, slowKbps, slow);
+    }
+
+    private static BandwidthPolicy.Cap cap(SharedPreferences prefs, String name, BandwidthPolicy.Cap defaults) {
+        int maxHeight = prefs.getInt("bandwidth_" + name + "_max_height", 0);
+        long maxBitrate = prefs.getLong("bandwidth_" + name + "_max_bitrate", 0);
+        return new BandwidthPolicy.Cap(maxHeight > 0 ? maxHeight : defaults.maxHeight,
+            maxBitrate > 0 ? maxBitrate : defaults.maxBitrate);
+    }
+}
@@ -0,0 +1,89 @@
+package my.tube.com;
+
+import android.content.Context;
+import android.content.pm.PackageManager;
+import android.util.Log;
+import java.io.File;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import my.tube.core.Clock;
+import my.tube.core.filter.BlocklistStore;
+import my.tube.core.filter.BlocklistUpdater;
+import my.tube.core.filter.RequestFilter;
+import my.tube.core.filter.RequestRule;
+
+/**
+ * Process-wide access to the ad blocklist. The first call maps the compiled
+ * snapshot from app storage, or compiles the bundled assets/blocklist.txt when
+ * there is none yet (first start, or the app was updated since). URL rules for
+ * hosts that cannot be blocked outright come from assets/request-rules.txt.
+ * Newer lists are downloaded by {@link RefreshWorker} and swapped in live.
+ */
+public final class BlocklistProvider {
+
+    private static final String TAG = "MyTube";
+    private static final String BUNDLED_LIST = "blocklist.txt";
+    private static final String BUNDLED_RULES = "request-rules.txt";
+    // Same hosts format as the bundled list, refreshed in the background by RefreshWorker
+    private static final String REMOTE_LIST_URL = Updates.SUPABASE_URL + "/storage/v1/object/public/filters/blocklist.txt";
+    private static final int MIN_REMOTE_RULES = 10;
+    // The whole download, which runs on a background worker
+    private static final int DOWNLOAD_TIMEOUT_MS = 60_000;
+
+    private static BlocklistStore store;
+    private static BlocklistUpdater updater;
+    private static RequestFilter requestFilter;
+
+    private BlocklistProvider() {}
+
+    public static synchronized BlocklistStore get(Context context) {
+        if (store == null) {
+            Context app = context.getApplicationContext();
+            store = new BlocklistStore(app.getFilesDir());
+            try {
+                long started = System.nanoTime();
+                store.load(() -> new InputStreamReader(app.getAssets().open(BUNDLED_LIST), StandardCharsets.UTF_8),
+                    bundledVersion(app));
+                Log.d(TAG, "Blocklist ready: " + store.current().size() + " rules in "
+                    + (System.nanoTime() - started) / 1000 + "us");
+            } catch (Exception e) {
+                Log.e(TAG, "Error loading blocklist", e);
+            }
+        }
+        return store;
+    }
+
+    public static synchronized BlocklistUpdater updater(Context context) {
+        if (updater == null) {
+            Context app = context.getApplicationContext();
+            updater = new BlocklistUpdater(get(app), REMOTE_LIST_URL,
+                Http.get(app).client("blocklist", DOWNLOAD_TIMEOUT_MS),
+                new File(app.getFilesDir(), "blocklist-remote.properties"), Clock.SYSTEM, MIN_REMOTE_RULES);
+        }
+        return updater;
+    }
+
+    public static synchronized RequestFilter getRequestFilter(Context context) {
+        if (requestFilter == null) {
+            try {
+                requestFilter = RequestFilter.parse(new InputStreamReader(
+                    context.getApplicationContext().getAssets().open(BUNDLED_RULES), StandardCharsets.UTF_8));
+                Log.d(TAG, "Request rules ready: " + requestFilter.size());
+            } catch (Exception e) {
+                Log.e(TAG, "Error loading request rules", e);
+                requestFilter = RequestFilter.of(Collections.<RequestRule>emptyList());
+            }
+        }
+        return requestFilter;
+    }
+
+    // The bundled list only changes with an app update, so the install time versions it
+    private static long bundledVersion(Context context) {
+        try {
+            return context.getPackageManager().getPackageInfo(context.getPackageName(), 0).lastUpdateTime;
+        } catch (PackageManager.NameNotFoundException e) {
+            return 0L;
+        }
+    }
+}
@@ -0,0 +1,65 @@
+package my.tube.com;
+
+import android.util.Log;
+import android.webkit.JavascriptInterface;
+import android.webkit.WebView;
+import my.tube.core.inject.DomThrottle;
+import org.json.JSONException;
+
+/**
+ * Native side of the DOM worker in noutube.js.
+ *
+ * The worker reports its batch timings through {@link #reportBatches} and
+ * uses the returned interval as its throttle; {@link #setOverride} pushes a
+ * fixed interval to the page without waiting for the next report.
+ */
+public final class DomWorkerBridge {
+
+    private static final String TAG = "MyTube";
+
+    public static final String BRIDGE_NAME = "MyTubeDomWorker";
+
+    private static final long MIN_INTERVAL_MS = 50;
+    private static final long MAX_INTERVAL_MS = 1000;
+    private static final long INITIAL_INTERVAL_MS = 100;
+    // A quarter of a 60 Hz frame
+    private static final double BATCH_BUDGET_MS = 4.0;
+
+    private final WebView webView;
+    private final DomThrottle throttle =
+        new DomThrottle(MIN_INTERVAL_MS, MAX_INTERVAL_MS, BATCH_BUDGET_MS, INITIAL_INTERVAL_MS);
+
+    public DomWorkerBridge(WebView webView) {
+        this.webView = webView;
+    }
+
+    public DomThrottle throttle() {
+        return throttle;
+    }
+
+    /** Batch timings from the page; returns the next throttle interval in ms. */
+    @JavascriptInterface
+    public long reportBatches(String json) {
+        try {
+            DomThrottle.Report report = DomThrottle.Report.fromJson(json);
+            long interval = throttle.onReport(report);
+            Log.d(TAG, "DOM worker: " + report.batches + " batches, " + report.mutations + " mutations, mean "
+                + String.format("%.2f", report.meanMs()) + "ms, max " + String.format("%.2f", report.maxMs)
+                + "ms -> " + interval + "ms");
+            return interval;
+        } catch (JSONException e) {
+            return throttle.intervalMs();
+        }
+    }
+
+    /** Fixes the interval at {@code ms}, or returns to the adaptive value when {@code ms <= 0}. Main thread. */
+    public void setOverride(long ms) {
+        if (ms > 0) {
+            throttle.setOverride(ms);
+        } else {
+            throttle.clearOverride();
+        }
+        webView.evaluateJavascript("window.__mytubeDomWorker && window.__mytubeDomWorker.setThrottle("
+            + throttle.intervalMs() + ")", null);
+    }
+}
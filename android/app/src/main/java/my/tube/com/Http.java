@@ -0,0 +1,65 @@
+package my.tube.com;
+
+import android.annotation.TargetApi;
+import android.content.Context;
+import android.net.http.HttpEngine;
+import android.os.Build;
+import android.util.Log;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import my.tube.core.Clock;
+import my.tube.core.net.HttpStack;
+
+/**
+ * The process-wide {@link HttpStack} every native fetch goes through. On
+ * Android 14+ connections come from the platform HttpEngine (HTTP/2, QUIC,
+ * brotli and its own host cache); older devices use HttpURLConnection, which
+ * pools HTTP/1.1 connections and negotiates gzip by itself.
+ */
+public final class Http {
+
+    private static final String TAG = "MyTube";
+
+    // How long the platform pools keep an idle connection
+    private static final long KEEP_ALIVE_MS = 5 * 60 * 1000L;
+
+    private static HttpStack stack;
+
+    private Http() {}
+
+    public static synchronized HttpStack get(Context context) {
+        if (stack == null) {
+            stack = new HttpStack(opener(context.getApplicationContext()), Metrics.registry(), Clock.SYSTEM,
+                KEEP_ALIVE_MS);
+        }
+        return stack;
+    }
+
+    private static HttpStack.Opener opener(Context context) {
+        if (Build.VERSION.SDK_INT >= Build.VERSION_CODES.UPSIDE_DOWN_CAKE) {
+            try {
+                return engineOpener(context);
+            } catch (RuntimeException e) {
+                Log.w(TAG, "HttpEngine unavailable, using HttpURLConnection", e);
+            }
+        }
+        return HttpStack.PLATFORM;
+    }
+
+    @TargetApi(Build.VERSION_CODES.UPSIDE_DOWN_CAKE)
+    private static HttpStack.Opener engineOpener(Context context) {
+        final HttpEngine engine = new HttpEngine.Builder(context)
+            .setEnableHttp2(true)
+            .setEnableQuic(true)
+            .setEnableBrotli(true)
+            .build();
+        Log.d(TAG, "HTTP stack: HttpEngine " + HttpEngine.getVersionString());
+        return new HttpStack.Opener() {
+            @Override
+            public HttpURLConnection open(URL url) throws IOException {
+                return (HttpURLConnection) engine.openConnection(url);
+            }
+        };
+    }
+}
@@ -0,0 +1,24 @@
+package my.tube.com;
+
+import my.tube.core.metrics.InterceptionMetrics;
+import my.tube.core.metrics.MetricsRegistry;
+
+/**
+ * Process-wide metrics. Counting is cheap enough to stay on in release
+ * builds; only the overlay and the JS bridge are debug-only.
+ */
+public final class Metrics {
+
+    private static final MetricsRegistry REGISTRY = new MetricsRegistry();
+    private static final InterceptionMetrics INTERCEPTION = new InterceptionMetrics(REGISTRY);
+
+    private Metrics() {}
+
+    public static MetricsRegistry registry() {
+        return REGISTRY;
+    }
+
+    public static InterceptionMetrics interception() {
+        return INTERCEPTION;
+    }
+}
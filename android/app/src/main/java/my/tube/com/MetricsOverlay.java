@@ -0,0 +1,114 @@
+package my.tube.com;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.pm.ApplicationInfo;
+import android.graphics.Color;
+import android.graphics.Typeface;
+import android.os.Handler;
+import android.os.Looper;
+import android.util.Log;
+import android.util.TypedValue;
+import android.view.Gravity;
+import android.view.ViewGroup;
+import android.webkit.JavascriptInterface;
+import android.widget.FrameLayout;
+import android.widget.TextView;
+import my.tube.core.metrics.InterceptionMetrics;
+import org.json.JSONException;
+
+/**
+ * Debug-build view of {@link Metrics}: a small text overlay refreshed every
+ * second, and a JS bridge so the numbers can be pulled from the DevTools
+ * console with {@code MyTubeMetrics.snapshot()}. Never registered in release
+ * builds, where the page could otherwise read the blocking statistics.
+ */
+public final class MetricsOverlay {
+
+    private static final String TAG = "MyTube";
+
+    public static final String BRIDGE_NAME = "MyTubeMetrics";
+
+    private static final long REFRESH_MS = 1000;
+
+    private final Activity activity;
+    private final InterceptionMetrics metrics;
+    private final Handler main = new Handler(Looper.getMainLooper());
+    private TextView view;
+
+    private final Runnable refresh = new Runnable() {
+        @Override
+        public void run() {
+            if (view != null) {
+                view.setText(metrics.summary());
+                main.postDelayed(this, REFRESH_MS);
+            }
+        }
+    };
+
+    public MetricsOverlay(Activity activity, InterceptionMetrics metrics) {
+        this.activity = activity;
+        this.metrics = metrics;
+    }
+
+    public static boolean isEnabled(Context context) {
+        return (context.getApplicationInfo().flags & ApplicationInfo.FLAG_DEBUGGABLE) != 0;
+    }
+
+    /** All metrics as JSON. */
+    @JavascriptInterface
+    public String snapshot() {
+        try {
+            return metrics.registry().toJson().toString();
+        } catch (JSONException e) {
+            Log.e(TAG, "Metrics export failed", e);
+            return "{}";
+        }
+    }
+
+    @JavascriptInterface
+    public void setVisible(final boolean visible) {
+        main.post(() -> {
+            if (visible) {
+                show();
+            } else {
+                hide();
+            }
+        });
+    }
+
+    /** Main thread. */
+    public void show() {
+        if (view != null) {
+            return;
+        }
+        view = new TextView(activity);
+        view.setTextColor(Color.WHITE);
+        view.setBackgroundColor(0xAA000000);
+        view.setTextSize(TypedValue.COMPLEX_UNIT_SP, 10);
+        view.setTypeface(Typeface.MONOSPACE);
+        int pad = (int) TypedValue.applyDimension(TypedValue.COMPLEX_UNIT_DIP, 4,
+            activity.getResources().getDisplayMetrics());
+        view.setPadding(pad, pad, pad, pad);
+        // Numbers only; touches go to the page underneath
+        view.setClickable(false);
+        view.setFocusable(false);
+        FrameLayout.LayoutParams params = new FrameLayout.LayoutParams(
+            ViewGroup.LayoutParams.WRAP_CONTENT, ViewGroup.LayoutParams.WRAP_CONTENT, Gravity.BOTTOM | Gravity.START);
+        activity.addContentView(view, params);
+        main.post(refresh);
+    }
+
+    /** Main thread. */
+    public void hide() {
+        if (view == null) {
+            return;
+        }
+        main.removeCallbacks(refresh);
+        ViewGroup parent = (ViewGroup) view.getParent();
+        if (parent != null) {
+            parent.removeView(view);
+        }
+        view = null;
+    }
+}
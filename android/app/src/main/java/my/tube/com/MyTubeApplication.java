@@ -0,0 +1,99 @@
+package my.tube.com;
+
+import android.app.ActivityManager;
+import android.app.Application;
+import android.content.Context;
+import android.util.Log;
+import android.webkit.WebSettings;
+import my.tube.core.Clock;
+import my.tube.core.inject.ScriptAssetCache;
+import my.tube.core.net.HttpStack;
+import my.tube.core.startup.Warmup;
+
+/**
+ * Starts the slow parts of a cold start while the system is still bringing
+ * up {@link MainActivity}: the script, blocklist and disk caches load on
+ * {@link BackgroundTasks}, and for a foreground launch the WebView provider
+ * is loaded and YouTube's origins are preconnected. The activity reads the
+ * same process-wide holders, so whatever finished first is simply reused and
+ * whatever didn't is loaded by whichever side gets there first.
+ */
+public class MyTubeApplication extends Application {
+
+    private static final String TAG = "MyTube";
+
+    private static final int PRECONNECT_TIMEOUT_MS = 5000;
+
+    @Override
+    public void onCreate() {
+        super.onCreate();
+        StartupTrace.beginFirstPaint();
+        StartupTrace.INSTANCE.begin("MyTube.appInit");
+        try {
+            final Context app = this;
+            final Warmup caches = new Warmup(Clock.SYSTEM, StartupTrace.INSTANCE)
+                .add("MyTube.warm.script", () -> ScriptAssetCache.get(WebShellClient.SCRIPT_ASSET, getAssets()::open))
+                .add("MyTube.warm.blocklist", () -> {
+                    BlocklistProvider.get(app);
+                    BlocklistProvider.getRequestFilter(app);
+                })
+                .add("MyTube.warm.diskCaches", () -> {
+                    StaticAssets.get(app);
+                    ThumbnailBridge.cache(app);
+                });
+            if (isForegroundLaunch()) {
+                // Native fetches (static assets, thumbnails, youtubei) reuse these connections;
+                // the lookups also land in the system DNS cache the WebView resolves through
+                HttpStack.Client http = Http.get(app).client("preconnect", PRECONNECT_TIMEOUT_MS);
+                caches.add("MyTube.preconnect.youtube", Warmup.preconnect(http, "https://m.youtube.com/generate_204"))
+                    .add("MyTube.preconnect.ytimg", Warmup.preconnect(http, "https://i.ytimg.com/generate_204"));
+                warmWebView();
+            }
+            BackgroundTasks.get().submit(this, "warmup", () -> {
+                caches.run();
+                return caches;
+            }, (Warmup done, Throwable error) -> Log.d(TAG, "Warmup: " + done.summary()));
+        } finally {
+            StartupTrace.INSTANCE.end();
+        }
+    }
+
+    @Override
+    public void onTrimMemory(int level) {
+        super.onTrimMemory(level);
+        Resilience.memory().onTrimMemory(level);
+    }
+
+    @Override
+    public void onLowMemory() {
+        super.onLowMemory();
+        Resilience.memory().onLowMemory();
+    }
+
+    /**
+     * Loads the Chromium provider on a background thread, which otherwise
+     * happens on the main thread when the bridge creates its WebView. Its own
+     * task, because the provider finishes starting on the main thread and
+     * this waits for that.
+     */
+    private void warmWebView() {
+        final Context app = this;
+        final Warmup webView = new Warmup(Clock.SYSTEM, StartupTrace.INSTANCE)
+            .add("MyTube.warm.webView", () -> WebSettings.getDefaultUserAgent(app));
+        BackgroundTasks.get().submit(this, "warmup:webview", () -> {
+            webView.run();
+            return webView;
+        }, (Warmup done, Throwable error) -> {
+            if (!done.failures().isEmpty()) {
+                Log.w(TAG, "WebView warmup failed", done.failures().values().iterator().next());
+            }
+        });
+    }
+
+    // Not for a process started only to run RefreshWorker or the audio service
+    private static boolean isForegroundLaunch() {
+        ActivityManager.RunningAppProcessInfo info = new ActivityManager.RunningAppProcessInfo();
+        ActivityManager.getMyMemoryState(info);
+        return info.importance <= ActivityManager.RunningAppProcessInfo.IMPORTANCE_FOREGROUND;
+    }
+}
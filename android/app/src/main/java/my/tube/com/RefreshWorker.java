@@ -0,0 +1,126 @@
+package my.tube.com;
+
+import android.content.Context;
+import android.content.Intent;
+import android.content.IntentFilter;
+import android.net.ConnectivityManager;
+import android.os.BatteryManager;
+import android.util.Log;
+import androidx.annotation.NonNull;
+import androidx.work.Constraints;
+import androidx.work.ExistingPeriodicWorkPolicy;
+import androidx.work.NetworkType;
+import androidx.work.PeriodicWorkRequest;
+import androidx.work.WorkManager;
+import androidx.work.Worker;
+import androidx.work.WorkerParameters;
+import java.io.File;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import my.tube.core.Clock;
+import my.tube.core.refresh.RefreshScheduler;
+import my.tube.core.update.AppVersion;
+import my.tube.core.update.UpdatePolicy;
+
+/**
+ * Periodic background refresh of the blocklist and the update metadata.
+ *
+ * WorkManager wakes this up every few hours with some network; which jobs
+ * actually run is up to {@link RefreshScheduler}, which prefers unmetered
+ * networks while charging. A refreshed blocklist is swapped into the
+ * process-wide store, so a running WebView picks it up on its next request.
+ */
+public final class RefreshWorker extends Worker {
+
+    private static final String TAG = "MyTube";
+    private static final String WORK_NAME = "mytube-refresh";
+
+    private static final long HOUR_MS = 60 * 60 * 1000L;
+    private static final long BACKOFF_BASE_MS = 30 * 60 * 1000L;
+
+    public RefreshWorker(@NonNull Context context, @NonNull WorkerParameters params) {
+        super(context, params);
+    }
+
+    /** Schedules the periodic refresh unless it already is. */
+    public static void schedule(Context context) {
+        Constraints constraints = new Constraints.Builder()
+            .setRequiredNetworkType(NetworkType.CONNECTED)
+            .setRequiresBatteryNotLow(true)
+            .build();
+        PeriodicWorkRequest request = new PeriodicWorkRequest.Builder(RefreshWorker.class, 6, TimeUnit.HOURS)
+            .setConstraints(constraints)
+            .build();
+        WorkManager.getInstance(context).enqueueUniquePeriodicWork(WORK_NAME, ExistingPeriodicWorkPolicy.KEEP, request);
+    }
+
+    @NonNull
+    @Override
+    public Result doWork() {
+        final Context context = getApplicationContext();
+        RefreshScheduler scheduler = new RefreshScheduler(Arrays.asList(
+            job("blocklist", 24 * HOUR_MS, 3 * 24 * HOUR_MS, () -> {
+                boolean installed = BlocklistProvider.updater(context).refresh();
+                Log.d(TAG, installed ? "Blocklist refreshed: " + BlocklistProvider.get(context).current().size()
+                    + " rules" : "Blocklist unchanged");
+            }),
+            job("app-version", 12 * HOUR_MS, 24 * HOUR_MS, () -> checkForUpdate(context))),
+            new File(context.getFilesDir(), "refresh-state.properties"), Clock.SYSTEM, BACKOFF_BASE_MS);
+
+        RefreshScheduler.Conditions conditions = conditions(context);
+        Map<String, RefreshScheduler.Outcome> outcomes = scheduler.runDue(conditions);
+        Log.d(TAG, "Background refresh (" + conditions + "): " + outcomes);
+        // Failures are retried on the scheduler's own backoff, not WorkManager's
+        return Result.success();
+    }
+
+    private static void checkForUpdate(Context context) throws Exception {
+        AppVersion latest = Updates.client(context).fetchLatest();
+        UpdatePolicy.Decision decision = Updates.policy().decide(latest, Updates.firstSeen(context),
+            System.currentTimeMillis());
+        Updates.recordDecision(context, decision);
+        Log.d(TAG, "Background update check: " + decision);
+        if (decision.action != UpdatePolicy.Action.NONE && !Updates.wasNotified(context, decision.latest)) {
+            Updates.showNotification(context, decision.latest);
+        }
+    }
+
+    private static RefreshScheduler.Conditions conditions(Context context) {
+        ConnectivityManager connectivity = (ConnectivityManager) context.getSystemService(Context.CONNECTIVITY_SERVICE);
+        boolean unmetered = connectivity != null && !connectivity.isActiveNetworkMetered();
+        Intent battery = context.registerReceiver(null, new IntentFilter(Intent.ACTION_BATTERY_CHANGED));
+        int status = battery != null ? battery.getIntExtra(BatteryManager.EXTRA_STATUS, -1) : -1;
+        boolean charging = status == BatteryManager.BATTERY_STATUS_CHARGING || status == BatteryManager.BATTERY_STATUS_FULL;
+        return new RefreshScheduler.Conditions(unmetered, charging);
+    }
+
+    private interface Body {
+        void run() throws Exception;
+    }
+
+    private static RefreshScheduler.Job job(final String name, final long intervalMs, final long maxStaleMs,
+                                            final Body body) {
+        return new RefreshScheduler.Job() {
+            @Override
+            public String name() {
+                return name;
+            }
+
+            @Override
+            public long intervalMs() {
+                return intervalMs;
+            }
+
+            @Override
+            public long maxStaleMs() {
+                return maxStaleMs;
+            }
+
+            @Override
+            public void run() throws Exception {
+                body.run();
+            }
+        };
+    }
+}
@@ -0,0 +1,108 @@
+package my.tube.com;
+
+import android.os.Bundle;
+import android.webkit.WebView;
+import my.tube.core.Clock;
+import my.tube.core.media.AudioHandoff;
+import my.tube.core.shell.MemoryPressure;
+import my.tube.core.shell.NavigationPolicy;
+import my.tube.core.shell.ShellRecovery;
+
+/**
+ * Process-wide memory-pressure dispatch and renderer recovery. Both outlive
+ * the activity: trims arrive at the Application, and a renderer that keeps
+ * dying has to be noticed across the activities recreated for it.
+ */
+public final class Resilience {
+
+    // Three losses in five minutes means the page itself is the problem
+    private static final int MAX_RESTORES = 3;
+    private static final long RESTORE_WINDOW_MS = 5 * 60 * 1000L;
+
+    private static final String STATE = "mytube.shellState";
+
+    private static final MemoryPressure MEMORY = new MemoryPressure(Metrics.registry());
+    private static final ShellRecovery RECOVERY = new ShellRecovery(NavigationPolicy.YOUTUBE, Metrics.registry(),
+        Clock.SYSTEM, MAX_RESTORES, RESTORE_WINDOW_MS);
+
+    // WebView timers are process-wide, so a recreated activity has to know they were paused. Main thread.
+    private static boolean timersPaused;
+
+    static {
+        // Our own caches refill from disk or the network; the script and blocklist stay
+        MEMORY.add((level, uiHidden) -> {
+            ThumbnailBridge.trimMemory(level);
+            SponsorBlockBridge.trimMemory(level);
+        });
+    }
+
+    private Resilience() {}
+
+    public static MemoryPressure memory() {
+        return MEMORY;
+    }
+
+    public static ShellRecovery recovery() {
+        return RECOVERY;
+    }
+
+    public static void pauseTimers(WebView webView) {
+        if (!timersPaused) {
+            webView.pauseTimers();
+            timersPaused = true;
+        }
+    }
+
+    public static void resumeTimers(WebView webView) {
+        if (timersPaused) {
+            webView.resumeTimers();
+            timersPaused = false;
+        }
+    }
+
+    /** The page's playback as noutube.js reports it to the audio bridge. */
+    public static ShellRecovery.Playback playback(final AudioHandoff handoff) {
+        if (handoff == null) {
+            return null;
+        }
+        return new ShellRecovery.Playback() {
+            @Override
+            public String videoId() {
+                return handoff.videoId();
+            }
+
+            @Override
+            public long positionMs() {
+                return handoff.positionMs();
+            }
+
+            @Override
+            public boolean isPlaying() {
+                return handoff.isPlaying();
+            }
+        };
+    }
+
+    public static void save(ShellRecovery.State state, Bundle outState) {
+        if (state == null) {
+            return;
+        }
+        Bundle bundle = new Bundle();
+        bundle.putString("url", state.url);
+        bundle.putInt("scrollY", state.scrollY);
+        bundle.putString("videoId", state.videoId);
+        bundle.putLong("positionMs", state.positionMs);
+        bundle.putBoolean("playing", state.playing);
+        outState.putBundle(STATE, bundle);
+    }
+
+    /** The state {@link #save} wrote, or null. */
+    public static ShellRecovery.State restore(Bundle savedInstanceState) {
+        Bundle bundle = savedInstanceState != null ? savedInstanceState.getBundle(STATE) : null;
+        if (bundle == null || bundle.getString("url") == null) {
+            return null;
+        }
+        return new ShellRecovery.State(bundle.getString("url"), bundle.getInt("scrollY"),
+            bundle.getString("videoId"), bundle.getLong("positionMs"), bundle.getBoolean("playing"));
+    }
+}
@@ -0,0 +1,24 @@
+package my.tube.com;
+
+import android.webkit.JavascriptInterface;
+import my.tube.core.shell.ShellRecovery;
+
+/**
+ * Scroll position from noutube.js, reported after scrolling settles, so a
+ * reload after a renderer loss can put the page back where it was.
+ */
+public final class ShellStateBridge {
+
+    public static final String BRIDGE_NAME = "MyTubeShell";
+
+    private final ShellRecovery recovery;
+
+    public ShellStateBridge(ShellRecovery recovery) {
+        this.recovery = recovery;
+    }
+
+    @JavascriptInterface
+    public void onScroll(int scrollY) {
+        recovery.onScroll(scrollY);
+    }
+}
@@ -0,0 +1,96 @@
+package my.tube.com;
+
+import android.content.Context;
+import android.util.Log;
+import android.webkit.JavascriptInterface;
+import android.webkit.WebView;
+import java.io.File;
+import java.util.List;
+import my.tube.core.Clock;
+import my.tube.core.media.VideoId;
+import my.tube.core.shell.MemoryPressure;
+import my.tube.core.sponsor.Segment;
+import my.tube.core.sponsor.SegmentCache;
+import my.tube.core.sponsor.SponsorBlockClient;
+import org.json.JSONObject;
+
+/**
+ * SponsorBlock segments for the skip scheduler in noutube.js.
+ *
+ * The page asks {@link #cachedSegments} synchronously when a video starts;
+ * on a miss it calls {@link #requestSegments} and the answer arrives later
+ * through {@code window.__mytubeSegments(videoId, segments)}. Lookups and
+ * requests happen here, so the page never talks to the API itself.
+ */
+public final class SponsorBlockBridge {
+
+    private static final String TAG = "MyTube";
+
+    public static final String BRIDGE_NAME = "MyTubeSponsorBlock";
+
+    private static final int MEMORY_ENTRIES = 256;
+    private static final int DISK_ENTRIES = 2000;
+    private static final long TTL_MS = 24 * 60 * 60 * 1000L;
+    private static final int TIMEOUT_MS = 10_000;
+
+    private static SponsorBlockClient client;
+
+    private final WebView webView;
+    private final Object owner;
+    private final SponsorBlockClient sponsorBlock;
+
+    /**
+     * @param owner the activity; its onDestroy cancels pending answers via {@link BackgroundTasks}
+     */
+    public SponsorBlockBridge(Context context, WebView webView, Object owner) {
+        this.webView = webView;
+        this.owner = owner;
+        this.sponsorBlock = client(context);
+    }
+
+    public static synchronized SponsorBlockClient client(Context context) {
+        if (client == null) {
+            File dir = new File(context.getApplicationContext().getCacheDir(), "sponsorblock");
+            SegmentCache cache = new SegmentCache(MEMORY_ENTRIES, dir, DISK_ENTRIES, TTL_MS, Clock.SYSTEM);
+            client = new SponsorBlockClient(SponsorBlockClient.DEFAULT_API,
+                SponsorBlockClient.DEFAULT_CATEGORIES, cache, Http.get(context).client("sponsorblock", TIMEOUT_MS));
+        }
+        return client;
+    }
+
+    /** Empties the memory tier under pressure; lookups fall back to the disk tier. */
+    public static synchronized void trimMemory(MemoryPressure.Level level) {
+        if (client != null && level.atLeast(MemoryPressure.Level.LOW)) {
+            client.cache().trimMemory();
+        }
+    }
+
+    /** Segments JSON if already cached, else null. Called on the JS bridge thread. */
+    @JavascriptInterface
+    public String cachedSegments(String videoId) {
+        if (!VideoId.isValid(videoId)) {
+            return null;
+        }
+        List<Segment> segments = sponsorBlock.cached(videoId);
+        return segments != null ? Segment.toJson(segments).toString() : null;
+    }
+
+    /** Fetches segments in the background and delivers them to the page. */
+    @JavascriptInterface
+    public void requestSegments(final String videoId) {
+        if (!VideoId.isValid(videoId)) {
+            return;
+        }
+        BackgroundTasks.get().submit(owner, "sponsorblock:" + videoId,
+            () -> sponsorBlock.segments(videoId),
+            (segments, error) -> {
+                if (error != null) {
+                    Log.d(TAG, "SponsorBlock lookup failed for " + videoId + ": " + error);
+                    return;
+                }
+                String script = "window.__mytubeSegments && window.__mytubeSegments("
+                    + JSONObject.quote(videoId) + ", " + Segment.toJson(segments) + ")";
+                webView.evaluateJavascript(script, null);
+            });
+    }
+}
@@ -0,0 +1,46 @@
+package my.tube.com;
+
+import android.os.Build;
+import android.os.Trace;
+import java.util.concurrent.atomic.AtomicBoolean;
+import my.tube.core.startup.Warmup;
+
+/**
+ * {@link Trace} sections for the cold-start path, so a system trace or the
+ * startup macrobenchmark can split the time between process start and the
+ * first painted page. Section names are shared with the benchmark.
+ */
+public final class StartupTrace implements Warmup.Tracer {
+
+    public static final StartupTrace INSTANCE = new StartupTrace();
+
+    /** Async section from {@link MyTubeApplication#onCreate} to the first painted page. */
+    public static final String FIRST_PAINT = "MyTube.firstPaint";
+
+    private static final AtomicBoolean painted = new AtomicBoolean();
+
+    private StartupTrace() {}
+
+    @Override
+    public void begin(String section) {
+        Trace.beginSection(section);
+    }
+
+    @Override
+    public void end() {
+        Trace.endSection();
+    }
+
+    static void beginFirstPaint() {
+        if (Build.VERSION.SDK_INT >= 29) {
+            Trace.beginAsyncSection(FIRST_PAINT, 0);
+        }
+    }
+
+    /** Once per process; later activities' first paints are not cold starts. */
+    static void endFirstPaint() {
+        if (painted.compareAndSet(false, true) && Build.VERSION.SDK_INT >= 29) {
+            Trace.endAsyncSection(FIRST_PAINT, 0);
+        }
+    }
+}
@@ -0,0 +1,42 @@
+package my.tube.com;
+
+import android.content.Context;
+import java.io.File;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import my.tube.core.Clock;
+import my.tube.core.cache.DiskLruCache;
+import my.tube.core.cache.StaticAssetCache;
+
+/**
+ * The process-wide {@link StaticAssetCache} for YouTube's player and web
+ * bundles and fonts. Commits and revalidations run on one low-priority thread
+ * of their own so a burst of cache writes never queues behind, or ahead of,
+ * the work on {@link BackgroundTasks}.
+ */
+public final class StaticAssets {
+
+    private static final long MAX_BYTES = 50L * 1024 * 1024;
+    private static final long REVALIDATE_AFTER_MS = 7 * 24 * 60 * 60 * 1000L;
+    // Connect and headers; bodies only time out when a read stalls this long
+    private static final int TIMEOUT_MS = 15_000;
+
+    private static StaticAssetCache cache;
+
+    private StaticAssets() {}
+
+    public static synchronized StaticAssetCache get(Context context) {
+        if (cache == null) {
+            File dir = new File(context.getApplicationContext().getCacheDir(), "static-assets");
+            ExecutorService background = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "MyTube-assets");
+                thread.setPriority(Thread.MIN_PRIORITY);
+                thread.setDaemon(true);
+                return thread;
+            });
+            cache = new StaticAssetCache(new DiskLruCache(dir, MAX_BYTES), Metrics.registry(), background,
+                Clock.SYSTEM, REVALIDATE_AFTER_MS, Http.get(context).client("assets", TIMEOUT_MS));
+        }
+        return cache;
+    }
+}
@@ -0,0 +1,103 @@
+package my.tube.com;
+
+import android.content.Context;
+import android.content.res.Configuration;
+import android.content.res.Resources;
+import android.util.Log;
+import android.webkit.JavascriptInterface;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import my.tube.core.Clock;
+import my.tube.core.cache.DiskLruCache;
+import my.tube.core.shell.MemoryPressure;
+import my.tube.core.thumb.ThumbnailCache;
+import org.json.JSONArray;
+import org.json.JSONException;
+
+/**
+ * Thumbnails for the page, served by {@link ThumbnailCache} from
+ * shouldInterceptRequest. noutube.js hands over the thumbnail URLs it finds
+ * in feed and continuation responses through {@link #prefetch}, so the next
+ * page of results is usually cached before it scrolls into view.
+ */
+public final class ThumbnailBridge {
+
+    private static final String TAG = "MyTube";
+
+    public static final String BRIDGE_NAME = "MyTubeThumbnails";
+
+    private static final long MEMORY_BYTES = 8L * 1024 * 1024;
+    private static final long DISK_BYTES = 40L * 1024 * 1024;
+    private static final long TTL_MS = 3 * 24 * 60 * 60 * 1000L;
+    private static final int TIMEOUT_MS = 10_000;
+
+    private static ThumbnailCache cache;
+
+    private final ThumbnailCache thumbnails;
+    private final int targetWidth;
+
+    public ThumbnailBridge(Context context) {
+        this.thumbnails = cache(context);
+        this.targetWidth = targetWidth(context);
+    }
+
+    public static synchronized ThumbnailCache cache(Context context) {
+        if (cache == null) {
+            File dir = new File(context.getApplicationContext().getCacheDir(), "thumbnails");
+            // One low-priority thread: prefetches never compete with what is on screen
+            Executor background = Executors.newSingleThreadExecutor(r -> {
+                Thread thread = new Thread(r, "MyTube-thumbs");
+                thread.setPriority(Thread.MIN_PRIORITY);
+                thread.setDaemon(true);
+                return thread;
+            });
+            cache = new ThumbnailCache(new DiskLruCache(dir, DISK_BYTES), MEMORY_BYTES, Metrics.registry(),
+                background, Clock.SYSTEM, TTL_MS, Http.get(context).client("thumbs", TIMEOUT_MS), null);
+        }
+        return cache;
+    }
+
+    /** Halves or empties the memory tier; nothing to do if no page has asked for a thumbnail yet. */
+    public static synchronized void trimMemory(MemoryPressure.Level level) {
+        if (cache != null && level.atLeast(MemoryPressure.Level.MODERATE)) {
+            cache.trimMemory(level.atLeast(MemoryPressure.Level.LOW) ? 0 : MEMORY_BYTES / 2);
+        }
+    }
+
+    /**
+     * Width in device pixels of a full-width feed card: the shorter screen
+     * side, so rotating doesn't switch every thumbnail to a larger variant.
+     */
+    public static int targetWidth(Context context) {
+        Resources resources = context.getResources();
+        Configuration config = resources.getConfiguration();
+        return Math.round(Math.min(config.screenWidthDp, config.screenHeightDp)
+            * resources.getDisplayMetrics().density);
+    }
+
+    public ThumbnailCache thumbnails() {
+        return thumbnails;
+    }
+
+    public int width() {
+        return targetWidth;
+    }
+
+    /** Called from noutube.js with a JSON array of thumbnail URLs. */
+    @JavascriptInterface
+    public void prefetch(String urlsJson) {
+        try {
+            JSONArray array = new JSONArray(urlsJson);
+            List<String> urls = new ArrayList<>(array.length());
+            for (int i = 0; i < array.length(); i++) {
+                urls.add(array.getString(i));
+            }
+            thumbnails.prefetch(urls, targetWidth);
+        } catch (JSONException e) {
+            Log.w(TAG, "Bad thumbnail prefetch list", e);
+        }
+    }
+}
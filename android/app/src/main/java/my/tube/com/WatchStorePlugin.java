@@ -0,0 +1,190 @@
+package my.tube.com;
+
+import android.content.Context;
+import android.util.Log;
+import com.getcapacitor.JSArray;
+import com.getcapacitor.JSObject;
+import com.getcapacitor.Plugin;
+import com.getcapacitor.PluginCall;
+import com.getcapacitor.PluginMethod;
+import com.getcapacitor.annotation.CapacitorPlugin;
+import java.io.File;
+import java.io.IOException;
+import my.tube.core.Clock;
+import my.tube.core.history.EntryStore;
+import org.json.JSONException;
+
+/**
+ * Watch history and the play queue for the web UI (src/utils/watchStore.ts),
+ * each an {@link EntryStore} keyed by video id. Values are the UI's own JSON
+ * objects, stored as they come. Capacitor runs plugin methods off the main
+ * thread, so the disk work happens inline.
+ */
+@CapacitorPlugin(name = "WatchStore")
+public class WatchStorePlugin extends Plugin {
+
+    private static final String TAG = "MyTube";
+
+    private static final int HISTORY_ENTRIES = 50_000;
+    private static final int QUEUE_ENTRIES = 500;
+    private static final int MAX_PAGE = 500;
+
+    private static EntryStore history;
+    private static EntryStore queue;
+
+    public static synchronized EntryStore history(Context context) throws IOException {
+        if (history == null) {
+            history = EntryStore.open(file(context, "history.log"), HISTORY_ENTRIES, Clock.SYSTEM);
+        }
+        return history;
+    }
+
+    public static synchronized EntryStore queue(Context context) throws IOException {
+        if (queue == null) {
+            queue = EntryStore.open(file(context, "queue.log"), QUEUE_ENTRIES, Clock.SYSTEM);
+        }
+        return queue;
+    }
+
+    private static File file(Context context, String name) {
+        File dir = new File(context.getApplicationContext().getFilesDir(), "watch");
+        dir.mkdirs();
+        return new File(dir, name);
+    }
+
+    @PluginMethod
+    public void append(PluginCall call) {
+        try {
+            EntryStore store = store(call);
+            String key = call.getString("key");
+            JSObject value = call.getObject("value");
+            if (store == null || key == null || value == null) {
+                call.reject("store, key and value are required");
+                return;
+            }
+            store.append(key, value.toString());
+            call.resolve();
+        } catch (IOException e) {
+            fail(call, e);
+        }
+    }
+
+    @PluginMethod
+    public void prepend(PluginCall call) {
+        try {
+            EntryStore store = store(call);
+            String key = call.getString("key");
+            JSObject value = call.getObject("value");
+            if (store == null || key == null || value == null) {
+                call.reject("store, key and value are required");
+                return;
+            }
+            store.prepend(key, value.toString());
+            call.resolve();
+        } catch (IOException e) {
+            fail(call, e);
+        }
+    }
+
+    @PluginMethod
+    public void moveBefore(PluginCall call) {
+        try {
+            EntryStore store = store(call);
+            String key = call.getString("key");
+            if (store == null || key == null) {
+                call.reject("store and key are required");
+                return;
+            }
+            // A null target moves the entry to the end
+            store.moveBefore(key, call.getString("before"));
+            call.resolve();
+        } catch (IOException e) {
+            fail(call, e);
+        }
+    }
+
+    @PluginMethod
+    public void remove(PluginCall call) {
+        try {
+            EntryStore store = store(call);
+            String key = call.getString("key");
+            if (store == null || key == null) {
+                call.reject("store and key are required");
+                return;
+            }
+            store.remove(key);
+            call.resolve();
+        } catch (IOException e) {
+            fail(call, e);
+        }
+    }
+
+    @PluginMethod
+    public void clear(PluginCall call) {
+        try {
+            EntryStore store = store(call);
+            if (store == null) {
+                call.reject("store is required");
+                return;
+            }
+            store.clear();
+            call.resolve();
+        } catch (IOException e) {
+            fail(call, e);
+        }
+    }
+
+    /** One page, newest or oldest first, continuing after {@code cursor} when given. */
+    @PluginMethod
+    public void page(PluginCall call) {
+        try {
+            EntryStore store = store(call);
+            if (store == null) {
+                call.reject("store is required");
+                return;
+            }
+            int limit = Math.max(1, Math.min(MAX_PAGE, call.getInt("limit", 50)));
+            Long cursor = call.getLong("cursor");
+            boolean newest = !"oldest".equals(call.getString("order"));
+            EntryStore.Page page;
+            if (newest) {
+                page = cursor == null ? store.newestFirst(limit) : store.newestFirst(cursor, limit);
+            } else {
+                page = cursor == null ? store.oldestFirst(limit) : store.oldestFirst(cursor, limit);
+            }
+            JSArray entries = new JSArray();
+            for (EntryStore.Entry entry : page.entries) {
+                JSObject item = new JSObject();
+                item.put("key", entry.key);
+                item.put("position", entry.position);
+                item.put("time", entry.time);
+                item.put("value", new JSObject(entry.payload));
+                entries.put(item);
+            }
+            JSObject result = new JSObject();
+            result.put("entries", entries);
+            if (page.next != null) {
+                result.put("next", page.next.longValue());
+            }
+            call.resolve(result);
+        } catch (IOException | JSONException e) {
+            fail(call, e);
+        }
+    }
+
+    private EntryStore store(PluginCall call) throws IOException {
+        String name = call.getString("store");
+        if ("history".equals(name)) {
+            return history(getContext());
+        }
+        if ("queue".equals(name)) {
+            return queue(getContext());
+        }
+        return null;
+    }
+
+    private static void fail(PluginCall call, Exception e) {
+        Log.w(TAG, "Watch store failed", e);
+        call.reject(e.getMessage(), e);
+    }
+}
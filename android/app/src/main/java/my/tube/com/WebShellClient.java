@@ -0,0 +1,220 @@
+package my.tube.com;
+
+import android.app.Activity;
+import android.content.Context;
+import android.content.Intent;
+import android.graphics.Bitmap;
+import android.net.Uri;
+import android.util.Log;
+import android.webkit.CookieManager;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+import android.webkit.WebSettings;
+import android.webkit.WebView;
+import android.webkit.WebViewClient;
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import my.tube.core.Clock;
+import my.tube.core.cache.StaticAssetCache;
+import my.tube.core.inject.ScriptAsset;
+import my.tube.core.inject.ScriptAssetCache;
+import my.tube.core.inject.ScriptInjector;
+import my.tube.core.media.AudioHandoff;
+import my.tube.core.shell.NavigationPolicy;
+import my.tube.core.shell.RequestClassifier;
+import my.tube.core.shell.WebShell;
+import my.tube.core.thumb.ThumbnailCache;
+
+/**
+ * WebViewClient over a {@link WebShell}: forwards page callbacks, routes
+ * every request through the shell and serves each route from the caches it
+ * was given. Any of the caches may be null, which leaves that route to the
+ * network. Activities subclass it for page events of their own.
+ */
+public class WebShellClient extends WebViewClient
+        implements WebShell.Handlers<WebShellClient.Request, WebResourceResponse> {
+
+    private static final String TAG = "MyTube";
+
+    /** The content script in assets. */
+    public static final String SCRIPT_ASSET = "noutube.js";
+
+    /** A WebResourceRequest as the shell sees it. */
+    static final class Request implements WebShell.Request {
+        final WebResourceRequest raw;
+        final Uri url;
+
+        Request(WebResourceRequest raw) {
+            this.raw = raw;
+            this.url = raw.getUrl();
+        }
+
+        @Override
+        public String method() {
+            return raw.getMethod();
+        }
+
+        @Override
+        public String host() {
+            return url.getHost();
+        }
+
+        @Override
+        public String path() {
+            return url.getEncodedPath();
+        }
+
+        @Override
+        public String query() {
+            return url.getEncodedQuery();
+        }
+
+        @Override
+        public boolean isForMainFrame() {
+            return raw.isForMainFrame();
+        }
+
+        @Override
+        public String accept() {
+            return raw.getRequestHeaders().get("Accept");
+        }
+    }
+
+    private final Activity activity;
+    private final WebShell shell;
+    private final YoutubeiProxy proxy;
+    private final StaticAssetCache staticAssets;
+    private final ThumbnailBridge thumbnails;
+    private final AudioHandoff audio;
+
+    public WebShellClient(Activity activity, WebShell shell, YoutubeiProxy proxy, StaticAssetCache staticAssets,
+            ThumbnailBridge thumbnails, AudioHandoff audio) {
+        this.activity = activity;
+        this.shell = shell;
+        this.proxy = proxy;
+        this.staticAssets = staticAssets;
+        this.thumbnails = thumbnails;
+        this.audio = audio;
+    }
+
+    /** Cookies and settings for YouTube; returns the user agent without the WebView marker. */
+    public static String configure(WebView webView) {
+        // Enable cookies for YouTube login
+        CookieManager cookieManager = CookieManager.getInstance();
+        cookieManager.setAcceptCookie(true);
+        cookieManager.setAcceptThirdPartyCookies(webView, true);
+
+        WebSettings settings = webView.getSettings();
+        settings.setJavaScriptEnabled(true);
+        settings.setDomStorageEnabled(true);
+        settings.setMediaPlaybackRequiresUserGesture(false);
+        settings.setSupportZoom(true);
+        settings.setBuiltInZoomControls(true);
+        settings.setDisplayZoomControls(false);
+        settings.setLoadWithOverviewMode(true);
+        settings.setUseWideViewPort(true);
+        settings.setAllowContentAccess(true);
+        settings.setAllowFileAccess(true);
+        settings.setMixedContentMode(WebSettings.MIXED_CONTENT_ALWAYS_ALLOW);
+
+        // Set user agent to mobile (remove webview indicator)
+        settings.setUserAgentString(settings.getUserAgentString().replace("; wv", ""));
+        return settings.getUserAgentString();
+    }
+
+    /**
+     * A shell over the process-wide blocklist, request rules and content
+     * script, injecting into {@code webView}. Call {@link WebShell#install}
+     * before the first load.
+     */
+    public static WebShell newShell(Context context, WebView webView) {
+        ScriptAsset script = ScriptAsset.EMPTY;
+        // Decoded once per process; recreation after rotation reuses it
+        try {
+            script = ScriptAssetCache.get(SCRIPT_ASSET, context.getAssets()::open);
+        } catch (IOException e) {
+            Log.e(TAG, "Error loading ad-block script", e);
+        }
+        // Map the compiled blocklist before the first request can arrive
+        RequestClassifier classifier = new RequestClassifier(BlocklistProvider.get(context),
+            BlocklistProvider.getRequestFilter(context));
+        // Registers once; falls back to evaluateJavascript on old WebViews
+        ScriptInjector injector = new ScriptInjector(new WebViewScriptHost(webView), script,
+            WebShell.SCRIPT_ORIGINS, Clock.SYSTEM);
+        return new WebShell(classifier, NavigationPolicy.YOUTUBE, injector, Metrics.interception(), Clock.SYSTEM);
+    }
+
+    @Override
+    public void onPageStarted(WebView view, String url, Bitmap favicon) {
+        super.onPageStarted(view, url, favicon);
+        shell.onPageStarted(url);
+    }
+
+    @Override
+    public void onPageFinished(WebView view, String url) {
+        super.onPageFinished(view, url);
+        shell.onPageFinished(url);
+        Log.d(TAG, "Navigation " + shell.injector().currentNavigation());
+    }
+
+    @Override
+    public WebResourceResponse shouldInterceptRequest(WebView view, WebResourceRequest request) {
+        WebResourceResponse response = shell.intercept(new Request(request), this);
+        return response != null ? response : super.shouldInterceptRequest(view, request);
+    }
+
+    @Override
+    public boolean shouldOverrideUrlLoading(WebView view, WebResourceRequest request) {
+        Uri uri = request.getUrl();
+        if (shell.shouldLoadInApp(uri.getHost())) {
+            return false;
+        }
+        // Open other URLs in external browser
+        activity.startActivity(new Intent(Intent.ACTION_VIEW, uri));
+        return true;
+    }
+
+    @Override
+    public WebResourceResponse blocked(Request request) {
+        // Block by returning empty response
+        return new WebResourceResponse("text/plain", "utf-8", new ByteArrayInputStream(new byte[0]));
+    }
+
+    @Override
+    public WebResourceResponse thumbnail(Request request) {
+        if (thumbnails == null) {
+            return null;
+        }
+        ThumbnailCache.Response thumb = thumbnails.thumbnails().open(request.url.toString(), thumbnails.width());
+        if (thumb == null) {
+            return null;
+        }
+        return new WebResourceResponse(thumb.mimeType, null, 200, "OK", thumb.headers,
+            new ByteArrayInputStream(thumb.body));
+    }
+
+    @Override
+    public WebResourceResponse staticAsset(Request request) {
+        if (staticAssets == null) {
+            return null;
+        }
+        StaticAssetCache.Response asset = staticAssets.open(request.url.toString(), request.raw.getRequestHeaders());
+        if (asset == null) {
+            return null;
+        }
+        return new WebResourceResponse(asset.mimeType, asset.charset, asset.status, asset.reason, asset.headers,
+            asset.body);
+    }
+
+    @Override
+    public WebResourceResponse proxy(Request request) {
+        return proxy.intercept(request.raw);
+    }
+
+    @Override
+    public void onStream(Request request) {
+        if (audio != null) {
+            audio.onStreamRequest(request.url.toString());
+        }
+    }
+}
@@ -0,0 +1,32 @@
+package my.tube.com;
+
+import android.webkit.WebView;
+import androidx.webkit.WebViewCompat;
+import androidx.webkit.WebViewFeature;
+import java.util.Set;
+import my.tube.core.inject.ScriptInjector;
+
+/** {@link ScriptInjector.Host} over a WebView, using androidx.webkit where available. */
+public final class WebViewScriptHost implements ScriptInjector.Host {
+
+    private final WebView webView;
+
+    public WebViewScriptHost(WebView webView) {
+        this.webView = webView;
+    }
+
+    @Override
+    public boolean supportsDocumentStart() {
+        return WebViewFeature.isFeatureSupported(WebViewFeature.DOCUMENT_START_SCRIPT);
+    }
+
+    @Override
+    public void addDocumentStartScript(String script, Set<String> allowedOrigins) {
+        WebViewCompat.addDocumentStartJavaScript(webView, script, allowedOrigins);
+    }
+
+    @Override
+    public void evaluate(String script, ScriptInjector.ValueCallback callback) {
+        webView.evaluateJavascript(script, callback == null ? null : callback::onResult);
+    }
+}
@@ -0,0 +1,266 @@
+package my.tube.com;
+
+import android.net.Uri;
+import android.util.Log;
+import android.webkit.CookieManager;
+import android.webkit.JavascriptInterface;
+import android.webkit.WebResourceRequest;
+import android.webkit.WebResourceResponse;
+import java.io.ByteArrayInputStream;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import my.tube.core.io.Streams;
+import my.tube.core.json.JsonFilter;
+import my.tube.core.json.YoutubeiFilters;
+import my.tube.core.media.BandwidthPolicy;
+import my.tube.core.media.FormatPruner;
+import my.tube.core.metrics.InterceptionMetrics;
+import my.tube.core.net.HttpStack;
+
+/**
+ * Native path for /youtubei/v1/player and /youtubei/v1/search.
+ *
+ * shouldInterceptRequest never sees POST bodies, so noutube.js hands the body
+ * to {@link #stashBody} and tags the request URL with the returned id. The
+ * tagged request is replayed here with the page's headers and cookies, and the
+ * response goes through a {@link JsonFilter} before the WebView gets it, so the
+ * page no longer parses and re-serializes these payloads on its JS thread.
+ * The responses are small and are filtered whole before answering: if the
+ * filter fails, the page still gets the original body and filters it itself.
+ * On a metered or slow connection, player responses also lose the adaptive
+ * formats above the {@link Bandwidth} cap.
+ */
+public final class YoutubeiProxy {
+
+    private static final String TAG = "MyTube";
+
+    public static final String BRIDGE_NAME = "MyTubeNative";
+    static final String MARKER_PARAM = "mytube_rid";
+    static final String FILTERED_HEADER = "X-MyTube-Filtered";
+
+    private static final long STASH_TTL_MS = 30_000;
+
+    private final Map<String, Stashed> bodies = new ConcurrentHashMap<>();
+    private final AtomicLong ids = new AtomicLong();
+    private final String userAgent;
+    private final InterceptionMetrics metrics;
+    private final Bandwidth bandwidth;
+    private final HttpStack.Client http;
+
+    private static final class Stashed {
+        final String body;
+        final long createdAt;
+
+        Stashed(String body, long createdAt) {
+            this.body = body;
+            this.createdAt = createdAt;
+        }
+    }
+
+    public YoutubeiProxy(String userAgent, InterceptionMetrics metrics, Bandwidth bandwidth,
+                         HttpStack.Client http) {
+        this.userAgent = userAgent;
+        this.metrics = metrics;
+        this.bandwidth = bandwidth;
+        this.http = http;
+    }
+
+    /**
+     * The current cap as {"maxHeight":..,"maxBitrate":..}, or "" when there is
+     * none, for player responses noutube.js filters itself.
+     */
+    @JavascriptInterface
+    public String formatCap() {
+        BandwidthPolicy.Cap cap = bandwidth.cap();
+        return cap.isNone() ? "" : "{\"maxHeight\":" + cap.maxHeight + ",\"maxBitrate\":" + cap.maxBitrate + "}";
+    }
+
+    /** Called from noutube.js on the JS bridge thread; returns the id to put in the URL. */
+    @JavascriptInterface
+    public String stashBody(String body) {
+        long now = System.currentTimeMillis();
+        // Drop bodies whose request never arrived (aborted fetches)
+        Iterator<Stashed> it = bodies.values().iterator();
+        while (it.hasNext()) {
+            if (now - it.next().createdAt > STASH_TTL_MS) {
+                it.remove();
+            }
+        }
+        String id = Long.toString(ids.incrementAndGet());
+        bodies.put(id, new Stashed(body, now));
+        return id;
+    }
+
+    /** Returns a filtered response for tagged InnerTube requests, or null to let the WebView load it. */
+    public WebResourceResponse intercept(WebResourceRequest request) {
+        Uri url = request.getUrl();
+        JsonFilter filter = YoutubeiFilters.forPath(url.getPath());
+        if (filter == null || !"POST".equals(request.getMethod())) {
+            return null;
+        }
+        String id = url.getQueryParameter(MARKER_PARAM);
+        Stashed stashed = id != null ? bodies.remove(id) : null;
+        if (stashed == null) {
+            return null;
+        }
+
+        String target = stripMarker(url);
+        FormatPruner pruner = null;
+        if (filter == YoutubeiFilters.PLAYER) {
+            BandwidthPolicy.Cap cap = bandwidth.cap();
+            if (!cap.isNone()) {
+                pruner = new FormatPruner(cap, Metrics.registry());
+                filter = YoutubeiFilters.player(pruner);
+            }
+        }
+        try {
+            return forward(target, request.getRequestHeaders(), stashed.body, filter, pruner);
+        } catch (Exception e) {
+            // Falling back to the WebView re-sends the request, tag included, unfiltered
+            Log.e(TAG, "Youtubei proxy error for " + url.getPath(), e);
+            return null;
+        }
+    }
+
+    private WebResourceResponse forward(String target, Map<String, String> requestHeaders, String body,
+                                        JsonFilter filter, FormatPruner pruner) throws IOException {
+        long started = System.nanoTime();
+        HttpStack.Call call = http.open(target);
+        boolean handedOff = false;
+        try {
+            WebResourceResponse response = send(call, target, requestHeaders, body, filter, pruner, started);
+            handedOff = true;
+            return response;
+        } finally {
+            if (!handedOff) {
+                call.close();
+            }
+        }
+    }
+
+    /** Sends the request on {@code call}; an error response's body is the call's to close. */
+    private WebResourceResponse send(HttpStack.Call call, String target, Map<String, String> requestHeaders,
+                                     String body, JsonFilter filter, FormatPruner pruner, long started)
+            throws IOException {
+        HttpURLConnection conn = call.connection;
+        conn.setRequestMethod("POST");
+        conn.setDoOutput(true);
+        for (Map.Entry<String, String> header : requestHeaders.entrySet()) {
+            String name = header.getKey();
+            // HttpURLConnection negotiates gzip itself and computes the length
+            if (!"Accept-Encoding".equalsIgnoreCase(name) && !"Content-Length".equalsIgnoreCase(name)) {
+                conn.setRequestProperty(name, header.getValue());
+            }
+        }
+        if (conn.getRequestProperty("User-Agent") == null) {
+            conn.setRequestProperty("User-Agent", userAgent);
+        }
+        CookieManager cookies = CookieManager.getInstance();
+        String cookie = cookies.getCookie(target);
+        if (cookie != null) {
+            conn.setRequestProperty("Cookie", cookie);
+        }
+
+        byte[] payload = body.getBytes(StandardCharsets.UTF_8);
+        conn.setFixedLengthStreamingMode(payload.length);
+        OutputStream requestBody = conn.getOutputStream();
+        try {
+            requestBody.write(payload);
+        } finally {
+            requestBody.close();
+        }
+
+        int code = call.code();
+        List<String> setCookies = conn.getHeaderFields().get("Set-Cookie");
+        if (setCookies != null) {
+            for (String value : setCookies) {
+                cookies.setCookie(target, value);
+            }
+        }
+        String reason = conn.getResponseMessage();
+        if (reason == null || reason.isEmpty()) {
+            reason = code == HttpURLConnection.HTTP_OK ? "OK" : "Error";
+        }
+        Map<String, String> headers = new HashMap<>();
+        String cacheControl = conn.getHeaderField("Cache-Control");
+        if (cacheControl != null) {
+            headers.put("Cache-Control", cacheControl);
+        }
+
+        if (code != HttpURLConnection.HTTP_OK) {
+            // The WebView reads the error body to the end and closes it, which releases the call
+            return new WebResourceResponse("application/json", "utf-8", code, reason, headers,
+                new ClosingCallStream(call.stream(), call));
+        }
+
+        // Only stalls time the read out, as they would in the WebView
+        String raw = Streams.readUtf8(call.stream());
+        call.close();
+        StringWriter filtered = new StringWriter(raw.length());
+        try {
+            filter.filter(new StringReader(raw), filtered);
+        } catch (IOException e) {
+            // Nothing has reached the page yet: answer with the original and let noutube.js filter it
+            metrics.onProxyFilterFailed();
+            Log.e(TAG, "Youtubei response filter failed, passing it through", e);
+            return new WebResourceResponse("application/json", "utf-8", code, reason, headers,
+                new ByteArrayInputStream(raw.getBytes(StandardCharsets.UTF_8)));
+        }
+        String out = filtered.toString();
+        long elapsed = System.nanoTime() - started;
+        metrics.onProxied(raw.length(), out.length(), elapsed);
+        Log.d(TAG, "Youtubei response filtered in " + elapsed / 1_000_000 + "ms, "
+            + raw.length() + " -> " + out.length() + " chars");
+        if (pruner != null && pruner.pruned() > 0) {
+            Log.d(TAG, "Bandwidth cap removed " + pruner.pruned() + " formats, ~"
+                + pruner.bytesSaved() / 1024 + " KiB saved");
+        }
+        // Lets noutube.js skip its own transform for responses that were filtered here
+        headers.put(FILTERED_HEADER, "1");
+        return new WebResourceResponse("application/json", "utf-8", code, reason, headers,
+            new ByteArrayInputStream(out.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    /** Closes the call with the stream, so the stack sees the connection released. */
+    private static final class ClosingCallStream extends FilterInputStream {
+        private final HttpStack.Call call;
+
+        ClosingCallStream(InputStream in, HttpStack.Call call) {
+            super(in);
+            this.call = call;
+        }
+
+        @Override
+        public void close() throws IOException {
+            try {
+                super.close();
+            } finally {
+                call.close();
+            }
+        }
+    }
+
+    private static String stripMarker(Uri url) {
+        Uri.Builder builder = url.buildUpon().clearQuery();
+        for (String name : url.getQueryParameterNames()) {
+            if (!MARKER_PARAM.equals(name)) {
+                for (String value : url.getQueryParameters(name)) {
+                    builder.appendQueryParameter(name, value);
+                }
+            }
+        }
+        return builder.build().toString();
+    }
+}
@@ -0,0 +1,240 @@
+'use strict';
+
+// Headless comparison of the noutube.js DOM worker against the document-wide
+// MutationObserver it replaced (legacy-dom-observer.js).
+//
+//   node android/app/src/test/js/dom-worker-bench.js [--frames=600] [--tasks=4] [--feed=300] [--throttle=100]
+//
+// A fake watch page (topbar, player, feed) is mutated the way YouTube's mobile
+// site does: several tasks per frame append and recycle feed items, the player
+// clock ticks every frame and an ad starts every few seconds. Reported per
+// variant: observer callbacks, CPU time spent in the script's callbacks,
+// elements visited by selector matching, and how many frames ads played.
+
+const fs = require('fs');
+const path = require('path');
+const vm = require('vm');
+const { FakeDom } = require('./fake-dom');
+const installLegacyObserver = require('./legacy-dom-observer');
+
+const SCRIPT = path.join(__dirname, '../../main/assets/noutube.js');
+const FRAME_MS = 1000 / 60;
+const AD_EVERY_FRAMES = 300;
+
+function arg(name, fallback) {
+  const prefix = '--' + name + '=';
+  const found = process.argv.find(a => a.startsWith(prefix));
+  return found ? Number(found.slice(prefix.length)) : fallback;
+}
+
+const options = {
+  frames: arg('frames', 600),
+  tasks: arg('tasks', 4),
+  feed: arg('feed', 300),
+  throttle: arg('throttle', 100)
+};
+
+function feedItem(dom, n) {
+  return dom.el(['ytm-rich-item-renderer', { class: 'rich-item' },
+    ['a', { class: 'media-item-thumbnail-container', href: '/watch?v=video' + n }, ['img', {}]],
+    ['div', { class: 'details' },
+      ['h3', {}, ['a', { href: '/watch?v=video' + n }, ['span', {}, 'Video ' + n]]],
+      ['div', { class: 'metadata' }, ['span', {}, 'Channel'], ['span', {}, '1K views']]],
+    ['div', { class: 'menu' }, ['button', { 'aria-label': 'Action menu' }, 'More']]]);
+}
+
+function buildPage(dom, feedSize) {
+  const app = dom.document.body.appendChild(dom.el(['ytm-app', {}]));
+  app.appendChild(dom.el(['ytm-mobile-topbar-renderer', {},
+    ['div', { class: 'mobile-topbar-header-content' },
+      ['ytm-logo', {}, ['a', { href: '/' }, ['yt-formatted-string', {}, 'YouTube']]],
+      ['button', { class: 'topbar-menu-button-avatar-button' }, 'Open App'],
+      ['button', { class: 'header-search-icon' }, 'Search']]]));
+  const player = app.appendChild(dom.el(['div', { id: 'player-container' },
+    ['div', { id: 'movie_player', class: 'html5-video-player' },
+      ['div', { class: 'html5-video-container' }, ['video', {}]],
+      ['div', { class: 'ytp-time-display' }, ['span', { class: 'ytp-time-current' }, '0:00']]]]));
+  const feed = app.appendChild(dom.el(['ytm-rich-grid-renderer', {}, ['div', { class: 'feed' }]])).children[0];
+  for (let i = 0; i < feedSize; i++) {
+    feed.appendChild(feedItem(dom, i));
+  }
+  return {
+    player: player.children[0],
+    video: player.querySelector('video'),
+    time: player.querySelector('.ytp-time-current'),
+    feed: feed,
+    logo: app.querySelector('yt-formatted-string'),
+    openApp: app.querySelector('.topbar-menu-button-avatar-button')
+  };
+}
+
+// Virtual time that advances a frame at a time, plus real time within a frame
+// so the script's own batch timings stay meaningful
+function createClock() {
+  let frameVirtual = 0;
+  let frameReal = process.hrtime.bigint();
+  let last = 0;
+  return {
+    now() {
+      const t = frameVirtual + Number(process.hrtime.bigint() - frameReal) / 1e6;
+      last = Math.max(last, t);
+      return last;
+    },
+    nextFrame() {
+      frameVirtual = Math.max(frameVirtual + FRAME_MS, last);
+      frameReal = process.hrtime.bigint();
+    }
+  };
+}
+
+function run(variant, frames) {
+  const dom = new FakeDom();
+  const page = buildPage(dom, options.feed);
+  const clock = createClock();
+  let timers = [];
+  let timerIds = 0;
+  let frameCallbacks = [];
+  let cpuNs = 0n;
+  const measure = fn => {
+    const start = process.hrtime.bigint();
+    try {
+      fn();
+    } finally {
+      cpuNs += process.hrtime.bigint() - start;
+    }
+  };
+  const reports = [];
+
+  if (variant === 'legacy') {
+    measure(() => installLegacyObserver(dom.document, dom.MutationObserver));
+  } else {
+    const window = {
+      document: dom.document,
+      MutationObserver: dom.MutationObserver,
+      performance: { now: clock.now },
+      setTimeout: (fn, ms) => {
+        timers.push({ id: ++timerIds, fn: fn, due: clock.now() + (ms || 0) });
+        return timerIds;
+      },
+      clearTimeout: id => {
+        timers = timers.filter(t => t.id !== id);
+      },
+      setInterval: () => 0,
+      requestAnimationFrame: fn => frameCallbacks.push(fn),
+      location: { pathname: '/watch', search: '?v=dQw4w9WgXcQ', href: 'https://m.youtube.com/watch?v=dQw4w9WgXcQ' },
+      history: { pushState() {}, replaceState() {} },
+      addEventListener() {},
+      fetch() {},
+      Request: function Request() {},
+      Response: function Response() {},
+      XMLHttpRequest: Object.assign(function XMLHttpRequest() {}, { prototype: { open() {} } }),
+      console: { log() {}, error: console.error },
+      MyTubeDomWorker: {
+        reportBatches(json) {
+          reports.push(JSON.parse(json));
+          return options.throttle;
+        }
+      }
+    };
+    window.window = window;
+    const context = vm.createContext(window);
+    const source = fs.readFileSync(SCRIPT, 'utf8');
+    measure(() => vm.runInContext(source, context, { filename: 'noutube.js' }));
+    window.__mytubeDomWorker.setThrottle(options.throttle);
+  }
+
+  let callbacks = 0;
+  let nextItem = options.feed;
+  let adStartedAt = -1;
+  let adFrames = 0;
+  let ads = 0;
+  callbacks += dom.flush(measure);
+  const visitsBefore = dom.visits;
+  cpuNs = 0n;
+
+  for (let frame = 0; frame < frames; frame++) {
+    clock.nextFrame();
+    for (let task = 0; task < options.tasks; task++) {
+      // Infinite scroll and recycling: new items in, old items out
+      page.feed.appendChild(feedItem(dom, nextItem++));
+      page.feed.appendChild(feedItem(dom, nextItem++));
+      page.feed.children[0].remove();
+      page.feed.children[0].remove();
+      callbacks += dom.flush(measure);
+    }
+    page.time.textContent = Math.floor(frame / 60) + ':' + String(frame % 60).padStart(2, '0');
+    if (frame % AD_EVERY_FRAMES === AD_EVERY_FRAMES / 2) {
+      ads++;
+      adStartedAt = frame;
+      page.video.currentTime = 0;
+      page.video.duration = 15;
+      page.player.appendChild(dom.el(['div', { class: 'ytp-ad-skip-button' }, 'Skip']));
+      page.player.classList.add('ad-showing');
+    }
+    callbacks += dom.flush(measure);
+
+    const due = timers.filter(t => t.due <= clock.now());
+    timers = timers.filter(t => t.due > clock.now());
+    for (const timer of due) {
+      measure(timer.fn);
+    }
+    const frameWork = frameCallbacks;
+    frameCallbacks = [];
+    for (const fn of frameWork) {
+      measure(() => fn(clock.now()));
+    }
+    callbacks += dom.flush(measure);
+
+    if (adStartedAt >= 0) {
+      const skipButton = page.player.querySelector('.ytp-ad-skip-button');
+      if (skipButton.clicks > 0 || page.video.currentTime >= page.video.duration) {
+        skipButton.remove();
+        page.player.classList.remove('ad-showing');
+        adStartedAt = -1;
+      } else {
+        adFrames++;
+      }
+    }
+  }
+
+  return {
+    variant: variant,
+    frames: frames,
+    callbacks: callbacks,
+    cpuMs: Number(cpuNs) / 1e6,
+    visits: dom.visits - visitsBefore,
+    ads: ads,
+    adFrames: adFrames,
+    relabeled: page.logo.textContent === 'MyTube',
+    openAppHidden: page.openApp.style.display === 'none',
+    reports: reports
+  };
+}
+
+function print(result) {
+  const perFrame = result.cpuMs / result.frames;
+  console.log(result.variant.padEnd(8)
+    + ' callbacks=' + String(result.callbacks).padStart(6)
+    + ' cpu=' + result.cpuMs.toFixed(1).padStart(8) + 'ms'
+    + ' (' + perFrame.toFixed(3) + 'ms/frame)'
+    + ' visits=' + String(result.visits).padStart(10)
+    + ' adFrames=' + result.adFrames + '/' + result.ads + ' ads'
+    + ' relabeled=' + result.relabeled
+    + ' openAppHidden=' + result.openAppHidden);
+}
+
+console.log('frames=' + options.frames + ' tasks/frame=' + options.tasks + ' feed=' + options.feed
+  + ' throttle=' + options.throttle + 'ms');
+// Warm up both so the comparison is not against a cold JIT
+run('legacy', 60);
+run('worker', 60);
+const legacy = run('legacy', options.frames);
+const worker = run('worker', options.frames);
+print(legacy);
+print(worker);
+console.log('cpu ratio ' + (legacy.cpuMs / worker.cpuMs).toFixed(1) + 'x, visits ratio '
+  + (legacy.visits / Math.max(1, worker.visits)).toFixed(1) + 'x, worker reports ' + worker.reports.length);
+if (!worker.relabeled || !worker.openAppHidden || worker.adFrames > worker.ads) {
+  console.error('DOM worker missed work the legacy observer did');
+  process.exitCode = 1;
+}
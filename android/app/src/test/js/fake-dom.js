@@ -0,0 +1,382 @@
+'use strict';
+
+// Just enough DOM for dom-worker-bench.js to run noutube.js under plain Node:
+// elements, a descendant-only selector engine, synchronous MutationObserver
+// delivery on flush(), and a virtual frame clock. Selector matching counts the
+// elements it visits so the benchmark has a measure that does not depend on
+// how fast this shim is.
+
+const TOKEN = /([a-zA-Z][\w-]*)|#([\w-]+)|\.([\w-]+)|\[([\w-]+)(?:([*^$]?=)"?([^"\]]*)"?)?\]|:[\w-]+(?:\([^)]*\))?/g;
+const selectorCache = new Map();
+
+function parseCompound(text) {
+  const compound = { tag: null, id: null, classes: [], attrs: [] };
+  TOKEN.lastIndex = 0;
+  let m;
+  while ((m = TOKEN.exec(text)) !== null) {
+    if (m[1]) compound.tag = m[1].toLowerCase();
+    else if (m[2]) compound.id = m[2];
+    else if (m[3]) compound.classes.push(m[3]);
+    else if (m[4]) compound.attrs.push({ name: m[4], op: m[5], value: m[6] });
+    // Pseudo-classes are ignored
+  }
+  return compound;
+}
+
+function parseSelector(selector) {
+  let parsed = selectorCache.get(selector);
+  if (!parsed) {
+    parsed = selector.split(',').map(part => part.trim().split(/\s+/).map(parseCompound));
+    selectorCache.set(selector, parsed);
+  }
+  return parsed;
+}
+
+function matchesCompound(el, c) {
+  if (c.tag && el.tagName !== c.tag) return false;
+  if (c.id && el.id !== c.id) return false;
+  for (const cls of c.classes) {
+    if (!el.classList.contains(cls)) return false;
+  }
+  for (const a of c.attrs) {
+    const v = el.getAttribute(a.name);
+    if (v == null) return false;
+    if (a.op === '=' && v !== a.value) return false;
+    if (a.op === '*=' && !v.includes(a.value)) return false;
+    if (a.op === '^=' && !v.startsWith(a.value)) return false;
+    if (a.op === '$=' && !v.endsWith(a.value)) return false;
+  }
+  return true;
+}
+
+function matchesComplex(el, compounds) {
+  if (!matchesCompound(el, compounds[compounds.length - 1])) return false;
+  let i = compounds.length - 2;
+  let node = el.parentNode;
+  while (i >= 0 && node && node.nodeType === 1) {
+    if (matchesCompound(node, compounds[i])) i--;
+    node = node.parentNode;
+  }
+  return i < 0;
+}
+
+class ClassList {
+  constructor(el) {
+    this.el = el;
+    this.set = new Set();
+  }
+
+  contains(name) {
+    return this.set.has(name);
+  }
+
+  add(name) {
+    if (!this.set.has(name)) {
+      this.set.add(name);
+      this.el._attributeChanged('class');
+    }
+  }
+
+  remove(name) {
+    if (this.set.delete(name)) this.el._attributeChanged('class');
+  }
+
+  toString() {
+    return Array.from(this.set).join(' ');
+  }
+}
+
+class Style {
+  constructor() {
+    this.display = '';
+    this.cssText = '';
+  }
+
+  setProperty(name, value) {
+    this[name] = value;
+  }
+
+  removeProperty(name) {
+    this[name] = '';
+  }
+}
+
+class Text {
+  constructor(dom, data) {
+    this.dom = dom;
+    this.nodeType = 3;
+    this.data = data;
+    this.parentNode = null;
+  }
+
+  get textContent() {
+    return this.data;
+  }
+}
+
+class Element {
+  constructor(dom, tagName) {
+    this.dom = dom;
+    this.nodeType = 1;
+    this.tagName = tagName.toLowerCase();
+    this.childNodes = [];
+    this.parentNode = null;
+    this.attributes = new Map();
+    this.classList = new ClassList(this);
+    this.style = new Style();
+    this.clicks = 0;
+    this.currentTime = 0;
+    this.duration = NaN;
+    this.offsetParent = null;
+    this.innerHTML = '';
+  }
+
+  get id() {
+    return this.attributes.get('id') || '';
+  }
+
+  set id(value) {
+    this.attributes.set('id', value);
+  }
+
+  get className() {
+    return this.classList.toString();
+  }
+
+  set className(value) {
+    this.classList.set = new Set(value.split(/\s+/).filter(Boolean));
+    this._attributeChanged('class');
+  }
+
+  getAttribute(name) {
+    if (name === 'class') return this.className;
+    return this.attributes.has(name) ? this.attributes.get(name) : null;
+  }
+
+  setAttribute(name, value) {
+    if (name === 'class') {
+      this.className = value;
+    } else {
+      this.attributes.set(name, String(value));
+      this._attributeChanged(name);
+    }
+  }
+
+  get children() {
+    return this.childNodes.filter(n => n.nodeType === 1);
+  }
+
+  get textContent() {
+    let text = '';
+    for (const child of this.childNodes) text += child.textContent;
+    return text;
+  }
+
+  set textContent(value) {
+    const removed = this.childNodes.slice();
+    for (const child of removed) child.parentNode = null;
+    const text = new Text(this.dom, String(value));
+    text.parentNode = this;
+    this.childNodes = [text];
+    this.dom._childListChanged(this, [text], removed);
+  }
+
+  get isConnected() {
+    let node = this;
+    while (node.parentNode) node = node.parentNode;
+    return node === this.dom.document;
+  }
+
+  appendChild(child) {
+    if (child.parentNode) child.parentNode.removeChild(child);
+    child.parentNode = this;
+    this.childNodes.push(child);
+    this.dom._childListChanged(this, [child], []);
+    return child;
+  }
+
+  removeChild(child) {
+    const i = this.childNodes.indexOf(child);
+    if (i >= 0) {
+      this.childNodes.splice(i, 1);
+      child.parentNode = null;
+      this.dom._childListChanged(this, [], [child]);
+    }
+    return child;
+  }
+
+  remove() {
+    if (this.parentNode) this.parentNode.removeChild(this);
+  }
+
+  contains(node) {
+    while (node) {
+      if (node === this) return true;
+      node = node.parentNode;
+    }
+    return false;
+  }
+
+  matches(selector) {
+    this.dom.visits++;
+    return parseSelector(selector).some(complex => matchesComplex(this, complex));
+  }
+
+  querySelectorAll(selector) {
+    const parsed = parseSelector(selector);
+    const out = [];
+    this._walk(el => {
+      if (parsed.some(complex => matchesComplex(el, complex))) out.push(el);
+      return false;
+    });
+    return out;
+  }
+
+  querySelector(selector) {
+    const parsed = parseSelector(selector);
+    let found = null;
+    this._walk(el => {
+      if (parsed.some(complex => matchesComplex(el, complex))) found = el;
+      return found !== null;
+    });
+    return found;
+  }
+
+  getElementById(id) {
+    let found = null;
+    this._walk(el => {
+      if (el.id === id) found = el;
+      return found !== null;
+    });
+    return found;
+  }
+
+  // Depth-first over descendants; stops when visit returns true
+  _walk(visit) {
+    const stack = this.childNodes.slice().reverse();
+    while (stack.length) {
+      const node = stack.pop();
+      if (node.nodeType !== 1) continue;
+      this.dom.visits++;
+      if (visit(node)) return;
+      for (let i = node.childNodes.length - 1; i >= 0; i--) stack.push(node.childNodes[i]);
+    }
+  }
+
+  click() {
+    this.clicks++;
+  }
+
+  addEventListener() {}
+
+  _attributeChanged(name) {
+    this.dom._attributeChanged(this, name);
+  }
+}
+
+class FakeDom {
+  constructor() {
+    this.visits = 0;
+    this.observers = [];
+    this.pending = new Map();
+    this.listeners = {};
+    const dom = this;
+    const html = new Element(this, 'html');
+    const document = {
+      nodeType: 9,
+      readyState: 'complete',
+      hidden: false,
+      documentElement: html,
+      activeElement: null,
+      createElement: tag => new Element(dom, tag),
+      querySelector: s => html.matches(s) ? html : html.querySelector(s),
+      querySelectorAll: s => html.querySelectorAll(s),
+      getElementById: id => html.getElementById(id),
+      addEventListener: (type, fn) => {
+        (dom.listeners[type] = dom.listeners[type] || []).push(fn);
+      }
+    };
+    html.parentNode = document;
+    this.document = document;
+    document.head = html.appendChild(new Element(this, 'head'));
+    document.body = html.appendChild(new Element(this, 'body'));
+    document.head.appendChild(new Element(this, 'title'));
+
+    this.MutationObserver = class {
+      constructor(callback) {
+        this.callback = callback;
+      }
+
+      observe(target, options) {
+        dom.observers.push({ observer: this, target: target, options: options });
+      }
+
+      disconnect() {
+        dom.observers = dom.observers.filter(r => r.observer !== this);
+        dom.pending.delete(this);
+      }
+    };
+  }
+
+  // Builds a subtree from [tag, attrs, ...children] arrays; strings become text
+  el(spec) {
+    if (typeof spec === 'string') return new Text(this, spec);
+    const [tag, attrs, ...children] = spec;
+    const element = new Element(this, tag);
+    for (const name of Object.keys(attrs || {})) {
+      if (name === 'class') element.classList.set = new Set(attrs[name].split(/\s+/));
+      else element.attributes.set(name, attrs[name]);
+    }
+    for (const child of children) {
+      const node = this.el(child);
+      node.parentNode = element;
+      element.childNodes.push(node);
+    }
+    return element;
+  }
+
+  _childListChanged(target, added, removed) {
+    for (const r of this.observers) {
+      if (!r.options.childList) continue;
+      if (r.target === target || (r.options.subtree && r.target.contains(target))) {
+        this._enqueue(r.observer, { type: 'childList', target: target, addedNodes: added, removedNodes: removed });
+      }
+    }
+  }
+
+  _attributeChanged(target, name) {
+    for (const r of this.observers) {
+      const o = r.options;
+      if (!o.attributes || (o.attributeFilter && o.attributeFilter.indexOf(name) < 0)) continue;
+      if (r.target === target || (o.subtree && r.target.contains(target))) {
+        this._enqueue(r.observer, { type: 'attributes', target: target, attributeName: name, addedNodes: [], removedNodes: [] });
+      }
+    }
+  }
+
+  _enqueue(observer, record) {
+    let records = this.pending.get(observer);
+    if (!records) {
+      records = [];
+      this.pending.set(observer, records);
+    }
+    records.push(record);
+  }
+
+  // Delivers queued records, as the microtask checkpoint after a task would.
+  // Returns the number of callbacks run.
+  flush(measure) {
+    let callbacks = 0;
+    while (this.pending.size) {
+      const batch = Array.from(this.pending);
+      this.pending.clear();
+      for (const [observer, records] of batch) {
+        callbacks++;
+        measure(() => observer.callback(records, observer));
+      }
+    }
+    return callbacks;
+  }
+}
+
+module.exports = { FakeDom };
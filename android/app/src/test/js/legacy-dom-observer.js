@@ -0,0 +1,159 @@
+'use strict';
+
+// The document-wide MutationObserver that noutube.js used before the DOM
+// worker, copied unchanged as the baseline for dom-worker-bench.js. Not shipped.
+module.exports = function installLegacyObserver(document, MutationObserver) {
+  const observer = new MutationObserver(() => {
+    // Skip button
+    const skipBtn = document.querySelector('.ytp-ad-skip-button, .ytp-ad-skip-button-modern, .ytp-skip-ad-button');
+    if (skipBtn) {
+      skipBtn.click();
+    }
+
+    // Skip overlay ads
+    const closeBtn = document.querySelector('.ytp-ad-overlay-close-button');
+    if (closeBtn) {
+      closeBtn.click();
+    }
+
+    // If video is ad, try to skip
+    const adVideo = document.querySelector('.ad-showing video');
+    if (adVideo) {
+      adVideo.currentTime = adVideo.duration || 9999;
+    }
+
+    // Dismiss promo dialogs
+    const dismissBtn = document.querySelector('ytmusic-mealbar-promo-renderer .dismiss-button, .yt-mealbar-promo-renderer__dismiss-button');
+    if (dismissBtn) {
+      dismissBtn.click();
+    }
+
+    // Modify YouTube header to MyTube - try multiple selectors
+    const selectors = [
+      'ytm-mobile-topbar-renderer .mobile-topbar-header-content ytm-logo a yt-formatted-string',
+      'ytm-mobile-topbar-renderer ytm-logo yt-formatted-string',
+      '.mobile-topbar-header-content .yt-core-attributed-string',
+      'ytm-logo-renderer yt-formatted-string',
+      'ytm-logo a span',
+      '.topbar-header-content span.yt-core-attributed-string',
+      'header a[href="/"] span'
+    ];
+
+    for (const selector of selectors) {
+      const elements = document.querySelectorAll(selector);
+      elements.forEach(el => {
+        if (el && el.textContent && el.textContent.trim() === 'YouTube') {
+          el.textContent = 'MyTube';
+        }
+      });
+    }
+
+    // Also try to find any element with YouTube text in the header
+    const headerArea = document.querySelector('ytm-mobile-topbar-renderer, .mobile-topbar-header');
+    if (headerArea) {
+      const allSpans = headerArea.querySelectorAll('span, yt-formatted-string');
+      allSpans.forEach(span => {
+        if (span.textContent && span.textContent.trim() === 'YouTube') {
+          span.textContent = 'MyTube';
+        }
+      });
+    }
+
+    // Hide "Open App" button - specific selectors only
+    const openAppSelectors = [
+      'a[href*="youtube.app.link"]',
+      'a[href*="redirect_to_app"]',
+      '.ytm-open-app-pill-button-renderer'
+    ];
+
+    for (const selector of openAppSelectors) {
+      const btns = document.querySelectorAll(selector);
+      btns.forEach(btn => {
+        if (btn) btn.style.display = 'none';
+      });
+    }
+
+    // Find links/buttons with EXACTLY "Open App" text and hide them
+    const allLinks = document.querySelectorAll('a, button');
+    allLinks.forEach(link => {
+      const text = link.textContent ? link.textContent.trim() : '';
+      if (text === 'Open App' || text === 'Open app' || text === 'OPEN APP') {
+        link.style.display = 'none';
+      }
+    });
+
+    // Hide YouTube logo text SVG elements and inject "MyTube" text
+    const youtubeLogoSVGs = document.querySelectorAll('g#youtube-paths_yt10, g[id*="youtube-paths"], #logo-icon g[id*="youtube"]');
+    youtubeLogoSVGs.forEach(svg => {
+      if (svg) svg.style.display = 'none';
+    });
+
+    // Inject "MyTube" text in the header
+    const logoContainer = document.querySelector('ytm-logo, ytm-logo-renderer, #logo-icon, .mobile-topbar-header-content ytm-logo');
+    if (logoContainer && !logoContainer.querySelector('.mytube-custom-text')) {
+      // Create MyTube text element
+      const myTubeText = document.createElement('span');
+      myTubeText.className = 'mytube-custom-text';
+      myTubeText.textContent = 'MyTube';
+      myTubeText.style.cssText = `
+        color: white;
+        font-size: 18px;
+        font-weight: 500;
+        font-family: "YouTube Sans", "Roboto", sans-serif;
+        margin-left: 8px;
+        display: inline-block;
+        vertical-align: middle;
+      `;
+
+      // Insert the text next to the logo icon
+      const logoLink = logoContainer.querySelector('a');
+      if (logoLink) {
+        logoLink.appendChild(myTubeText);
+      } else {
+        logoContainer.appendChild(myTubeText);
+      }
+    }
+
+    // Fallback: inject directly into mobile topbar
+    if (!document.querySelector('.mytube-custom-text')) {
+      const topbar = document.querySelector('ytm-mobile-topbar-renderer, .mobile-topbar-header');
+      if (topbar) {
+        const myTubeText = document.createElement('div');
+        myTubeText.className = 'mytube-custom-text';
+        myTubeText.textContent = 'MyTube';
+        myTubeText.style.cssText = `
+          position: absolute !important;
+          left: 50px !important;
+          top: 50% !important;
+          transform: translateY(-50%) !important;
+          color: #fff !important;
+          font-size: 20px !important;
+          font-weight: 500 !important;
+          font-family: "YouTube Sans", "Roboto", Arial, sans-serif !important;
+          z-index: 9999 !important;
+          pointer-events: none !important; /* Don't interfere with clicks */
+        `;
+        topbar.appendChild(myTubeText);
+      }
+    }
+
+    // Explicitly hide mytube-custom-text if search input is visible/focused
+    const customText = document.querySelectorAll('.mytube-custom-text');
+    const searchBox = document.querySelector('ytm-search-box-renderer, .header-search-field, #search-input');
+    const isSearching = searchBox && (searchBox.offsetParent !== null || document.activeElement === searchBox);
+    
+    customText.forEach(el => {
+      if (isSearching || document.body.classList.contains('show-search')) {
+        el.style.setProperty('display', 'none', 'important');
+      } else {
+        // Only show if NOT in search mode (CSS will still hide it if needed)
+        el.style.removeProperty('display');
+      }
+    });
+  });
+
+  observer.observe(document.documentElement, {
+    childList: true,
+    subtree: true
+  });
+};
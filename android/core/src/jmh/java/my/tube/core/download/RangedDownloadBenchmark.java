@@ -0,0 +1,146 @@
+package my.tube.core.download;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpServer;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Download throughput against a local range-capable server that behaves like
+ * a CDN edge: each request waits {@code latencyMs} before its first byte and
+ * each connection is capped at {@link #CONNECTION_BYTES_PER_SECOND}. The
+ * {@code megabytes} counter reads directly as MB/s; compare it across chunk
+ * sizes (request overhead against tail effects) and parallelism (how many
+ * connections it takes to fill the link).
+ *
+ * Run with: ./gradlew :core:jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RangedDownloadBenchmark {
+
+    private static final int FILE_MB = 16;
+    private static final int FILE_BYTES = FILE_MB * 1024 * 1024;
+    private static final long CONNECTION_BYTES_PER_SECOND = 16L * 1024 * 1024;
+    private static final int SLICE = 16 * 1024;
+
+    @Param({"256", "1024", "4096"})
+    public int chunkKb;
+
+    @Param({"1", "2", "4", "8"})
+    public int parallelism;
+
+    @Param({"0", "30"})
+    public int latencyMs;
+
+    /** Megabytes downloaded; as a rate this is the throughput in MB/s. */
+    @State(Scope.Thread)
+    @AuxCounters(AuxCounters.Type.EVENTS)
+    public static class Bytes {
+        public long megabytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            megabytes = 0;
+        }
+    }
+
+    private final byte[] content = new byte[FILE_BYTES];
+    private HttpServer server;
+    private ExecutorService serverThreads;
+    private ExecutorService workers;
+    private RangedDownloader downloader;
+    private File dir;
+    private File target;
+    private String url;
+
+    @Setup
+    public void setUp() throws IOException {
+        new Random(1).nextBytes(content);
+        serverThreads = Executors.newFixedThreadPool(16);
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 64);
+        server.setExecutor(serverThreads);
+        server.createContext("/media", this::serve);
+        server.start();
+        url = "http://127.0.0.1:" + server.getAddress().getPort() + "/media";
+        workers = Executors.newFixedThreadPool(8);
+        downloader = new RangedDownloader(workers, 10_000);
+        dir = File.createTempFile("download-bench", "");
+        dir.delete();
+        dir.mkdir();
+        target = new File(dir, "media.bin");
+    }
+
+    @TearDown
+    public void tearDown() {
+        server.stop(0);
+        serverThreads.shutdownNow();
+        workers.shutdownNow();
+        target.delete();
+        dir.delete();
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        try {
+            Thread.sleep(latencyMs);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        int start = 0;
+        int end = content.length - 1;
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        exchange.getResponseHeaders().add("ETag", "\"bench\"");
+        if (range != null) {
+            String[] bounds = range.substring("bytes=".length()).split("-");
+            start = Integer.parseInt(bounds[0]);
+            end = Math.min(Integer.parseInt(bounds[1]), content.length - 1);
+            exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + end + "/" + content.length);
+            exchange.sendResponseHeaders(206, end - start + 1);
+        } else {
+            exchange.sendResponseHeaders(200, content.length);
+        }
+        long began = System.nanoTime();
+        try (OutputStream out = exchange.getResponseBody()) {
+            for (int offset = start; offset <= end; offset += SLICE) {
+                int length = Math.min(SLICE, end - offset + 1);
+                out.write(content, offset, length);
+                // Pace the connection to its bandwidth cap
+                long due = (long) (offset - start + length) * 1_000_000_000L / CONNECTION_BYTES_PER_SECOND;
+                long ahead = due - (System.nanoTime() - began);
+                if (ahead > 1_000_000) {
+                    Thread.sleep(ahead / 1_000_000);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @Benchmark
+    public RangedDownloader.Result download(Bytes bytes) throws IOException {
+        RangedDownloader.Result result = downloader.download(url, Collections.<String, String>emptyMap(), target,
+            parallelism, chunkKb * 1024, new RangedDownloader.Progress());
+        target.delete();
+        bytes.megabytes += FILE_MB;
+        return result;
+    }
+}
@@ -0,0 +1,146 @@
+package my.tube.core.history;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import my.tube.core.Clock;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+/**
+ * Recording a watch and loading the first history page, {@link EntryStore}
+ * against what the web UI does with localStorage: the whole history as one
+ * JSON blob, serialized and written out on every change and read back in
+ * full to show anything. The blob side leaves out JSON parsing, so it is a
+ * lower bound.
+ *
+ * Run with: ./gradlew :core:jmh -PjmhInclude=EntryStoreBenchmark
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class EntryStoreBenchmark {
+
+    private static final int PAGE = 20;
+
+    @Param({"1000", "50000"})
+    public int entries;
+
+    private File dir;
+    private EntryStore store;
+    private File blob;
+    private final List<String> blobEntries = new ArrayList<>();
+    private int next;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = File.createTempFile("entry-store", "");
+        dir.delete();
+        dir.mkdirs();
+        store = EntryStore.open(new File(dir, "history.log"), entries, Clock.SYSTEM);
+        blob = new File(dir, "history.json");
+        for (int i = 0; i < entries; i++) {
+            store.append(videoId(i), payload(i));
+            blobEntries.add(0, payload(i));
+        }
+        writeBlob();
+        next = entries;
+    }
+
+    @TearDown
+    public void tearDown() throws IOException {
+        store.close();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Benchmark
+    public EntryStore.Entry logRecordWatch() throws IOException {
+        int i = next++;
+        return store.append(videoId(i), payload(i));
+    }
+
+    @Benchmark
+    public int blobRecordWatch() throws IOException {
+        int i = next++;
+        blobEntries.add(0, payload(i));
+        if (blobEntries.size() > entries) {
+            blobEntries.remove(blobEntries.size() - 1);
+        }
+        return writeBlob();
+    }
+
+    @Benchmark
+    public EntryStore.Page logFirstPage() throws IOException {
+        return store.newestFirst(PAGE);
+    }
+
+    @Benchmark
+    public String blobFirstPage() throws IOException {
+        byte[] bytes = new byte[(int) blob.length()];
+        InputStream in = new FileInputStream(blob);
+        try {
+            int read = 0;
+            while (read < bytes.length) {
+                int n = in.read(bytes, read, bytes.length - read);
+                if (n < 0) {
+                    break;
+                }
+                read += n;
+            }
+        } finally {
+            in.close();
+        }
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private int writeBlob() throws IOException {
+        StringBuilder json = new StringBuilder(blobEntries.size() * 160);
+        json.append('[');
+        for (int i = 0; i < blobEntries.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(blobEntries.get(i));
+        }
+        json.append(']');
+        byte[] bytes = json.toString().getBytes(StandardCharsets.UTF_8);
+        OutputStream out = new FileOutputStream(blob);
+        try {
+            out.write(bytes);
+        } finally {
+            out.close();
+        }
+        return bytes.length;
+    }
+
+    private static String videoId(int i) {
+        return "v" + Integer.toString(i, 36);
+    }
+
+    // About the size of a history item the web UI stores
+    private static String payload(int i) {
+        return "{\"videoId\":\"" + videoId(i) + "\",\"title\":\"A video title that is about this long " + i
+            + "\",\"channel\":\"Some channel\",\"thumbnail\":\"https://i.ytimg.com/vi/" + videoId(i)
+            + "/mqdefault.jpg\",\"watchedAt\":" + (1700000000000L + i) + "}";
+    }
+}
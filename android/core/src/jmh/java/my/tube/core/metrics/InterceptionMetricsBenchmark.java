@@ -0,0 +1,43 @@
+package my.tube.core.metrics;
+
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+
+/**
+ * Cost of recording one intercepted request, with the WebView's handful of
+ * IO threads recording at once. {@code singleAtomicCounter} is the naive
+ * alternative of one shared AtomicLong for the total alone.
+ *
+ * Run with: ./gradlew :core:jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Threads(4)
+public class InterceptionMetricsBenchmark {
+
+    private final InterceptionMetrics metrics = new InterceptionMetrics(new MetricsRegistry());
+    private final AtomicLong total = new AtomicLong();
+
+    @Benchmark
+    public void recordAllowed() {
+        metrics.onRequest("i.ytimg.com", InterceptionMetrics.Decision.ALLOWED, null, 850);
+    }
+
+    @Benchmark
+    public void recordBlocked() {
+        metrics.onRequest("googleads.g.doubleclick.net", InterceptionMetrics.Decision.BLOCKED_HOST, null, 400);
+    }
+
+    @Benchmark
+    public long singleAtomicCounter() {
+        return total.incrementAndGet();
+    }
+}
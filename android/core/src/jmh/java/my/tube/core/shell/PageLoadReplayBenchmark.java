@@ -0,0 +1,196 @@
+package my.tube.core.shell;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import my.tube.core.Clock;
+import my.tube.core.filter.BlocklistStore;
+import my.tube.core.filter.RequestFilter;
+import my.tube.core.inject.ScriptAsset;
+import my.tube.core.inject.ScriptInjector;
+import my.tube.core.metrics.InterceptionMetrics;
+import my.tube.core.metrics.MetricsRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Replays {@code page-load-trace.txt} through the per-request paths, with the
+ * app's bundled blocklist and request rules (passed in as
+ * {@code -Dmytube.assets} by core/build.gradle). One op is the whole trace;
+ * gc.alloc.rate.norm from the GC profiler is bytes per replay, which should
+ * stay near zero for everything but the metrics' first sight of a host.
+ *
+ * {@code legacyNavigation} is the suffix loop over VIEW_HOSTS that the
+ * activities used before {@link NavigationPolicy}.
+ *
+ * Run with: ./gradlew :core:jmh -PjmhInclude=PageLoadReplay
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class PageLoadReplayBenchmark {
+
+    private static final List<String> LEGACY_VIEW_HOSTS = Arrays.asList(
+        "youtube.com",
+        "youtu.be",
+        "m.youtube.com",
+        "www.youtube.com",
+        "music.youtube.com"
+    );
+
+    private static final WebShell.Handlers<PageLoadTrace.Request, Object> NETWORK =
+        new WebShell.Handlers<PageLoadTrace.Request, Object>() {
+            @Override
+            public Object blocked(PageLoadTrace.Request request) {
+                return request;
+            }
+
+            @Override
+            public Object thumbnail(PageLoadTrace.Request request) {
+                return null;
+            }
+
+            @Override
+            public Object staticAsset(PageLoadTrace.Request request) {
+                return null;
+            }
+
+            @Override
+            public Object proxy(PageLoadTrace.Request request) {
+                return null;
+            }
+
+            @Override
+            public void onStream(PageLoadTrace.Request request) {
+            }
+        };
+
+    private static final ScriptInjector.Host NO_SCRIPTS = new ScriptInjector.Host() {
+        @Override
+        public boolean supportsDocumentStart() {
+            return true;
+        }
+
+        @Override
+        public void addDocumentStartScript(String script, Set<String> allowedOrigins) {
+        }
+
+        @Override
+        public void evaluate(String script, ScriptInjector.ValueCallback callback) {
+        }
+    };
+
+    private File dir;
+    private PageLoadTrace.Request[] requests;
+    private String[] navigations;
+    private RequestClassifier classifier;
+    private WebShell shell;
+
+    @Setup
+    public void setUp() throws IOException {
+        String assets = System.getProperty("mytube.assets");
+        if (assets == null) {
+            throw new IllegalStateException("Set -Dmytube.assets to app/src/main/assets");
+        }
+        final File blocklistFile = new File(assets, "blocklist.txt");
+        dir = File.createTempFile("replay-bench", "");
+        dir.delete();
+        dir.mkdir();
+        BlocklistStore blocklist = new BlocklistStore(dir);
+        blocklist.install(() -> new InputStreamReader(new FileInputStream(blocklistFile), StandardCharsets.UTF_8), 1);
+        RequestFilter filter;
+        Reader rules = new InputStreamReader(new FileInputStream(new File(assets, "request-rules.txt")),
+            StandardCharsets.UTF_8);
+        try {
+            filter = RequestFilter.parse(rules);
+        } finally {
+            rules.close();
+        }
+        classifier = new RequestClassifier(blocklist, filter);
+        shell = new WebShell(classifier, NavigationPolicy.YOUTUBE,
+            new ScriptInjector(NO_SCRIPTS, ScriptAsset.EMPTY, WebShell.SCRIPT_ORIGINS, Clock.SYSTEM),
+            new InterceptionMetrics(new MetricsRegistry()), Clock.SYSTEM);
+
+        PageLoadTrace trace = PageLoadTrace.load();
+        requests = trace.requests.toArray(new PageLoadTrace.Request[0]);
+        navigations = trace.navigations.toArray(new String[0]);
+    }
+
+    @TearDown
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    /** Blocklist, rules and routing alone. */
+    @Benchmark
+    public void classify(Blackhole bh) {
+        for (PageLoadTrace.Request request : requests) {
+            bh.consume(classifier.classify(request.method, request.host, request.path, request.query,
+                request.mainFrame, request.accept()));
+        }
+    }
+
+    /** What shouldInterceptRequest does before any handler: routing plus metrics. */
+    @Benchmark
+    public void intercept(Blackhole bh) {
+        for (PageLoadTrace.Request request : requests) {
+            bh.consume(shell.intercept(request, NETWORK));
+        }
+    }
+
+    @Benchmark
+    public void navigation(Blackhole bh) {
+        for (String host : navigations) {
+            bh.consume(NavigationPolicy.YOUTUBE.isInApp(host));
+        }
+    }
+
+    /** What shouldOverrideUrlLoading does: the policy plus its metrics. */
+    @Benchmark
+    public void shellNavigation(Blackhole bh) {
+        for (String host : navigations) {
+            bh.consume(shell.shouldLoadInApp(host));
+        }
+    }
+
+    @Benchmark
+    public void legacyNavigation(Blackhole bh) {
+        for (String host : navigations) {
+            bh.consume(legacyIsInApp(host));
+        }
+    }
+
+    private static boolean legacyIsInApp(String host) {
+        if (host == null) {
+            return false;
+        }
+        for (String viewHost : LEGACY_VIEW_HOSTS) {
+            if (host.endsWith(viewHost)) {
+                return true;
+            }
+        }
+        return host.startsWith("accounts.google.")
+            || host.startsWith("gds.google.")
+            || host.endsWith(".google.com");
+    }
+}
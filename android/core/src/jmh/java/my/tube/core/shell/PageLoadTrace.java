@@ -0,0 +1,117 @@
+package my.tube.core.shell;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * A recorded session from {@code page-load-trace.txt}: the requests the
+ * WebView intercepted and the links the user followed, in order.
+ */
+final class PageLoadTrace {
+
+    static final class Request implements WebShell.Request {
+        final String method;
+        final String host;
+        final String path;
+        final String query;
+        final boolean mainFrame;
+
+        Request(String method, String url, boolean mainFrame) {
+            this.method = method;
+            this.mainFrame = mainFrame;
+            int start = url.indexOf("://") + 3;
+            int slash = url.indexOf('/', start);
+            int question = url.indexOf('?', start);
+            if (slash < 0 || (question >= 0 && question < slash)) {
+                slash = question >= 0 ? question : url.length();
+            }
+            this.host = url.substring(start, slash);
+            if (question >= 0) {
+                this.path = slash < question ? url.substring(slash, question) : "/";
+                this.query = url.substring(question + 1);
+            } else {
+                this.path = slash < url.length() ? url.substring(slash) : "/";
+                this.query = null;
+            }
+        }
+
+        @Override
+        public String method() {
+            return method;
+        }
+
+        @Override
+        public String host() {
+            return host;
+        }
+
+        @Override
+        public String path() {
+            return path;
+        }
+
+        @Override
+        public String query() {
+            return query;
+        }
+
+        @Override
+        public boolean isForMainFrame() {
+            return mainFrame;
+        }
+
+        @Override
+        public String accept() {
+            return mainFrame ? "text/html" : "*/*";
+        }
+    }
+
+    /** Documents and subresources, as shouldInterceptRequest sees them. */
+    final List<Request> requests;
+    /** Hosts of followed links, as shouldOverrideUrlLoading sees them. */
+    final List<String> navigations;
+
+    private PageLoadTrace(List<Request> requests, List<String> navigations) {
+        this.requests = Collections.unmodifiableList(requests);
+        this.navigations = Collections.unmodifiableList(navigations);
+    }
+
+    static PageLoadTrace load() throws IOException {
+        InputStream in = PageLoadTrace.class.getResourceAsStream("page-load-trace.txt");
+        if (in == null) {
+            throw new IOException("page-load-trace.txt missing from the classpath");
+        }
+        List<Request> requests = new ArrayList<>();
+        List<String> navigations = new ArrayList<>();
+        BufferedReader reader = new BufferedReader(new InputStreamReader(in, StandardCharsets.UTF_8));
+        try {
+            String line;
+            while ((line = reader.readLine()) != null) {
+                line = line.trim();
+                if (line.isEmpty() || line.startsWith("#")) {
+                    continue;
+                }
+                String[] parts = line.split(" ", 3);
+                if (parts.length != 3) {
+                    throw new IOException("Bad trace line: " + line);
+                }
+                if ("nav".equals(parts[0])) {
+                    navigations.add(new Request(parts[1], parts[2], true).host);
+                } else if ("doc".equals(parts[0]) || "sub".equals(parts[0])) {
+                    requests.add(new Request(parts[1], parts[2], "doc".equals(parts[0])));
+                } else {
+                    throw new IOException("Bad trace line: " + line);
+                }
+            }
+        } finally {
+            reader.close();
+        }
+        return new PageLoadTrace(requests, navigations);
+    }
+}
@@ -0,0 +1,199 @@
+package my.tube.core.shell;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Set;
+import java.util.concurrent.TimeUnit;
+import my.tube.core.Clock;
+import my.tube.core.filter.BlocklistStore;
+import my.tube.core.filter.HostMatcher;
+import my.tube.core.filter.RequestFilter;
+import my.tube.core.inject.ScriptAsset;
+import my.tube.core.inject.ScriptInjector;
+import my.tube.core.metrics.InterceptionMetrics;
+import my.tube.core.metrics.MetricsRegistry;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * The per-request decision path of the WebView shell, without the WebView.
+ * {@code classify} is the routing alone; {@code intercept} adds the metrics
+ * the activity records for every request. Each invocation handles the
+ * requests of a typical m.youtube.com page load, so results are per page.
+ *
+ * Run with: ./gradlew :core:jmh
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class WebShellBenchmark {
+
+    private static final String RULES =
+        "||youtube.com/api/stats/ads$~document\n"
+            + "||youtube.com/pagead/$~document\n"
+            + "||youtube.com/ptracking$~document\n"
+            + "||youtube.com/api/stats/qoe$~document,query=adformat\n"
+            + "/pagead/conversion/$~document\n";
+
+    // method, host, path
+    private static final String[][] PAGE = {
+        {"GET", "m.youtube.com", "/"},
+        {"GET", "m.youtube.com", "/s/_/ytmweb/_/js/k=ytmweb.base_main.en_US.abc/m=base"},
+        {"GET", "m.youtube.com", "/s/player/a1b2c3d4/player-plasma-ias-phone-en_US.vflset/base.js"},
+        {"GET", "fonts.gstatic.com", "/s/roboto/v30/KFOmCnqEu92Fr1Mu4mxK.woff2"},
+        {"POST", "m.youtube.com", "/youtubei/v1/browse"},
+        {"POST", "m.youtube.com", "/youtubei/v1/player"},
+        {"GET", "i.ytimg.com", "/vi/dQw4w9WgXcQ/hqdefault.jpg"},
+        {"GET", "i.ytimg.com", "/vi/9bZkp7q19f0/hqdefault.jpg"},
+        {"GET", "i.ytimg.com", "/vi/kJQP7kiw5Fk/hqdefault.jpg"},
+        {"GET", "yt3.ggpht.com", "/ytc/avatar=s68-c-k"},
+        {"GET", "rr3---sn-5hne6nsz.googlevideo.com", "/videoplayback"},
+        {"GET", "rr3---sn-5hne6nsz.googlevideo.com", "/videoplayback"},
+        {"GET", "m.youtube.com", "/api/stats/qoe"},
+        {"GET", "m.youtube.com", "/api/stats/ads"},
+        {"GET", "m.youtube.com", "/ptracking"},
+        {"GET", "googleads.g.doubleclick.net", "/pagead/id"},
+        {"GET", "www.googletagmanager.com", "/gtag/js"},
+        {"GET", "jnn-pa.googleapis.com", "/$rpc/google.internal.waa.v1.Waa/GenerateIT"},
+    };
+
+    private static final class Request implements WebShell.Request {
+        final String method;
+        final String host;
+        final String path;
+
+        Request(String[] parts) {
+            this.method = parts[0];
+            this.host = parts[1];
+            this.path = parts[2];
+        }
+
+        @Override
+        public String method() {
+            return method;
+        }
+
+        @Override
+        public String host() {
+            return host;
+        }
+
+        @Override
+        public String path() {
+            return path;
+        }
+
+        @Override
+        public String query() {
+            return null;
+        }
+
+        @Override
+        public boolean isForMainFrame() {
+            return "/".equals(path);
+        }
+
+        @Override
+        public String accept() {
+            return "*/*";
+        }
+    }
+
+    private static final WebShell.Handlers<Request, Object> NETWORK = new WebShell.Handlers<Request, Object>() {
+        @Override
+        public Object blocked(Request request) {
+            return request;
+        }
+
+        @Override
+        public Object thumbnail(Request request) {
+            return null;
+        }
+
+        @Override
+        public Object staticAsset(Request request) {
+            return null;
+        }
+
+        @Override
+        public Object proxy(Request request) {
+            return null;
+        }
+
+        @Override
+        public void onStream(Request request) {
+        }
+    };
+
+    private static final ScriptInjector.Host NO_SCRIPTS = new ScriptInjector.Host() {
+        @Override
+        public boolean supportsDocumentStart() {
+            return true;
+        }
+
+        @Override
+        public void addDocumentStartScript(String script, Set<String> allowedOrigins) {
+        }
+
+        @Override
+        public void evaluate(String script, ScriptInjector.ValueCallback callback) {
+        }
+    };
+
+    private File dir;
+    private Request[] requests;
+    private RequestClassifier classifier;
+    private WebShell shell;
+
+    @Setup
+    public void setUp() throws IOException {
+        dir = File.createTempFile("shell-bench", "");
+        dir.delete();
+        dir.mkdir();
+        BlocklistStore blocklist = new BlocklistStore(dir);
+        blocklist.install(HostMatcher.of("doubleclick.net", "googletagmanager.com", "googlesyndication.com",
+            "google-analytics.com", "googleadservices.com"), 1);
+        classifier = new RequestClassifier(blocklist, RequestFilter.parse(new StringReader(RULES)));
+        shell = new WebShell(classifier, NavigationPolicy.YOUTUBE,
+            new ScriptInjector(NO_SCRIPTS, ScriptAsset.EMPTY, WebShell.SCRIPT_ORIGINS, Clock.SYSTEM),
+            new InterceptionMetrics(new MetricsRegistry()), Clock.SYSTEM);
+        requests = new Request[PAGE.length];
+        for (int i = 0; i < PAGE.length; i++) {
+            requests[i] = new Request(PAGE[i]);
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                file.delete();
+            }
+        }
+        dir.delete();
+    }
+
+    @Benchmark
+    public void classify(Blackhole bh) {
+        for (Request request : requests) {
+            bh.consume(classifier.classify(request.method, request.host, request.path, null,
+                request.isForMainFrame(), "*/*"));
+        }
+    }
+
+    @Benchmark
+    public void intercept(Blackhole bh) {
+        for (Request request : requests) {
+            bh.consume(shell.intercept(request, NETWORK));
+        }
+    }
+}
@@ -0,0 +1,21 @@
+package my.tube.core;
+
+/** Time source, replaceable in tests. */
+public interface Clock {
+
+    long currentTimeMillis();
+
+    long nanoTime();
+
+    Clock SYSTEM = new Clock() {
+        @Override
+        public long currentTimeMillis() {
+            return System.currentTimeMillis();
+        }
+
+        @Override
+        public long nanoTime() {
+            return System.nanoTime();
+        }
+    };
+}
@@ -0,0 +1,294 @@
+package my.tube.core.cache;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import my.tube.core.io.PropertiesFile;
+
+/**
+ * Size-bounded cache of files keyed by short lowercase names.
+ *
+ * Each entry is a body file plus a properties file of metadata. The metadata
+ * file's modification time records the last access, so least recently used
+ * order survives restarts without a journal. An entry only exists once its
+ * metadata is written; bodies without metadata and leftover temporary files
+ * are deleted when the cache opens. Readers keep reading a body that is
+ * replaced or evicted meanwhile, since its file stays open.
+ */
+public final class DiskLruCache {
+
+    private static final String BODY = ".body";
+    private static final String META = ".meta";
+    private static final String TMP = ".tmp";
+
+    /** A readable entry. */
+    public static final class Snapshot {
+        public final String key;
+        public final Properties meta;
+        public final long length;
+        private final File body;
+
+        Snapshot(String key, Properties meta, File body) {
+            this.key = key;
+            this.meta = meta;
+            this.body = body;
+            this.length = body.length();
+        }
+
+        public InputStream open() throws IOException {
+            return new FileInputStream(body);
+        }
+    }
+
+    /** Writes one entry; exactly one of {@link #commit} or {@link #abort} must follow. */
+    public final class Editor {
+        private final String key;
+        private final File tmp;
+        private final OutputStream out;
+        private boolean done;
+
+        Editor(String key) throws IOException {
+            this.key = key;
+            this.tmp = new File(dir, key + BODY + TMP);
+            this.out = new FileOutputStream(tmp);
+        }
+
+        public OutputStream stream() {
+            return out;
+        }
+
+        public void commit(Properties meta) throws IOException {
+            try {
+                out.close();
+            } catch (IOException e) {
+                abort();
+                throw e;
+            }
+            synchronized (DiskLruCache.this) {
+                if (done) {
+                    return;
+                }
+                done = true;
+                editing.remove(key);
+                remove(key);
+                File body = new File(dir, key + BODY);
+                if (!tmp.renameTo(body)) {
+                    tmp.delete();
+                    throw new IOException("Cannot rename " + tmp);
+                }
+                try {
+                    PropertiesFile.store(meta, new File(dir, key + META));
+                } catch (IOException e) {
+                    body.delete();
+                    throw e;
+                }
+                long length = body.length();
+                entries.put(key, length);
+                size += length;
+                trim();
+            }
+        }
+
+        public void abort() {
+            try {
+                out.close();
+            } catch (IOException ignored) {
+                // Deleted below either way
+            }
+            synchronized (DiskLruCache.this) {
+                if (!done) {
+                    done = true;
+                    editing.remove(key);
+                }
+            }
+            tmp.delete();
+        }
+    }
+
+    private final File dir;
+    private final long maxBytes;
+
+    // Guarded by this; key -> body length in access order
+    private final LinkedHashMap<String, Long> entries = new LinkedHashMap<>(16, 0.75f, true);
+    private final Set<String> editing = new HashSet<>();
+    private long size;
+    private long evictions;
+
+    public DiskLruCache(File dir, long maxBytes) {
+        this.dir = dir;
+        this.maxBytes = maxBytes;
+        dir.mkdirs();
+        load();
+    }
+
+    private void load() {
+        File[] files = dir.listFiles();
+        if (files == null) {
+            return;
+        }
+        List<File> metas = new ArrayList<>();
+        Set<String> keys = new HashSet<>();
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(META)) {
+                metas.add(file);
+                keys.add(name.substring(0, name.length() - META.length()));
+            }
+        }
+        for (File file : files) {
+            String name = file.getName();
+            if (name.endsWith(TMP)
+                    || (name.endsWith(BODY) && !keys.contains(name.substring(0, name.length() - BODY.length())))) {
+                file.delete();
+            }
+        }
+        Collections.sort(metas, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                return Long.compare(a.lastModified(), b.lastModified());
+            }
+        });
+        for (File meta : metas) {
+            String key = meta.getName().substring(0, meta.getName().length() - META.length());
+            File body = new File(dir, key + BODY);
+            if (!body.exists()) {
+                meta.delete();
+                continue;
+            }
+            entries.put(key, body.length());
+            size += body.length();
+        }
+        trim();
+    }
+
+    /** The entry for {@code key}, marked as just used, or null. */
+    public synchronized Snapshot get(String key) {
+        checkKey(key);
+        if (entries.get(key) == null) {
+            return null;
+        }
+        File meta = new File(dir, key + META);
+        Properties props = PropertiesFile.load(meta);
+        File body = new File(dir, key + BODY);
+        if (props.isEmpty() || !body.exists()) {
+            remove(key);
+            return null;
+        }
+        meta.setLastModified(System.currentTimeMillis());
+        return new Snapshot(key, props, body);
+    }
+
+    /** Starts writing {@code key}, or returns null while another edit of it is open. */
+    public synchronized Editor edit(String key) throws IOException {
+        checkKey(key);
+        if (!editing.add(key)) {
+            return null;
+        }
+        try {
+            return new Editor(key);
+        } catch (IOException e) {
+            editing.remove(key);
+            throw e;
+        }
+    }
+
+    /** Replaces the metadata of an existing entry, keeping its body. */
+    public synchronized boolean updateMeta(String key, Properties meta) throws IOException {
+        checkKey(key);
+        if (!entries.containsKey(key)) {
+            return false;
+        }
+        PropertiesFile.store(meta, new File(dir, key + META));
+        return true;
+    }
+
+    public synchronized boolean remove(String key) {
+        Long length = entries.remove(key);
+        // Metadata first: a body without it is garbage the next load deletes
+        new File(dir, key + META).delete();
+        new File(dir, key + BODY).delete();
+        if (length != null) {
+            size -= length;
+            return true;
+        }
+        return false;
+    }
+
+    /** Bytes of entry bodies. */
+    public synchronized long size() {
+        return size;
+    }
+
+    public synchronized int entryCount() {
+        return entries.size();
+    }
+
+    public synchronized long evictionCount() {
+        return evictions;
+    }
+
+    public long maxBytes() {
+        return maxBytes;
+    }
+
+    private void trim() {
+        Iterator<Map.Entry<String, Long>> it = entries.entrySet().iterator();
+        while (size > maxBytes && it.hasNext()) {
+            Map.Entry<String, Long> eldest = it.next();
+            it.remove();
+            size -= eldest.getValue();
+            evictions++;
+            new File(dir, eldest.getKey() + META).delete();
+            new File(dir, eldest.getKey() + BODY).delete();
+        }
+    }
+
+    /** A valid key for an arbitrary name, such as a URL: its SHA-256 in hex. */
+    public static String hashKey(String name) {
+        return hex(sha256().digest(name.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    static MessageDigest sha256() {
+        try {
+            return MessageDigest.getInstance("SHA-256");
+        } catch (NoSuchAlgorithmException e) {
+            throw new AssertionError(e);
+        }
+    }
+
+    static String hex(byte[] bytes) {
+        StringBuilder sb = new StringBuilder(bytes.length * 2);
+        for (byte b : bytes) {
+            sb.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        }
+        return sb.toString();
+    }
+
+    private static void checkKey(String key) {
+        if (key.isEmpty() || key.length() > 120) {
+            throw new IllegalArgumentException("Bad cache key: " + key);
+        }
+        for (int i = 0; i < key.length(); i++) {
+            char c = key.charAt(i);
+            if (!(c >= 'a' && c <= 'z') && !(c >= '0' && c <= '9') && c != '_' && c != '-') {
+                throw new IllegalArgumentException("Bad cache key: " + key);
+            }
+        }
+    }
+}
@@ -0,0 +1,462 @@
+package my.tube.core.cache;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.Executor;
+import my.tube.core.Clock;
+import my.tube.core.metrics.MetricsRegistry;
+import my.tube.core.metrics.StripedCounter;
+import my.tube.core.net.HttpStack;
+
+/**
+ * App-controlled cache for YouTube's versioned static files: the player and
+ * web app bundles under {@code /s/player/}, {@code /s/_/ytmweb/} and
+ * {@code /s/desktop/}, and fonts from fonts.gstatic.com.
+ *
+ * These paths carry a content hash, so a URL names one exact file and an
+ * entry keyed by the URL's SHA-256 stays correct until it is evicted. A miss
+ * is fetched here and streamed to the WebView while it is written to disk;
+ * the entry is only committed if the whole body arrived. Hits older than the
+ * revalidation interval are served at once and checked with a conditional
+ * request in the background.
+ */
+public final class StaticAssetCache {
+
+    private static final Set<String> YOUTUBE_HOSTS = new HashSet<>(
+        Arrays.asList("m.youtube.com", "www.youtube.com", "youtube.com"));
+    private static final String[] YOUTUBE_PREFIXES = {"/s/player/", "/s/_/ytmweb/", "/s/desktop/"};
+    private static final String FONTS_HOST = "fonts.gstatic.com";
+
+    // Request headers worth forwarding; cookies are never sent for static files
+    private static final String[] FORWARDED = {"User-Agent", "Accept", "Accept-Language", "Origin", "Referer"};
+    // Response headers replayed from the cache. Length and encoding are left
+    // out because HttpURLConnection has already decoded the body.
+    private static final String[] KEPT = {
+        "Cache-Control", "ETag", "Last-Modified", "Vary", "Access-Control-Allow-Origin",
+        "Access-Control-Allow-Credentials", "Timing-Allow-Origin", "Cross-Origin-Resource-Policy",
+        "X-Content-Type-Options"
+    };
+
+    static final String META_URL = "url";
+    static final String META_CONTENT_TYPE = "contentType";
+    static final String META_SHA256 = "sha256";
+    static final String META_STORED_AT = "storedAt";
+    static final String META_VALIDATED_AT = "validatedAt";
+    static final String HEADER_PREFIX = "h.";
+
+    /** A response for the WebView. */
+    public static final class Response {
+        public final int status;
+        public final String reason;
+        public final String mimeType;
+        public final String charset;
+        public final Map<String, String> headers;
+        public final InputStream body;
+        public final boolean fromCache;
+
+        Response(String contentType, Map<String, String> headers, InputStream body, boolean fromCache) {
+            this.status = HttpURLConnection.HTTP_OK;
+            this.reason = "OK";
+            String type = contentType != null ? contentType : "application/octet-stream";
+            int semicolon = type.indexOf(';');
+            this.mimeType = (semicolon >= 0 ? type.substring(0, semicolon) : type).trim();
+            this.charset = charsetOf(type);
+            this.headers = headers;
+            this.body = body;
+            this.fromCache = fromCache;
+        }
+    }
+
+    private final DiskLruCache cache;
+    private final Executor background;
+    private final Clock clock;
+    private final long revalidateAfterMs;
+    private final HttpStack.Client http;
+
+    private final StripedCounter hits;
+    private final StripedCounter misses;
+    private final StripedCounter uncacheable;
+    private final StripedCounter errors;
+    private final StripedCounter bytesFromCache;
+    private final StripedCounter bytesFromNetwork;
+    private final StripedCounter revalidatedUnchanged;
+    private final StripedCounter revalidatedChanged;
+
+    // Guarded by itself
+    private final Set<String> revalidating = new HashSet<>();
+
+    /**
+     * @param background runs cache commits and revalidation off the WebView's threads
+     */
+    public StaticAssetCache(DiskLruCache cache, MetricsRegistry metrics, Executor background, Clock clock,
+                            long revalidateAfterMs, HttpStack.Client http) {
+        this.cache = cache;
+        this.background = background;
+        this.clock = clock;
+        this.revalidateAfterMs = revalidateAfterMs;
+        this.http = http;
+        this.hits = metrics.counter("assets.hits");
+        this.misses = metrics.counter("assets.misses");
+        this.uncacheable = metrics.counter("assets.uncacheable");
+        this.errors = metrics.counter("assets.errors");
+        this.bytesFromCache = metrics.counter("assets.bytesFromCache");
+        this.bytesFromNetwork = metrics.counter("assets.bytesFromNetwork");
+        this.revalidatedUnchanged = metrics.counter("assets.revalidatedUnchanged");
+        this.revalidatedChanged = metrics.counter("assets.revalidatedChanged");
+    }
+
+    /** Whether a request is for one of the versioned static paths this cache handles. */
+    public static boolean isCacheable(String method, String host, String path) {
+        if (!"GET".equals(method) || host == null || path == null) {
+            return false;
+        }
+        if (FONTS_HOST.equals(host)) {
+            return path.startsWith("/s/");
+        }
+        if (YOUTUBE_HOSTS.contains(host)) {
+            for (String prefix : YOUTUBE_PREFIXES) {
+                if (path.startsWith(prefix)) {
+                    return true;
+                }
+            }
+        }
+        return false;
+    }
+
+    /**
+     * Serves {@code url} from the cache or the network. Returns null when the
+     * WebView should load it itself, e.g. after a network error.
+     */
+    public Response open(String url, Map<String, String> requestHeaders) {
+        String key = keyFor(url);
+        DiskLruCache.Snapshot snapshot = cache.get(key);
+        if (snapshot != null && url.equals(snapshot.meta.getProperty(META_URL))) {
+            try {
+                InputStream body = snapshot.open();
+                hits.increment();
+                bytesFromCache.add(snapshot.length);
+                long validatedAt = parseLong(snapshot.meta.getProperty(META_VALIDATED_AT));
+                if (clock.currentTimeMillis() - validatedAt >= revalidateAfterMs) {
+                    revalidateLater(key, url, snapshot.meta, requestHeaders);
+                }
+                return new Response(snapshot.meta.getProperty(META_CONTENT_TYPE), storedHeaders(snapshot.meta),
+                    body, true);
+            } catch (IOException e) {
+                cache.remove(key);
+            }
+        }
+        misses.increment();
+        try {
+            return fetch(key, url, requestHeaders);
+        } catch (IOException e) {
+            errors.increment();
+            return null;
+        }
+    }
+
+    private Response fetch(String key, String url, Map<String, String> requestHeaders) throws IOException {
+        HttpStack.Call call = connect(url, requestHeaders, null);
+        HttpURLConnection conn = call.connection;
+        boolean handedOff = false;
+        try {
+            if (call.code() != HttpURLConnection.HTTP_OK) {
+                return null;
+            }
+            Properties meta = metaFrom(conn, url);
+            Map<String, String> headers = storedHeaders(meta);
+            // The WebView reads this as it renders, so only stalls time it out
+            InputStream network = call.stream();
+            String cacheControl = conn.getHeaderField("Cache-Control");
+            DiskLruCache.Editor editor = null;
+            String policy = cacheControl != null ? cacheControl.toLowerCase(Locale.ROOT) : "";
+            if (!policy.contains("no-store") && !policy.contains("private")) {
+                editor = cache.edit(key);
+            }
+            if (editor == null) {
+                // Uncacheable, or another request is already filling this entry
+                uncacheable.increment();
+            }
+            handedOff = true;
+            return new Response(conn.getContentType(), headers,
+                new CachingInputStream(network, call, editor, meta, call.contentLength()), false);
+        } finally {
+            if (!handedOff) {
+                call.close();
+            }
+        }
+    }
+
+    private void revalidateLater(final String key, final String url, final Properties meta,
+                                 final Map<String, String> requestHeaders) {
+        synchronized (revalidating) {
+            if (!revalidating.add(key)) {
+                return;
+            }
+        }
+        background.execute(() -> {
+            try {
+                revalidate(key, url, meta, requestHeaders);
+            } catch (IOException e) {
+                errors.increment();
+            } finally {
+                synchronized (revalidating) {
+                    revalidating.remove(key);
+                }
+            }
+        });
+    }
+
+    void revalidate(String key, String url, Properties meta, Map<String, String> requestHeaders) throws IOException {
+        try (HttpStack.Call call = connect(url, requestHeaders, meta)) {
+            HttpURLConnection conn = call.connection;
+            int code = call.code();
+            if (code == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                revalidatedUnchanged.increment();
+                Properties updated = new Properties();
+                updated.putAll(meta);
+                updated.setProperty(META_VALIDATED_AT, Long.toString(clock.currentTimeMillis()));
+                cache.updateMeta(key, updated);
+            } else if (code == HttpURLConnection.HTTP_OK) {
+                revalidatedChanged.increment();
+                DiskLruCache.Editor editor = cache.edit(key);
+                if (editor == null) {
+                    return;
+                }
+                Properties fresh = metaFrom(conn, url);
+                try (InputStream in = new CachingInputStream(call.stream(), null, editor, fresh,
+                        call.contentLength())) {
+                    byte[] buffer = new byte[16 * 1024];
+                    while (in.read(buffer) != -1) {
+                        // CachingInputStream writes and commits as it goes
+                    }
+                }
+            } else if (code == HttpURLConnection.HTTP_NOT_FOUND || code == HttpURLConnection.HTTP_GONE) {
+                cache.remove(key);
+            }
+        }
+    }
+
+    private HttpStack.Call connect(String url, Map<String, String> requestHeaders, Properties validators)
+            throws IOException {
+        HttpStack.Call call = http.open(url);
+        HttpURLConnection conn = call.connection;
+        conn.setUseCaches(false);
+        if (requestHeaders != null) {
+            for (String name : FORWARDED) {
+                String value = header(requestHeaders, name);
+                if (value != null) {
+                    conn.setRequestProperty(name, value);
+                }
+            }
+        }
+        if (validators != null) {
+            String etag = validators.getProperty(HEADER_PREFIX + "ETag");
+            String lastModified = validators.getProperty(HEADER_PREFIX + "Last-Modified");
+            if (etag != null) {
+                conn.setRequestProperty("If-None-Match", etag);
+            }
+            if (lastModified != null) {
+                conn.setRequestProperty("If-Modified-Since", lastModified);
+            }
+        }
+        return call;
+    }
+
+    private Properties metaFrom(HttpURLConnection conn, String url) {
+        Properties meta = new Properties();
+        meta.setProperty(META_URL, url);
+        String contentType = conn.getContentType();
+        if (contentType != null) {
+            meta.setProperty(META_CONTENT_TYPE, contentType);
+        }
+        for (String name : KEPT) {
+            String value = conn.getHeaderField(name);
+            if (value != null) {
+                meta.setProperty(HEADER_PREFIX + name, value);
+            }
+        }
+        long now = clock.currentTimeMillis();
+        meta.setProperty(META_STORED_AT, Long.toString(now));
+        meta.setProperty(META_VALIDATED_AT, Long.toString(now));
+        return meta;
+    }
+
+    private static Map<String, String> storedHeaders(Properties meta) {
+        Map<String, String> headers = new LinkedHashMap<>();
+        for (String name : KEPT) {
+            String value = meta.getProperty(HEADER_PREFIX + name);
+            if (value != null) {
+                headers.put(name, value);
+            }
+        }
+        return Collections.unmodifiableMap(headers);
+    }
+
+    private static String header(Map<String, String> headers, String name) {
+        for (Map.Entry<String, String> e : headers.entrySet()) {
+            if (name.equalsIgnoreCase(e.getKey())) {
+                return e.getValue();
+            }
+        }
+        return null;
+    }
+
+    public DiskLruCache diskCache() {
+        return cache;
+    }
+
+    public long hits() {
+        return hits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    static String keyFor(String url) {
+        return DiskLruCache.hashKey(url);
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return value != null ? Long.parseLong(value) : 0L;
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+
+    static String charsetOf(String contentType) {
+        for (String part : contentType.split(";")) {
+            String p = part.trim();
+            if (p.toLowerCase(Locale.ROOT).startsWith("charset=")) {
+                return p.substring("charset=".length()).replace("\"", "").trim();
+            }
+        }
+        // WebResourceResponse wants one; text and JS from these hosts is UTF-8
+        return contentType.startsWith("font/") ? null : "utf-8";
+    }
+
+    /**
+     * Passes the network body through while copying it into the cache, and
+     * commits only when the stream ends with every expected byte.
+     */
+    private final class CachingInputStream extends FilterInputStream {
+        private final HttpStack.Call call;
+        private final Properties meta;
+        private final long expectedLength;
+        private final MessageDigest digest = DiskLruCache.sha256();
+        private DiskLruCache.Editor editor;
+        private long count;
+        private boolean closed;
+
+        CachingInputStream(InputStream in, HttpStack.Call call, DiskLruCache.Editor editor, Properties meta,
+                           long expectedLength) {
+            super(in);
+            this.call = call;
+            this.editor = editor;
+            this.meta = meta;
+            this.expectedLength = expectedLength;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            int n = read(one, 0, 1);
+            return n == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] buffer, int offset, int length) throws IOException {
+            int n;
+            try {
+                n = super.read(buffer, offset, length);
+            } catch (IOException e) {
+                abort();
+                throw e;
+            }
+            if (n > 0) {
+                count += n;
+                bytesFromNetwork.add(n);
+                if (editor != null) {
+                    digest.update(buffer, offset, n);
+                    try {
+                        editor.stream().write(buffer, offset, n);
+                    } catch (IOException e) {
+                        // The page still gets its bytes; only caching is given up
+                        abort();
+                    }
+                }
+            } else if (n == -1) {
+                finish();
+            }
+            return n;
+        }
+
+        @Override
+        public long skip(long n) throws IOException {
+            // Skipped bytes would be missing from the copy
+            abort();
+            return super.skip(n);
+        }
+
+        @Override
+        public boolean markSupported() {
+            return false;
+        }
+
+        @Override
+        public void close() throws IOException {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            abort();
+            try {
+                super.close();
+            } finally {
+                if (call != null) {
+                    call.close();
+                }
+            }
+        }
+
+        private void finish() {
+            final DiskLruCache.Editor complete = editor;
+            editor = null;
+            if (complete == null) {
+                return;
+            }
+            if (expectedLength >= 0 && count != expectedLength) {
+                complete.abort();
+                return;
+            }
+            meta.setProperty(META_SHA256, DiskLruCache.hex(digest.digest()));
+            // Renaming and syncing stays off the thread feeding the WebView
+            background.execute(() -> {
+                try {
+                    complete.commit(meta);
+                } catch (IOException e) {
+                    errors.increment();
+                }
+            });
+        }
+
+        private void abort() {
+            if (editor != null) {
+                editor.abort();
+                editor = null;
+            }
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package my.tube.core.download;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+
+/**
+ * Which chunks of a download are on disk: a small header naming the
+ * resource, then one bit per chunk.
+ *
+ * Finishing a chunk rewrites the single byte holding its bit in place, so
+ * progress costs one positional write per chunk whatever the file size. A
+ * journal whose header doesn't match the resource (another length, chunk
+ * size or validator) is discarded and the download starts over.
+ */
+public final class DownloadJournal implements Closeable {
+
+    private static final int MAGIC = 0x4d54444a; // "MTDJ"
+    private static final byte VERSION = 1;
+    private static final int MAX_VALIDATOR = 1024;
+
+    private final FileChannel channel;
+    private final long totalLength;
+    private final int chunkSize;
+    private final int chunkCount;
+    private final int bitsOffset;
+
+    // Guarded by this
+    private final byte[] bits;
+    private int doneCount;
+
+    private DownloadJournal(FileChannel channel, long totalLength, int chunkSize, int bitsOffset, byte[] bits) {
+        this.channel = channel;
+        this.totalLength = totalLength;
+        this.chunkSize = chunkSize;
+        this.chunkCount = chunkCount(totalLength, chunkSize);
+        this.bitsOffset = bitsOffset;
+        this.bits = bits;
+        for (int i = 0; i < chunkCount; i++) {
+            if (isSet(i)) {
+                doneCount++;
+            }
+        }
+    }
+
+    static int chunkCount(long totalLength, int chunkSize) {
+        long count = (totalLength + chunkSize - 1) / chunkSize;
+        if (count > Integer.MAX_VALUE / 2) {
+            throw new IllegalArgumentException("Too many chunks: " + count);
+        }
+        return (int) count;
+    }
+
+    /**
+     * Opens the journal at {@code file} if it describes the same resource,
+     * otherwise replaces it with an empty one.
+     *
+     * @param validator ETag or Last-Modified of the resource; empty if it has neither
+     */
+    public static DownloadJournal open(File file, long totalLength, int chunkSize, String validator)
+            throws IOException {
+        byte[] validatorBytes = validator.getBytes(StandardCharsets.UTF_8);
+        if (validatorBytes.length > MAX_VALIDATOR) {
+            validatorBytes = Arrays.copyOf(validatorBytes, MAX_VALIDATOR);
+        }
+        int bitsOffset = 4 + 1 + 8 + 4 + 2 + validatorBytes.length;
+        int bitsLength = (chunkCount(totalLength, chunkSize) + 7) / 8;
+
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        FileChannel channel = raf.getChannel();
+        try {
+            byte[] bits = readIfMatching(channel, totalLength, chunkSize, validatorBytes, bitsOffset, bitsLength);
+            if (bits == null) {
+                bits = new byte[bitsLength];
+                ByteBuffer header = ByteBuffer.allocate(bitsOffset + bitsLength);
+                header.putInt(MAGIC).put(VERSION).putLong(totalLength).putInt(chunkSize)
+                    .putShort((short) validatorBytes.length).put(validatorBytes).put(bits);
+                header.flip();
+                channel.truncate(0);
+                writeFully(channel, header, 0);
+                channel.force(false);
+            }
+            return new DownloadJournal(channel, totalLength, chunkSize, bitsOffset, bits);
+        } catch (IOException | RuntimeException e) {
+            raf.close();
+            throw e;
+        }
+    }
+
+    private static byte[] readIfMatching(FileChannel channel, long totalLength, int chunkSize, byte[] validator,
+                                         int bitsOffset, int bitsLength) throws IOException {
+        if (channel.size() != bitsOffset + bitsLength) {
+            return null;
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(bitsOffset + bitsLength);
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, buffer.position()) < 0) {
+                return null;
+            }
+        }
+        buffer.flip();
+        if (buffer.getInt() != MAGIC || buffer.get() != VERSION || buffer.getLong() != totalLength
+                || buffer.getInt() != chunkSize || buffer.getShort() != validator.length) {
+            return null;
+        }
+        byte[] stored = new byte[validator.length];
+        buffer.get(stored);
+        if (!Arrays.equals(stored, validator)) {
+            return null;
+        }
+        byte[] bits = new byte[bitsLength];
+        buffer.get(bits);
+        return bits;
+    }
+
+    private static void writeFully(FileChannel channel, ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            position += channel.write(buffer, position);
+        }
+    }
+
+    public long totalLength() {
+        return totalLength;
+    }
+
+    public int chunkSize() {
+        return chunkSize;
+    }
+
+    public int chunkCount() {
+        return chunkCount;
+    }
+
+    public long chunkStart(int index) {
+        return (long) index * chunkSize;
+    }
+
+    /** Inclusive, as in a Range header. */
+    public long chunkEnd(int index) {
+        return Math.min(totalLength, chunkStart(index) + chunkSize) - 1;
+    }
+
+    public synchronized boolean isDone(int index) {
+        return isSet(index);
+    }
+
+    private boolean isSet(int index) {
+        return (bits[index >> 3] & (1 << (index & 7))) != 0;
+    }
+
+    public synchronized int doneCount() {
+        return doneCount;
+    }
+
+    public synchronized boolean isComplete() {
+        return doneCount == chunkCount;
+    }
+
+    /** Bytes covered by finished chunks. */
+    public synchronized long doneBytes() {
+        long bytes = 0;
+        for (int i = 0; i < chunkCount; i++) {
+            if (isSet(i)) {
+                bytes += chunkEnd(i) - chunkStart(i) + 1;
+            }
+        }
+        return bytes;
+    }
+
+    /** Records chunk {@code index} as written. Call only after its bytes are in the file. */
+    public synchronized void markDone(int index) throws IOException {
+        if (isSet(index)) {
+            return;
+        }
+        int at = index >> 3;
+        bits[at] |= (byte) (1 << (index & 7));
+        doneCount++;
+        writeFully(channel, ByteBuffer.wrap(bits, at, 1).slice(), bitsOffset + at);
+    }
+
+    @Override
+    public void close() throws IOException {
+        channel.close();
+    }
+}
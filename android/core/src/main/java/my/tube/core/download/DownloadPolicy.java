@@ -0,0 +1,50 @@
+package my.tube.core.download;
+
+/**
+ * How many connections a download may use on each kind of network. More
+ * parallel ranges help on fast, high-latency links; on cellular they mostly
+ * compete with the WebView and cost radio time.
+ */
+public final class DownloadPolicy {
+
+    public enum Network {
+        NONE, CELLULAR, WIFI, ETHERNET, OTHER
+    }
+
+    public static final DownloadPolicy DEFAULT = new DownloadPolicy(2, 4, 6, 1, 1024 * 1024);
+
+    private final int cellular;
+    private final int wifi;
+    private final int ethernet;
+    private final int other;
+    private final int chunkSize;
+
+    public DownloadPolicy(int cellular, int wifi, int ethernet, int other, int chunkSize) {
+        this.cellular = cellular;
+        this.wifi = wifi;
+        this.ethernet = ethernet;
+        this.other = other;
+        this.chunkSize = chunkSize;
+    }
+
+    /** Connections for one download; 0 means wait for a network. */
+    public int parallelism(Network network, boolean metered) {
+        switch (network) {
+            case CELLULAR:
+                return cellular;
+            case WIFI:
+                // A metered hotspot is a phone's cellular link behind Wi-Fi
+                return metered ? cellular : wifi;
+            case ETHERNET:
+                return ethernet;
+            case OTHER:
+                return other;
+            default:
+                return 0;
+        }
+    }
+
+    public int chunkSize() {
+        return chunkSize;
+    }
+}
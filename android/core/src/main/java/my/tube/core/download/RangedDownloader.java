@@ -0,0 +1,391 @@
+package my.tube.core.download;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Downloads a file as parallel HTTP Range requests.
+ *
+ * A one-byte probe learns the length and validator. The target's
+ * {@code .part} file is preallocated to full size and every chunk is written
+ * at its own offset through one {@link FileChannel}, so chunks finish in any
+ * order without seeking or copying. Finished chunks are recorded in a
+ * {@link DownloadJournal} next to it: after a crash or a cancel the same
+ * call resumes with the chunks still missing. Each chunk request carries
+ * If-Range, so a resource that changed meanwhile fails the download instead
+ * of mixing two versions.
+ *
+ * Chunk connections are read to the end and closed without disconnecting,
+ * which returns them to HttpURLConnection's process-wide keep-alive pool
+ * for the next chunk. Servers without range support get one plain stream.
+ */
+public final class RangedDownloader {
+
+    private static final int ATTEMPTS = 3;
+    private static final int BUFFER_SIZE = 64 * 1024;
+
+    /** Progress and cancellation of one download; readable from any thread. */
+    public static final class Progress {
+        private final AtomicLong doneBytes = new AtomicLong();
+        private volatile long totalBytes = -1;
+        private volatile boolean cancelled;
+
+        /** Stops the download soon; finished chunks stay recorded for a resume. */
+        public void cancel() {
+            cancelled = true;
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+
+        /** -1 until the length is known. */
+        public long totalBytes() {
+            return totalBytes;
+        }
+
+        public long doneBytes() {
+            return doneBytes.get();
+        }
+    }
+
+    public static final class Result {
+        public final long totalBytes;
+        /** Bytes fetched by this call, excluding resumed chunks. */
+        public final long fetchedBytes;
+        public final int chunks;
+        public final int resumedChunks;
+        public final boolean ranged;
+
+        Result(long totalBytes, long fetchedBytes, int chunks, int resumedChunks, boolean ranged) {
+            this.totalBytes = totalBytes;
+            this.fetchedBytes = fetchedBytes;
+            this.chunks = chunks;
+            this.resumedChunks = resumedChunks;
+            this.ranged = ranged;
+        }
+    }
+
+    /** The resource no longer matches the validator the download started with; retrying won't help. */
+    public static final class ResourceChangedException extends IOException {
+        private static final long serialVersionUID = 1L;
+
+        ResourceChangedException(String url) {
+            super("Resource changed during download: " + url);
+        }
+    }
+
+    private final Executor workers;
+    private final int timeoutMs;
+
+    /**
+     * @param workers runs chunk fetches; shared by all downloads. A download
+     *     waits for its chunks, so call {@link #download} from outside it.
+     */
+    public RangedDownloader(Executor workers, int timeoutMs) {
+        this.workers = workers;
+        this.timeoutMs = timeoutMs;
+    }
+
+    /**
+     * Downloads {@code url} to {@code target}, resuming earlier progress.
+     *
+     * @throws CancellationException if {@link Progress#cancel} was called
+     */
+    public Result download(String url, Map<String, String> headers, File target, int parallelism, int chunkSize,
+                           Progress progress) throws IOException {
+        if (parallelism < 1 || chunkSize < 1) {
+            throw new IllegalArgumentException("parallelism " + parallelism + ", chunk size " + chunkSize);
+        }
+        File part = new File(target.getPath() + ".part");
+        File journalFile = new File(target.getPath() + ".journal");
+
+        HttpURLConnection probe = open(url, headers, "bytes=0-0", null);
+        int code = probe.getResponseCode();
+        if (code == HttpURLConnection.HTTP_OK) {
+            journalFile.delete();
+            long length = streamWhole(probe, part, progress);
+            finish(part, target, journalFile);
+            return new Result(length, length, 1, 0, false);
+        }
+        if (code != HttpURLConnection.HTTP_PARTIAL) {
+            probe.disconnect();
+            throw new IOException("HTTP " + code + " for " + url);
+        }
+        long total = totalLength(probe.getHeaderField("Content-Range"));
+        String validator = validator(probe);
+        drain(probe);
+        if (total < 0) {
+            throw new IOException("No length in Content-Range for " + url);
+        }
+        progress.totalBytes = total;
+
+        if (part.length() != total) {
+            // Progress without the bytes it describes is worthless
+            journalFile.delete();
+        }
+        Result result;
+        try (DownloadJournal journal = DownloadJournal.open(journalFile, total, chunkSize, validator);
+             RandomAccessFile file = new RandomAccessFile(part, "rw")) {
+            file.setLength(total);
+            result = fetchChunks(url, headers, validator, journal, file.getChannel(), parallelism, progress);
+            file.getChannel().force(true);
+        }
+        finish(part, target, journalFile);
+        return result;
+    }
+
+    private Result fetchChunks(final String url, final Map<String, String> headers, final String validator,
+                               final DownloadJournal journal, final FileChannel channel, int parallelism,
+                               final Progress progress) throws IOException {
+        final List<Integer> pending = new ArrayList<>();
+        for (int i = 0; i < journal.chunkCount(); i++) {
+            if (!journal.isDone(i)) {
+                pending.add(i);
+            }
+        }
+        int resumed = journal.chunkCount() - pending.size();
+        progress.doneBytes.set(journal.doneBytes());
+        final AtomicInteger next = new AtomicInteger();
+        final AtomicLong fetched = new AtomicLong();
+        final AtomicReference<IOException> failure = new AtomicReference<>();
+        int count = Math.min(parallelism, pending.size());
+        final CountDownLatch finished = new CountDownLatch(count);
+        for (int w = 0; w < count; w++) {
+            workers.execute(() -> {
+                try {
+                    byte[] buffer = new byte[BUFFER_SIZE];
+                    int slot;
+                    while (failure.get() == null && !progress.cancelled
+                            && (slot = next.getAndIncrement()) < pending.size()) {
+                        int index = pending.get(slot);
+                        fetched.addAndGet(fetchChunk(url, headers, validator, journal, index, channel, buffer,
+                            progress));
+                        journal.markDone(index);
+                    }
+                } catch (IOException e) {
+                    failure.compareAndSet(null, e);
+                } catch (CancellationException e) {
+                    // Reported once every worker has stopped
+                } catch (RuntimeException e) {
+                    failure.compareAndSet(null, new IOException(e));
+                } finally {
+                    finished.countDown();
+                }
+            });
+        }
+        boolean interrupted = false;
+        while (true) {
+            try {
+                finished.await();
+                break;
+            } catch (InterruptedException e) {
+                // Workers must stop writing before the file closes
+                interrupted = true;
+                progress.cancel();
+            }
+        }
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+        if (progress.cancelled) {
+            throw new CancellationException("Download cancelled");
+        }
+        return new Result(journal.totalLength(), fetched.get(), journal.chunkCount(), resumed, true);
+    }
+
+    /** Fetches one chunk with retries; returns the bytes it took, including failed attempts. */
+    private long fetchChunk(String url, Map<String, String> headers, String validator, DownloadJournal journal,
+                            int index, FileChannel channel, byte[] buffer, Progress progress) throws IOException {
+        long start = journal.chunkStart(index);
+        long end = journal.chunkEnd(index);
+        long fetched = 0;
+        IOException last = null;
+        for (int attempt = 0; attempt < ATTEMPTS && !progress.cancelled; attempt++) {
+            long written = 0;
+            HttpURLConnection conn = open(url, headers, "bytes=" + start + "-" + end, validator);
+            try {
+                int code = conn.getResponseCode();
+                if (code == HttpURLConnection.HTTP_OK) {
+                    // If-Range fell through: the resource is not the one the journal describes
+                    conn.disconnect();
+                    throw new ResourceChangedException(url);
+                }
+                if (code != HttpURLConnection.HTTP_PARTIAL
+                        || rangeStart(conn.getHeaderField("Content-Range")) != start) {
+                    throw new IOException("HTTP " + code + " for chunk " + index);
+                }
+                long expected = end - start + 1;
+                try (InputStream in = conn.getInputStream()) {
+                    int n;
+                    while (written < expected && !progress.cancelled
+                            && (n = in.read(buffer, 0, (int) Math.min(buffer.length, expected - written))) != -1) {
+                        ByteBuffer data = ByteBuffer.wrap(buffer, 0, n);
+                        long position = start + written;
+                        while (data.hasRemaining()) {
+                            position += channel.write(data, position);
+                        }
+                        written += n;
+                        fetched += n;
+                        progress.doneBytes.addAndGet(n);
+                    }
+                }
+                if (written == expected) {
+                    return fetched;
+                }
+                if (progress.cancelled) {
+                    break;
+                }
+                throw new IOException("Chunk " + index + " ended after " + written + " of " + expected + " bytes");
+            } catch (ResourceChangedException e) {
+                throw e;
+            } catch (IOException e) {
+                last = e;
+                conn.disconnect();
+            } finally {
+                if (written != end - start + 1) {
+                    progress.doneBytes.addAndGet(-written);
+                }
+            }
+        }
+        if (progress.cancelled) {
+            throw new CancellationException("Download cancelled");
+        }
+        throw last != null ? last : new IOException("Chunk " + index + " failed");
+    }
+
+    private long streamWhole(HttpURLConnection conn, File part, Progress progress) throws IOException {
+        long length = contentLength(conn);
+        progress.totalBytes = length;
+        progress.doneBytes.set(0);
+        long written = 0;
+        try (InputStream in = conn.getInputStream(); OutputStream out = new FileOutputStream(part)) {
+            byte[] buffer = new byte[BUFFER_SIZE];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                if (progress.cancelled) {
+                    conn.disconnect();
+                    throw new CancellationException("Download cancelled");
+                }
+                out.write(buffer, 0, n);
+                written += n;
+                progress.doneBytes.addAndGet(n);
+            }
+        }
+        if (length >= 0 && written != length) {
+            throw new IOException("Body ended after " + written + " of " + length + " bytes");
+        }
+        progress.totalBytes = written;
+        return written;
+    }
+
+    private static void finish(File part, File target, File journal) throws IOException {
+        target.delete();
+        if (!part.renameTo(target)) {
+            throw new IOException("Cannot rename " + part + " to " + target);
+        }
+        journal.delete();
+    }
+
+    private HttpURLConnection open(String url, Map<String, String> headers, String range, String validator)
+            throws IOException {
+        HttpURLConnection conn = (HttpURLConnection) new URL(url).openConnection();
+        conn.setConnectTimeout(timeoutMs);
+        conn.setReadTimeout(timeoutMs);
+        conn.setUseCaches(false);
+        if (headers != null) {
+            for (Map.Entry<String, String> header : headers.entrySet()) {
+                conn.setRequestProperty(header.getKey(), header.getValue());
+            }
+        }
+        // Compressed ranges would not map to file offsets
+        conn.setRequestProperty("Accept-Encoding", "identity");
+        conn.setRequestProperty("Range", range);
+        if (validator != null && !validator.isEmpty()) {
+            conn.setRequestProperty("If-Range", validator);
+        }
+        return conn;
+    }
+
+    private static String validator(HttpURLConnection conn) {
+        String etag = conn.getHeaderField("ETag");
+        // If-Range only accepts strong ETags
+        if (etag != null && !etag.startsWith("W/")) {
+            return etag;
+        }
+        String lastModified = conn.getHeaderField("Last-Modified");
+        return lastModified != null ? lastModified : "";
+    }
+
+    private static void drain(HttpURLConnection conn) throws IOException {
+        try (InputStream in = conn.getInputStream()) {
+            byte[] buffer = new byte[64];
+            while (in.read(buffer) != -1) {
+                // Reading to the end lets the connection be reused
+            }
+        }
+    }
+
+    private static long contentLength(HttpURLConnection conn) {
+        String value = conn.getHeaderField("Content-Length");
+        if (value == null || conn.getHeaderField("Content-Encoding") != null) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(value.trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /** The total from {@code bytes 0-0/12345}, or -1. */
+    static long totalLength(String contentRange) {
+        if (contentRange == null) {
+            return -1;
+        }
+        int slash = contentRange.lastIndexOf('/');
+        if (slash < 0 || contentRange.endsWith("*")) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(contentRange.substring(slash + 1).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    static long rangeStart(String contentRange) {
+        if (contentRange == null || !contentRange.startsWith("bytes ")) {
+            return -1;
+        }
+        int dash = contentRange.indexOf('-');
+        if (dash < 0) {
+            return -1;
+        }
+        try {
+            return Long.parseLong(contentRange.substring("bytes ".length(), dash).trim());
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+}
@@ -0,0 +1,201 @@
+package my.tube.core.filter;
+
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Single-pass parser for hosts files and the domain subset of ABP/EasyList filters.
+ *
+ * Understood lines:
+ * <pre>
+ *   0.0.0.0 ads.example.com other.example.com   # hosts format, any IP
+ *   ads.example.com                             # bare domain
+ *   ||ads.example.com^                          # ABP domain rule without options
+ * </pre>
+ * Comments, ABP exceptions, cosmetic filters and rules with paths or options
+ * are skipped. Lines are read into a reusable buffer and hashed in place, so
+ * parsing a 100k-line list does not create a String per rule.
+ */
+public final class BlocklistParser {
+
+    private static final int READ_CHUNK = 8192;
+
+    private char[] line = new char[256];
+    private int lineLength;
+    private int accepted;
+
+    private BlocklistParser() {}
+
+    /** Parses every rule from {@code reader} into {@code builder}; returns the number of rules read. */
+    public static int parse(Reader reader, HostMatcher.Builder builder) throws IOException {
+        return new BlocklistParser().run(reader, builder);
+    }
+
+    private int run(Reader reader, HostMatcher.Builder builder) throws IOException {
+        char[] chunk = new char[READ_CHUNK];
+        int read;
+        while ((read = reader.read(chunk)) != -1) {
+            for (int i = 0; i < read; i++) {
+                char c = chunk[i];
+                if (c == '\n' || c == '\r') {
+                    parseLine(builder);
+                    lineLength = 0;
+                } else {
+                    append(c);
+                }
+            }
+        }
+        parseLine(builder);
+        return accepted;
+    }
+
+    private void append(char c) {
+        if (lineLength == line.length) {
+            char[] grown = new char[line.length * 2];
+            System.arraycopy(line, 0, grown, 0, lineLength);
+            line = grown;
+        }
+        line[lineLength++] = c;
+    }
+
+    private void parseLine(HostMatcher.Builder builder) {
+        int start = skipSpace(0);
+        int end = lineLength;
+        if (start >= end) {
+            return;
+        }
+        char first = line[start];
+        if (first == '#' || first == '!' || first == '[' || first == '@') {
+            return;
+        }
+        if (first == '|') {
+            parseAbpRule(builder, start, end);
+            return;
+        }
+
+        // Hosts format: drop trailing comment, then take every token after the address.
+        // A '#' glued to a token is an element-hiding filter, not a comment.
+        for (int i = start + 1; i < end; i++) {
+            if (line[i] == '#' && (line[i - 1] == ' ' || line[i - 1] == '\t')) {
+                end = i;
+                break;
+            }
+        }
+        int tokenEnd = skipToken(start, end);
+        if (looksLikeAddress(start, tokenEnd)) {
+            int pos = skipSpace(tokenEnd);
+            while (pos < end) {
+                int next = skipToken(pos, end);
+                addDomain(builder, pos, next);
+                pos = skipSpace(next);
+            }
+        } else if (skipSpace(tokenEnd) >= end) {
+            addDomain(builder, start, tokenEnd);
+        }
+    }
+
+    private void parseAbpRule(HostMatcher.Builder builder, int start, int end) {
+        if (end - start < 4 || line[start + 1] != '|') {
+            return;
+        }
+        int domainStart = start + 2;
+        int caret = -1;
+        for (int i = domainStart; i < end; i++) {
+            char c = line[i];
+            if (c == '^') {
+                caret = i;
+                break;
+            }
+            if (c == '/' || c == '$' || c == '*' || c == ':') {
+                return;
+            }
+        }
+        // Only plain "||domain^" rules; anything after the separator is an option or path
+        if (caret < 0 || skipSpace(caret + 1) < end) {
+            return;
+        }
+        addDomain(builder, domainStart, caret);
+    }
+
+    private void addDomain(HostMatcher.Builder builder, int start, int end) {
+        if (end - start >= 2 && line[start] == '*' && line[start + 1] == '.') {
+            start += 2;
+        }
+        while (start < end && line[start] == '.') {
+            start++;
+        }
+        while (end > start && line[end - 1] == '.') {
+            end--;
+        }
+        if (start >= end || !isDomain(start, end) || isLocalName(start, end)) {
+            return;
+        }
+        builder.addHash(HostMatcher.hashDomain(line, start, end));
+        accepted++;
+    }
+
+    private boolean isDomain(int start, int end) {
+        boolean dot = false;
+        for (int i = start; i < end; i++) {
+            char c = line[i];
+            if (c == '.') {
+                dot = true;
+            } else if (!(c >= 'a' && c <= 'z') && !(c >= 'A' && c <= 'Z')
+                && !(c >= '0' && c <= '9') && c != '-' && c != '_') {
+                return false;
+            }
+        }
+        return dot;
+    }
+
+    private boolean isLocalName(int start, int end) {
+        return regionEquals(start, end, "localhost.localdomain")
+            || regionEquals(start, end, "local.localdomain")
+            || regionEquals(start, end, "0.0.0.0");
+    }
+
+    private boolean looksLikeAddress(int start, int end) {
+        boolean colon = false;
+        boolean letter = false;
+        for (int i = start; i < end; i++) {
+            char c = line[i];
+            if (c == ':') {
+                colon = true;
+            } else if (!(c >= '0' && c <= '9') && c != '.') {
+                letter = true;
+            }
+        }
+        // IPv6 addresses contain a colon, IPv4 ones only digits and dots
+        return colon || !letter;
+    }
+
+    private boolean regionEquals(int start, int end, String value) {
+        if (end - start != value.length()) {
+            return false;
+        }
+        for (int i = 0; i < value.length(); i++) {
+            char c = line[start + i];
+            if (c >= 'A' && c <= 'Z') {
+                c = (char) (c + ('a' - 'A'));
+            }
+            if (c != value.charAt(i)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private int skipSpace(int pos) {
+        while (pos < lineLength && (line[pos] == ' ' || line[pos] == '\t')) {
+            pos++;
+        }
+        return pos;
+    }
+
+    private int skipToken(int pos, int end) {
+        while (pos < end && line[pos] != ' ' && line[pos] != '\t') {
+            pos++;
+        }
+        return pos;
+    }
+}
@@ -0,0 +1,123 @@
+package my.tube.core.filter;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+
+/**
+ * Binary on-disk form of a compiled {@link HostMatcher}.
+ *
+ * Layout, little-endian:
+ * <pre>
+ *   0   int   magic "MTBL"
+ *   4   int   format version
+ *   8   int   rule count
+ *   12  int   table capacity (power of two)
+ *   16  long  list version, chosen by the caller (monotonic)
+ *   24  long  reserved
+ *   32  long[capacity] hash table
+ * </pre>
+ * The table is the matcher's own open-addressed hash table, so loading is a
+ * single {@code mmap} plus header checks: no text parsing and no heap copy.
+ */
+public final class BlocklistSnapshot {
+
+    public static final int MAGIC = 0x4C42544D; // "MTBL" read little-endian
+    public static final int FORMAT_VERSION = 1;
+    static final int HEADER_SIZE = 32;
+
+    private final HostMatcher matcher;
+    private final long listVersion;
+
+    private BlocklistSnapshot(HostMatcher matcher, long listVersion) {
+        this.matcher = matcher;
+        this.listVersion = listVersion;
+    }
+
+    public HostMatcher matcher() {
+        return matcher;
+    }
+
+    public long listVersion() {
+        return listVersion;
+    }
+
+    /**
+     * Writes {@code matcher} to {@code target}. The file is written next to the
+     * target and renamed into place, so readers never see a partial snapshot.
+     */
+    public static void write(HostMatcher matcher, long listVersion, File target) throws IOException {
+        File tmp = new File(target.getPath() + ".tmp");
+        int capacity = matcher.capacity();
+        ByteBuffer buffer = ByteBuffer.allocate(HEADER_SIZE + capacity * 8).order(ByteOrder.LITTLE_ENDIAN);
+        buffer.putInt(MAGIC)
+            .putInt(FORMAT_VERSION)
+            .putInt(matcher.size())
+            .putInt(capacity)
+            .putLong(listVersion)
+            .putLong(0L);
+        buffer.asLongBuffer().put(matcher.table());
+        buffer.rewind();
+
+        FileOutputStream out = new FileOutputStream(tmp);
+        try {
+            FileChannel channel = out.getChannel();
+            while (buffer.hasRemaining()) {
+                channel.write(buffer);
+            }
+            out.getFD().sync();
+        } finally {
+            out.close();
+        }
+        if (!tmp.renameTo(target)) {
+            tmp.delete();
+            throw new IOException("Could not move blocklist snapshot into place: " + target);
+        }
+    }
+
+    /**
+     * Memory-maps a snapshot written by {@link #write}. Throws an IOException if
+     * the file is truncated or has the wrong magic or format version.
+     */
+    public static BlocklistSnapshot map(File file) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            FileChannel channel = raf.getChannel();
+            long length = channel.size();
+            if (length < HEADER_SIZE) {
+                throw new IOException("Blocklist snapshot too short: " + length);
+            }
+            MappedByteBuffer mapped = channel.map(FileChannel.MapMode.READ_ONLY, 0, length);
+            mapped.order(ByteOrder.LITTLE_ENDIAN);
+
+            int magic = mapped.getInt(0);
+            int version = mapped.getInt(4);
+            int size = mapped.getInt(8);
+            int capacity = mapped.getInt(12);
+            long listVersion = mapped.getLong(16);
+            if (magic != MAGIC) {
+                throw new IOException("Not a blocklist snapshot");
+            }
+            if (version != FORMAT_VERSION) {
+                throw new IOException("Unsupported blocklist snapshot version " + version);
+            }
+            if (capacity <= 0 || (capacity & (capacity - 1)) != 0 || size < 0 || size >= capacity
+                || length != HEADER_SIZE + (long) capacity * 8) {
+                throw new IOException("Corrupt blocklist snapshot header");
+            }
+
+            mapped.position(HEADER_SIZE);
+            LongBuffer table = mapped.slice().order(ByteOrder.LITTLE_ENDIAN).asLongBuffer();
+            return new BlocklistSnapshot(new HostMatcher(table, size), listVersion);
+        } finally {
+            // The mapping stays valid after the channel is closed
+            raf.close();
+        }
+    }
+}
@@ -0,0 +1,87 @@
+package my.tube.core.filter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Owns the active blocklist and its snapshot file.
+ *
+ * Cold start maps the snapshot written by an earlier run. Text is only parsed
+ * when there is no usable snapshot or when a newer list is installed, and the
+ * new matcher is published with a single volatile write so readers on the
+ * WebView IO thread never see a half-built list.
+ */
+public final class BlocklistStore {
+
+    /** Opens the text form of a list. Called at most once per load or install. */
+    public interface Source {
+        Reader open() throws IOException;
+    }
+
+    private final File snapshotFile;
+    private volatile HostMatcher current = HostMatcher.of();
+    private volatile long listVersion = -1L;
+
+    public BlocklistStore(File directory) {
+        this.snapshotFile = new File(directory, "blocklist-v" + BlocklistSnapshot.FORMAT_VERSION + ".bin");
+    }
+
+    /** The matcher to consult for each request. Never null. */
+    public HostMatcher current() {
+        return current;
+    }
+
+    /** Version of the active list, or -1 before anything was loaded. */
+    public long listVersion() {
+        return listVersion;
+    }
+
+    public File snapshotFile() {
+        return snapshotFile;
+    }
+
+    /**
+     * Activates the snapshot if it holds at least {@code bundledVersion}, otherwise
+     * compiles {@code bundled} and writes a fresh snapshot for the next start.
+     */
+    public synchronized HostMatcher load(Source bundled, long bundledVersion) throws IOException {
+        if (snapshotFile.exists()) {
+            try {
+                BlocklistSnapshot snapshot = BlocklistSnapshot.map(snapshotFile);
+                if (snapshot.listVersion() >= bundledVersion) {
+                    publish(snapshot);
+                    return current;
+                }
+            } catch (IOException e) {
+                // Unreadable or from an older format: rebuild it below
+            }
+        }
+        return install(bundled, bundledVersion);
+    }
+
+    /** Compiles {@code source}, persists it and swaps it in as the active list. */
+    public synchronized HostMatcher install(Source source, long version) throws IOException {
+        HostMatcher.Builder builder = HostMatcher.builder();
+        Reader reader = source.open();
+        try {
+            BlocklistParser.parse(reader, builder);
+        } finally {
+            reader.close();
+        }
+        return install(builder.build(), version);
+    }
+
+    /** Persists an already compiled matcher and swaps it in as the active list. */
+    public synchronized HostMatcher install(HostMatcher matcher, long version) throws IOException {
+        BlocklistSnapshot.write(matcher, version, snapshotFile);
+        // Serve from the mapping so the heap copy built while parsing can be collected
+        publish(BlocklistSnapshot.map(snapshotFile));
+        return current;
+    }
+
+    private void publish(BlocklistSnapshot snapshot) {
+        listVersion = snapshot.listVersion();
+        current = snapshot.matcher();
+    }
+}
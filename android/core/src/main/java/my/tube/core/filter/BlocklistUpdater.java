@@ -0,0 +1,103 @@
+package my.tube.core.filter;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.net.HttpURLConnection;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import my.tube.core.Clock;
+import my.tube.core.io.PropertiesFile;
+import my.tube.core.net.HttpStack;
+
+/**
+ * Downloads a newer hosts list into a {@link BlocklistStore}.
+ *
+ * Requests are conditional on the ETag and Last-Modified of the list that was
+ * last installed, so an unchanged list costs a 304 and no parsing. A changed
+ * list is parsed straight off the network stream on the calling thread and
+ * only then swapped in, so request filtering never waits on any of it.
+ */
+public final class BlocklistUpdater {
+
+    private static final String KEY_ETAG = "etag";
+    private static final String KEY_LAST_MODIFIED = "lastModified";
+    private static final String KEY_URL = "url";
+    private static final String KEY_VERSION = "listVersion";
+
+    private final BlocklistStore store;
+    private final String url;
+    private final HttpStack.Client http;
+    private final File stateFile;
+    private final Clock clock;
+    private final int minRules;
+
+    /**
+     * @param minRules a downloaded list with fewer hosts is treated as broken and not installed
+     */
+    public BlocklistUpdater(BlocklistStore store, String url, HttpStack.Client http, File stateFile, Clock clock,
+                            int minRules) {
+        this.store = store;
+        this.url = url;
+        this.http = http;
+        this.stateFile = stateFile;
+        this.clock = clock;
+        this.minRules = minRules;
+    }
+
+    /** Returns true if a new list was installed, false if the remote list is unchanged. */
+    public boolean refresh() throws IOException {
+        Properties state = PropertiesFile.load(stateFile);
+        // Validators only describe the active list if nothing (e.g. an app update) replaced it since
+        boolean validatorsUsable = url.equals(state.getProperty(KEY_URL))
+            && PropertiesFile.getLong(state, KEY_VERSION, -1L) == store.listVersion();
+
+        try (HttpStack.Call call = http.open(url)) {
+            HttpURLConnection conn = call.connection;
+            conn.setUseCaches(false);
+            if (validatorsUsable) {
+                String etag = state.getProperty(KEY_ETAG);
+                String lastModified = state.getProperty(KEY_LAST_MODIFIED);
+                if (etag != null) {
+                    conn.setRequestProperty("If-None-Match", etag);
+                }
+                if (lastModified != null) {
+                    conn.setRequestProperty("If-Modified-Since", lastModified);
+                }
+            }
+
+            int code = call.code();
+            if (code == HttpURLConnection.HTTP_NOT_MODIFIED) {
+                return false;
+            }
+            if (code != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Blocklist download failed with code " + code);
+            }
+
+            HostMatcher.Builder builder = HostMatcher.builder();
+            try (Reader reader = new InputStreamReader(call.body(), StandardCharsets.UTF_8)) {
+                BlocklistParser.parse(reader, builder);
+            }
+            if (builder.size() < minRules) {
+                throw new IOException("Downloaded blocklist has only " + builder.size() + " hosts");
+            }
+            long version = clock.currentTimeMillis();
+            store.install(builder.build(), version);
+
+            Properties updated = new Properties();
+            updated.setProperty(KEY_URL, url);
+            updated.setProperty(KEY_VERSION, Long.toString(version));
+            putIfPresent(updated, KEY_ETAG, conn.getHeaderField("ETag"));
+            putIfPresent(updated, KEY_LAST_MODIFIED, conn.getHeaderField("Last-Modified"));
+            PropertiesFile.store(updated, stateFile);
+            return true;
+        }
+    }
+
+    private static void putIfPresent(Properties props, String key, String value) {
+        if (value != null) {
+            props.setProperty(key, value);
+        }
+    }
+}
@@ -0,0 +1,210 @@
+package my.tube.core.filter;
+
+import java.nio.LongBuffer;
+import java.util.Collection;
+import java.util.Locale;
+
+/**
+ * Compiled set of blocked domains.
+ *
+ * A rule blocks the domain itself and every subdomain of it, the same way
+ * hosts files and ABP "||domain^" rules behave. Each rule is stored as a
+ * 64-bit hash of its characters read right-to-left, so a lookup walks the
+ * host once from the end and probes the table at every label boundary:
+ * O(labels) probes, no substrings and no allocation per request.
+ *
+ * The table lives in a {@link LongBuffer} so a compiled list can be served
+ * straight from a memory-mapped snapshot (see {@link BlocklistSnapshot})
+ * without copying it onto the heap.
+ */
+public final class HostMatcher {
+
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+    private static final int MIN_CAPACITY = 16;
+
+    // Open addressing, linear probing, 0 marks an empty slot
+    private final LongBuffer table;
+    private final int mask;
+    private final int size;
+
+    HostMatcher(LongBuffer table, int size) {
+        this.table = table;
+        this.mask = table.capacity() - 1;
+        this.size = size;
+    }
+
+    public static HostMatcher of(String... domains) {
+        Builder builder = new Builder();
+        for (String domain : domains) {
+            builder.add(domain);
+        }
+        return builder.build();
+    }
+
+    public static HostMatcher of(Collection<String> domains) {
+        Builder builder = new Builder();
+        for (String domain : domains) {
+            builder.add(domain);
+        }
+        return builder.build();
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /** Number of distinct rules in the matcher. */
+    public int size() {
+        return size;
+    }
+
+    /** Number of slots in the hash table, always a power of two. */
+    int capacity() {
+        return table.capacity();
+    }
+
+    /** Read-only view of the hash table for serialization. */
+    LongBuffer table() {
+        return table.asReadOnlyBuffer();
+    }
+
+    /** Returns true if {@code host} equals a blocked domain or is a subdomain of one. */
+    public boolean matches(String host) {
+        if (host == null || size == 0) {
+            return false;
+        }
+        long hash = FNV_OFFSET;
+        for (int i = host.length() - 1; i >= 0; i--) {
+            hash = step(hash, host.charAt(i));
+            if ((i == 0 || host.charAt(i - 1) == '.') && contains(hash)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean contains(long hash) {
+        long key = nonZero(hash);
+        int slot = spread(key) & mask;
+        while (true) {
+            long current = table.get(slot);
+            if (current == key) {
+                return true;
+            }
+            if (current == 0L) {
+                return false;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    static long step(long hash, char c) {
+        if (c >= 'A' && c <= 'Z') {
+            c = (char) (c + ('a' - 'A'));
+        }
+        return (hash ^ c) * FNV_PRIME;
+    }
+
+    static long hashDomain(String domain) {
+        long hash = FNV_OFFSET;
+        for (int i = domain.length() - 1; i >= 0; i--) {
+            hash = step(hash, domain.charAt(i));
+        }
+        return hash;
+    }
+
+    /** Same as {@link #hashDomain(String)} for an already normalized char range. */
+    static long hashDomain(char[] chars, int start, int end) {
+        long hash = FNV_OFFSET;
+        for (int i = end - 1; i >= start; i--) {
+            hash = step(hash, chars[i]);
+        }
+        return hash;
+    }
+
+    private static long nonZero(long hash) {
+        return hash == 0L ? 1L : hash;
+    }
+
+    private static int spread(long key) {
+        long h = key ^ (key >>> 32);
+        return (int) (h ^ (h >>> 16));
+    }
+
+    /**
+     * Normalizes a rule: lowercases it and strips a leading "*." or "." and a
+     * trailing dot. Returns null for blank input.
+     */
+    static String normalize(String domain) {
+        if (domain == null) {
+            return null;
+        }
+        String d = domain.trim().toLowerCase(Locale.ROOT);
+        if (d.startsWith("*.")) {
+            d = d.substring(2);
+        } else if (d.startsWith(".")) {
+            d = d.substring(1);
+        }
+        if (d.endsWith(".")) {
+            d = d.substring(0, d.length() - 1);
+        }
+        return d.isEmpty() ? null : d;
+    }
+
+    public static final class Builder {
+
+        private long[] table = new long[MIN_CAPACITY];
+        private int size;
+
+        public Builder add(String domain) {
+            String normalized = normalize(domain);
+            if (normalized != null) {
+                addHash(hashDomain(normalized));
+            }
+            return this;
+        }
+
+        Builder addHash(long hash) {
+            long key = nonZero(hash);
+            if ((size + 1) * 2 > table.length) {
+                resize(table.length * 2);
+            }
+            if (insert(table, key)) {
+                size++;
+            }
+            return this;
+        }
+
+        public int size() {
+            return size;
+        }
+
+        public HostMatcher build() {
+            return new HostMatcher(LongBuffer.wrap(table.clone()), size);
+        }
+
+        private void resize(int capacity) {
+            long[] resized = new long[capacity];
+            for (long key : table) {
+                if (key != 0L) {
+                    insert(resized, key);
+                }
+            }
+            table = resized;
+        }
+
+        private static boolean insert(long[] target, long key) {
+            int mask = target.length - 1;
+            int slot = spread(key) & mask;
+            while (target[slot] != 0L) {
+                if (target[slot] == key) {
+                    return false;
+                }
+                slot = (slot + 1) & mask;
+            }
+            target[slot] = key;
+            return true;
+        }
+    }
+}
@@ -0,0 +1,225 @@
+package my.tube.core.filter;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * Token-indexed set of {@link RequestRule}s.
+ *
+ * Every rule is filed under one token (a run of letters, digits or '_' that is
+ * whole in the rule, e.g. "stats" for "/api/stats/ads"). A request is split
+ * into tokens the same way and only the rules in the buckets of its tokens are
+ * checked, so cost depends on the URL length rather than the number of rules.
+ * Rules without a usable token are kept in a short list checked every time.
+ */
+public final class RequestFilter {
+
+    private static final int MIN_TOKEN_LENGTH = 3;
+    private static final long FNV_OFFSET = 0xcbf29ce484222325L;
+    private static final long FNV_PRIME = 0x100000001b3L;
+
+    private static final RequestRule[] NO_RULES = new RequestRule[0];
+
+    // Open-addressed token hash -> bucket; 0 marks an empty slot
+    private final long[] tokens;
+    private final RequestRule[][] buckets;
+    private final int mask;
+    private final RequestRule[] untokenized;
+    private final int size;
+
+    private RequestFilter(long[] tokens, RequestRule[][] buckets, RequestRule[] untokenized, int size) {
+        this.tokens = tokens;
+        this.buckets = buckets;
+        this.mask = tokens.length - 1;
+        this.untokenized = untokenized;
+        this.size = size;
+    }
+
+    public static RequestFilter of(Collection<RequestRule> rules) {
+        // Count tokens first so the table is sized once
+        List<RequestRule> indexed = new ArrayList<>();
+        List<Long> hashes = new ArrayList<>();
+        List<RequestRule> rest = new ArrayList<>();
+        for (RequestRule rule : rules) {
+            long token = pickToken(rule);
+            if (token == 0L) {
+                rest.add(rule);
+            } else {
+                indexed.add(rule);
+                hashes.add(token);
+            }
+        }
+
+        int capacity = 16;
+        while (capacity < indexed.size() * 2) {
+            capacity <<= 1;
+        }
+        long[] tokens = new long[capacity];
+        RequestRule[][] buckets = new RequestRule[capacity][];
+        for (int i = 0; i < indexed.size(); i++) {
+            long token = hashes.get(i);
+            int slot = spread(token) & (capacity - 1);
+            while (tokens[slot] != 0L && tokens[slot] != token) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            tokens[slot] = token;
+            RequestRule[] bucket = buckets[slot] == null ? NO_RULES : buckets[slot];
+            RequestRule[] grown = new RequestRule[bucket.length + 1];
+            System.arraycopy(bucket, 0, grown, 0, bucket.length);
+            grown[bucket.length] = indexed.get(i);
+            buckets[slot] = grown;
+        }
+        return new RequestFilter(tokens, buckets, rest.toArray(NO_RULES), indexed.size() + rest.size());
+    }
+
+    /** Parses one rule per line, skipping lines {@link RequestRule#parse} does not understand. */
+    public static RequestFilter parse(Reader reader) throws IOException {
+        List<RequestRule> rules = new ArrayList<>();
+        BufferedReader lines = new BufferedReader(reader);
+        String line;
+        while ((line = lines.readLine()) != null) {
+            RequestRule rule = RequestRule.parse(line);
+            if (rule != null) {
+                rules.add(rule);
+            }
+        }
+        return of(rules);
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Returns the first rule matching the request, or null.
+     *
+     * @param host request host, may be null
+     * @param path decoded or encoded URL path; null is treated as "/"
+     * @param query raw query string without '?', may be null
+     * @param mainFrame whether this is a top-level navigation
+     * @param accept the Accept request header, may be null
+     */
+    public RequestRule match(String host, String path, String query, boolean mainFrame, String accept) {
+        if (path == null) {
+            path = "/";
+        }
+        RequestRule hit = scan(path, host, path, query, mainFrame, accept);
+        if (hit == null && query != null) {
+            hit = scan(query, host, path, query, mainFrame, accept);
+        }
+        if (hit == null) {
+            for (RequestRule rule : untokenized) {
+                if (rule.matches(host, path, query, mainFrame, accept)) {
+                    return rule;
+                }
+            }
+        }
+        return hit;
+    }
+
+    private RequestRule scan(String text, String host, String path, String query, boolean mainFrame, String accept) {
+        int length = text.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && !isTokenChar(text.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            long hash = FNV_OFFSET;
+            while (i < length && isTokenChar(text.charAt(i))) {
+                hash = step(hash, text.charAt(i));
+                i++;
+            }
+            if (i - start < MIN_TOKEN_LENGTH) {
+                continue;
+            }
+            RequestRule[] bucket = bucket(nonZero(hash));
+            if (bucket != null) {
+                for (RequestRule rule : bucket) {
+                    if (rule.matches(host, path, query, mainFrame, accept)) {
+                        return rule;
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    private RequestRule[] bucket(long token) {
+        int slot = spread(token) & mask;
+        while (true) {
+            long current = tokens[slot];
+            if (current == token) {
+                return buckets[slot];
+            }
+            if (current == 0L) {
+                return null;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * Picks the longest token that is whole in every URL the rule can match,
+     * or 0 when there is none. A token touching the pattern's edge is only whole
+     * if that edge is anchored: path prefixes anchor their start, query keys
+     * both ends.
+     */
+    static long pickToken(RequestRule rule) {
+        String source = rule.tokenSource();
+        if (source == null) {
+            return 0L;
+        }
+        boolean queryKey = rule.pathPrefix == null && rule.pathContains == null;
+        boolean leftAnchored = rule.pathPrefix != null || queryKey;
+        boolean rightAnchored = queryKey;
+
+        long best = 0L;
+        int bestLength = 0;
+        int length = source.length();
+        int i = 0;
+        while (i < length) {
+            while (i < length && !isTokenChar(source.charAt(i))) {
+                i++;
+            }
+            int start = i;
+            long hash = FNV_OFFSET;
+            while (i < length && isTokenChar(source.charAt(i))) {
+                hash = step(hash, source.charAt(i));
+                i++;
+            }
+            int tokenLength = i - start;
+            boolean wholeLeft = start > 0 || leftAnchored;
+            boolean wholeRight = i < length || rightAnchored;
+            if (tokenLength >= MIN_TOKEN_LENGTH && tokenLength > bestLength && wholeLeft && wholeRight) {
+                best = nonZero(hash);
+                bestLength = tokenLength;
+            }
+        }
+        return best;
+    }
+
+    private static boolean isTokenChar(char c) {
+        return (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9') || c == '_';
+    }
+
+    private static long step(long hash, char c) {
+        if (c >= 'A' && c <= 'Z') {
+            c = (char) (c + ('a' - 'A'));
+        }
+        return (hash ^ c) * FNV_PRIME;
+    }
+
+    private static long nonZero(long hash) {
+        return hash == 0L ? 1L : hash;
+    }
+
+    private static int spread(long key) {
+        long h = key ^ (key >>> 32);
+        return (int) (h ^ (h >>> 16));
+    }
+}
@@ -0,0 +1,187 @@
+package my.tube.core.filter;
+
+import java.util.Locale;
+
+/**
+ * A single URL rule for requests whose host is not blocked outright.
+ *
+ * Text syntax, a small subset of ABP:
+ * <pre>
+ *   ||youtube.com/api/stats/ads        host (and subdomains) + path prefix
+ *   /pagead/                           path contains, any host
+ *   ||youtube.com/api/stats/qoe$query=adformat
+ *   /generate_204$~document,accept=image/
+ * </pre>
+ * Options after '$' are comma separated: {@code query=KEY} requires that query
+ * parameter, {@code document} / {@code ~document} restrict to or exclude main
+ * frame navigations, and {@code accept=VALUE} requires the Accept header to
+ * contain VALUE.
+ */
+public final class RequestRule {
+
+    private final String text;
+    final String host;
+    final String pathPrefix;
+    final String pathContains;
+    final String queryKey;
+    final Boolean mainFrame;
+    final String accept;
+
+    private RequestRule(String text, String host, String pathPrefix, String pathContains,
+                        String queryKey, Boolean mainFrame, String accept) {
+        this.text = text;
+        this.host = host;
+        this.pathPrefix = pathPrefix;
+        this.pathContains = pathContains;
+        this.queryKey = queryKey;
+        this.mainFrame = mainFrame;
+        this.accept = accept;
+    }
+
+    /** Parses one rule line. Returns null for comments, blank lines and unsupported syntax. */
+    public static RequestRule parse(String line) {
+        if (line == null) {
+            return null;
+        }
+        String rule = line.trim();
+        if (rule.isEmpty() || rule.startsWith("!") || rule.startsWith("#")) {
+            return null;
+        }
+
+        String options = null;
+        int dollar = rule.indexOf('$');
+        if (dollar >= 0) {
+            options = rule.substring(dollar + 1);
+            rule = rule.substring(0, dollar);
+        }
+
+        String host = null;
+        String pathPrefix = null;
+        String pathContains = null;
+        if (rule.startsWith("||")) {
+            int slash = rule.indexOf('/', 2);
+            int end = slash < 0 ? rule.length() : slash;
+            if (end > 2 && rule.charAt(end - 1) == '^') {
+                end--;
+            }
+            host = HostMatcher.normalize(rule.substring(2, end));
+            if (host == null) {
+                return null;
+            }
+            if (slash >= 0 && slash < rule.length() - 1) {
+                pathPrefix = rule.substring(slash);
+            }
+        } else if (rule.startsWith("/")) {
+            pathContains = rule;
+        } else if (!rule.isEmpty()) {
+            return null;
+        }
+
+        String queryKey = null;
+        Boolean mainFrame = null;
+        String accept = null;
+        if (options != null) {
+            for (String option : options.split(",")) {
+                String o = option.trim();
+                if (o.equals("document")) {
+                    mainFrame = Boolean.TRUE;
+                } else if (o.equals("~document")) {
+                    mainFrame = Boolean.FALSE;
+                } else if (o.startsWith("query=") && o.length() > 6) {
+                    queryKey = o.substring(6);
+                } else if (o.startsWith("accept=") && o.length() > 7) {
+                    accept = o.substring(7).toLowerCase(Locale.ROOT);
+                } else if (!o.isEmpty()) {
+                    return null;
+                }
+            }
+        }
+
+        if (host == null && pathContains == null && queryKey == null) {
+            // Would match every request
+            return null;
+        }
+        return new RequestRule(line.trim(), host, pathPrefix, pathContains, queryKey, mainFrame, accept);
+    }
+
+    /** Checks every condition of the rule. {@code path} must not be null. */
+    boolean matches(String requestHost, String path, String query, boolean isMainFrame, String acceptHeader) {
+        if (mainFrame != null && mainFrame != isMainFrame) {
+            return false;
+        }
+        if (host != null && !isSameOrSubdomain(requestHost, host)) {
+            return false;
+        }
+        if (pathPrefix != null && !path.startsWith(pathPrefix)) {
+            return false;
+        }
+        if (pathContains != null && path.indexOf(pathContains) < 0) {
+            return false;
+        }
+        if (queryKey != null && !hasQueryKey(query, queryKey)) {
+            return false;
+        }
+        if (accept != null && (acceptHeader == null || !containsIgnoreCase(acceptHeader, accept))) {
+            return false;
+        }
+        return true;
+    }
+
+    /** The text to pick an index token from: the path pattern, else the query key. */
+    String tokenSource() {
+        if (pathPrefix != null) {
+            return pathPrefix;
+        }
+        if (pathContains != null) {
+            return pathContains;
+        }
+        return queryKey;
+    }
+
+    static boolean isSameOrSubdomain(String host, String domain) {
+        if (host == null) {
+            return false;
+        }
+        int offset = host.length() - domain.length();
+        if (offset < 0 || !host.regionMatches(true, offset, domain, 0, domain.length())) {
+            return false;
+        }
+        return offset == 0 || host.charAt(offset - 1) == '.';
+    }
+
+    static boolean hasQueryKey(String query, String key) {
+        if (query == null) {
+            return false;
+        }
+        int from = 0;
+        int keyLength = key.length();
+        while (true) {
+            int at = query.indexOf(key, from);
+            if (at < 0) {
+                return false;
+            }
+            int after = at + keyLength;
+            boolean startOk = at == 0 || query.charAt(at - 1) == '&';
+            boolean endOk = after == query.length() || query.charAt(after) == '=' || query.charAt(after) == '&';
+            if (startOk && endOk) {
+                return true;
+            }
+            from = at + 1;
+        }
+    }
+
+    private static boolean containsIgnoreCase(String haystack, String lowerNeedle) {
+        int max = haystack.length() - lowerNeedle.length();
+        for (int i = 0; i <= max; i++) {
+            if (haystack.regionMatches(true, i, lowerNeedle, 0, lowerNeedle.length())) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    @Override
+    public String toString() {
+        return text;
+    }
+}
@@ -0,0 +1,499 @@
+package my.tube.core.history;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import my.tube.core.Clock;
+
+/**
+ * An ordered set of keyed entries, such as watch history by video id or the
+ * play queue, persisted as an append-only log.
+ *
+ * Every change appends one checksummed record, so a write costs the same
+ * with ten entries or fifty thousand. Only an index (key, position, and
+ * where the payload sits in the file) is kept in memory; payloads are read
+ * back for the page being asked for. Replaced and removed records are
+ * garbage until the log holds twice as many records as live entries, when
+ * it is rewritten with the live ones alone. A torn record at the end, from
+ * a crash mid-append, is cut off when the log is opened.
+ *
+ * Entries are ordered by a position number: {@link #append} puts an entry
+ * after the newest, {@link #prepend} before the oldest, and
+ * {@link #moveBefore} between two others. Pages walk that order from either
+ * end with the last position seen as the cursor.
+ */
+public final class EntryStore implements Closeable {
+
+    private static final int MAGIC = 0x4d54454c; // "MTEL"
+    private static final int VERSION = 1;
+    private static final int HEADER = 8;
+
+    private static final byte PUT = 1;
+    private static final byte REMOVE = 2;
+
+    // Room to insert between neighbours before positions have to be renumbered
+    static final long GAP = 1L << 16;
+    private static final int COMPACT_MIN_RECORDS = 1024;
+    private static final int MAX_PAYLOAD = 1 << 20;
+    // Payload plus the longest key writeUTF allows and the fixed fields
+    private static final int MAX_RECORD = MAX_PAYLOAD + 65535 + 32;
+
+    public static final class Entry {
+        public final String key;
+        /** Position in the store's order; also the cursor for paging on from here. */
+        public final long position;
+        /** When the entry was last written, in epoch millis. */
+        public final long time;
+        public final String payload;
+
+        Entry(String key, long position, long time, String payload) {
+            this.key = key;
+            this.position = position;
+            this.time = time;
+            this.payload = payload;
+        }
+    }
+
+    public static final class Page {
+        public final List<Entry> entries;
+        /** Cursor for the following page, or null after the last one. */
+        public final Long next;
+
+        Page(List<Entry> entries, Long next) {
+            this.entries = Collections.unmodifiableList(entries);
+            this.next = next;
+        }
+    }
+
+    /** What the index keeps per entry: everything but the payload itself. */
+    private static final class Slot {
+        final String key;
+        final long position;
+        final long time;
+        final long payloadOffset;
+        final int payloadLength;
+
+        Slot(String key, long position, long time, long payloadOffset, int payloadLength) {
+            this.key = key;
+            this.position = position;
+            this.time = time;
+            this.payloadOffset = payloadOffset;
+            this.payloadLength = payloadLength;
+        }
+    }
+
+    private final File file;
+    private final int maxEntries;
+    private final Clock clock;
+
+    // Guarded by this
+    private RandomAccessFile raf;
+    private long end;
+    private int records;
+    private final Map<String, Slot> byKey = new HashMap<>();
+    private final TreeMap<Long, Slot> byPosition = new TreeMap<>();
+
+    private EntryStore(File file, int maxEntries, Clock clock) {
+        this.file = file;
+        this.maxEntries = maxEntries;
+        this.clock = clock;
+    }
+
+    /**
+     * Opens the log at {@code file}, creating it if needed.
+     *
+     * @param maxEntries the oldest entries are dropped beyond this many
+     */
+    public static EntryStore open(File file, int maxEntries, Clock clock) throws IOException {
+        EntryStore store = new EntryStore(file, maxEntries, clock);
+        store.load();
+        return store;
+    }
+
+    private void load() throws IOException {
+        long valid = HEADER;
+        boolean fresh = !file.exists() || file.length() < HEADER;
+        if (!fresh) {
+            DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), 64 * 1024));
+            try {
+                if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                    fresh = true;
+                } else {
+                    valid = replay(in);
+                }
+            } finally {
+                in.close();
+            }
+        }
+        raf = new RandomAccessFile(file, "rw");
+        if (fresh) {
+            byKey.clear();
+            byPosition.clear();
+            records = 0;
+            raf.setLength(0);
+            raf.writeInt(MAGIC);
+            raf.writeInt(VERSION);
+            valid = HEADER;
+        } else if (raf.length() > valid) {
+            // Torn or corrupt tail: everything before it is intact
+            raf.setLength(valid);
+        }
+        end = valid;
+        trim(null);
+    }
+
+    /** Applies every intact record; returns the offset after the last one. */
+    private long replay(DataInputStream in) throws IOException {
+        long offset = HEADER;
+        CRC32 crc = new CRC32();
+        while (true) {
+            int length;
+            int checksum;
+            byte[] body;
+            try {
+                length = in.readInt();
+                checksum = in.readInt();
+                if (length <= 0 || length > MAX_RECORD) {
+                    return offset;
+                }
+                body = new byte[length];
+                in.readFully(body);
+            } catch (EOFException e) {
+                return offset;
+            }
+            crc.reset();
+            crc.update(body, 0, body.length);
+            if ((int) crc.getValue() != checksum) {
+                return offset;
+            }
+            apply(body, offset + 8);
+            records++;
+            offset += 8 + length;
+        }
+    }
+
+    private void apply(byte[] body, long bodyOffset) throws IOException {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        byte op = in.readByte();
+        String key = in.readUTF();
+        if (op == REMOVE) {
+            unindex(key);
+            return;
+        }
+        long position = in.readLong();
+        long time = in.readLong();
+        int payloadLength = in.readInt();
+        long payloadOffset = bodyOffset + body.length - payloadLength;
+        index(new Slot(key, position, time, payloadOffset, payloadLength));
+    }
+
+    private void index(Slot slot) {
+        unindex(slot.key);
+        byKey.put(slot.key, slot);
+        byPosition.put(slot.position, slot);
+    }
+
+    private Slot unindex(String key) {
+        Slot old = byKey.remove(key);
+        if (old != null) {
+            byPosition.remove(old.position);
+        }
+        return old;
+    }
+
+    public synchronized int size() {
+        return byKey.size();
+    }
+
+    /** Bytes on disk, garbage included. */
+    public synchronized long fileLength() {
+        return end;
+    }
+
+    public synchronized Entry get(String key) throws IOException {
+        Slot slot = byKey.get(key);
+        return slot == null ? null : read(slot);
+    }
+
+    /** Writes {@code key} as the newest entry, replacing any earlier one. */
+    public synchronized Entry append(String key, String payload) throws IOException {
+        Long last = byPosition.isEmpty() ? null : byPosition.lastKey();
+        Slot current = byKey.get(key);
+        long position;
+        if (last == null) {
+            position = 0;
+        } else if (current != null && current.position == last) {
+            position = last;
+        } else {
+            position = last + GAP;
+        }
+        return put(key, position, payload);
+    }
+
+    /** Writes {@code key} as the oldest entry, replacing any earlier one. */
+    public synchronized Entry prepend(String key, String payload) throws IOException {
+        Long first = byPosition.isEmpty() ? null : byPosition.firstKey();
+        Slot current = byKey.get(key);
+        long position;
+        if (first == null) {
+            position = 0;
+        } else if (current != null && current.position == first) {
+            position = first;
+        } else {
+            position = first - GAP;
+        }
+        return put(key, position, payload);
+    }
+
+    /**
+     * Moves {@code key} to just before {@code beforeKey}, or to the newest end
+     * when {@code beforeKey} is null. False if either entry is missing.
+     */
+    public synchronized boolean moveBefore(String key, String beforeKey) throws IOException {
+        Slot slot = byKey.get(key);
+        if (slot == null || key.equals(beforeKey)) {
+            return slot != null;
+        }
+        if (beforeKey == null) {
+            append(key, readPayload(slot));
+            return true;
+        }
+        Slot before = byKey.get(beforeKey);
+        if (before == null) {
+            return false;
+        }
+        Long previous = lowerPosition(before.position, slot.position);
+        if (previous != null && before.position - previous < 2) {
+            // No room left between the neighbours
+            rewrite(true);
+            slot = byKey.get(key);
+            before = byKey.get(beforeKey);
+            previous = lowerPosition(before.position, slot.position);
+        }
+        long position = previous == null ? before.position - GAP : previous + (before.position - previous) / 2;
+        put(key, position, readPayload(slot));
+        return true;
+    }
+
+    private Long lowerPosition(long position, long skip) {
+        Long lower = byPosition.lowerKey(position);
+        if (lower != null && lower == skip) {
+            lower = byPosition.lowerKey(lower);
+        }
+        return lower;
+    }
+
+    public synchronized boolean remove(String key) throws IOException {
+        if (!byKey.containsKey(key)) {
+            return false;
+        }
+        writeRemove(key);
+        unindex(key);
+        maybeCompact();
+        return true;
+    }
+
+    public synchronized void clear() throws IOException {
+        byKey.clear();
+        byPosition.clear();
+        rewrite(false);
+    }
+
+    /** Up to {@code limit} entries from the newest end. */
+    public synchronized Page newestFirst(int limit) throws IOException {
+        return page(byPosition.descendingMap(), limit);
+    }
+
+    /** The page after {@code cursor} going from newest to oldest. */
+    public synchronized Page newestFirst(long cursor, int limit) throws IOException {
+        return page(byPosition.headMap(cursor, false).descendingMap(), limit);
+    }
+
+    /** Up to {@code limit} entries from the oldest end. */
+    public synchronized Page oldestFirst(int limit) throws IOException {
+        return page(byPosition, limit);
+    }
+
+    /** The page after {@code cursor} going from oldest to newest. */
+    public synchronized Page oldestFirst(long cursor, int limit) throws IOException {
+        return page(byPosition.tailMap(cursor, false), limit);
+    }
+
+    private Page page(NavigableMap<Long, Slot> view, int limit) throws IOException {
+        List<Entry> entries = new ArrayList<>(Math.min(limit, view.size()));
+        Iterator<Slot> it = view.values().iterator();
+        while (entries.size() < limit && it.hasNext()) {
+            entries.add(read(it.next()));
+        }
+        Long next = it.hasNext() && !entries.isEmpty() ? entries.get(entries.size() - 1).position : null;
+        return new Page(entries, next);
+    }
+
+    /** Rewrites the log with the live entries only. */
+    public synchronized void compact() throws IOException {
+        rewrite(false);
+    }
+
+    @Override
+    public synchronized void close() throws IOException {
+        raf.close();
+    }
+
+    private Entry put(String key, long position, String payload) throws IOException {
+        byte[] payloadBytes = payload.getBytes(StandardCharsets.UTF_8);
+        if (payloadBytes.length > MAX_PAYLOAD) {
+            throw new IllegalArgumentException("Payload too large: " + payloadBytes.length);
+        }
+        long time = clock.currentTimeMillis();
+        writeRecord(body(PUT, key, position, time, payloadBytes));
+        // The payload closes the record
+        index(new Slot(key, position, time, end - payloadBytes.length, payloadBytes.length));
+        trim(key);
+        maybeCompact();
+        return new Entry(key, position, time, payload);
+    }
+
+    private void writeRemove(String key) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(32);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(REMOVE);
+        out.writeUTF(key);
+        writeRecord(bytes.toByteArray());
+    }
+
+    private static byte[] body(byte op, String key, long position, long time, byte[] payload) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(payload.length + key.length() + 32);
+        DataOutputStream out = new DataOutputStream(bytes);
+        out.writeByte(op);
+        out.writeUTF(key);
+        out.writeLong(position);
+        out.writeLong(time);
+        out.writeInt(payload.length);
+        out.write(payload);
+        return bytes.toByteArray();
+    }
+
+    /** Appends one framed record in a single write. */
+    private void writeRecord(byte[] body) throws IOException {
+        CRC32 crc = new CRC32();
+        crc.update(body, 0, body.length);
+        byte[] record = new byte[8 + body.length];
+        writeInt(record, 0, body.length);
+        writeInt(record, 4, (int) crc.getValue());
+        System.arraycopy(body, 0, record, 8, body.length);
+        raf.seek(end);
+        raf.write(record);
+        end += record.length;
+        records++;
+    }
+
+    private static void writeInt(byte[] target, int offset, int value) {
+        target[offset] = (byte) (value >>> 24);
+        target[offset + 1] = (byte) (value >>> 16);
+        target[offset + 2] = (byte) (value >>> 8);
+        target[offset + 3] = (byte) value;
+    }
+
+    /** Drops the oldest entries beyond the limit, sparing {@code keep}. */
+    private void trim(String keep) throws IOException {
+        Iterator<Slot> it = byPosition.values().iterator();
+        while (byKey.size() > maxEntries && it.hasNext()) {
+            Slot oldest = it.next();
+            if (oldest.key.equals(keep)) {
+                continue;
+            }
+            writeRemove(oldest.key);
+            it.remove();
+            byKey.remove(oldest.key);
+        }
+    }
+
+    private void maybeCompact() throws IOException {
+        if (records > COMPACT_MIN_RECORDS && records > 2 * byKey.size()) {
+            rewrite(false);
+        }
+    }
+
+    /**
+     * Writes the live entries to a new log and swaps it in. With
+     * {@code renumber} positions are spread out again by {@link #GAP}.
+     */
+    private void rewrite(boolean renumber) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        List<Slot> live = new ArrayList<>(byPosition.values());
+        List<Slot> moved = new ArrayList<>(live.size());
+        FileOutputStream stream = new FileOutputStream(tmp);
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream, 64 * 1024));
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            long offset = HEADER;
+            long position = 0;
+            CRC32 crc = new CRC32();
+            for (Slot slot : live) {
+                byte[] payload = new byte[slot.payloadLength];
+                raf.seek(slot.payloadOffset);
+                raf.readFully(payload);
+                long newPosition = renumber ? position : slot.position;
+                position += GAP;
+                byte[] body = body(PUT, slot.key, newPosition, slot.time, payload);
+                crc.reset();
+                crc.update(body, 0, body.length);
+                out.writeInt(body.length);
+                out.writeInt((int) crc.getValue());
+                out.write(body);
+                offset += 8 + body.length;
+                moved.add(new Slot(slot.key, newPosition, slot.time, offset - payload.length, payload.length));
+            }
+            out.flush();
+            stream.getFD().sync();
+        } finally {
+            stream.close();
+        }
+        raf.close();
+        if (!tmp.renameTo(file)) {
+            tmp.delete();
+            raf = new RandomAccessFile(file, "rw");
+            throw new IOException("Cannot rename " + tmp + " to " + file);
+        }
+        raf = new RandomAccessFile(file, "rw");
+        end = raf.length();
+        records = moved.size();
+        byKey.clear();
+        byPosition.clear();
+        for (Slot slot : moved) {
+            index(slot);
+        }
+    }
+
+    private Entry read(Slot slot) throws IOException {
+        return new Entry(slot.key, slot.position, slot.time, readPayload(slot));
+    }
+
+    private String readPayload(Slot slot) throws IOException {
+        byte[] payload = new byte[slot.payloadLength];
+        raf.seek(slot.payloadOffset);
+        raf.readFully(payload);
+        return new String(payload, StandardCharsets.UTF_8);
+    }
+}
@@ -0,0 +1,124 @@
+package my.tube.core.inject;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Decides how often the content script's DOM worker may run a batch.
+ *
+ * The worker reports the cost of its batches every few seconds and gets the
+ * next interval back. Expensive batches double the interval; consistently
+ * cheap ones shrink it by a quarter, down to the minimum, so the page stays
+ * responsive while YouTube's DOM is quiet and backs off while it is busy.
+ * An override (e.g. in battery saver) replaces the adaptive value.
+ */
+public final class DomThrottle {
+
+    /** Batch timings for one reporting window. */
+    public static final class Report {
+        public final int batches;
+        public final int mutations;
+        public final double totalMs;
+        public final double maxMs;
+
+        public Report(int batches, int mutations, double totalMs, double maxMs) {
+            this.batches = batches;
+            this.mutations = mutations;
+            this.totalMs = totalMs;
+            this.maxMs = maxMs;
+        }
+
+        public static Report fromJson(String json) throws JSONException {
+            JSONObject o = new JSONObject(json);
+            return new Report(o.optInt("batches"), o.optInt("mutations"), o.optDouble("totalMs", 0),
+                o.optDouble("maxMs", 0));
+        }
+
+        public double meanMs() {
+            return batches == 0 ? 0 : totalMs / batches;
+        }
+    }
+
+    private final long minMs;
+    private final long maxMs;
+    private final double budgetMs;
+
+    // Guarded by this
+    private long intervalMs;
+    private long overrideMs;
+    private long reports;
+    private long batches;
+    private long mutations;
+    private double totalMs;
+    private double worstMs;
+    private long backoffs;
+
+    /**
+     * @param budgetMs mean batch cost to stay under; a single batch may take twice that
+     */
+    public DomThrottle(long minMs, long maxMs, double budgetMs, long initialMs) {
+        this.minMs = minMs;
+        this.maxMs = maxMs;
+        this.budgetMs = budgetMs;
+        this.intervalMs = Math.max(minMs, Math.min(maxMs, initialMs));
+    }
+
+    /** Records {@code report} and returns the interval the worker should use next. */
+    public synchronized long onReport(Report report) {
+        reports++;
+        batches += report.batches;
+        mutations += report.mutations;
+        totalMs += report.totalMs;
+        worstMs = Math.max(worstMs, report.maxMs);
+        if (report.batches > 0) {
+            double mean = report.meanMs();
+            if (mean > budgetMs || report.maxMs > 2 * budgetMs) {
+                backoffs++;
+                intervalMs = Math.min(maxMs, intervalMs * 2);
+            } else if (mean < budgetMs / 4) {
+                intervalMs = Math.max(minMs, intervalMs - Math.max(1, intervalMs / 4));
+            }
+        }
+        return intervalMs();
+    }
+
+    /** Fixes the interval at {@code ms} until {@link #clearOverride()}. */
+    public synchronized void setOverride(long ms) {
+        overrideMs = ms;
+    }
+
+    public synchronized void clearOverride() {
+        overrideMs = 0;
+    }
+
+    /** The interval in effect: the override if set, otherwise the adaptive value. */
+    public synchronized long intervalMs() {
+        return overrideMs > 0 ? overrideMs : intervalMs;
+    }
+
+    public synchronized long reports() {
+        return reports;
+    }
+
+    public synchronized long batches() {
+        return batches;
+    }
+
+    public synchronized long mutations() {
+        return mutations;
+    }
+
+    /** Mean batch cost over every report so far. */
+    public synchronized double meanBatchMs() {
+        return batches == 0 ? 0 : totalMs / batches;
+    }
+
+    public synchronized double worstBatchMs() {
+        return worstMs;
+    }
+
+    /** Reports that made the interval grow. */
+    public synchronized long backoffs() {
+        return backoffs;
+    }
+}
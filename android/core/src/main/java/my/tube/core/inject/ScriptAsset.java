@@ -0,0 +1,91 @@
+package my.tube.core.inject;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * An immutable content script, decoded once, with a content hash as its version.
+ *
+ * {@link #injectable()} wraps the source in a guard keyed on that version, so
+ * evaluating it in a page that already runs this exact script does nothing,
+ * while a changed script (new app version) still installs.
+ */
+public final class ScriptAsset {
+
+    public static final ScriptAsset EMPTY = new ScriptAsset("", "");
+
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+    private static final int VERSION_BYTES = 6;
+
+    private final String source;
+    private final String version;
+    private final String injectable;
+
+    private ScriptAsset(String source, String version) {
+        this.source = source;
+        this.version = version;
+        this.injectable = source.isEmpty() ? "" : "if (window." + ScriptInjector.INSTALLED_FLAG + " !== '" + version
+            + "') {\nwindow." + ScriptInjector.INSTALLED_FLAG + " = '" + version + "';\n" + source + "\n}\n";
+    }
+
+    /**
+     * Reads the whole stream as UTF-8. Unlike sizing a buffer with
+     * {@code available()} and calling {@code read} once, this keeps reading
+     * until end of stream, so short reads never truncate the script.
+     */
+    public static ScriptAsset read(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(32 * 1024);
+        byte[] chunk = new byte[8192];
+        int n;
+        while ((n = in.read(chunk)) != -1) {
+            out.write(chunk, 0, n);
+        }
+        byte[] bytes = out.toByteArray();
+        return new ScriptAsset(new String(bytes, StandardCharsets.UTF_8), version(bytes));
+    }
+
+    public static ScriptAsset of(String source) {
+        return new ScriptAsset(source, version(source.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    public String source() {
+        return source;
+    }
+
+    /** Short hex digest of the script bytes. */
+    public String version() {
+        return version;
+    }
+
+    public boolean isEmpty() {
+        return source.isEmpty();
+    }
+
+    /** The source wrapped in a once-per-document guard; what actually gets injected. */
+    public String injectable() {
+        return injectable;
+    }
+
+    /** Expression that evaluates to true in a page already running this version. */
+    public String probe() {
+        return "window." + ScriptInjector.INSTALLED_FLAG + " === '" + version + "'";
+    }
+
+    private static String version(byte[] bytes) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(bytes);
+            char[] hex = new char[VERSION_BYTES * 2];
+            for (int i = 0; i < VERSION_BYTES; i++) {
+                hex[i * 2] = HEX[(digest[i] >> 4) & 0xf];
+                hex[i * 2 + 1] = HEX[digest[i] & 0xf];
+            }
+            return new String(hex);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+}
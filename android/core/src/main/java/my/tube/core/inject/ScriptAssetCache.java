@@ -0,0 +1,46 @@
+package my.tube.core.inject;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * Process-wide cache of {@link ScriptAsset}s by name. The first lookup reads
+ * and decodes the asset; activity recreation and config changes after that
+ * cost no I/O. A failed read is not cached, so the next lookup retries.
+ */
+public final class ScriptAssetCache {
+
+    /** Opens a named asset, e.g. {@code AssetManager::open}. */
+    public interface Opener {
+        InputStream open(String name) throws IOException;
+    }
+
+    private static final Map<String, ScriptAsset> CACHE = new HashMap<>();
+
+    private ScriptAssetCache() {}
+
+    public static ScriptAsset get(String name, Opener opener) throws IOException {
+        synchronized (CACHE) {
+            ScriptAsset cached = CACHE.get(name);
+            if (cached != null) {
+                return cached;
+            }
+            InputStream in = opener.open(name);
+            try {
+                ScriptAsset asset = ScriptAsset.read(in);
+                CACHE.put(name, asset);
+                return asset;
+            } finally {
+                in.close();
+            }
+        }
+    }
+
+    static void clear() {
+        synchronized (CACHE) {
+            CACHE.clear();
+        }
+    }
+}
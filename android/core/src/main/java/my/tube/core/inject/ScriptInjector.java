@@ -0,0 +1,177 @@
+package my.tube.core.inject;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import my.tube.core.Clock;
+
+/**
+ * Gets the content script into every page exactly once.
+ *
+ * Where the WebView supports document-start scripts the script is registered
+ * once per WebView for the allowed origins and runs before any page script.
+ * Otherwise it is evaluated at page start, and at page finish only if a cheap
+ * probe shows the page lost it. The injected text is
+ * {@link ScriptAsset#injectable()}, which records its version in
+ * {@link #INSTALLED_FLAG} and does nothing if that version already ran.
+ *
+ * Not thread-safe; call from the WebView's UI thread.
+ */
+public final class ScriptInjector {
+
+    /** Global holding the version of the script that ran in the document. */
+    public static final String INSTALLED_FLAG = "__mytubeInstalled";
+    private static final int TIMING_HISTORY = 16;
+
+    /** Platform side of injection, implemented over a WebView. */
+    public interface Host {
+
+        boolean supportsDocumentStart();
+
+        void addDocumentStartScript(String script, Set<String> allowedOrigins);
+
+        /** Evaluates {@code script} in the current document; {@code callback} may be null. */
+        void evaluate(String script, ValueCallback callback);
+    }
+
+    public interface ValueCallback {
+        void onResult(String value);
+    }
+
+    public enum Mode {
+        DOCUMENT_START,
+        EVALUATE
+    }
+
+    private final Host host;
+    private final ScriptAsset script;
+    private final Set<String> origins;
+    private final Clock clock;
+    private final ArrayDeque<NavigationTiming> history = new ArrayDeque<>();
+
+    private boolean installed;
+    private Mode mode;
+    private NavigationTiming current;
+    private long navigations;
+
+    public ScriptInjector(Host host, ScriptAsset script, Set<String> allowedOrigins, Clock clock) {
+        this.host = host;
+        this.script = script;
+        this.origins = Collections.unmodifiableSet(new LinkedHashSet<>(allowedOrigins));
+        this.clock = clock;
+    }
+
+    /** Registers the document-start script if supported. Safe to call more than once. */
+    public void install() {
+        if (installed || script.isEmpty()) {
+            return;
+        }
+        installed = true;
+        if (host.supportsDocumentStart()) {
+            host.addDocumentStartScript(script.injectable(), origins);
+            mode = Mode.DOCUMENT_START;
+        } else {
+            mode = Mode.EVALUATE;
+        }
+    }
+
+    public Mode mode() {
+        return mode;
+    }
+
+    public void onPageStarted(String url) {
+        install();
+        current = new NavigationTiming(++navigations, url, mode, clock.nanoTime());
+        if (mode == Mode.EVALUATE) {
+            evaluateScript(current);
+        } else if (mode == Mode.DOCUMENT_START) {
+            current.injectedNanos = current.startedNanos;
+        }
+    }
+
+    public void onPageFinished(String url) {
+        final NavigationTiming timing = current;
+        if (timing == null) {
+            return;
+        }
+        timing.finishedNanos = clock.nanoTime();
+        if (mode == Mode.EVALUATE) {
+            // The page-start evaluation can land in the outgoing document; re-inject only if it did
+            host.evaluate(script.probe(), value -> {
+                if (!"true".equals(value) && timing == current) {
+                    evaluateScript(timing);
+                }
+            });
+        }
+        record(timing);
+    }
+
+    private void evaluateScript(NavigationTiming timing) {
+        timing.evaluations++;
+        if (timing.injectedNanos == 0L) {
+            timing.injectedNanos = clock.nanoTime();
+        }
+        host.evaluate(script.injectable(), null);
+    }
+
+    private void record(NavigationTiming timing) {
+        history.remove(timing);
+        history.addLast(timing);
+        while (history.size() > TIMING_HISTORY) {
+            history.removeFirst();
+        }
+    }
+
+    /** The navigation in progress or last finished, or null before the first page. */
+    public NavigationTiming currentNavigation() {
+        return current;
+    }
+
+    /** Timings of the most recent finished navigations, oldest first. */
+    public List<NavigationTiming> recentNavigations() {
+        return new ArrayList<>(history);
+    }
+
+    /** Injection bookkeeping for one navigation. */
+    public static final class NavigationTiming {
+
+        public final long navigation;
+        public final String url;
+        public final Mode mode;
+        final long startedNanos;
+        long injectedNanos;
+        long finishedNanos;
+        int evaluations;
+
+        NavigationTiming(long navigation, String url, Mode mode, long startedNanos) {
+            this.navigation = navigation;
+            this.url = url;
+            this.mode = mode;
+            this.startedNanos = startedNanos;
+        }
+
+        /** Full-script evaluations issued for this navigation (0 with document-start scripts). */
+        public int evaluations() {
+            return evaluations;
+        }
+
+        /** Page start to script injection, or -1 if it was never injected. */
+        public long injectionDelayMicros() {
+            return injectedNanos == 0L ? -1L : (injectedNanos - startedNanos) / 1000;
+        }
+
+        /** Page start to page finished, or -1 while still loading. */
+        public long pageLoadMillis() {
+            return finishedNanos == 0L ? -1L : (finishedNanos - startedNanos) / 1_000_000;
+        }
+
+        @Override
+        public String toString() {
+            return "#" + navigation + " " + mode + " evaluations=" + evaluations
+                + " injectDelay=" + injectionDelayMicros() + "us load=" + pageLoadMillis() + "ms " + url;
+        }
+    }
+}
@@ -0,0 +1,57 @@
+package my.tube.core.io;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+/** Small key/value state files, replaced atomically so a crash never leaves half a file. */
+public final class PropertiesFile {
+
+    private PropertiesFile() {}
+
+    /** Reads {@code file}; a missing or unreadable file reads as empty. */
+    public static Properties load(File file) {
+        Properties props = new Properties();
+        if (file == null || !file.exists()) {
+            return props;
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            props.load(in);
+        } catch (IOException | IllegalArgumentException e) {
+            props.clear();
+        }
+        return props;
+    }
+
+    /** Writes {@code props} to a temporary file, syncs it and renames it over {@code file}. */
+    public static void store(Properties props, File file) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        try {
+            try (FileOutputStream out = new FileOutputStream(tmp)) {
+                props.store(out, null);
+                out.getFD().sync();
+            }
+            if (!tmp.renameTo(file)) {
+                throw new IOException("Cannot rename " + tmp + " to " + file);
+            }
+        } catch (IOException e) {
+            tmp.delete();
+            throw e;
+        }
+    }
+
+    public static long getLong(Properties props, String key, long fallback) {
+        String value = props.getProperty(key);
+        if (value == null) {
+            return fallback;
+        }
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return fallback;
+        }
+    }
+}
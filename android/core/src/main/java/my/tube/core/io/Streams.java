@@ -0,0 +1,26 @@
+package my.tube.core.io;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.nio.charset.StandardCharsets;
+
+/** Helpers for small response bodies read whole. */
+public final class Streams {
+
+    private Streams() {}
+
+    /** Reads {@code in} to the end as UTF-8 and closes it. */
+    public static String readUtf8(InputStream in) throws IOException {
+        try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            StringBuilder body = new StringBuilder();
+            char[] buffer = new char[4096];
+            int n;
+            while ((n = reader.read(buffer)) != -1) {
+                body.append(buffer, 0, n);
+            }
+            return body.toString();
+        }
+    }
+}
@@ -0,0 +1,597 @@
+package my.tube.core.json;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Streaming JSON rewriter that removes unwanted subtrees without building a tree.
+ *
+ * Input is read once and copied token by token to the output; strings,
+ * numbers and literals are copied raw, insignificant whitespace is dropped.
+ * Four kinds of edits are supported:
+ * <ul>
+ *   <li>{@link Builder#dropKeys}: object members with these names are skipped, at any depth.</li>
+ *   <li>{@link Builder#dropElementsWithKey}: array elements that are objects whose first
+ *       member has one of these names are skipped, e.g. {@code {"reelShelfRenderer":{...}}}.</li>
+ *   <li>{@link Builder#inspectElementsWithKey}: such elements are buffered (already filtered)
+ *       and an {@link ElementFilter} decides whether to keep them.</li>
+ *   <li>{@link Builder#inspectArraysOf}: the elements of an array held by a member with this
+ *       name are buffered (already filtered) and an {@link ArrayFilter} edits the list as a whole.</li>
+ * </ul>
+ * A filter is immutable and may be shared between threads, as long as its
+ * element and array filters are.
+ */
+public final class JsonFilter {
+
+    private static final int MAX_DEPTH = 512;
+
+    /** Decides whether a buffered array element is written out. */
+    public interface ElementFilter {
+        boolean keep(String firstKey, CharSequence element);
+    }
+
+    /** Edits the buffered elements of an array in place; what is left is written out in order. */
+    public interface ArrayFilter {
+        void filter(String memberName, List<String> elements);
+    }
+
+    private final KeySet dropKeys;
+    private final KeySet dropElements;
+    private final KeySet inspectElements;
+    private final Map<String, ElementFilter> inspectors;
+    private final KeySet inspectArrays;
+    private final Map<String, ArrayFilter> arrayInspectors;
+
+    private JsonFilter(Builder builder) {
+        this.dropKeys = new KeySet(builder.dropKeys);
+        this.dropElements = new KeySet(builder.dropElements);
+        this.inspectors = new HashMap<>(builder.inspectors);
+        this.inspectElements = new KeySet(inspectors.keySet());
+        this.arrayInspectors = new HashMap<>(builder.arrayInspectors);
+        this.inspectArrays = new KeySet(arrayInspectors.keySet());
+    }
+
+    public static Builder builder() {
+        return new Builder();
+    }
+
+    /** Copies one JSON value from {@code in} to {@code out}, applying the edits. Does not close either. */
+    public void filter(Reader in, Writer out) throws IOException {
+        new Run(in).copyValue(out, 0);
+    }
+
+    public static final class Builder {
+
+        private final Set<String> dropKeys = new HashSet<>();
+        private final Set<String> dropElements = new HashSet<>();
+        private final Map<String, ElementFilter> inspectors = new HashMap<>();
+        private final Map<String, ArrayFilter> arrayInspectors = new HashMap<>();
+
+        public Builder dropKeys(String... keys) {
+            for (String key : keys) {
+                dropKeys.add(key);
+            }
+            return this;
+        }
+
+        public Builder dropElementsWithKey(String... keys) {
+            for (String key : keys) {
+                dropElements.add(key);
+            }
+            return this;
+        }
+
+        public Builder inspectElementsWithKey(String key, ElementFilter filter) {
+            inspectors.put(key, filter);
+            return this;
+        }
+
+        public Builder inspectArraysOf(String memberName, ArrayFilter filter) {
+            arrayInspectors.put(memberName, filter);
+            return this;
+        }
+
+        public JsonFilter build() {
+            return new JsonFilter(this);
+        }
+    }
+
+    /** Parser state for a single pass; not shared. */
+    private final class Run {
+
+        private final Reader in;
+        private final char[] buffer = new char[8192];
+        private final StringBuilder key = new StringBuilder(64);
+        private int pos;
+        private int limit;
+        private long offset;
+
+        Run(Reader in) {
+            this.in = in;
+        }
+
+        void copyValue(Writer out, int depth) throws IOException {
+            int c = peekSignificant();
+            switch (c) {
+                case '{':
+                    read();
+                    copyObjectBody(out, depth + 1, false);
+                    break;
+                case '[':
+                    read();
+                    copyArray(out, depth + 1);
+                    break;
+                case '"':
+                    read();
+                    out.write('"');
+                    copyStringBody(out);
+                    break;
+                default:
+                    copyLiteral(out);
+            }
+        }
+
+        /**
+         * Copies the members of an object whose '{' was consumed. With
+         * {@code keyWritten}, the opening brace and first key have already been
+         * written and the next token is the ':' before that key's value.
+         */
+        private void copyObjectBody(Writer out, int depth, boolean keyWritten) throws IOException {
+            checkDepth(depth);
+            boolean wroteMember;
+            if (!keyWritten) {
+                out.write('{');
+                wroteMember = false;
+            } else {
+                expect(':');
+                copyMemberValue(out, depth);
+                wroteMember = true;
+                if (!nextMember()) {
+                    out.write('}');
+                    return;
+                }
+            }
+            if (!keyWritten && peekSignificant() == '}') {
+                read();
+                out.write('}');
+                return;
+            }
+            do {
+                readKey();
+                expect(':');
+                if (dropKeys.contains(key)) {
+                    skipValue(depth);
+                    continue;
+                }
+                if (wroteMember) {
+                    out.write(',');
+                }
+                writeKey(out);
+                copyMemberValue(out, depth);
+                wroteMember = true;
+            } while (nextMember());
+            out.write('}');
+        }
+
+        private void copyArray(Writer out, int depth) throws IOException {
+            checkDepth(depth);
+            out.write('[');
+            if (peekSignificant() == ']') {
+                read();
+                out.write(']');
+                return;
+            }
+            boolean wroteElement = false;
+            do {
+                if (peekSignificant() == '{') {
+                    read();
+                    if (copyObjectElement(out, depth + 1, wroteElement)) {
+                        wroteElement = true;
+                    }
+                } else {
+                    if (wroteElement) {
+                        out.write(',');
+                    }
+                    copyValue(out, depth);
+                    wroteElement = true;
+                }
+            } while (nextElement());
+            out.write(']');
+        }
+
+        /** Copies the value of the member whose name is in {@link #key}. */
+        private void copyMemberValue(Writer out, int depth) throws IOException {
+            ArrayFilter inspector = inspectArrays.contains(key) ? arrayInspectors.get(key.toString()) : null;
+            if (inspector != null && peekSignificant() == '[') {
+                String name = key.toString();
+                read();
+                copyInspectedArray(out, depth + 1, name, inspector);
+            } else {
+                copyValue(out, depth);
+            }
+        }
+
+        private void copyInspectedArray(Writer out, int depth, String name, ArrayFilter inspector)
+                throws IOException {
+            checkDepth(depth);
+            List<String> elements = new ArrayList<>();
+            if (peekSignificant() == ']') {
+                read();
+            } else {
+                do {
+                    StringWriter element = new StringWriter(256);
+                    if (peekSignificant() == '{') {
+                        read();
+                        if (!copyObjectElement(element, depth + 1, false)) {
+                            continue;
+                        }
+                    } else {
+                        copyValue(element, depth);
+                    }
+                    elements.add(element.toString());
+                } while (nextElement());
+            }
+            inspector.filter(name, elements);
+            out.write('[');
+            for (int i = 0; i < elements.size(); i++) {
+                if (i > 0) {
+                    out.write(',');
+                }
+                out.write(elements.get(i));
+            }
+            out.write(']');
+        }
+
+        /** Copies an object inside an array unless its first key says to drop it. */
+        private boolean copyObjectElement(Writer out, int depth, boolean needComma) throws IOException {
+            checkDepth(depth);
+            if (peekSignificant() == '}') {
+                read();
+                if (needComma) {
+                    out.write(',');
+                }
+                out.write("{}");
+                return true;
+            }
+            readKey();
+            if (dropElements.contains(key)) {
+                expect(':');
+                skipValue(depth);
+                skipRemainingMembers(depth);
+                return false;
+            }
+            if (dropKeys.contains(key)) {
+                // The first member itself is dropped; copy the rest member by member
+                expect(':');
+                skipValue(depth);
+                if (needComma) {
+                    out.write(',');
+                }
+                out.write('{');
+                boolean wrote = false;
+                while (nextMember()) {
+                    readKey();
+                    expect(':');
+                    if (dropKeys.contains(key)) {
+                        skipValue(depth);
+                        continue;
+                    }
+                    if (wrote) {
+                        out.write(',');
+                    }
+                    writeKey(out);
+                    copyMemberValue(out, depth);
+                    wrote = true;
+                }
+                out.write('}');
+                return true;
+            }
+            ElementFilter inspector = inspectElements.contains(key) ? inspectors.get(key.toString()) : null;
+            if (inspector != null) {
+                String firstKey = key.toString();
+                StringWriter element = new StringWriter(256);
+                element.write('{');
+                writeKey(element);
+                copyObjectBody(element, depth, true);
+                StringBuffer text = element.getBuffer();
+                if (!inspector.keep(firstKey, text)) {
+                    return false;
+                }
+                if (needComma) {
+                    out.write(',');
+                }
+                out.write(text.toString());
+                return true;
+            }
+            if (needComma) {
+                out.write(',');
+            }
+            out.write('{');
+            writeKey(out);
+            copyObjectBody(out, depth, true);
+            return true;
+        }
+
+        private void skipRemainingMembers(int depth) throws IOException {
+            while (nextMember()) {
+                readKey();
+                expect(':');
+                skipValue(depth);
+            }
+        }
+
+        private void skipValue(int depth) throws IOException {
+            checkDepth(depth);
+            int c = peekSignificant();
+            if (c == '{') {
+                read();
+                if (peekSignificant() == '}') {
+                    read();
+                    return;
+                }
+                do {
+                    readKey();
+                    expect(':');
+                    skipValue(depth + 1);
+                } while (nextMember());
+            } else if (c == '[') {
+                read();
+                if (peekSignificant() == ']') {
+                    read();
+                    return;
+                }
+                do {
+                    skipValue(depth + 1);
+                } while (nextElement());
+            } else if (c == '"') {
+                read();
+                skipStringBody();
+            } else {
+                copyLiteral(null);
+            }
+        }
+
+        /** Consumes ',' (returns true) or '}' (returns false) after an object member. */
+        private boolean nextMember() throws IOException {
+            int c = readSignificant();
+            if (c == ',') {
+                return true;
+            }
+            if (c == '}') {
+                return false;
+            }
+            throw error("Expected ',' or '}'");
+        }
+
+        /** Consumes ',' (returns true) or ']' (returns false) after an array element. */
+        private boolean nextElement() throws IOException {
+            int c = readSignificant();
+            if (c == ',') {
+                return true;
+            }
+            if (c == ']') {
+                return false;
+            }
+            throw error("Expected ',' or ']'");
+        }
+
+        /** Reads a member name, raw (escapes kept), into {@link #key}. */
+        private void readKey() throws IOException {
+            if (readSignificant() != '"') {
+                throw error("Expected member name");
+            }
+            key.setLength(0);
+            while (true) {
+                int c = read();
+                if (c == -1) {
+                    throw error("Unterminated string");
+                }
+                if (c == '"') {
+                    return;
+                }
+                key.append((char) c);
+                if (c == '\\') {
+                    int escaped = read();
+                    if (escaped == -1) {
+                        throw error("Unterminated string");
+                    }
+                    key.append((char) escaped);
+                }
+            }
+        }
+
+        private void writeKey(Writer out) throws IOException {
+            out.write('"');
+            out.append(key);
+            out.write("\":");
+        }
+
+        private void copyStringBody(Writer out) throws IOException {
+            while (true) {
+                int c = read();
+                if (c == -1) {
+                    throw error("Unterminated string");
+                }
+                out.write(c);
+                if (c == '"') {
+                    return;
+                }
+                if (c == '\\') {
+                    int escaped = read();
+                    if (escaped == -1) {
+                        throw error("Unterminated string");
+                    }
+                    out.write(escaped);
+                }
+            }
+        }
+
+        private void skipStringBody() throws IOException {
+            while (true) {
+                int c = read();
+                if (c == -1) {
+                    throw error("Unterminated string");
+                }
+                if (c == '"') {
+                    return;
+                }
+                if (c == '\\' && read() == -1) {
+                    throw error("Unterminated string");
+                }
+            }
+        }
+
+        /** Copies a number, true, false or null; {@code out} may be null to skip. */
+        private void copyLiteral(Writer out) throws IOException {
+            int count = 0;
+            while (true) {
+                int c = peek();
+                if (c == -1 || c == ',' || c == '}' || c == ']' || isWhitespace(c)) {
+                    break;
+                }
+                if (c == '{' || c == '[' || c == '"' || c == ':') {
+                    throw error("Unexpected '" + (char) c + "'");
+                }
+                read();
+                if (out != null) {
+                    out.write(c);
+                }
+                count++;
+            }
+            if (count == 0) {
+                throw error("Expected value");
+            }
+        }
+
+        private void expect(char expected) throws IOException {
+            if (readSignificant() != expected) {
+                throw error("Expected '" + expected + "'");
+            }
+        }
+
+        private void checkDepth(int depth) throws IOException {
+            if (depth > MAX_DEPTH) {
+                throw error("Nesting too deep");
+            }
+        }
+
+        private int peekSignificant() throws IOException {
+            while (true) {
+                int c = peek();
+                if (!isWhitespace(c)) {
+                    return c;
+                }
+                read();
+            }
+        }
+
+        private int readSignificant() throws IOException {
+            int c = peekSignificant();
+            read();
+            return c;
+        }
+
+        private int peek() throws IOException {
+            if (pos == limit && !fill()) {
+                return -1;
+            }
+            return buffer[pos];
+        }
+
+        private int read() throws IOException {
+            if (pos == limit && !fill()) {
+                return -1;
+            }
+            offset++;
+            return buffer[pos++];
+        }
+
+        private boolean fill() throws IOException {
+            int n = in.read(buffer, 0, buffer.length);
+            if (n <= 0) {
+                return false;
+            }
+            pos = 0;
+            limit = n;
+            return true;
+        }
+
+        private IOException error(String message) {
+            return new IOException(message + " at offset " + offset);
+        }
+    }
+
+    private static boolean isWhitespace(int c) {
+        return c == ' ' || c == '\n' || c == '\r' || c == '\t';
+    }
+
+    /** Small string set that can be probed with a CharSequence without allocating. */
+    static final class KeySet {
+
+        private final String[] keys;
+        private final int mask;
+
+        KeySet(Iterable<String> values) {
+            int count = 0;
+            for (String ignored : values) {
+                count++;
+            }
+            int capacity = 8;
+            while (capacity < count * 2) {
+                capacity <<= 1;
+            }
+            keys = new String[capacity];
+            mask = capacity - 1;
+            for (String value : values) {
+                int slot = hash(value) & mask;
+                while (keys[slot] != null && !keys[slot].equals(value)) {
+                    slot = (slot + 1) & mask;
+                }
+                keys[slot] = value;
+            }
+        }
+
+        boolean contains(CharSequence value) {
+            int slot = hash(value) & mask;
+            while (true) {
+                String candidate = keys[slot];
+                if (candidate == null) {
+                    return false;
+                }
+                if (contentEquals(candidate, value)) {
+                    return true;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        private static boolean contentEquals(String a, CharSequence b) {
+            int length = a.length();
+            if (length != b.length()) {
+                return false;
+            }
+            for (int i = 0; i < length; i++) {
+                if (a.charAt(i) != b.charAt(i)) {
+                    return false;
+                }
+            }
+            return true;
+        }
+
+        private static int hash(CharSequence value) {
+            int h = 0;
+            for (int i = 0; i < value.length(); i++) {
+                h = 31 * h + value.charAt(i);
+            }
+            return h ^ (h >>> 16);
+        }
+    }
+}
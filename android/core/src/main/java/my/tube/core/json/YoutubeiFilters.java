@@ -0,0 +1,78 @@
+package my.tube.core.json;
+
+/**
+ * Response rewrites for the InnerTube ("youtubei") endpoints the page calls.
+ * These mirror transformPlayerResponse/transformSearchResponse in noutube.js.
+ */
+public final class YoutubeiFilters {
+
+    private static final String[] PLAYER_AD_KEYS = {
+        "adPlacements", "playerAds", "adSlots", "adBreakHeartbeatParams"
+    };
+
+    /** Ad payloads in /youtubei/v1/player responses. */
+    public static final JsonFilter PLAYER = JsonFilter.builder()
+        .dropKeys(PLAYER_AD_KEYS)
+        .build();
+
+    /** Shorts shelves and ad slots in /youtubei/v1/search results and continuations. */
+    public static final JsonFilter SEARCH = JsonFilter.builder()
+        .dropElementsWithKey(
+            "gridShelfViewModel",
+            "reelShelfRenderer",
+            "reelItemRenderer",
+            "shortsLockupViewModel",
+            "adSlotRenderer",
+            "promotedSparklesWebRenderer")
+        .inspectElementsWithKey("videoWithContextRenderer", (key, element) -> !isShortsLink(element))
+        .build();
+
+    private static final String SHORTS_URL = "\"url\":\"/shorts/";
+
+    private YoutubeiFilters() {}
+
+    /**
+     * {@link #PLAYER} that also hands streamingData.adaptiveFormats to
+     * {@code formats}, e.g. to prune formats above a bandwidth cap. Built per
+     * response when the filter keeps per-response state.
+     */
+    public static JsonFilter player(JsonFilter.ArrayFilter formats) {
+        return JsonFilter.builder()
+            .dropKeys(PLAYER_AD_KEYS)
+            .inspectArraysOf("adaptiveFormats", formats)
+            .build();
+    }
+
+    /** Returns the filter for an InnerTube request path, or null if it is passed through untouched. */
+    public static JsonFilter forPath(String path) {
+        if (path == null) {
+            return null;
+        }
+        if (path.startsWith("/youtubei/v1/player")) {
+            return PLAYER;
+        }
+        if (path.startsWith("/youtubei/v1/search")) {
+            return SEARCH;
+        }
+        return null;
+    }
+
+    private static boolean isShortsLink(CharSequence element) {
+        int max = element.length() - SHORTS_URL.length();
+        for (int i = 0; i <= max; i++) {
+            if (element.charAt(i) == '"' && regionMatches(element, i)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private static boolean regionMatches(CharSequence text, int offset) {
+        for (int j = 0; j < SHORTS_URL.length(); j++) {
+            if (text.charAt(offset + j) != SHORTS_URL.charAt(j)) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
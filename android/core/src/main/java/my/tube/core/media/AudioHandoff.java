@@ -0,0 +1,125 @@
+package my.tube.core.media;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+import my.tube.core.Clock;
+
+/**
+ * Decides what a native audio player should pick up when the page goes to
+ * the background.
+ *
+ * The WebView's own media requests pass through {@link #onStreamRequest};
+ * audio streams seen after {@link #onVideo} are attributed to that video,
+ * keeping the most preferred itag. noutube.js reports play/pause and the
+ * position, which is extrapolated to the moment of the handoff.
+ */
+public final class AudioHandoff {
+
+    // A stream that expires this soon would fail mid-playback
+    private static final long EXPIRY_MARGIN_MS = 10 * 60 * 1000L;
+
+    /** Everything the native player needs to continue where the page was. */
+    public static final class Request {
+        public final String videoId;
+        public final String title;
+        public final String artist;
+        public final String artworkUrl;
+        public final StreamUrl stream;
+        public final long positionMs;
+
+        Request(String videoId, String title, String artist, String artworkUrl, StreamUrl stream, long positionMs) {
+            this.videoId = videoId;
+            this.title = title;
+            this.artist = artist;
+            this.artworkUrl = artworkUrl;
+            this.stream = stream;
+            this.positionMs = positionMs;
+        }
+    }
+
+    private final Clock clock;
+    private final Map<String, StreamUrl> audioByVideo;
+
+    // Guarded by this
+    private String videoId;
+    private String title;
+    private String artist;
+    private String artworkUrl;
+    private boolean playing;
+    private long positionMs;
+    private long positionAt;
+
+    public AudioHandoff(Clock clock, final int maxVideos) {
+        this.clock = clock;
+        this.audioByVideo = new LinkedHashMap<String, StreamUrl>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, StreamUrl> eldest) {
+                return size() > maxVideos;
+            }
+        };
+    }
+
+    /** Every googlevideo.com request the WebView makes; cheap for non-audio. */
+    public void onStreamRequest(String url) {
+        StreamUrl stream = StreamUrl.parse(url);
+        if (stream == null || !stream.isAudio()) {
+            return;
+        }
+        synchronized (this) {
+            if (videoId == null) {
+                return;
+            }
+            StreamUrl known = audioByVideo.get(videoId);
+            // A new stream id means the video itself changed (e.g. an ad ended), so it replaces the old one
+            if (known == null || !known.streamId.equals(stream.streamId)
+                    || stream.audioPreference() >= known.audioPreference()) {
+                audioByVideo.put(videoId, stream);
+            }
+        }
+    }
+
+    public synchronized void onVideo(String videoId, String title, String artist, String artworkUrl) {
+        if (!videoId.equals(this.videoId)) {
+            playing = false;
+            positionMs = 0;
+            positionAt = clock.currentTimeMillis();
+        }
+        this.videoId = videoId;
+        this.title = title;
+        this.artist = artist;
+        this.artworkUrl = artworkUrl;
+    }
+
+    public synchronized void onPlayState(boolean playing, long positionMs) {
+        this.playing = playing;
+        this.positionMs = positionMs;
+        this.positionAt = clock.currentTimeMillis();
+    }
+
+    public synchronized boolean isPlaying() {
+        return playing;
+    }
+
+    /** The video the page shows, or null before the first. */
+    public synchronized String videoId() {
+        return videoId;
+    }
+
+    /** Where the page's video is now, extrapolated from the last report while playing. */
+    public synchronized long positionMs() {
+        return playing ? positionMs + (clock.currentTimeMillis() - positionAt) : positionMs;
+    }
+
+    /** The audio to continue with, or null unless the page is playing a video with a usable stream. */
+    public synchronized Request handoffRequest() {
+        if (!playing || videoId == null) {
+            return null;
+        }
+        StreamUrl stream = audioByVideo.get(videoId);
+        long now = clock.currentTimeMillis();
+        if (stream == null || stream.expiresWithin(now, EXPIRY_MARGIN_MS)) {
+            return null;
+        }
+        return new Request(videoId, title, artist, artworkUrl, stream, positionMs + (now - positionAt));
+    }
+}
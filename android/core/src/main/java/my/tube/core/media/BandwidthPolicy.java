@@ -0,0 +1,98 @@
+package my.tube.core.media;
+
+/**
+ * The highest stream quality worth offering the player on the current
+ * connection. The player's own adaptation picks by throughput alone, so on a
+ * fast but metered link it happily streams 1080p; the cap takes those
+ * formats out of the player response before it ever sees them.
+ *
+ * Caps combine: a slow metered cellular link gets the tightest of the three.
+ */
+public final class BandwidthPolicy {
+
+    /** The connection as ConnectivityManager describes it. */
+    public static final class Network {
+        public final boolean metered;
+        public final boolean cellular;
+        /** Downstream estimate in kbps, or 0 if there is none. */
+        public final int downKbps;
+
+        public Network(boolean metered, boolean cellular, int downKbps) {
+            this.metered = metered;
+            this.cellular = cellular;
+            this.downKbps = downKbps;
+        }
+    }
+
+    /**
+     * Largest video height and bitrate (bits per second) to keep. The height
+     * is the short side, so a portrait 480p video (480x854) fits a 480 cap.
+     */
+    public static final class Cap {
+        public static final Cap NONE = new Cap(Integer.MAX_VALUE, Long.MAX_VALUE);
+
+        public final int maxHeight;
+        public final long maxBitrate;
+
+        public Cap(int maxHeight, long maxBitrate) {
+            this.maxHeight = maxHeight;
+            this.maxBitrate = maxBitrate;
+        }
+
+        public boolean isNone() {
+            return maxHeight == Integer.MAX_VALUE && maxBitrate == Long.MAX_VALUE;
+        }
+
+        public boolean allows(int height, long bitrate) {
+            return height <= maxHeight && bitrate <= maxBitrate;
+        }
+
+        /** The stricter of both limits. */
+        public Cap and(Cap other) {
+            if (other.isNone()) {
+                return this;
+            }
+            return new Cap(Math.min(maxHeight, other.maxHeight), Math.min(maxBitrate, other.maxBitrate));
+        }
+
+        @Override
+        public String toString() {
+            return isNone() ? "none" : maxHeight + "p/" + maxBitrate / 1000 + "kbps";
+        }
+    }
+
+    // A metered Wi-Fi is usually a phone hotspot; cellular is metered too, so gets both
+    public static final Cap METERED = new Cap(720, 3_000_000);
+    public static final Cap CELLULAR = new Cap(480, 1_500_000);
+    public static final Cap SLOW = new Cap(360, 800_000);
+    public static final int SLOW_KBPS = 2_000;
+
+    public static final BandwidthPolicy DEFAULT = new BandwidthPolicy(METERED, CELLULAR, SLOW_KBPS, SLOW);
+
+    private final Cap metered;
+    private final Cap cellular;
+    private final int slowKbps;
+    private final Cap slow;
+
+    /** {@code slow} applies when the downstream estimate is known and below {@code slowKbps}. */
+    public BandwidthPolicy(Cap metered, Cap cellular, int slowKbps, Cap slow) {
+        this.metered = metered;
+        this.cellular = cellular;
+        this.slowKbps = slowKbps;
+        this.slow = slow;
+    }
+
+    public Cap capFor(Network network) {
+        Cap cap = Cap.NONE;
+        if (network.metered) {
+            cap = cap.and(metered);
+        }
+        if (network.cellular) {
+            cap = cap.and(cellular);
+        }
+        if (network.downKbps > 0 && network.downKbps < slowKbps) {
+            cap = cap.and(slow);
+        }
+        return cap;
+    }
+}
@@ -0,0 +1,185 @@
+package my.tube.core.media;
+
+import java.util.Iterator;
+import java.util.List;
+import my.tube.core.json.JsonFilter;
+import my.tube.core.metrics.MetricsRegistry;
+import my.tube.core.metrics.StripedCounter;
+
+/**
+ * Removes video entries above a {@link BandwidthPolicy.Cap} from a player
+ * response's adaptiveFormats, for use with
+ * {@link my.tube.core.json.YoutubeiFilters#player}. Audio is left alone, and
+ * if every video format is over the cap the smallest one stays so the video
+ * still plays. Sizes compare on the short side, as quality labels do: a 720p
+ * Short is 720x1280.
+ *
+ * Bytes saved are estimated per response as the size of the largest video
+ * stream minus the largest one kept: what the player would fetch at the top
+ * rung against what it can fetch now. One instance per response.
+ */
+public final class FormatPruner implements JsonFilter.ArrayFilter {
+
+    private final BandwidthPolicy.Cap cap;
+    private final StripedCounter capped;
+    private final StripedCounter prunedTotal;
+    private final StripedCounter bytesSavedTotal;
+    private int pruned;
+    private long bytesSaved;
+
+    public FormatPruner(BandwidthPolicy.Cap cap, MetricsRegistry metrics) {
+        this.cap = cap;
+        this.capped = metrics.counter("bandwidth.capped");
+        this.prunedTotal = metrics.counter("bandwidth.formatsPruned");
+        this.bytesSavedTotal = metrics.counter("bandwidth.bytesSaved");
+    }
+
+    @Override
+    public void filter(String memberName, List<String> elements) {
+        int minSize = Integer.MAX_VALUE;
+        long largest = 0;
+        long largestKept = 0;
+        boolean keptVideo = false;
+        for (String element : elements) {
+            if (!isVideo(element)) {
+                continue;
+            }
+            int size = shortSide(element);
+            long length = number(element, "contentLength");
+            largest = Math.max(largest, length);
+            if (cap.allows(size, number(element, "bitrate"))) {
+                keptVideo = true;
+                largestKept = Math.max(largestKept, length);
+            }
+            minSize = Math.min(minSize, size);
+        }
+        int removed = 0;
+        Iterator<String> it = elements.iterator();
+        while (it.hasNext()) {
+            String element = it.next();
+            if (!isVideo(element)) {
+                continue;
+            }
+            int size = shortSide(element);
+            boolean keep = keptVideo ? cap.allows(size, number(element, "bitrate")) : size == minSize;
+            if (!keep) {
+                it.remove();
+                removed++;
+            } else if (!keptVideo) {
+                largestKept = Math.max(largestKept, number(element, "contentLength"));
+            }
+        }
+        if (removed > 0) {
+            pruned += removed;
+            bytesSaved += largest - largestKept;
+            capped.increment();
+            prunedTotal.add(removed);
+            bytesSavedTotal.add(largest - largestKept);
+        }
+    }
+
+    /** Formats removed so far from this response. */
+    public int pruned() {
+        return pruned;
+    }
+
+    public long bytesSaved() {
+        return bytesSaved;
+    }
+
+    private static boolean isVideo(String element) {
+        String mimeType = member(element, "mimeType");
+        return mimeType != null && mimeType.startsWith("\"video/");
+    }
+
+    /** The smaller of width and height, or the height if there is no width. */
+    static int shortSide(String element) {
+        int height = (int) number(element, "height");
+        int width = (int) number(element, "width");
+        return width > 0 ? Math.min(width, height) : height;
+    }
+
+    /** A numeric member, bare or quoted as contentLength is; 0 if missing or malformed. */
+    static long number(String element, String name) {
+        String raw = member(element, name);
+        if (raw == null) {
+            return 0;
+        }
+        int start = raw.startsWith("\"") ? 1 : 0;
+        int end = raw.length() - start;
+        long value = 0;
+        for (int i = start; i < end; i++) {
+            char c = raw.charAt(i);
+            if (c < '0' || c > '9' || value > Long.MAX_VALUE / 10 - 1) {
+                return 0;
+            }
+            value = value * 10 + (c - '0');
+        }
+        return value;
+    }
+
+    /**
+     * The raw text of a top-level member of a compact JSON object, as
+     * {@link JsonFilter} writes it, or null. Nested objects are skipped.
+     */
+    static String member(String json, String name) {
+        int depth = 0;
+        int length = json.length();
+        for (int i = 0; i < length; i++) {
+            char c = json.charAt(i);
+            if (c == '"') {
+                int end = endOfString(json, i);
+                if (depth == 1 && end + 1 < length && json.charAt(end + 1) == ':'
+                        && end - i - 1 == name.length() && json.startsWith(name, i + 1)) {
+                    return value(json, end + 2);
+                }
+                i = end;
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                depth--;
+            }
+        }
+        return null;
+    }
+
+    private static String value(String json, int start) {
+        int depth = 0;
+        int i = start;
+        for (; i < json.length(); i++) {
+            char c = json.charAt(i);
+            if (c == '"') {
+                i = endOfString(json, i);
+                if (depth == 0) {
+                    return json.substring(start, i + 1);
+                }
+            } else if (c == '{' || c == '[') {
+                depth++;
+            } else if (c == '}' || c == ']') {
+                if (depth == 0) {
+                    break;
+                }
+                depth--;
+                if (depth == 0) {
+                    return json.substring(start, i + 1);
+                }
+            } else if (c == ',' && depth == 0) {
+                break;
+            }
+        }
+        return json.substring(start, i);
+    }
+
+    /** Index of the quote closing the string that opens at {@code open}. */
+    private static int endOfString(String json, int open) {
+        for (int i = open + 1; i < json.length(); i++) {
+            char c = json.charAt(i);
+            if (c == '\\') {
+                i++;
+            } else if (c == '"') {
+                return i;
+            }
+        }
+        return json.length() - 1;
+    }
+}
@@ -0,0 +1,146 @@
+package my.tube.core.media;
+
+import java.io.UnsupportedEncodingException;
+import java.net.URLDecoder;
+
+/**
+ * A googlevideo.com {@code /videoplayback} URL the WebView's player has
+ * already resolved: signature and throttling parameters are in place, so it
+ * can be fetched as is by another player on the same device.
+ *
+ * Only progressive adaptive streams are recognised. Live segments and
+ * SABR requests have no fixed itag and byte range to replay.
+ */
+public final class StreamUrl {
+
+    // Per-request parameters the page adds to fetch one chunk
+    private static final String[] CHUNK_PARAMS = {"range", "rn", "rbuf", "alr", "ump", "srfvp"};
+
+    // Audio itags from most to least preferred: Opus 160k, AAC 128k, Opus 70k, Opus 50k, AAC 48k
+    private static final int[] AUDIO_PREFERENCE = {251, 140, 250, 249, 139};
+
+    public final String url;
+    public final String streamId;
+    public final int itag;
+    public final String mimeType;
+    /** Expiry in epoch seconds, or 0 if the URL has none. */
+    public final long expiresAt;
+
+    private StreamUrl(String url, String streamId, int itag, String mimeType, long expiresAt) {
+        this.url = url;
+        this.streamId = streamId;
+        this.itag = itag;
+        this.mimeType = mimeType;
+        this.expiresAt = expiresAt;
+    }
+
+    public static boolean isStreamHost(String host) {
+        return host != null && host.endsWith(".googlevideo.com");
+    }
+
+    /** Null unless {@code url} is a progressive videoplayback URL. */
+    public static StreamUrl parse(String url) {
+        int question = url.indexOf('?');
+        if (question < 0 || !url.substring(0, question).endsWith("/videoplayback")) {
+            return null;
+        }
+        String base = url.substring(0, question);
+        String streamId = null;
+        String mime = null;
+        int itag = -1;
+        long expire = 0;
+        StringBuilder kept = new StringBuilder(url.length());
+        for (String pair : url.substring(question + 1).split("&")) {
+            int eq = pair.indexOf('=');
+            String name = eq >= 0 ? pair.substring(0, eq) : pair;
+            String value = eq >= 0 ? pair.substring(eq + 1) : "";
+            switch (name) {
+                case "id":
+                    streamId = value;
+                    break;
+                case "itag":
+                    itag = parseInt(value);
+                    break;
+                case "mime":
+                    mime = decode(value);
+                    break;
+                case "expire":
+                    expire = parseLong(value);
+                    break;
+                case "sq":
+                case "live":
+                case "sabr":
+                    return null;
+                default:
+                    break;
+            }
+            if (!isChunkParam(name)) {
+                kept.append(kept.length() == 0 ? '?' : '&').append(pair);
+            }
+        }
+        if (streamId == null || itag < 0 || mime == null) {
+            return null;
+        }
+        return new StreamUrl(base + kept, streamId, itag, mime, expire);
+    }
+
+    private static boolean isChunkParam(String name) {
+        for (String param : CHUNK_PARAMS) {
+            if (param.equals(name)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    public boolean isAudio() {
+        return mimeType.startsWith("audio/");
+    }
+
+    /** Higher is better; 0 for itags outside the known audio set. */
+    public int audioPreference() {
+        for (int i = 0; i < AUDIO_PREFERENCE.length; i++) {
+            if (AUDIO_PREFERENCE[i] == itag) {
+                return AUDIO_PREFERENCE.length - i;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Stable across re-signed URLs for the same stream, so a chunk cache
+     * keyed on it survives the URL expiring.
+     */
+    public String cacheKey() {
+        return streamId + "-" + itag;
+    }
+
+    /** Whether the URL expires within {@code marginMs} of {@code nowMs}. */
+    public boolean expiresWithin(long nowMs, long marginMs) {
+        return expiresAt > 0 && expiresAt * 1000 - nowMs < marginMs;
+    }
+
+    private static int parseInt(String value) {
+        try {
+            return Integer.parseInt(value);
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return Long.parseLong(value);
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+
+    private static String decode(String value) {
+        try {
+            return URLDecoder.decode(value, "UTF-8");
+        } catch (UnsupportedEncodingException | IllegalArgumentException e) {
+            return value;
+        }
+    }
+}
@@ -0,0 +1,25 @@
+package my.tube.core.media;
+
+/** YouTube video ids: 11 characters of [A-Za-z0-9_-]. */
+public final class VideoId {
+
+    public static final int LENGTH = 11;
+
+    private VideoId() {}
+
+    /** True for a well-formed id; anything else never reaches a URL or file name. */
+    public static boolean isValid(String id) {
+        if (id == null || id.length() != LENGTH) {
+            return false;
+        }
+        for (int i = 0; i < LENGTH; i++) {
+            char c = id.charAt(i);
+            boolean ok = (c >= 'a' && c <= 'z') || (c >= 'A' && c <= 'Z') || (c >= '0' && c <= '9')
+                || c == '_' || c == '-';
+            if (!ok) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
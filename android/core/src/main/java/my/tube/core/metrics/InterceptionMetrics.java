@@ -0,0 +1,133 @@
+package my.tube.core.metrics;
+
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * What the WebView's request interception and navigation checks decided, and
+ * how long deciding took.
+ *
+ * Decision latency covers only the blocklist and rule lookups, not the
+ * proxied network round trip, which has its own histogram. All methods are
+ * safe to call from the WebView's IO threads.
+ */
+public final class InterceptionMetrics {
+
+    public enum Decision {
+        ALLOWED,
+        BLOCKED_HOST,
+        BLOCKED_RULE,
+        PROXIED
+    }
+
+    private static final int MAX_HOSTS = 256;
+    private static final int MAX_RULES = 256;
+
+    private final MetricsRegistry registry;
+    private final StripedCounter requests;
+    private final StripedCounter[] byDecision = new StripedCounter[Decision.values().length];
+    private final KeyedCounter hosts;
+    private final KeyedCounter blockedHosts;
+    private final KeyedCounter rules;
+    private final LatencyHistogram decisionLatency;
+    private final StripedCounter navigationsInApp;
+    private final StripedCounter navigationsExternal;
+    private final LatencyHistogram navigationLatency;
+    private final StripedCounter proxyCharsIn;
+    private final StripedCounter proxyCharsSaved;
+    private final LatencyHistogram proxyLatency;
+    private final StripedCounter proxyFilterFailures;
+
+    public InterceptionMetrics(MetricsRegistry registry) {
+        this.registry = registry;
+        this.requests = registry.counter("requests");
+        for (Decision decision : Decision.values()) {
+            byDecision[decision.ordinal()] = registry.counter("requests." + decision.name().toLowerCase(Locale.ROOT));
+        }
+        this.hosts = registry.keyed("requests.hosts", MAX_HOSTS);
+        this.blockedHosts = registry.keyed("blocked.hosts", MAX_HOSTS);
+        this.rules = registry.keyed("blocked.rules", MAX_RULES);
+        this.decisionLatency = registry.histogram("requests.decision");
+        this.navigationsInApp = registry.counter("navigations.inApp");
+        this.navigationsExternal = registry.counter("navigations.external");
+        this.navigationLatency = registry.histogram("navigations.decision");
+        this.proxyCharsIn = registry.counter("proxy.charsIn");
+        this.proxyCharsSaved = registry.counter("proxy.charsSaved");
+        this.proxyLatency = registry.histogram("proxy.response");
+        this.proxyFilterFailures = registry.counter("proxy.filterFailed");
+    }
+
+    public MetricsRegistry registry() {
+        return registry;
+    }
+
+    /**
+     * @param rule the rule that blocked the request, or null
+     * @param decisionNanos time spent deciding, excluding any proxied fetch
+     */
+    public void onRequest(String host, Decision decision, String rule, long decisionNanos) {
+        requests.increment();
+        byDecision[decision.ordinal()].increment();
+        hosts.increment(host);
+        if (decision == Decision.BLOCKED_HOST) {
+            blockedHosts.increment(host);
+        } else if (decision == Decision.BLOCKED_RULE) {
+            blockedHosts.increment(host);
+            rules.increment(rule);
+        }
+        decisionLatency.record(decisionNanos);
+    }
+
+    public void onNavigation(boolean inApp, long decisionNanos) {
+        (inApp ? navigationsInApp : navigationsExternal).increment();
+        navigationLatency.record(decisionNanos);
+    }
+
+    /** A proxied response finished filtering: chars read from the network and written to the page. */
+    public void onProxied(long charsIn, long charsOut, long totalNanos) {
+        proxyCharsIn.add(charsIn);
+        proxyCharsSaved.add(Math.max(0, charsIn - charsOut));
+        proxyLatency.record(totalNanos);
+    }
+
+    /** A proxied response the filter could not handle; the page got it unfiltered. */
+    public void onProxyFilterFailed() {
+        proxyFilterFailures.increment();
+    }
+
+    public long requests() {
+        return requests.sum();
+    }
+
+    public long count(Decision decision) {
+        return byDecision[decision.ordinal()].sum();
+    }
+
+    /** A few lines for the debug overlay. */
+    public String summary() {
+        LatencyHistogram.Snapshot decisions = decisionLatency.snapshot();
+        LatencyHistogram.Snapshot proxied = proxyLatency.snapshot();
+        StringBuilder sb = new StringBuilder();
+        sb.append(String.format(Locale.ROOT, "req %d  allow %d  block %d/%d (host/rule)  proxy %d%n",
+            requests(), count(Decision.ALLOWED), count(Decision.BLOCKED_HOST), count(Decision.BLOCKED_RULE),
+            count(Decision.PROXIED)));
+        sb.append(String.format(Locale.ROOT, "decide p50 %s  p99 %s  max %s%n",
+            micros(decisions.valueAtPercentile(50)), micros(decisions.valueAtPercentile(99)),
+            micros(decisions.maxNanos())));
+        sb.append(String.format(Locale.ROOT, "proxy p50 %s  saved %d KB of %d KB  failed %d%n",
+            micros(proxied.valueAtPercentile(50)), proxyCharsSaved.sum() / 1024, proxyCharsIn.sum() / 1024,
+            proxyFilterFailures.sum()));
+        sb.append("top blocked:");
+        for (Map.Entry<String, Long> e : blockedHosts.top(3).entrySet()) {
+            sb.append(' ').append(e.getKey()).append('=').append(e.getValue());
+        }
+        return sb.toString();
+    }
+
+    private static String micros(long nanos) {
+        if (nanos >= 1_000_000) {
+            return String.format(Locale.ROOT, "%.1fms", nanos / 1e6);
+        }
+        return String.format(Locale.ROOT, "%.1fus", nanos / 1e3);
+    }
+}
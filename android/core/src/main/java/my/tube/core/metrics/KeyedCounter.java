@@ -0,0 +1,80 @@
+package my.tube.core.metrics;
+
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Counts per key (host, rule) with a cap on distinct keys.
+ *
+ * Once {@code maxKeys} keys exist, new keys are counted under
+ * {@link #OTHER}, so a page that requests thousands of hosts cannot grow the
+ * map without bound.
+ */
+public final class KeyedCounter {
+
+    public static final String OTHER = "(other)";
+
+    private final int maxKeys;
+    private final ConcurrentHashMap<String, AtomicLong> counts = new ConcurrentHashMap<>();
+
+    public KeyedCounter(int maxKeys) {
+        this.maxKeys = maxKeys;
+    }
+
+    public void increment(String key) {
+        add(key, 1L);
+    }
+
+    public void add(String key, long delta) {
+        counter(key != null ? key : OTHER).addAndGet(delta);
+    }
+
+    private AtomicLong counter(String key) {
+        AtomicLong counter = counts.get(key);
+        if (counter != null) {
+            return counter;
+        }
+        if (counts.size() >= maxKeys) {
+            key = OTHER;
+        }
+        AtomicLong created = new AtomicLong();
+        AtomicLong raced = counts.putIfAbsent(key, created);
+        return raced != null ? raced : created;
+    }
+
+    public long get(String key) {
+        AtomicLong counter = counts.get(key);
+        return counter != null ? counter.get() : 0L;
+    }
+
+    /** The {@code n} largest counts, largest first. */
+    public Map<String, Long> top(int n) {
+        List<Map.Entry<String, Long>> entries = new ArrayList<>();
+        for (Map.Entry<String, AtomicLong> entry : counts.entrySet()) {
+            entries.add(new AbstractMap.SimpleImmutableEntry<>(entry.getKey(), entry.getValue().get()));
+        }
+        Collections.sort(entries, new Comparator<Map.Entry<String, Long>>() {
+            @Override
+            public int compare(Map.Entry<String, Long> a, Map.Entry<String, Long> b) {
+                int byCount = Long.compare(b.getValue(), a.getValue());
+                return byCount != 0 ? byCount : a.getKey().compareTo(b.getKey());
+            }
+        });
+        Map<String, Long> top = new LinkedHashMap<>();
+        for (int i = 0; i < entries.size() && i < n; i++) {
+            top.put(entries.get(i).getKey(), entries.get(i).getValue());
+        }
+        return top;
+    }
+
+    public int size() {
+        return counts.size();
+    }
+}
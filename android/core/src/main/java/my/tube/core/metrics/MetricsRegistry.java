@@ -0,0 +1,108 @@
+package my.tube.core.metrics;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Named counters, keyed counters and latency histograms.
+ *
+ * Lookups create on first use and return the same instance afterwards, so
+ * hot paths should look their metrics up once and keep the reference.
+ * Recording never locks; {@link #toJson} reads whatever has been recorded.
+ */
+public final class MetricsRegistry {
+
+    private static final long MAX_LATENCY_NANOS = TimeUnit.MINUTES.toNanos(1);
+    private static final int DEFAULT_TOP_KEYS = 20;
+
+    private final ConcurrentHashMap<String, StripedCounter> counters = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, KeyedCounter> keyed = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, LatencyHistogram> histograms = new ConcurrentHashMap<>();
+
+    public StripedCounter counter(String name) {
+        StripedCounter counter = counters.get(name);
+        if (counter == null) {
+            StripedCounter created = new StripedCounter();
+            counter = counters.putIfAbsent(name, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        return counter;
+    }
+
+    public KeyedCounter keyed(String name, int maxKeys) {
+        KeyedCounter counter = keyed.get(name);
+        if (counter == null) {
+            KeyedCounter created = new KeyedCounter(maxKeys);
+            counter = keyed.putIfAbsent(name, created);
+            if (counter == null) {
+                counter = created;
+            }
+        }
+        return counter;
+    }
+
+    /** Histogram of nanosecond latencies up to a minute. */
+    public LatencyHistogram histogram(String name) {
+        LatencyHistogram histogram = histograms.get(name);
+        if (histogram == null) {
+            LatencyHistogram created = new LatencyHistogram(MAX_LATENCY_NANOS);
+            histogram = histograms.putIfAbsent(name, created);
+            if (histogram == null) {
+                histogram = created;
+            }
+        }
+        return histogram;
+    }
+
+    public JSONObject toJson() throws JSONException {
+        return toJson(DEFAULT_TOP_KEYS);
+    }
+
+    /**
+     * Everything recorded so far; keyed counters are cut to their
+     * {@code topKeys} largest entries.
+     */
+    public JSONObject toJson(int topKeys) throws JSONException {
+        JSONObject json = new JSONObject();
+        JSONObject counterJson = new JSONObject();
+        for (Map.Entry<String, StripedCounter> e : new TreeMap<>(counters).entrySet()) {
+            counterJson.put(e.getKey(), e.getValue().sum());
+        }
+        json.put("counters", counterJson);
+
+        JSONObject keyedJson = new JSONObject();
+        for (Map.Entry<String, KeyedCounter> e : new TreeMap<>(keyed).entrySet()) {
+            JSONObject top = new JSONObject();
+            for (Map.Entry<String, Long> entry : e.getValue().top(topKeys).entrySet()) {
+                top.put(entry.getKey(), entry.getValue().longValue());
+            }
+            keyedJson.put(e.getKey(), top);
+        }
+        json.put("keyed", keyedJson);
+
+        JSONObject histogramJson = new JSONObject();
+        for (Map.Entry<String, LatencyHistogram> e : new TreeMap<>(histograms).entrySet()) {
+            histogramJson.put(e.getKey(), toJson(e.getValue().snapshot()));
+        }
+        json.put("histograms", histogramJson);
+        return json;
+    }
+
+    private static JSONObject toJson(LatencyHistogram.Snapshot snapshot) throws JSONException {
+        JSONObject json = new JSONObject();
+        json.put("count", snapshot.count());
+        json.put("meanNanos", Math.round(snapshot.meanNanos()));
+        json.put("p50Nanos", snapshot.valueAtPercentile(50));
+        json.put("p90Nanos", snapshot.valueAtPercentile(90));
+        json.put("p99Nanos", snapshot.valueAtPercentile(99));
+        json.put("p999Nanos", snapshot.valueAtPercentile(99.9));
+        json.put("maxNanos", snapshot.maxNanos());
+        return json;
+    }
+}
@@ -0,0 +1,57 @@
+package my.tube.core.metrics;
+
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * A sum that many threads can add to without contending on one word.
+ *
+ * Each thread adds to a cell picked from its id; the cells sit a cache line
+ * apart so threads on different cores do not false-share. Reads add the cells
+ * up and are not atomic with concurrent adds. Stands in for LongAdder, which
+ * Android only has from API 24.
+ */
+public final class StripedCounter {
+
+    // Longs per 64-byte cache line
+    private static final int PAD = 8;
+    private static final int MAX_STRIPES = 64;
+
+    private final AtomicLongArray cells;
+    private final int mask;
+
+    public StripedCounter() {
+        this(Runtime.getRuntime().availableProcessors());
+    }
+
+    StripedCounter(int parallelism) {
+        int stripes = 1;
+        while (stripes < parallelism && stripes < MAX_STRIPES) {
+            stripes <<= 1;
+        }
+        this.cells = new AtomicLongArray(stripes * PAD);
+        this.mask = stripes - 1;
+    }
+
+    public void increment() {
+        add(1L);
+    }
+
+    public void add(long delta) {
+        cells.getAndAdd(cell(), delta);
+    }
+
+    public long sum() {
+        long sum = 0L;
+        for (int i = 0; i <= mask; i++) {
+            sum += cells.get(i * PAD);
+        }
+        return sum;
+    }
+
+    private int cell() {
+        long id = Thread.currentThread().getId();
+        // Fibonacci hashing spreads consecutive thread ids across the stripes
+        int h = (int) ((id * 0x9E3779B97F4A7C15L) >>> 40);
+        return (h & mask) * PAD;
+    }
+}
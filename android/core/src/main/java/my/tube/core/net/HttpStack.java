@@ -0,0 +1,322 @@
+package my.tube.core.net;
+
+import java.io.ByteArrayInputStream;
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.HttpURLConnection;
+import java.net.SocketTimeoutException;
+import java.net.URL;
+import java.util.ArrayDeque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.GZIPInputStream;
+import my.tube.core.Clock;
+import my.tube.core.metrics.KeyedCounter;
+import my.tube.core.metrics.MetricsRegistry;
+import my.tube.core.metrics.StripedCounter;
+
+/**
+ * The one way native code makes HTTP requests, so every feature shares the
+ * same connection pool instead of tearing its connections down.
+ *
+ * Connections come from an {@link Opener}: the platform's HttpURLConnection
+ * (pooled, gzip) by default, or on newer devices an engine with HTTP/2,
+ * QUIC and brotli behind the same interface. Either way a connection only
+ * goes back to the pool if its body is read to the end and closed; calling
+ * {@code disconnect()} closes the socket. {@link Call#close} does the right
+ * thing: it drains a short remainder and closes, and disconnects only when
+ * the rest is too long to be worth reading.
+ *
+ * Each feature gets a {@link Client} with its own timeout budget and
+ * per-host counters. The budget covers connecting and the response headers,
+ * and the body when it is read with {@link Call#body}; a body handed to a
+ * consumer that reads at its own pace, such as the WebView, comes from
+ * {@link Call#stream} and only times out when a read stalls that long. The
+ * counters are {@code http.<component>.fresh} and
+ * {@code http.<component>.reused}. The pool does not say which connection it
+ * handed out, so reuse is counted from the stack's own bookkeeping: a call
+ * counts as reused when an earlier call to the same origin released a
+ * reusable connection less than {@code keepAliveMs} ago.
+ */
+public final class HttpStack {
+
+    /** Opens, but does not connect, a connection for {@code url}. */
+    public interface Opener {
+        HttpURLConnection open(URL url) throws IOException;
+    }
+
+    public static final Opener PLATFORM = new Opener() {
+        @Override
+        public HttpURLConnection open(URL url) throws IOException {
+            return (HttpURLConnection) url.openConnection();
+        }
+    };
+
+    // A remainder this short is cheaper to read than a new handshake
+    private static final int MAX_DRAIN_BYTES = 16 * 1024;
+    // Platform pools keep about five idle connections per address
+    private static final int MAX_IDLE_PER_ORIGIN = 5;
+    private static final int MAX_HOSTS = 32;
+
+    private final Opener opener;
+    private final MetricsRegistry metrics;
+    private final Clock clock;
+    private final long keepAliveMs;
+    // Origin -> when each reusable connection was released, oldest first; guarded by itself
+    private final Map<String, ArrayDeque<Long>> idle = new HashMap<>();
+
+    public HttpStack(Opener opener, MetricsRegistry metrics, Clock clock, long keepAliveMs) {
+        this.opener = opener;
+        this.metrics = metrics;
+        this.clock = clock;
+        this.keepAliveMs = keepAliveMs;
+    }
+
+    /** Requests for one feature, e.g. "sponsorblock", with {@code timeoutMs} per call by default. */
+    public Client client(String component, int timeoutMs) {
+        return new Client(component, timeoutMs);
+    }
+
+    public final class Client {
+
+        private final int timeoutMs;
+        private final KeyedCounter fresh;
+        private final KeyedCounter reused;
+        private final StripedCounter budgetExceeded;
+
+        Client(String component, int timeoutMs) {
+            this.timeoutMs = timeoutMs;
+            this.fresh = metrics.keyed("http." + component + ".fresh", MAX_HOSTS);
+            this.reused = metrics.keyed("http." + component + ".reused", MAX_HOSTS);
+            this.budgetExceeded = metrics.counter("http." + component + ".budgetExceeded");
+        }
+
+        public int timeoutMs() {
+            return timeoutMs;
+        }
+
+        public Call open(String url) throws IOException {
+            return open(url, timeoutMs);
+        }
+
+        /**
+         * A call whose response headers, and body if read with
+         * {@link Call#body}, must arrive within {@code budgetMs}. Set the
+         * method and headers on {@link Call#connection} before asking for
+         * the response.
+         */
+        public Call open(String url, int budgetMs) throws IOException {
+            URL target = new URL(url);
+            HttpURLConnection conn = opener.open(target);
+            conn.setConnectTimeout(budgetMs);
+            conn.setReadTimeout(budgetMs);
+            String origin = target.getProtocol() + "://" + target.getHost() + ":"
+                + (target.getPort() != -1 ? target.getPort() : target.getDefaultPort());
+            (takeIdle(origin) ? reused : fresh).increment(target.getHost());
+            return new Call(this, conn, origin, clock.nanoTime() + budgetMs * 1_000_000L);
+        }
+    }
+
+    /** One request and response. Close it, even after an error, to give the connection back. */
+    public final class Call implements Closeable {
+
+        public final HttpURLConnection connection;
+        private final Client client;
+        private final String origin;
+        private final long deadline;
+        private BodyStream body;
+        private boolean responded;
+        private boolean overBudget;
+        private boolean closed;
+
+        Call(Client client, HttpURLConnection connection, String origin, long deadline) {
+            this.client = client;
+            this.connection = connection;
+            this.origin = origin;
+            this.deadline = deadline;
+        }
+
+        /** Sends the request if needed and returns the status code. */
+        public int code() throws IOException {
+            checkBudget();
+            int code = connection.getResponseCode();
+            responded = true;
+            return code;
+        }
+
+        /**
+         * The response body, decoded if the server gzipped it, and held to the
+         * call's budget. For an error status it is the error body, possibly empty.
+         */
+        public InputStream body() throws IOException {
+            return body(true);
+        }
+
+        /**
+         * The response body for a consumer that reads at its own pace: only
+         * each read is held to the timeout, so a large file on a slow link
+         * is not cut off halfway. Use instead of {@link #body}, not as well.
+         */
+        public InputStream stream() throws IOException {
+            return body(false);
+        }
+
+        private InputStream body(boolean budgeted) throws IOException {
+            if (body == null) {
+                // Error statuses have their body on the error stream, if they have one
+                InputStream in = code() >= 400 ? connection.getErrorStream() : connection.getInputStream();
+                if (in == null) {
+                    in = new ByteArrayInputStream(new byte[0]);
+                }
+                if ("gzip".equalsIgnoreCase(connection.getContentEncoding())) {
+                    in = new GZIPInputStream(in);
+                }
+                body = new BodyStream(in, budgeted);
+            }
+            return body;
+        }
+
+        /** The decoded body length, or -1 if unknown or the body is encoded. */
+        public long contentLength() {
+            if (connection.getContentEncoding() != null) {
+                return -1;
+            }
+            String length = connection.getHeaderField("Content-Length");
+            try {
+                return length != null ? Long.parseLong(length.trim()) : -1;
+            } catch (NumberFormatException e) {
+                return -1;
+            }
+        }
+
+        @Override
+        public void close() {
+            if (closed) {
+                return;
+            }
+            closed = true;
+            if (release()) {
+                putIdle(origin);
+            } else {
+                connection.disconnect();
+            }
+        }
+
+        /** Reads what is left of the body and closes it; false if the connection cannot be reused. */
+        private boolean release() {
+            if (!responded || "close".equalsIgnoreCase(connection.getHeaderField("Connection"))) {
+                return false;
+            }
+            if (body != null && body.closed) {
+                // Closed by the caller; the platform pools it only if it was read to the end
+                return body.eof;
+            }
+            InputStream in = body;
+            try {
+                if (in == null) {
+                    in = connection.getResponseCode() >= 400 ? connection.getErrorStream()
+                        : connection.getInputStream();
+                    if (in == null) {
+                        return true;
+                    }
+                }
+                byte[] buffer = new byte[2048];
+                long drained = 0;
+                int n;
+                while ((n = in.read(buffer)) != -1) {
+                    drained += n;
+                    if (drained > MAX_DRAIN_BYTES) {
+                        return false;
+                    }
+                }
+                in.close();
+                return true;
+            } catch (IOException e) {
+                return false;
+            }
+        }
+
+        private void checkBudget() throws SocketTimeoutException {
+            if (clock.nanoTime() > deadline) {
+                if (!overBudget) {
+                    overBudget = true;
+                    client.budgetExceeded.increment();
+                }
+                throw new SocketTimeoutException("Call budget exceeded for " + connection.getURL());
+            }
+        }
+
+        private final class BodyStream extends FilterInputStream {
+
+            final boolean budgeted;
+            boolean eof;
+            boolean closed;
+
+            BodyStream(InputStream in, boolean budgeted) {
+                super(in);
+                this.budgeted = budgeted;
+            }
+
+            @Override
+            public int read() throws IOException {
+                if (budgeted) {
+                    checkBudget();
+                }
+                int c = super.read();
+                eof |= c == -1;
+                return c;
+            }
+
+            @Override
+            public int read(byte[] buffer, int offset, int length) throws IOException {
+                if (budgeted) {
+                    checkBudget();
+                }
+                int n = super.read(buffer, offset, length);
+                eof |= n == -1;
+                return n;
+            }
+
+            @Override
+            public void close() throws IOException {
+                closed = true;
+                super.close();
+            }
+        }
+    }
+
+    private boolean takeIdle(String origin) {
+        long now = clock.currentTimeMillis();
+        synchronized (idle) {
+            ArrayDeque<Long> released = idle.get(origin);
+            if (released == null) {
+                return false;
+            }
+            while (!released.isEmpty() && now - released.peekFirst() >= keepAliveMs) {
+                released.pollFirst();
+            }
+            // Newest first, like the pool
+            boolean found = released.pollLast() != null;
+            if (released.isEmpty()) {
+                idle.remove(origin);
+            }
+            return found;
+        }
+    }
+
+    private void putIdle(String origin) {
+        synchronized (idle) {
+            ArrayDeque<Long> released = idle.get(origin);
+            if (released == null) {
+                released = new ArrayDeque<>();
+                idle.put(origin, released);
+            }
+            if (released.size() == MAX_IDLE_PER_ORIGIN) {
+                released.pollFirst();
+            }
+            released.addLast(clock.currentTimeMillis());
+        }
+    }
+}
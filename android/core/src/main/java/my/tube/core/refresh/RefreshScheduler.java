@@ -0,0 +1,150 @@
+package my.tube.core.refresh;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import my.tube.core.Clock;
+import my.tube.core.io.PropertiesFile;
+
+/**
+ * Decides which background refresh jobs are due and runs them.
+ *
+ * The platform scheduler only wakes us up periodically with some network;
+ * this class decides what to do with the wake-up. A job is due once its
+ * interval has passed since its last success, but only runs on an unmetered
+ * network while charging, unless it has gone stale past {@link Job#maxStaleMs()}
+ * in which case any network will do. A failed job backs off exponentially,
+ * capped at its interval. State survives process death in a small file.
+ */
+public final class RefreshScheduler {
+
+    /** One kind of background refresh. */
+    public interface Job {
+        String name();
+
+        long intervalMs();
+
+        /** Age after which the job runs without waiting for ideal conditions. */
+        long maxStaleMs();
+
+        void run() throws Exception;
+    }
+
+    /** Device state at the time of a wake-up. */
+    public static final class Conditions {
+        public final boolean unmetered;
+        public final boolean charging;
+
+        public Conditions(boolean unmetered, boolean charging) {
+            this.unmetered = unmetered;
+            this.charging = charging;
+        }
+
+        boolean ideal() {
+            return unmetered && charging;
+        }
+
+        @Override
+        public String toString() {
+            return (unmetered ? "unmetered" : "metered") + (charging ? ", charging" : "");
+        }
+    }
+
+    public enum Outcome {
+        SKIPPED,
+        SUCCEEDED,
+        FAILED
+    }
+
+    private static final String LAST_SUCCESS = ".lastSuccess";
+    private static final String FAILURES = ".failures";
+    private static final String RETRY_AT = ".retryAt";
+
+    private final List<Job> jobs;
+    private final File stateFile;
+    private final Clock clock;
+    private final long backoffBaseMs;
+    private final Properties state;
+
+    public RefreshScheduler(List<Job> jobs, File stateFile, Clock clock, long backoffBaseMs) {
+        this.jobs = new ArrayList<>(jobs);
+        this.stateFile = stateFile;
+        this.clock = clock;
+        this.backoffBaseMs = backoffBaseMs;
+        this.state = PropertiesFile.load(stateFile);
+    }
+
+    /** Whether {@code job} should run now under {@code conditions}. */
+    public synchronized boolean isDue(Job job, Conditions conditions) {
+        long now = clock.currentTimeMillis();
+        if (now < get(job, RETRY_AT)) {
+            return false;
+        }
+        long lastSuccess = get(job, LAST_SUCCESS);
+        long age = lastSuccess == 0L ? Long.MAX_VALUE : now - lastSuccess;
+        if (age < job.intervalMs()) {
+            return false;
+        }
+        return conditions.ideal() || age >= job.maxStaleMs();
+    }
+
+    /** Earliest time {@code job} can be due, ignoring conditions. */
+    public synchronized long nextDueAt(Job job) {
+        long lastSuccess = get(job, LAST_SUCCESS);
+        long byInterval = lastSuccess == 0L ? 0L : lastSuccess + job.intervalMs();
+        return Math.max(byInterval, get(job, RETRY_AT));
+    }
+
+    /** Runs every due job in order, recording the outcome of each. */
+    public synchronized Map<String, Outcome> runDue(Conditions conditions) {
+        Map<String, Outcome> outcomes = new LinkedHashMap<>();
+        for (Job job : jobs) {
+            if (!isDue(job, conditions)) {
+                outcomes.put(job.name(), Outcome.SKIPPED);
+                continue;
+            }
+            Outcome outcome;
+            try {
+                job.run();
+                long now = clock.currentTimeMillis();
+                set(job, LAST_SUCCESS, now);
+                set(job, FAILURES, 0L);
+                set(job, RETRY_AT, 0L);
+                outcome = Outcome.SUCCEEDED;
+            } catch (Exception e) {
+                long failures = get(job, FAILURES) + 1;
+                set(job, FAILURES, failures);
+                set(job, RETRY_AT, clock.currentTimeMillis() + backoff(job, failures));
+                outcome = Outcome.FAILED;
+            }
+            outcomes.put(job.name(), outcome);
+            save();
+        }
+        return outcomes;
+    }
+
+    long backoff(Job job, long failures) {
+        int shift = (int) Math.min(failures - 1, 30);
+        return Math.min(job.intervalMs(), backoffBaseMs << shift);
+    }
+
+    private long get(Job job, String suffix) {
+        return PropertiesFile.getLong(state, job.name() + suffix, 0L);
+    }
+
+    private void set(Job job, String suffix, long value) {
+        state.setProperty(job.name() + suffix, Long.toString(value));
+    }
+
+    private void save() {
+        try {
+            PropertiesFile.store(state, stateFile);
+        } catch (IOException e) {
+            // Worst case a job runs again on the next wake-up
+        }
+    }
+}
@@ -0,0 +1,110 @@
+package my.tube.core.shell;
+
+import java.util.Locale;
+import java.util.concurrent.CopyOnWriteArrayList;
+import my.tube.core.metrics.MetricsRegistry;
+import my.tube.core.metrics.StripedCounter;
+
+/**
+ * Turns the system's trim callbacks into what our own caches and the page
+ * should give up, and counts how often each level arrives.
+ *
+ * The running levels come while the app is in front and the device is
+ * short; the background levels tell how close the process is to being
+ * killed, and are mapped onto the same scale. Listeners are called on the
+ * thread that reports the trim, the main thread on Android.
+ */
+public final class MemoryPressure {
+
+    // ComponentCallbacks2 levels, which core can't reference
+    public static final int TRIM_MEMORY_RUNNING_MODERATE = 5;
+    public static final int TRIM_MEMORY_RUNNING_LOW = 10;
+    public static final int TRIM_MEMORY_RUNNING_CRITICAL = 15;
+    public static final int TRIM_MEMORY_UI_HIDDEN = 20;
+    public static final int TRIM_MEMORY_BACKGROUND = 40;
+    public static final int TRIM_MEMORY_MODERATE = 60;
+    public static final int TRIM_MEMORY_COMPLETE = 80;
+
+    /** How much to give up, from nothing to everything that can be rebuilt. */
+    public enum Level {
+        NONE,
+        /** Shrink memory caches. */
+        MODERATE,
+        /** Drop memory caches. */
+        LOW,
+        /** Drop everything that can be rebuilt and slow background work down. */
+        CRITICAL;
+
+        public boolean atLeast(Level other) {
+            return compareTo(other) >= 0;
+        }
+    }
+
+    public interface Listener {
+        /**
+         * @param uiHidden whether the app has no visible UI, e.g. to pause page timers
+         */
+        void onTrim(Level level, boolean uiHidden);
+    }
+
+    private final CopyOnWriteArrayList<Listener> listeners = new CopyOnWriteArrayList<>();
+    private final StripedCounter[] byLevel = new StripedCounter[Level.values().length];
+    private final StripedCounter uiHidden;
+
+    public MemoryPressure(MetricsRegistry metrics) {
+        for (Level level : Level.values()) {
+            byLevel[level.ordinal()] = metrics.counter("memory.trim." + level.name().toLowerCase(Locale.ROOT));
+        }
+        this.uiHidden = metrics.counter("memory.uiHidden");
+    }
+
+    public static Level levelOf(int trimLevel) {
+        if (trimLevel >= TRIM_MEMORY_MODERATE) {
+            return Level.CRITICAL;
+        }
+        if (trimLevel >= TRIM_MEMORY_BACKGROUND) {
+            return Level.LOW;
+        }
+        if (trimLevel >= TRIM_MEMORY_UI_HIDDEN) {
+            return Level.NONE;
+        }
+        if (trimLevel >= TRIM_MEMORY_RUNNING_CRITICAL) {
+            return Level.CRITICAL;
+        }
+        if (trimLevel >= TRIM_MEMORY_RUNNING_LOW) {
+            return Level.LOW;
+        }
+        if (trimLevel >= TRIM_MEMORY_RUNNING_MODERATE) {
+            return Level.MODERATE;
+        }
+        return Level.NONE;
+    }
+
+    public void add(Listener listener) {
+        listeners.addIfAbsent(listener);
+    }
+
+    public void remove(Listener listener) {
+        listeners.remove(listener);
+    }
+
+    /** From {@code onTrimMemory}. */
+    public void onTrimMemory(int trimLevel) {
+        dispatch(levelOf(trimLevel), trimLevel >= TRIM_MEMORY_UI_HIDDEN);
+    }
+
+    /** From {@code onLowMemory}, which only older releases send on its own. */
+    public void onLowMemory() {
+        dispatch(Level.CRITICAL, false);
+    }
+
+    private void dispatch(Level level, boolean hidden) {
+        byLevel[level.ordinal()].increment();
+        if (hidden) {
+            uiHidden.increment();
+        }
+        for (Listener listener : listeners) {
+            listener.onTrim(level, hidden);
+        }
+    }
+}
@@ -0,0 +1,58 @@
+package my.tube.core.shell;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Which link targets stay in the WebView; everything else is handed to the
+ * browser. Domains match themselves and their subdomains on label
+ * boundaries, so {@code notyoutube.com} is not YouTube.
+ */
+public final class NavigationPolicy {
+
+    /** YouTube itself plus Google's sign-in pages, which the login flow passes through. */
+    public static final NavigationPolicy YOUTUBE = new NavigationPolicy(
+        Arrays.asList("youtube.com", "youtu.be"),
+        Arrays.asList("accounts.google.", "gds.google."),
+        Arrays.asList(".google.com"));
+
+    // A handful of entries: plain loops beat hashing every character of the host
+    private final String[] domains;
+    private final String[] prefixes;
+    private final String[] suffixes;
+
+    /**
+     * @param domains in-app domains and their subdomains
+     * @param prefixes host prefixes, for hosts such as {@code accounts.google.} on any country domain
+     * @param suffixes plain host suffixes, e.g. {@code .google.com} for subdomains only
+     */
+    public NavigationPolicy(List<String> domains, List<String> prefixes, List<String> suffixes) {
+        this.domains = new ArrayList<>(domains).toArray(new String[0]);
+        this.prefixes = new ArrayList<>(prefixes).toArray(new String[0]);
+        this.suffixes = new ArrayList<>(suffixes).toArray(new String[0]);
+    }
+
+    public boolean isInApp(String host) {
+        if (host == null) {
+            return false;
+        }
+        for (String domain : domains) {
+            if (host.endsWith(domain) && (host.length() == domain.length()
+                    || host.charAt(host.length() - domain.length() - 1) == '.')) {
+                return true;
+            }
+        }
+        for (String prefix : prefixes) {
+            if (host.startsWith(prefix)) {
+                return true;
+            }
+        }
+        for (String suffix : suffixes) {
+            if (host.endsWith(suffix)) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
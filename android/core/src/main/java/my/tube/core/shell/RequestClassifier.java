@@ -0,0 +1,87 @@
+package my.tube.core.shell;
+
+import my.tube.core.cache.StaticAssetCache;
+import my.tube.core.filter.BlocklistStore;
+import my.tube.core.filter.RequestFilter;
+import my.tube.core.filter.RequestRule;
+import my.tube.core.media.StreamUrl;
+import my.tube.core.thumb.ThumbnailUrl;
+
+/**
+ * Decides what happens to one subresource request: blocked by host or by URL
+ * rule, served from one of the native caches, or left to the network. Runs on
+ * the WebView's IO threads for every request, so it allocates nothing except
+ * for rule matches.
+ */
+public final class RequestClassifier {
+
+    public enum Route {
+        BLOCKED_HOST,
+        BLOCKED_RULE,
+        /** i.ytimg.com video thumbnails, for the thumbnail cache. */
+        THUMBNAIL,
+        /** Player and web bundles and fonts, for the static asset cache. */
+        STATIC_ASSET,
+        /** googlevideo media; goes to the network, but the audio handoff wants to see it. */
+        STREAM,
+        NETWORK
+    }
+
+    public static final class Result {
+        public final Route route;
+        /** The matching rule for {@link Route#BLOCKED_RULE}, otherwise null. */
+        public final RequestRule rule;
+
+        Result(Route route, RequestRule rule) {
+            this.route = route;
+            this.rule = rule;
+        }
+
+        public boolean isBlocked() {
+            return route == Route.BLOCKED_HOST || route == Route.BLOCKED_RULE;
+        }
+    }
+
+    private static final Result[] FIXED = new Result[Route.values().length];
+
+    static {
+        for (Route route : Route.values()) {
+            FIXED[route.ordinal()] = new Result(route, null);
+        }
+    }
+
+    private final BlocklistStore blocklist;
+    private final RequestFilter filter;
+
+    /** @param blocklist read on every call, so a refreshed list applies to the next request */
+    public RequestClassifier(BlocklistStore blocklist, RequestFilter filter) {
+        this.blocklist = blocklist;
+        this.filter = filter;
+    }
+
+    /**
+     * @param path the encoded path
+     * @param query the encoded query, or null
+     * @param accept the request's Accept header, or null
+     */
+    public Result classify(String method, String host, String path, String query, boolean mainFrame,
+            String accept) {
+        if (blocklist.current().matches(host)) {
+            return FIXED[Route.BLOCKED_HOST.ordinal()];
+        }
+        RequestRule rule = filter.match(host, path, query, mainFrame, accept);
+        if (rule != null) {
+            return new Result(Route.BLOCKED_RULE, rule);
+        }
+        if (StreamUrl.isStreamHost(host)) {
+            return FIXED[Route.STREAM.ordinal()];
+        }
+        if (ThumbnailUrl.isThumbnailHost(host) && "GET".equals(method)) {
+            return FIXED[Route.THUMBNAIL.ordinal()];
+        }
+        if (StaticAssetCache.isCacheable(method, host, path)) {
+            return FIXED[Route.STATIC_ASSET.ordinal()];
+        }
+        return FIXED[Route.NETWORK.ordinal()];
+    }
+}
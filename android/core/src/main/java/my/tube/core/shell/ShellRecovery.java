@@ -0,0 +1,155 @@
+package my.tube.core.shell;
+
+import java.util.ArrayDeque;
+import my.tube.core.Clock;
+import my.tube.core.metrics.MetricsRegistry;
+import my.tube.core.metrics.StripedCounter;
+import org.json.JSONObject;
+
+/**
+ * Where the user was in the page, kept up to date natively so it outlives
+ * the renderer: the URL, how far down it was scrolled and which video was
+ * at which position. After a renderer loss, or when the activity comes back
+ * from saved state, the shell reloads {@link State#url} and runs
+ * {@link State#restoreScript} once the page has loaded.
+ *
+ * A page that kills its renderer on every load would otherwise be restored
+ * forever, so after {@code maxRestores} losses within {@code windowMs} the
+ * shell goes home instead.
+ */
+public final class ShellRecovery {
+
+    /** What to load after the renderer is gone. */
+    public enum Action {
+        RESTORE,
+        HOME
+    }
+
+    /** One moment of the session; fields are plain so they fit in a Bundle. */
+    public static final class State {
+        public final String url;
+        public final int scrollY;
+        /** Null when no video was showing. */
+        public final String videoId;
+        public final long positionMs;
+        public final boolean playing;
+
+        public State(String url, int scrollY, String videoId, long positionMs, boolean playing) {
+            this.url = url;
+            this.scrollY = scrollY;
+            this.videoId = videoId;
+            this.positionMs = positionMs;
+            this.playing = playing;
+        }
+
+        /** For noutube.js, which retries until the page is ready for it. */
+        public String restoreScript() {
+            return "window.__mytubeRestore && window.__mytubeRestore(" + scrollY + ", "
+                + (videoId != null ? JSONObject.quote(videoId) : "null") + ", " + positionMs / 1000.0 + ", "
+                + playing + ")";
+        }
+
+        @Override
+        public String toString() {
+            return url + " at " + scrollY + "px" + (videoId != null ? ", " + videoId + " at " + positionMs + "ms" : "");
+        }
+    }
+
+    /** The playback side of the state, e.g. from {@link my.tube.core.media.AudioHandoff}. */
+    public interface Playback {
+        /** Null when no video is showing. */
+        String videoId();
+
+        long positionMs();
+
+        boolean isPlaying();
+    }
+
+    private final NavigationPolicy navigation;
+    private final Clock clock;
+    private final int maxRestores;
+    private final long windowMs;
+    private final StripedCounter crashed;
+    private final StripedCounter killed;
+    private final StripedCounter restored;
+    private final StripedCounter wentHome;
+
+    // Guarded by this
+    private String url;
+    private int scrollY;
+    private final ArrayDeque<Long> losses = new ArrayDeque<>();
+
+    public ShellRecovery(NavigationPolicy navigation, MetricsRegistry metrics, Clock clock, int maxRestores,
+            long windowMs) {
+        this.navigation = navigation;
+        this.clock = clock;
+        this.maxRestores = maxRestores;
+        this.windowMs = windowMs;
+        this.crashed = metrics.counter("renderer.crashed");
+        this.killed = metrics.counter("renderer.killed");
+        this.restored = metrics.counter("renderer.restored");
+        this.wentHome = metrics.counter("renderer.home");
+    }
+
+    /** Every committed navigation, including history.pushState; other hosts are ignored. */
+    public synchronized void onUrl(String url) {
+        if (url == null || url.equals(this.url) || !navigation.isInApp(hostOf(url))) {
+            return;
+        }
+        this.url = url;
+        scrollY = 0;
+    }
+
+    public synchronized void onScroll(int scrollY) {
+        this.scrollY = Math.max(0, scrollY);
+    }
+
+    /** The current state, or null before the first in-app page. */
+    public State snapshot(Playback playback) {
+        String videoId = playback != null ? playback.videoId() : null;
+        long positionMs = videoId != null ? playback.positionMs() : 0;
+        boolean playing = videoId != null && playback.isPlaying();
+        synchronized (this) {
+            return url != null ? new State(url, scrollY, videoId, positionMs, playing) : null;
+        }
+    }
+
+    /**
+     * Counts a lost renderer and decides what to load next.
+     *
+     * @param crash whether it crashed, as opposed to being killed to free memory
+     */
+    public synchronized Action onRendererGone(boolean crash) {
+        (crash ? crashed : killed).increment();
+        long now = clock.currentTimeMillis();
+        while (!losses.isEmpty() && now - losses.peekFirst() > windowMs) {
+            losses.pollFirst();
+        }
+        losses.addLast(now);
+        if (losses.size() > maxRestores || url == null) {
+            wentHome.increment();
+            url = null;
+            scrollY = 0;
+            return Action.HOME;
+        }
+        restored.increment();
+        return Action.RESTORE;
+    }
+
+    static String hostOf(String url) {
+        int start = url.indexOf("://");
+        if (start < 0) {
+            return null;
+        }
+        start += 3;
+        int end = start;
+        while (end < url.length()) {
+            char c = url.charAt(end);
+            if (c == '/' || c == '?' || c == '#' || c == ':') {
+                break;
+            }
+            end++;
+        }
+        return url.substring(start, end);
+    }
+}
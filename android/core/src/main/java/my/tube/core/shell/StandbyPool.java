@@ -0,0 +1,145 @@
+package my.tube.core.shell;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import my.tube.core.Clock;
+import my.tube.core.metrics.MetricsRegistry;
+import my.tube.core.metrics.StripedCounter;
+
+/**
+ * Pages loaded ahead of time, so moving to the next queued video can swap a
+ * ready page in instead of navigating.
+ *
+ * A standby page is a whole renderer's worth of memory, so the budget is a
+ * hard count (zero on small devices) and gives way to the system: any trim
+ * while the UI is hidden, or a moderate one or worse while it is visible,
+ * destroys the standbys, and the worse ones also stop new ones for
+ * {@code backoffMs}. A page left unused for {@code ttlMs} is destroyed when
+ * next looked at, since its stream URLs and tokens age.
+ *
+ * Main thread only, like the pages themselves.
+ */
+public final class StandbyPool<P> implements MemoryPressure.Listener {
+
+    /** Creates and destroys the pages, e.g. hidden WebViews. */
+    public interface Pages<P> {
+        /** Starts loading {@code url} in a new page that stays out of sight. */
+        P load(String url);
+
+        void destroy(P page);
+    }
+
+    private static final class Standby<P> {
+        final P page;
+        final long loadedAt;
+
+        Standby(P page, long loadedAt) {
+            this.page = page;
+            this.loadedAt = loadedAt;
+        }
+    }
+
+    private final Pages<P> pages;
+    private final int maxPages;
+    private final long ttlMs;
+    private final long backoffMs;
+    private final Clock clock;
+    private final LinkedHashMap<String, Standby<P>> standby = new LinkedHashMap<>();
+    private final StripedCounter prepared;
+    private final StripedCounter hits;
+    private final StripedCounter misses;
+    private final StripedCounter expired;
+    private final StripedCounter dropped;
+    private long suspendedUntil;
+
+    public StandbyPool(Pages<P> pages, int maxPages, long ttlMs, long backoffMs, MetricsRegistry metrics,
+            Clock clock) {
+        this.pages = pages;
+        this.maxPages = maxPages;
+        this.ttlMs = ttlMs;
+        this.backoffMs = backoffMs;
+        this.clock = clock;
+        this.prepared = metrics.counter("standby.prepared");
+        this.hits = metrics.counter("standby.hits");
+        this.misses = metrics.counter("standby.misses");
+        this.expired = metrics.counter("standby.expired");
+        this.dropped = metrics.counter("standby.dropped");
+    }
+
+    /**
+     * Loads {@code url} in a standby page unless one is ready for it, evicting
+     * the oldest beyond the budget. False when the budget or a recent trim
+     * rules it out.
+     */
+    public boolean prepare(String url) {
+        long now = clock.currentTimeMillis();
+        if (maxPages <= 0 || now < suspendedUntil) {
+            return false;
+        }
+        Standby<P> ready = standby.get(url);
+        if (ready != null && now - ready.loadedAt < ttlMs) {
+            return true;
+        }
+        if (ready != null) {
+            standby.remove(url);
+            pages.destroy(ready.page);
+            expired.increment();
+        }
+        Iterator<Standby<P>> it = standby.values().iterator();
+        while (standby.size() >= maxPages && it.hasNext()) {
+            Standby<P> oldest = it.next();
+            it.remove();
+            pages.destroy(oldest.page);
+        }
+        standby.put(url, new Standby<>(pages.load(url), now));
+        prepared.increment();
+        return true;
+    }
+
+    /** The page prepared for {@code url}, now the caller's to show and destroy; null if there is none. */
+    public P take(String url) {
+        Standby<P> ready = standby.remove(url);
+        if (ready == null) {
+            misses.increment();
+            return null;
+        }
+        if (clock.currentTimeMillis() - ready.loadedAt >= ttlMs) {
+            pages.destroy(ready.page);
+            expired.increment();
+            misses.increment();
+            return null;
+        }
+        hits.increment();
+        return ready.page;
+    }
+
+    public boolean isPrepared(String url) {
+        return standby.containsKey(url);
+    }
+
+    public int size() {
+        return standby.size();
+    }
+
+    public void clear() {
+        for (Map.Entry<String, Standby<P>> entry : standby.entrySet()) {
+            pages.destroy(entry.getValue().page);
+        }
+        standby.clear();
+    }
+
+    @Override
+    public void onTrim(MemoryPressure.Level level, boolean uiHidden) {
+        if (!uiHidden && !level.atLeast(MemoryPressure.Level.MODERATE)) {
+            return;
+        }
+        if (!standby.isEmpty()) {
+            dropped.add(standby.size());
+            clear();
+        }
+        if (level.atLeast(MemoryPressure.Level.MODERATE)) {
+            suspendedUntil = clock.currentTimeMillis() + backoffMs;
+        }
+    }
+}
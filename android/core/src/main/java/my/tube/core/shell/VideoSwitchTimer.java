@@ -0,0 +1,52 @@
+package my.tube.core.shell;
+
+import my.tube.core.Clock;
+import my.tube.core.metrics.LatencyHistogram;
+import my.tube.core.metrics.MetricsRegistry;
+
+/**
+ * Time from moving to the next video until it plays, kept apart for
+ * switches served by a {@link StandbyPool} page and those that navigate, so
+ * the two histograms compare the pool against going without it.
+ *
+ * A switch that never reports playing (the user left, the video failed) is
+ * dropped after {@code timeoutMs} rather than recorded as slow.
+ */
+public final class VideoSwitchTimer {
+
+    private final Clock clock;
+    private final long timeoutNanos;
+    private final LatencyHistogram standby;
+    private final LatencyHistogram navigation;
+
+    // Guarded by this
+    private String pendingVideoId;
+    private boolean pendingStandby;
+    private long startedAt;
+
+    public VideoSwitchTimer(MetricsRegistry metrics, Clock clock, long timeoutMs) {
+        this.clock = clock;
+        this.timeoutNanos = timeoutMs * 1_000_000L;
+        this.standby = metrics.histogram("switch.standby");
+        this.navigation = metrics.histogram("switch.navigation");
+    }
+
+    /** The switch to {@code videoId} starts now; replaces any switch still pending. */
+    public synchronized void begin(String videoId, boolean fromStandby) {
+        pendingVideoId = videoId;
+        pendingStandby = fromStandby;
+        startedAt = clock.nanoTime();
+    }
+
+    /** The page reports {@code videoId} playing; ends the switch to it, if there is one. */
+    public synchronized void onPlaying(String videoId) {
+        if (pendingVideoId == null || !pendingVideoId.equals(videoId)) {
+            return;
+        }
+        long elapsed = clock.nanoTime() - startedAt;
+        if (elapsed <= timeoutNanos) {
+            (pendingStandby ? standby : navigation).record(elapsed);
+        }
+        pendingVideoId = null;
+    }
+}
@@ -0,0 +1,139 @@
+package my.tube.core.shell;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Set;
+import my.tube.core.Clock;
+import my.tube.core.inject.ScriptInjector;
+import my.tube.core.metrics.InterceptionMetrics;
+import my.tube.core.metrics.InterceptionMetrics.Decision;
+
+/**
+ * Everything the YouTube WebView decides per page and per request, without
+ * the WebView: script injection, request routing and blocking, and which
+ * links stay in the app, all counted in {@link InterceptionMetrics}. An
+ * activity forwards its WebViewClient callbacks here and implements
+ * {@link Handlers} over whatever caches and proxies it has; the update check
+ * lives in {@link my.tube.core.update.StartupOrchestrator}.
+ *
+ * {@link #intercept} and {@link #shouldLoadInApp} are safe to call from the
+ * WebView's IO threads; the page callbacks belong on its UI thread.
+ */
+public final class WebShell {
+
+    public static final String HOME_URL = "https://m.youtube.com";
+
+    /** Origins that get the content script. */
+    public static final Set<String> SCRIPT_ORIGINS = Collections.unmodifiableSet(new LinkedHashSet<>(Arrays.asList(
+        "https://youtube.com",
+        "https://*.youtube.com"
+    )));
+
+    /** A subresource request as the WebView reports it. */
+    public interface Request {
+        String method();
+
+        String host();
+
+        /** Encoded path. */
+        String path();
+
+        /** Encoded query, or null. */
+        String query();
+
+        boolean isForMainFrame();
+
+        /** The Accept header, or null. */
+        String accept();
+    }
+
+    /** Responses for each route; null means the WebView fetches the request itself. */
+    public interface Handlers<Q extends Request, R> {
+        R blocked(Q request);
+
+        R thumbnail(Q request);
+
+        R staticAsset(Q request);
+
+        /** Called for every request left to the network; null unless it is one the handler proxies. */
+        R proxy(Q request);
+
+        /** A media request went by; called before {@link #proxy}. */
+        void onStream(Q request);
+    }
+
+    private final RequestClassifier classifier;
+    private final NavigationPolicy navigation;
+    private final ScriptInjector injector;
+    private final InterceptionMetrics metrics;
+    private final Clock clock;
+
+    public WebShell(RequestClassifier classifier, NavigationPolicy navigation, ScriptInjector injector,
+            InterceptionMetrics metrics, Clock clock) {
+        this.classifier = classifier;
+        this.navigation = navigation;
+        this.injector = injector;
+        this.metrics = metrics;
+        this.clock = clock;
+    }
+
+    /** Registers the content script; see {@link ScriptInjector#install}. */
+    public void install() {
+        injector.install();
+    }
+
+    public void onPageStarted(String url) {
+        // No-op with document-start scripts, otherwise injects early
+        injector.onPageStarted(url);
+    }
+
+    public void onPageFinished(String url) {
+        // Re-injects only if the page lost the script
+        injector.onPageFinished(url);
+    }
+
+    public ScriptInjector injector() {
+        return injector;
+    }
+
+    /** Routes one request; decision time excludes whatever the handler then does. */
+    public <Q extends Request, R> R intercept(Q request, Handlers<Q, R> handlers) {
+        long started = clock.nanoTime();
+        String host = request.host();
+        RequestClassifier.Result result = classifier.classify(request.method(), host, request.path(),
+            request.query(), request.isForMainFrame(), request.accept());
+        long decisionNanos = clock.nanoTime() - started;
+        switch (result.route) {
+            case BLOCKED_HOST:
+                metrics.onRequest(host, Decision.BLOCKED_HOST, null, decisionNanos);
+                return handlers.blocked(request);
+            case BLOCKED_RULE:
+                metrics.onRequest(host, Decision.BLOCKED_RULE, result.rule.toString(), decisionNanos);
+                return handlers.blocked(request);
+            case THUMBNAIL:
+                metrics.onRequest(host, Decision.ALLOWED, null, decisionNanos);
+                return handlers.thumbnail(request);
+            case STATIC_ASSET:
+                metrics.onRequest(host, Decision.ALLOWED, null, decisionNanos);
+                return handlers.staticAsset(request);
+            case STREAM:
+                // Only watched: the page's player keeps loading its own media
+                handlers.onStream(request);
+                break;
+            default:
+                break;
+        }
+        R proxied = handlers.proxy(request);
+        metrics.onRequest(host, proxied != null ? Decision.PROXIED : Decision.ALLOWED, null, decisionNanos);
+        return proxied;
+    }
+
+    /** Whether a link to {@code host} loads in the WebView; otherwise the caller opens it elsewhere. */
+    public boolean shouldLoadInApp(String host) {
+        long started = clock.nanoTime();
+        boolean inApp = navigation.isInApp(host);
+        metrics.onNavigation(inApp, clock.nanoTime() - started);
+        return inApp;
+    }
+}
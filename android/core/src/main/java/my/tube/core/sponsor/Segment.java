@@ -0,0 +1,64 @@
+package my.tube.core.sponsor;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/** One SponsorBlock segment, in the shape the web app's {@code Segment} uses. */
+public final class Segment {
+
+    public final String category;
+    public final String actionType;
+    public final double start;
+    public final double end;
+    public final String uuid;
+
+    public Segment(String category, String actionType, double start, double end, String uuid) {
+        this.category = category;
+        this.actionType = actionType;
+        this.start = start;
+        this.end = end;
+        this.uuid = uuid;
+    }
+
+    static List<Segment> fromJson(JSONArray array) throws JSONException {
+        if (array == null || array.length() == 0) {
+            return Collections.emptyList();
+        }
+        List<Segment> segments = new ArrayList<>(array.length());
+        for (int i = 0; i < array.length(); i++) {
+            JSONObject item = array.getJSONObject(i);
+            JSONArray bounds = item.getJSONArray("segment");
+            segments.add(new Segment(item.getString("category"), item.optString("actionType", "skip"),
+                bounds.getDouble(0), bounds.getDouble(1), item.optString("UUID", null)));
+        }
+        return Collections.unmodifiableList(segments);
+    }
+
+    /** {@code [{"category":..,"actionType":..,"segment":[start,end],"UUID":..}]}, also a valid JS literal. */
+    public static JSONArray toJson(List<Segment> segments) throws JSONException {
+        JSONArray array = new JSONArray();
+        for (Segment segment : segments) {
+            JSONObject item = new JSONObject();
+            item.put("category", segment.category);
+            item.put("actionType", segment.actionType);
+            JSONArray bounds = new JSONArray();
+            bounds.put(segment.start);
+            bounds.put(segment.end);
+            item.put("segment", bounds);
+            if (segment.uuid != null) {
+                item.put("UUID", segment.uuid);
+            }
+            array.put(item);
+        }
+        return array;
+    }
+
+    @Override
+    public String toString() {
+        return category + " " + start + "-" + end;
+    }
+}
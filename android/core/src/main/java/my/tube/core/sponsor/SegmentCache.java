@@ -0,0 +1,191 @@
+package my.tube.core.sponsor;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import my.tube.core.Clock;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * Segments by videoId: an LRU in memory in front of one small file per video.
+ *
+ * An empty list is cached too; it records that SponsorBlock had nothing for
+ * the video when its hash prefix was last fetched. Entries older than the TTL
+ * read as missing so new community submissions are picked up.
+ */
+public final class SegmentCache {
+
+    /** Cached segments and when they were fetched. */
+    public static final class Entry {
+        public final List<Segment> segments;
+        public final long fetchedAt;
+
+        Entry(List<Segment> segments, long fetchedAt) {
+            this.segments = segments;
+            this.fetchedAt = fetchedAt;
+        }
+    }
+
+    private static final int TRIM_EVERY = 64;
+
+    private final Map<String, Entry> memory;
+    private final File dir;
+    private final int maxDiskEntries;
+    private final long ttlMs;
+    private final Clock clock;
+
+    // Guarded by this
+    private int writesSinceTrim;
+    private long memoryHits;
+    private long diskHits;
+
+    /**
+     * @param dir directory for the disk tier, or null for memory only
+     */
+    public SegmentCache(final int memoryEntries, File dir, int maxDiskEntries, long ttlMs, Clock clock) {
+        this.memory = new LinkedHashMap<String, Entry>(16, 0.75f, true) {
+            @Override
+            protected boolean removeEldestEntry(Map.Entry<String, SegmentCache.Entry> eldest) {
+                return size() > memoryEntries;
+            }
+        };
+        this.dir = dir;
+        this.maxDiskEntries = maxDiskEntries;
+        this.ttlMs = ttlMs;
+        this.clock = clock;
+        if (dir != null) {
+            dir.mkdirs();
+        }
+    }
+
+    /** Fresh segments for {@code videoId}, or null when unknown or expired. */
+    public synchronized Entry get(String videoId) {
+        long now = clock.currentTimeMillis();
+        Entry entry = memory.get(videoId);
+        if (entry != null) {
+            if (fresh(entry, now)) {
+                memoryHits++;
+                return entry;
+            }
+            memory.remove(videoId);
+        }
+        entry = readDisk(videoId);
+        if (entry != null && fresh(entry, now)) {
+            diskHits++;
+            memory.put(videoId, entry);
+            return entry;
+        }
+        return null;
+    }
+
+    public synchronized void put(String videoId, List<Segment> segments) {
+        Entry entry = new Entry(segments, clock.currentTimeMillis());
+        memory.put(videoId, entry);
+        writeDisk(videoId, entry);
+    }
+
+    /** Empties the memory tier; the disk tier still answers. */
+    public synchronized void trimMemory() {
+        memory.clear();
+    }
+
+    public synchronized long memoryHits() {
+        return memoryHits;
+    }
+
+    public synchronized long diskHits() {
+        return diskHits;
+    }
+
+    synchronized int memorySize() {
+        return memory.size();
+    }
+
+    private boolean fresh(Entry entry, long now) {
+        return now - entry.fetchedAt < ttlMs;
+    }
+
+    private File file(String videoId) {
+        return new File(dir, videoId + ".json");
+    }
+
+    private Entry readDisk(String videoId) {
+        if (dir == null) {
+            return null;
+        }
+        File file = file(videoId);
+        if (!file.exists()) {
+            return null;
+        }
+        try (InputStream in = new FileInputStream(file)) {
+            byte[] bytes = new byte[(int) file.length()];
+            int read = 0;
+            while (read < bytes.length) {
+                int n = in.read(bytes, read, bytes.length - read);
+                if (n < 0) {
+                    break;
+                }
+                read += n;
+            }
+            JSONObject json = new JSONObject(new String(bytes, 0, read, StandardCharsets.UTF_8));
+            return new Entry(Segment.fromJson(json.optJSONArray("segments")), json.getLong("fetchedAt"));
+        } catch (IOException | JSONException e) {
+            file.delete();
+            return null;
+        }
+    }
+
+    private void writeDisk(String videoId, Entry entry) {
+        if (dir == null) {
+            return;
+        }
+        File file = file(videoId);
+        File tmp = new File(dir, videoId + ".tmp");
+        try {
+            JSONObject json = new JSONObject();
+            json.put("fetchedAt", entry.fetchedAt);
+            json.put("segments", Segment.toJson(entry.segments));
+            try (OutputStream out = new FileOutputStream(tmp)) {
+                out.write(json.toString().getBytes(StandardCharsets.UTF_8));
+            }
+            if (!tmp.renameTo(file)) {
+                tmp.delete();
+            }
+        } catch (IOException | JSONException e) {
+            tmp.delete();
+        }
+        if (++writesSinceTrim >= TRIM_EVERY) {
+            writesSinceTrim = 0;
+            trimDisk();
+        }
+    }
+
+    /** Deletes the least recently written files beyond the disk limit. */
+    synchronized void trimDisk() {
+        File[] files = dir != null ? dir.listFiles() : null;
+        if (files == null || files.length <= maxDiskEntries) {
+            return;
+        }
+        Arrays.sort(files, new Comparator<File>() {
+            @Override
+            public int compare(File a, File b) {
+                long x = a.lastModified();
+                long y = b.lastModified();
+                return x < y ? -1 : (x == y ? 0 : 1);
+            }
+        });
+        for (int i = 0; i < files.length - maxDiskEntries; i++) {
+            files[i].delete();
+        }
+    }
+}
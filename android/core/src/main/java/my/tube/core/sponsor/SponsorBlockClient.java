@@ -0,0 +1,171 @@
+package my.tube.core.sponsor;
+
+import java.io.IOException;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URLEncoder;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.atomic.AtomicLong;
+import my.tube.core.io.Streams;
+import my.tube.core.media.VideoId;
+import my.tube.core.net.HttpStack;
+import org.json.JSONArray;
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/**
+ * SponsorBlock segments through the privacy-preserving hash-prefix endpoint.
+ *
+ * {@code skipSegments/{prefix}} answers for every video whose SHA-256 starts
+ * with the prefix, so each response fills the {@link SegmentCache} for all of
+ * them, and videos of the prefix that are absent are cached as having no
+ * segments. Revisits are answered from memory or disk without a request.
+ *
+ * Network methods block; call them off the main thread.
+ */
+public final class SponsorBlockClient {
+
+    public static final String DEFAULT_API = "https://sponsor.ajay.app/api";
+    public static final List<String> DEFAULT_CATEGORIES = Collections.unmodifiableList(Arrays.asList(
+        "sponsor", "selfpromo", "interaction", "intro", "outro", "preview", "music_offtopic"));
+
+    private static final int PREFIX_LENGTH = 4;
+    private static final char[] HEX = "0123456789abcdef".toCharArray();
+
+    private final String apiBase;
+    private final String categoriesParam;
+    private final SegmentCache cache;
+    private final HttpStack.Client http;
+
+    private final AtomicLong requests = new AtomicLong();
+
+    public SponsorBlockClient(String apiBase, List<String> categories, SegmentCache cache, HttpStack.Client http) {
+        this.apiBase = apiBase;
+        this.categoriesParam = encodeCategories(categories);
+        this.cache = cache;
+        this.http = http;
+    }
+
+    /** Segments already known for {@code videoId}, or null if a request is needed. Never blocks on the network. */
+    public List<Segment> cached(String videoId) {
+        SegmentCache.Entry entry = cache.get(videoId);
+        return entry != null ? entry.segments : null;
+    }
+
+    /** Segments for {@code videoId}, fetching its hash prefix if not cached. */
+    public List<Segment> segments(String videoId) throws IOException {
+        requireVideoId(videoId);
+        List<Segment> cached = cached(videoId);
+        if (cached != null) {
+            return cached;
+        }
+        fetchPrefix(hashPrefix(videoId), Collections.singleton(videoId));
+        cached = cached(videoId);
+        return cached != null ? cached : Collections.<Segment>emptyList();
+    }
+
+    /** Warms the cache for {@code videoIds} with one request per distinct uncached hash prefix. */
+    public void prefetch(Collection<String> videoIds) throws IOException {
+        Map<String, Set<String>> byPrefix = new LinkedHashMap<>();
+        for (String videoId : videoIds) {
+            if (VideoId.isValid(videoId) && cached(videoId) == null) {
+                String prefix = hashPrefix(videoId);
+                Set<String> ids = byPrefix.get(prefix);
+                if (ids == null) {
+                    ids = new LinkedHashSet<>();
+                    byPrefix.put(prefix, ids);
+                }
+                ids.add(videoId);
+            }
+        }
+        for (Map.Entry<String, Set<String>> group : byPrefix.entrySet()) {
+            fetchPrefix(group.getKey(), group.getValue());
+        }
+    }
+
+    public SegmentCache cache() {
+        return cache;
+    }
+
+    /** Requests made to the API so far. */
+    public long requests() {
+        return requests.get();
+    }
+
+    private void fetchPrefix(String prefix, Set<String> wanted) throws IOException {
+        requests.incrementAndGet();
+        String url = apiBase + "/skipSegments/" + prefix + "?categories=" + categoriesParam;
+        try (HttpStack.Call call = http.open(url)) {
+            call.connection.setRequestProperty("Accept", "application/json");
+            int code = call.code();
+            Map<String, List<Segment>> found = new HashMap<>();
+            if (code == HttpURLConnection.HTTP_OK) {
+                JSONArray videos = new JSONArray(Streams.readUtf8(call.body()));
+                for (int i = 0; i < videos.length(); i++) {
+                    JSONObject video = videos.getJSONObject(i);
+                    found.put(video.getString("videoID"), Segment.fromJson(video.optJSONArray("segments")));
+                }
+            } else if (code != HttpURLConnection.HTTP_NOT_FOUND) {
+                // 404 means no video of this prefix has segments
+                throw new IOException("SponsorBlock request failed with code " + code);
+            }
+            for (Map.Entry<String, List<Segment>> video : found.entrySet()) {
+                cache.put(video.getKey(), video.getValue());
+            }
+            for (String videoId : wanted) {
+                if (!found.containsKey(videoId)) {
+                    cache.put(videoId, Collections.<Segment>emptyList());
+                }
+            }
+        } catch (JSONException e) {
+            throw new IOException("Malformed SponsorBlock response", e);
+        }
+    }
+
+    private static void requireVideoId(String videoId) {
+        if (!VideoId.isValid(videoId)) {
+            throw new IllegalArgumentException("Not a video id: " + videoId);
+        }
+    }
+
+    static String hashPrefix(String videoId) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-256").digest(videoId.getBytes(StandardCharsets.UTF_8));
+            char[] hex = new char[PREFIX_LENGTH];
+            for (int i = 0; i < PREFIX_LENGTH; i++) {
+                int b = digest[i / 2];
+                hex[i] = HEX[(i % 2 == 0 ? b >> 4 : b) & 0xf];
+            }
+            return new String(hex);
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException("SHA-256 unavailable", e);
+        }
+    }
+
+    private static String encodeCategories(List<String> categories) {
+        StringBuilder json = new StringBuilder("[");
+        for (int i = 0; i < categories.size(); i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append('"').append(categories.get(i)).append('"');
+        }
+        json.append(']');
+        try {
+            return URLEncoder.encode(json.toString(), "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+}
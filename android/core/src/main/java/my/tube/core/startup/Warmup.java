@@ -0,0 +1,127 @@
+package my.tube.core.startup;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.URL;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import my.tube.core.Clock;
+import my.tube.core.net.HttpStack;
+
+/**
+ * Named cold-start chores run off the main thread before the first activity
+ * needs their results: loading caches, mapping the blocklist, opening
+ * connections. Steps run in order, each inside a {@link Tracer} section; a
+ * failing step is recorded and the rest still run, since every step only
+ * saves time later and the first real use retries whatever failed.
+ */
+public final class Warmup {
+
+    public interface Step {
+        void run() throws Exception;
+    }
+
+    /** Section markers, e.g. {@code android.os.Trace}; calls nest. */
+    public interface Tracer {
+        void begin(String section);
+
+        void end();
+
+        Tracer NONE = new Tracer() {
+            @Override
+            public void begin(String section) {
+            }
+
+            @Override
+            public void end() {
+            }
+        };
+    }
+
+    private final Clock clock;
+    private final Tracer tracer;
+    private final Map<String, Step> steps = new LinkedHashMap<>();
+
+    // Guarded by this
+    private final Map<String, Long> durations = new LinkedHashMap<>();
+    private final Map<String, Throwable> failures = new LinkedHashMap<>();
+
+    public Warmup(Clock clock, Tracer tracer) {
+        this.clock = clock;
+        this.tracer = tracer;
+    }
+
+    /** Adds a step; names double as trace section names. */
+    public Warmup add(String name, Step step) {
+        steps.put(name, step);
+        return this;
+    }
+
+    /** Runs every step on the calling thread. */
+    public void run() {
+        for (Map.Entry<String, Step> entry : steps.entrySet()) {
+            String name = entry.getKey();
+            long started = clock.nanoTime();
+            Throwable failure = null;
+            tracer.begin(name);
+            try {
+                entry.getValue().run();
+            } catch (Exception e) {
+                failure = e;
+            } finally {
+                tracer.end();
+            }
+            synchronized (this) {
+                durations.put(name, (clock.nanoTime() - started) / 1000);
+                if (failure != null) {
+                    failures.put(name, failure);
+                }
+            }
+        }
+    }
+
+    /** Microseconds per finished step, in run order. */
+    public synchronized Map<String, Long> durationsMicros() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(durations));
+    }
+
+    public synchronized Map<String, Throwable> failures() {
+        return Collections.unmodifiableMap(new LinkedHashMap<>(failures));
+    }
+
+    /** One line for the log, e.g. {@code blocklist=1200us script=300us(failed)}. */
+    public synchronized String summary() {
+        StringBuilder sb = new StringBuilder();
+        for (Map.Entry<String, Long> entry : durations.entrySet()) {
+            if (sb.length() > 0) {
+                sb.append(' ');
+            }
+            sb.append(entry.getKey()).append('=').append(entry.getValue()).append("us");
+            if (failures.containsKey(entry.getKey())) {
+                sb.append("(failed)");
+            }
+        }
+        return sb.toString();
+    }
+
+    /**
+     * Resolves the host and completes a request to {@code url} through
+     * {@code http}, leaving a kept-alive TLS connection in the shared pool for
+     * the next request to that origin. A HEAD of a tiny endpoint such as
+     * {@code /generate_204} keeps it cheap; the status is ignored.
+     */
+    public static Step preconnect(final HttpStack.Client http, final String url) {
+        return new Step() {
+            @Override
+            public void run() throws IOException {
+                InetAddress.getAllByName(new URL(url).getHost());
+                try (HttpStack.Call call = http.open(url)) {
+                    call.connection.setRequestMethod("HEAD");
+                    call.connection.setUseCaches(false);
+                    call.code();
+                }
+            }
+        };
+    }
+}
@@ -0,0 +1,258 @@
+package my.tube.core.task;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.Callable;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Shared background executor for the app's one-off work.
+ *
+ * Work runs on a small bounded pool and results are delivered on the main
+ * executor. Every callback belongs to an owner (usually an activity), and
+ * {@link #cancel(Object)} from its onDestroy guarantees none of its callbacks
+ * run afterwards. Work submitted under a key is shared: submitting the same
+ * key while it is in flight only adds a callback, and keyed work keeps
+ * running when its last owner goes away so a recreated activity can pick it
+ * up again. Unkeyed work is interrupted once nobody is waiting for it.
+ */
+public final class TaskRunner {
+
+    public interface Callback<T> {
+        /** Called on the main executor with either a result or the error the work threw. */
+        void onComplete(T result, Throwable error);
+    }
+
+    /** One owner's interest in a task. */
+    public final class Subscription {
+        final Object owner;
+        final Callback<Object> callback;
+        private final Task task;
+        volatile boolean cancelled;
+
+        Subscription(Object owner, Callback<Object> callback, Task task) {
+            this.owner = owner;
+            this.callback = callback;
+            this.task = task;
+        }
+
+        /** Stops this callback from running; the work itself follows the class rules. */
+        public void cancel() {
+            synchronized (lock) {
+                detach(this);
+            }
+        }
+
+        public boolean isCancelled() {
+            return cancelled;
+        }
+    }
+
+    private final class Task implements Runnable {
+        final String key;
+        final Callable<?> work;
+        final List<Subscription> subscriptions = new ArrayList<>();
+        Future<?> future;
+
+        Task(String key, Callable<?> work) {
+            this.key = key;
+            this.work = work;
+        }
+
+        @Override
+        public void run() {
+            Object result = null;
+            Throwable error = null;
+            try {
+                result = work.call();
+            } catch (Throwable t) {
+                error = t;
+            }
+            finish(this, result, error);
+        }
+    }
+
+    private final Object lock = new Object();
+    private final ThreadPoolExecutor pool;
+    private final Executor main;
+
+    // Guarded by lock; live holds subscriptions not yet delivered or cancelled
+    private final Set<Task> active = new LinkedHashSet<>();
+    private final Set<Subscription> live = new LinkedHashSet<>();
+    private final Map<String, Task> byKey = new HashMap<>();
+    private long completed;
+    private long deduplicated;
+
+    /**
+     * @param threads worker threads
+     * @param queueCapacity queued tasks beyond the running ones; more are rejected
+     * @param main delivers callbacks, e.g. a main-thread Handler's post
+     */
+    public TaskRunner(int threads, int queueCapacity, Executor main) {
+        this.main = main;
+        this.pool = new ThreadPoolExecutor(threads, threads, 30, TimeUnit.SECONDS,
+            new ArrayBlockingQueue<Runnable>(queueCapacity), new WorkerFactory());
+        pool.allowCoreThreadTimeOut(true);
+    }
+
+    /**
+     * Runs {@code work} in the background and hands the outcome to {@code callback}.
+     *
+     * @param owner what the callback belongs to, for {@link #cancel(Object)}
+     * @param key shares the work with in-flight submissions of the same key; null to always run
+     */
+    @SuppressWarnings("unchecked")
+    public <T> Subscription submit(Object owner, String key, Callable<T> work, Callback<? super T> callback) {
+        Subscription subscription;
+        RejectedExecutionException rejected;
+        synchronized (lock) {
+            Task task = key != null ? byKey.get(key) : null;
+            if (task != null) {
+                deduplicated++;
+                subscription = new Subscription(owner, (Callback<Object>) callback, task);
+                task.subscriptions.add(subscription);
+                live.add(subscription);
+                return subscription;
+            }
+            task = new Task(key, work);
+            subscription = new Subscription(owner, (Callback<Object>) callback, task);
+            task.subscriptions.add(subscription);
+            live.add(subscription);
+            // Registered before submitting so a fast task always finds itself in finish()
+            active.add(task);
+            if (key != null) {
+                byKey.put(key, task);
+            }
+            try {
+                task.future = pool.submit(task);
+                return subscription;
+            } catch (RejectedExecutionException e) {
+                active.remove(task);
+                if (key != null) {
+                    byKey.remove(key);
+                }
+                rejected = e;
+            }
+        }
+        deliver(Collections.singletonList(subscription), null, rejected);
+        return subscription;
+    }
+
+    /** Drops every callback registered by {@code owner}. Call from the owner's onDestroy. */
+    public void cancel(Object owner) {
+        synchronized (lock) {
+            List<Subscription> owned = new ArrayList<>();
+            for (Subscription subscription : live) {
+                if (subscription.owner == owner) {
+                    owned.add(subscription);
+                }
+            }
+            for (Subscription subscription : owned) {
+                detach(subscription);
+            }
+        }
+    }
+
+    /** Whether work with {@code key} is queued or running. */
+    public boolean isInFlight(String key) {
+        synchronized (lock) {
+            return byKey.containsKey(key);
+        }
+    }
+
+    /** Tasks queued or running. */
+    public int activeCount() {
+        synchronized (lock) {
+            return active.size();
+        }
+    }
+
+    public long completedCount() {
+        synchronized (lock) {
+            return completed;
+        }
+    }
+
+    /** Submissions that joined in-flight work instead of starting their own. */
+    public long deduplicatedCount() {
+        synchronized (lock) {
+            return deduplicated;
+        }
+    }
+
+    /** Stops accepting work and interrupts running tasks. */
+    public void shutdown() {
+        pool.shutdownNow();
+    }
+
+    // Called with lock held
+    private void detach(Subscription subscription) {
+        subscription.cancelled = true;
+        live.remove(subscription);
+        Task task = subscription.task;
+        task.subscriptions.remove(subscription);
+        if (task.subscriptions.isEmpty() && task.key == null && active.remove(task)) {
+            task.future.cancel(true);
+        }
+    }
+
+    private void finish(Task task, Object result, Throwable error) {
+        List<Subscription> subscriptions;
+        synchronized (lock) {
+            if (!active.remove(task)) {
+                // Cancelled while running
+                return;
+            }
+            if (task.key != null) {
+                byKey.remove(task.key);
+            }
+            completed++;
+            subscriptions = new ArrayList<>(task.subscriptions);
+        }
+        deliver(subscriptions, result, error);
+    }
+
+    private void deliver(final List<Subscription> subscriptions, final Object result, final Throwable error) {
+        if (subscriptions.isEmpty()) {
+            return;
+        }
+        main.execute(() -> {
+            Iterator<Subscription> it = subscriptions.iterator();
+            while (it.hasNext()) {
+                Subscription subscription = it.next();
+                // Checked here, on the main thread, so cancel() from onDestroy always wins
+                synchronized (lock) {
+                    if (!live.remove(subscription)) {
+                        continue;
+                    }
+                }
+                subscription.callback.onComplete(result, error);
+            }
+        });
+    }
+
+    private static final class WorkerFactory implements ThreadFactory {
+        private final AtomicInteger count = new AtomicInteger();
+
+        @Override
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "mytube-bg-" + count.incrementAndGet());
+            thread.setDaemon(true);
+            thread.setPriority(Thread.NORM_PRIORITY - 1);
+            return thread;
+        }
+    }
+}
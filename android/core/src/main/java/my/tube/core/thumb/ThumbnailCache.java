@@ -0,0 +1,397 @@
+package my.tube.core.thumb;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.TimeUnit;
+import my.tube.core.Clock;
+import my.tube.core.cache.DiskLruCache;
+import my.tube.core.metrics.MetricsRegistry;
+import my.tube.core.metrics.StripedCounter;
+import my.tube.core.net.HttpStack;
+
+/**
+ * Thumbnails for the WebView, downscaled and cached.
+ *
+ * A request for a large variant is answered with the smallest always
+ * available variant that still covers the target width (see
+ * {@link ThumbnailUrl#fitting}). Bodies are a few tens of kilobytes, so they
+ * are read whole and kept in a byte-bounded memory LRU in front of a
+ * {@link DiskLruCache}. {@link #prefetch} warms both tiers on a low-priority
+ * executor; a page request that arrives while its prefetch is running waits
+ * for it instead of fetching twice.
+ */
+public final class ThumbnailCache {
+
+    static final String META_CONTENT_TYPE = "contentType";
+    static final String META_STORED_AT = "storedAt";
+
+    // Larger bodies are not thumbnails; let the WebView load them
+    private static final int MAX_BODY = 2 * 1024 * 1024;
+    private static final int MAX_PREFETCH = 40;
+
+    /** A thumbnail for the WebView. */
+    public static final class Response {
+        public final String mimeType;
+        public final Map<String, String> headers;
+        public final byte[] body;
+        public final boolean fromCache;
+        /** Whether a smaller variant than the one requested was served. */
+        public final boolean resized;
+
+        Response(String mimeType, byte[] body, boolean fromCache, boolean resized) {
+            this.mimeType = mimeType;
+            this.headers = HEADERS;
+            this.body = body;
+            this.fromCache = fromCache;
+            this.resized = resized;
+        }
+    }
+
+    private static final Map<String, String> HEADERS;
+
+    static {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("Cache-Control", "public, max-age=7200");
+        headers.put("Access-Control-Allow-Origin", "*");
+        HEADERS = Collections.unmodifiableMap(headers);
+    }
+
+    private static final class Cached {
+        final String contentType;
+        final byte[] body;
+        final long storedAt;
+
+        Cached(String contentType, byte[] body, long storedAt) {
+            this.contentType = contentType;
+            this.body = body;
+            this.storedAt = storedAt;
+        }
+    }
+
+    private final DiskLruCache disk;
+    private final long maxMemoryBytes;
+    private final Executor background;
+    private final Clock clock;
+    private final long ttlMs;
+    private final HttpStack.Client http;
+    private final String upstream;
+
+    // Guarded by itself; key -> body in access order
+    private final LinkedHashMap<String, Cached> memory = new LinkedHashMap<>(64, 0.75f, true);
+    private long memoryBytes;
+    // Guarded by itself
+    private final Map<String, CountDownLatch> loading = new HashMap<>();
+
+    private final StripedCounter memoryHits;
+    private final StripedCounter diskHits;
+    private final StripedCounter misses;
+    private final StripedCounter resized;
+    private final StripedCounter prefetched;
+    private final StripedCounter errors;
+    private final StripedCounter bytesFromNetwork;
+    private final StripedCounter bytesFromCache;
+    private final StripedCounter bytesSavedByResize;
+
+    /**
+     * @param background runs prefetches and disk writes; give it a low priority
+     * @param ttlMs age after which a cached thumbnail is fetched again, since
+     *     creators can replace a thumbnail behind the same URL
+     * @param upstream origin to fetch from instead of the thumbnail's own
+     *     host, or null; for tests
+     */
+    public ThumbnailCache(DiskLruCache disk, long maxMemoryBytes, MetricsRegistry metrics, Executor background,
+                          Clock clock, long ttlMs, HttpStack.Client http, String upstream) {
+        this.disk = disk;
+        this.maxMemoryBytes = maxMemoryBytes;
+        this.background = background;
+        this.clock = clock;
+        this.ttlMs = ttlMs;
+        this.http = http;
+        this.upstream = upstream;
+        this.memoryHits = metrics.counter("thumbs.memoryHits");
+        this.diskHits = metrics.counter("thumbs.diskHits");
+        this.misses = metrics.counter("thumbs.misses");
+        this.resized = metrics.counter("thumbs.resized");
+        this.prefetched = metrics.counter("thumbs.prefetched");
+        this.errors = metrics.counter("thumbs.errors");
+        this.bytesFromNetwork = metrics.counter("thumbs.bytesFromNetwork");
+        this.bytesFromCache = metrics.counter("thumbs.bytesFromCache");
+        this.bytesSavedByResize = metrics.counter("thumbs.bytesSavedByResize");
+    }
+
+    /**
+     * The thumbnail for {@code url} fitted to {@code targetWidth} pixels, or
+     * null when the WebView should load the URL itself: not a recognised
+     * thumbnail, or the fetch failed.
+     */
+    public Response open(String url, int targetWidth) {
+        ThumbnailUrl requested = ThumbnailUrl.parse(url);
+        if (requested == null) {
+            return null;
+        }
+        ThumbnailUrl fitted = requested.fitting(targetWidth);
+        boolean smaller = fitted != requested;
+        String key = DiskLruCache.hashKey(fitted.toString());
+
+        Cached cached = lookup(key);
+        if (cached == null) {
+            CountDownLatch pending;
+            synchronized (loading) {
+                pending = loading.get(key);
+            }
+            if (pending != null) {
+                try {
+                    pending.await(http.timeoutMs(), TimeUnit.MILLISECONDS);
+                } catch (InterruptedException e) {
+                    Thread.currentThread().interrupt();
+                }
+                cached = lookup(key);
+            }
+        }
+        if (cached != null) {
+            bytesFromCache.add(cached.body.length);
+            return new Response(cached.contentType, cached.body, true, smaller);
+        }
+
+        misses.increment();
+        cached = fetch(key, fitted);
+        if (cached == null) {
+            return null;
+        }
+        if (smaller) {
+            resized.increment();
+            bytesSavedByResize.add(estimateSaving(cached.body.length, requested.variant, fitted.variant));
+        }
+        return new Response(cached.contentType, cached.body, false, smaller);
+    }
+
+    /**
+     * Loads thumbnails in the background ahead of the page, one per video.
+     * Returns how many were queued.
+     */
+    public int prefetch(Collection<String> urls, int targetWidth) {
+        Set<String> videos = new HashSet<>();
+        int queued = 0;
+        for (String url : urls) {
+            if (queued >= MAX_PREFETCH) {
+                break;
+            }
+            ThumbnailUrl thumb = ThumbnailUrl.parse(url);
+            if (thumb == null || !videos.add(thumb.videoId)) {
+                continue;
+            }
+            final ThumbnailUrl fitted = thumb.fitting(targetWidth);
+            final String key = DiskLruCache.hashKey(fitted.toString());
+            if (inMemory(key) || disk.get(key) != null) {
+                continue;
+            }
+            final CountDownLatch done = new CountDownLatch(1);
+            synchronized (loading) {
+                if (loading.containsKey(key)) {
+                    continue;
+                }
+                loading.put(key, done);
+            }
+            queued++;
+            background.execute(() -> {
+                try {
+                    if (fetch(key, fitted) != null) {
+                        prefetched.increment();
+                    }
+                } finally {
+                    synchronized (loading) {
+                        loading.remove(key);
+                    }
+                    done.countDown();
+                }
+            });
+        }
+        return queued;
+    }
+
+    private boolean inMemory(String key) {
+        synchronized (memory) {
+            return memory.containsKey(key);
+        }
+    }
+
+    private Cached lookup(String key) {
+        long now = clock.currentTimeMillis();
+        synchronized (memory) {
+            Cached cached = memory.get(key);
+            if (cached != null) {
+                if (now - cached.storedAt < ttlMs) {
+                    memoryHits.increment();
+                    return cached;
+                }
+                memory.remove(key);
+                memoryBytes -= cached.body.length;
+            }
+        }
+        DiskLruCache.Snapshot snapshot = disk.get(key);
+        if (snapshot == null) {
+            return null;
+        }
+        long storedAt = parseLong(snapshot.meta.getProperty(META_STORED_AT));
+        if (now - storedAt >= ttlMs || snapshot.length > MAX_BODY) {
+            disk.remove(key);
+            return null;
+        }
+        try (InputStream in = snapshot.open()) {
+            byte[] body = readFully(in, (int) snapshot.length);
+            if (body == null || body.length != snapshot.length) {
+                disk.remove(key);
+                return null;
+            }
+            Cached cached = new Cached(snapshot.meta.getProperty(META_CONTENT_TYPE), body, storedAt);
+            remember(key, cached);
+            diskHits.increment();
+            return cached;
+        } catch (IOException e) {
+            disk.remove(key);
+            return null;
+        }
+    }
+
+    private Cached fetch(final String key, ThumbnailUrl thumb) {
+        String url = upstream != null ? upstream + thumb.pathAndQuery() : thumb.toString();
+        try (HttpStack.Call call = http.open(url)) {
+            if (call.code() != HttpURLConnection.HTTP_OK) {
+                errors.increment();
+                return null;
+            }
+            int expected = (int) Math.min(call.contentLength(), Integer.MAX_VALUE);
+            byte[] body;
+            try (InputStream in = call.body()) {
+                body = readFully(in, expected);
+            }
+            // A short body is a dropped connection, not a thumbnail
+            if (body == null || (expected >= 0 && body.length != expected)) {
+                errors.increment();
+                return null;
+            }
+            bytesFromNetwork.add(body.length);
+            String contentType = call.connection.getContentType();
+            final Cached cached = new Cached(contentType != null ? contentType : thumb.mimeType(), body,
+                clock.currentTimeMillis());
+            remember(key, cached);
+            background.execute(() -> store(key, cached));
+            return cached;
+        } catch (IOException e) {
+            errors.increment();
+            return null;
+        }
+    }
+
+    private void store(String key, Cached cached) {
+        try {
+            DiskLruCache.Editor editor = disk.edit(key);
+            if (editor == null) {
+                return;
+            }
+            try {
+                OutputStream out = editor.stream();
+                out.write(cached.body);
+            } catch (IOException e) {
+                editor.abort();
+                return;
+            }
+            Properties meta = new Properties();
+            meta.setProperty(META_CONTENT_TYPE, cached.contentType);
+            meta.setProperty(META_STORED_AT, Long.toString(cached.storedAt));
+            editor.commit(meta);
+        } catch (IOException e) {
+            errors.increment();
+        }
+    }
+
+    private void remember(String key, Cached cached) {
+        synchronized (memory) {
+            Cached previous = memory.put(key, cached);
+            if (previous != null) {
+                memoryBytes -= previous.body.length;
+            }
+            memoryBytes += cached.body.length;
+            Iterator<Cached> it = memory.values().iterator();
+            while (memoryBytes > maxMemoryBytes && it.hasNext()) {
+                memoryBytes -= it.next().body.length;
+                it.remove();
+            }
+        }
+    }
+
+    /**
+     * Rough size the requested variant would have had. JPEG and WebP sizes
+     * grow a little slower than the pixel count, so this errs high.
+     */
+    static long estimateSaving(long bytes, ThumbnailUrl.Variant requested, ThumbnailUrl.Variant served) {
+        double ratio = (double) (requested.width * requested.height) / (served.width * served.height);
+        return Math.max(0L, (long) (bytes * ratio) - bytes);
+    }
+
+    /** Null if the body exceeds {@link #MAX_BODY}. */
+    private static byte[] readFully(InputStream in, int expected) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream(expected > 0 && expected <= MAX_BODY ? expected : 16 * 1024);
+        byte[] buffer = new byte[8 * 1024];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            if (out.size() + n > MAX_BODY) {
+                return null;
+            }
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private static long parseLong(String value) {
+        try {
+            return value != null ? Long.parseLong(value) : 0L;
+        } catch (NumberFormatException e) {
+            return 0L;
+        }
+    }
+
+    /** Evicts least recently used thumbnails until at most {@code maxBytes} stay in memory. */
+    public void trimMemory(long maxBytes) {
+        synchronized (memory) {
+            Iterator<Cached> it = memory.values().iterator();
+            while (memoryBytes > maxBytes && it.hasNext()) {
+                memoryBytes -= it.next().body.length;
+                it.remove();
+            }
+        }
+    }
+
+    public long memoryBytes() {
+        synchronized (memory) {
+            return memoryBytes;
+        }
+    }
+
+    public long hits() {
+        return memoryHits.sum() + diskHits.sum();
+    }
+
+    public long misses() {
+        return misses.sum();
+    }
+
+    /** Bytes served from cache plus the estimated savings of downscaling. */
+    public long bytesSaved() {
+        return bytesFromCache.sum() + bytesSavedByResize.sum();
+    }
+}
@@ -0,0 +1,168 @@
+package my.tube.core.thumb;
+
+import my.tube.core.media.VideoId;
+
+/**
+ * A video thumbnail on i.ytimg.com: {@code /vi/<videoId>/<variant>.jpg} or
+ * {@code /vi_webp/<videoId>/<variant>.webp}, optionally signed with an
+ * {@code sqp}/{@code rs} query for a custom crop.
+ *
+ * Only the fixed-size variants are recognised. Shorts covers, animated
+ * previews and storyboard frames use other names and are left alone.
+ */
+public final class ThumbnailUrl {
+
+    /** Fixed-size variants, smallest first. */
+    public enum Variant {
+        DEFAULT("default", 120, 90),
+        MEDIUM("mqdefault", 320, 180),
+        HIGH("hqdefault", 480, 360),
+        STANDARD("sddefault", 640, 480),
+        HD("hq720", 1280, 720),
+        MAXRES("maxresdefault", 1280, 720);
+
+        public final String fileName;
+        public final int width;
+        public final int height;
+
+        Variant(String fileName, int width, int height) {
+            this.fileName = fileName;
+            this.width = width;
+            this.height = height;
+        }
+
+        static Variant forFileName(String name) {
+            for (Variant v : values()) {
+                if (v.fileName.equals(name)) {
+                    return v;
+                }
+            }
+            return null;
+        }
+    }
+
+    // Generated for every upload; the larger ones are missing for old or low-resolution videos
+    private static final Variant[] ALWAYS_AVAILABLE = {Variant.DEFAULT, Variant.MEDIUM, Variant.HIGH};
+
+    public final String host;
+    public final String videoId;
+    public final Variant variant;
+    public final boolean webp;
+    private final String query;
+
+    private ThumbnailUrl(String host, String videoId, Variant variant, boolean webp, String query) {
+        this.host = host;
+        this.videoId = videoId;
+        this.variant = variant;
+        this.webp = webp;
+        this.query = query;
+    }
+
+    /** i.ytimg.com and its numbered shards. */
+    public static boolean isThumbnailHost(String host) {
+        if (host == null || !host.endsWith(".ytimg.com")) {
+            return false;
+        }
+        String shard = host.substring(0, host.length() - ".ytimg.com".length());
+        return shard.equals("i") || (shard.length() == 2 && shard.charAt(0) == 'i'
+            && shard.charAt(1) >= '0' && shard.charAt(1) <= '9');
+    }
+
+    /** Parses a full URL; null unless it is a recognised thumbnail. */
+    public static ThumbnailUrl parse(String url) {
+        String rest;
+        if (url.startsWith("https://")) {
+            rest = url.substring("https://".length());
+        } else if (url.startsWith("http://")) {
+            rest = url.substring("http://".length());
+        } else {
+            return null;
+        }
+        int slash = rest.indexOf('/');
+        if (slash < 0) {
+            return null;
+        }
+        String host = rest.substring(0, slash);
+        String path = rest.substring(slash);
+        String query = null;
+        int question = path.indexOf('?');
+        if (question >= 0) {
+            query = path.substring(question + 1);
+            path = path.substring(0, question);
+        }
+        int hash = path.indexOf('#');
+        if (hash >= 0) {
+            path = path.substring(0, hash);
+        }
+        return parse(host, path, query);
+    }
+
+    public static ThumbnailUrl parse(String host, String path, String query) {
+        if (!isThumbnailHost(host) || path == null) {
+            return null;
+        }
+        boolean webp;
+        String rest;
+        if (path.startsWith("/vi/")) {
+            webp = false;
+            rest = path.substring("/vi/".length());
+        } else if (path.startsWith("/vi_webp/")) {
+            webp = true;
+            rest = path.substring("/vi_webp/".length());
+        } else {
+            return null;
+        }
+        int slash = rest.indexOf('/');
+        if (slash < 0 || !VideoId.isValid(rest.substring(0, slash))) {
+            return null;
+        }
+        String file = rest.substring(slash + 1);
+        String extension = webp ? ".webp" : ".jpg";
+        if (!file.endsWith(extension)) {
+            return null;
+        }
+        Variant variant = Variant.forFileName(file.substring(0, file.length() - extension.length()));
+        if (variant == null) {
+            return null;
+        }
+        return new ThumbnailUrl(host, rest.substring(0, slash), variant, webp,
+            query != null && !query.isEmpty() ? query : null);
+    }
+
+    /**
+     * The smallest always-available variant at least {@code targetWidth}
+     * pixels wide. Never bigger than this variant; returns this when nothing
+     * smaller fits, or when no always-available variant is wide enough.
+     */
+    public ThumbnailUrl fitting(int targetWidth) {
+        for (Variant v : ALWAYS_AVAILABLE) {
+            if (v.width >= targetWidth) {
+                if (v.width >= variant.width) {
+                    return this;
+                }
+                // The signature only covers the original crop, so the query goes
+                return new ThumbnailUrl(host, videoId, v, webp, null);
+            }
+        }
+        return this;
+    }
+
+    public String mimeType() {
+        return webp ? "image/webp" : "image/jpeg";
+    }
+
+    /** Path and query, for fetching from another origin. */
+    public String pathAndQuery() {
+        StringBuilder sb = new StringBuilder(webp ? "/vi_webp/" : "/vi/").append(videoId).append('/')
+            .append(variant.fileName).append(webp ? ".webp" : ".jpg");
+        if (query != null) {
+            sb.append('?').append(query);
+        }
+        return sb.toString();
+    }
+
+    @Override
+    public String toString() {
+        return "https://" + host + pathAndQuery();
+    }
+}
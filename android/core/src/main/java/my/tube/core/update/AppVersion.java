@@ -0,0 +1,41 @@
+package my.tube.core.update;
+
+import org.json.JSONException;
+import org.json.JSONObject;
+
+/** One row of the Supabase {@code app_versions} table. */
+public final class AppVersion {
+
+    public final int versionCode;
+    public final String versionName;
+    public final String downloadUrl;
+    public final String releaseNotes;
+    public final boolean mandatory;
+    public final int minSupportedVersion;
+
+    public AppVersion(int versionCode, String versionName, String downloadUrl, String releaseNotes,
+                      boolean mandatory, int minSupportedVersion) {
+        this.versionCode = versionCode;
+        this.versionName = versionName;
+        this.downloadUrl = downloadUrl;
+        this.releaseNotes = releaseNotes;
+        this.mandatory = mandatory;
+        this.minSupportedVersion = minSupportedVersion;
+    }
+
+    static AppVersion fromJson(JSONObject row) throws JSONException {
+        return new AppVersion(
+            row.getInt("version_code"),
+            row.getString("version_name"),
+            row.getString("download_url"),
+            row.optString("release_notes", ""),
+            row.optBoolean("is_mandatory", false),
+            row.optInt("min_supported_version", 1));
+    }
+
+    @Override
+    public String toString() {
+        return versionName + " (" + versionCode + ", min " + minSupportedVersion
+            + (mandatory ? ", mandatory" : "") + ")";
+    }
+}
@@ -0,0 +1,96 @@
+package my.tube.core.update;
+
+import my.tube.core.Clock;
+import my.tube.core.task.TaskRunner;
+
+/**
+ * Starts the page load and the update check side by side.
+ *
+ * The page used to wait for the version check, up to both HTTP timeouts on a
+ * bad network. Now {@link Callbacks#loadPage} runs at once and the decision
+ * arrives whenever the check settles; only a {@link UpdatePolicy.Action#FORCE}
+ * decision should take the page away from the user. The check is keyed work
+ * on the shared {@link TaskRunner}, so an activity recreated mid-check joins
+ * the request already in flight instead of starting another.
+ */
+public final class StartupOrchestrator {
+
+    public interface Callbacks {
+        /** Called synchronously from {@link #start}. */
+        void loadPage();
+
+        /** Called on the main thread once the check succeeds or fails, unless the owner was cancelled. */
+        void onUpdateDecision(UpdatePolicy.Decision decision);
+    }
+
+    /** The blocking part of the check; returns null when there is nothing published. */
+    public interface Check {
+        AppVersion fetchLatest() throws Exception;
+    }
+
+    static final String TASK_KEY = "update-check";
+
+    private final Check check;
+    private final UpdatePolicy policy;
+    private final TaskRunner tasks;
+    private final Clock clock;
+
+    private volatile long startedNanos;
+    private volatile long firstPaintNanos;
+    private volatile long decisionNanos;
+    private volatile UpdatePolicy.Decision decision;
+    private volatile Throwable checkError;
+
+    public StartupOrchestrator(Check check, UpdatePolicy policy, TaskRunner tasks, Clock clock) {
+        this.check = check;
+        this.policy = policy;
+        this.tasks = tasks;
+        this.clock = clock;
+    }
+
+    /**
+     * @param owner cancelling it on the runner drops the decision callback
+     * @param firstSeen stored time a newer version was first seen, 0 if never
+     */
+    public void start(Object owner, final long firstSeen, final Callbacks callbacks) {
+        startedNanos = clock.nanoTime();
+        tasks.submit(owner, TASK_KEY, check::fetchLatest, (AppVersion latest, Throwable error) -> {
+            checkError = error;
+            decisionNanos = clock.nanoTime();
+            decision = policy.decide(latest, firstSeen, clock.currentTimeMillis());
+            callbacks.onUpdateDecision(decision);
+        });
+        callbacks.loadPage();
+    }
+
+    /** Marks the first visible frame of the page; later calls are ignored. */
+    public void onFirstPaint() {
+        if (firstPaintNanos == 0L && startedNanos != 0L) {
+            firstPaintNanos = clock.nanoTime();
+        }
+    }
+
+    /** Start to first visible page frame, or -1 before it. */
+    public long timeToFirstPaintMillis() {
+        return elapsedMillis(firstPaintNanos);
+    }
+
+    /** Start to update decision delivery, or -1 before it. */
+    public long timeToDecisionMillis() {
+        return elapsedMillis(decisionNanos);
+    }
+
+    /** The delivered decision, or null while the check is in flight. */
+    public UpdatePolicy.Decision decision() {
+        return decision;
+    }
+
+    /** Why the last check produced no version info, or null. */
+    public Throwable checkError() {
+        return checkError;
+    }
+
+    private long elapsedMillis(long nanos) {
+        return nanos == 0L ? -1L : (nanos - startedNanos) / 1_000_000;
+    }
+}
@@ -0,0 +1,290 @@
+package my.tube.core.update;
+
+import java.io.File;
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.util.Properties;
+import java.util.Random;
+import my.tube.core.Clock;
+import my.tube.core.io.PropertiesFile;
+import my.tube.core.io.Streams;
+import my.tube.core.net.HttpStack;
+import org.json.JSONArray;
+import org.json.JSONException;
+
+/**
+ * Fetches the newest {@link AppVersion} from the Supabase REST endpoint.
+ *
+ * With a cache file the last good response is kept together with its ETag.
+ * Within the TTL no request is made at all; after it the request carries
+ * If-None-Match so an unchanged answer costs a 304. Failures back off
+ * exponentially with jitter, and while backing off (or when a request fails)
+ * the last good answer is returned if there is one.
+ *
+ * Blocking; call off the main thread.
+ */
+public final class UpdateClient {
+
+    static final String LATEST_PATH = "/rest/v1/app_versions?select=*&order=version_code.desc&limit=1";
+
+    private static final String KEY_BODY = "body";
+    private static final String KEY_ETAG = "etag";
+    private static final String KEY_FETCHED_AT = "fetchedAt";
+    private static final String KEY_FAILURES = "failures";
+    private static final String KEY_RETRY_AT = "retryAt";
+
+    private final String baseUrl;
+    private final String apiKey;
+    private final HttpStack.Client http;
+    private final int connectTimeoutMs;
+    private final int readTimeoutMs;
+    private final File cacheFile;
+    private final long ttlMs;
+    private final long backoffBaseMs;
+    private final long backoffMaxMs;
+    private final Clock clock;
+    private final Random random;
+
+    // Guarded by this
+    private boolean loaded;
+    private String body;
+    private AppVersion latest;
+    private String etag;
+    private long fetchedAt;
+    private int failures;
+    private long retryAt;
+    private int networkRequests;
+    private int notModified;
+    private int cacheHits;
+
+    private UpdateClient(Builder builder) {
+        this.baseUrl = builder.baseUrl;
+        this.apiKey = builder.apiKey;
+        this.http = builder.http;
+        this.connectTimeoutMs = builder.connectTimeoutMs;
+        this.readTimeoutMs = builder.readTimeoutMs;
+        this.cacheFile = builder.cacheFile;
+        this.ttlMs = builder.ttlMs;
+        this.backoffBaseMs = builder.backoffBaseMs;
+        this.backoffMaxMs = builder.backoffMaxMs;
+        this.clock = builder.clock;
+        this.random = builder.random;
+    }
+
+    public static Builder builder(String baseUrl, String apiKey) {
+        return new Builder(baseUrl, apiKey);
+    }
+
+    /**
+     * Returns the newest published version, or null when none is published.
+     * Throws only when the network fails and nothing was cached before.
+     */
+    public synchronized AppVersion fetchLatest() throws IOException {
+        load();
+        long now = clock.currentTimeMillis();
+        if (body != null && now - fetchedAt >= 0 && now - fetchedAt < ttlMs) {
+            cacheHits++;
+            return latest;
+        }
+        if (now < retryAt) {
+            if (body != null) {
+                cacheHits++;
+                return latest;
+            }
+            throw new IOException("Update check backing off for " + (retryAt - now) + "ms");
+        }
+
+        try {
+            request(now);
+            failures = 0;
+            retryAt = 0L;
+            save();
+            return latest;
+        } catch (IOException e) {
+            failures++;
+            retryAt = now + backoffDelay(failures);
+            save();
+            if (body != null) {
+                return latest;
+            }
+            throw e;
+        }
+    }
+
+    private void request(long now) throws IOException {
+        networkRequests++;
+        try (HttpStack.Call call = http.open(baseUrl + LATEST_PATH)) {
+            HttpURLConnection conn = call.connection;
+            conn.setRequestMethod("GET");
+            conn.setRequestProperty("apikey", apiKey);
+            conn.setRequestProperty("Authorization", "Bearer " + apiKey);
+            conn.setRequestProperty("Accept", "application/json");
+            if (etag != null && body != null) {
+                conn.setRequestProperty("If-None-Match", etag);
+            }
+            conn.setUseCaches(false);
+            conn.setConnectTimeout(connectTimeoutMs);
+            conn.setReadTimeout(readTimeoutMs);
+
+            int code = call.code();
+            if (code == HttpURLConnection.HTTP_NOT_MODIFIED && body != null) {
+                notModified++;
+                fetchedAt = now;
+                return;
+            }
+            if (code != HttpURLConnection.HTTP_OK) {
+                throw new IOException("Update check failed with code " + code);
+            }
+            String fresh = Streams.readUtf8(call.body());
+            // Parse before replacing so a bad response never evicts a good one
+            latest = parseLatest(fresh);
+            body = fresh;
+            etag = conn.getHeaderField("ETag");
+            fetchedAt = now;
+        }
+    }
+
+    /** Exponential in the failure count, capped, with the upper half jittered so clients spread out. */
+    long backoffDelay(int failureCount) {
+        int shift = Math.min(failureCount - 1, 30);
+        long delay = Math.min(backoffMaxMs, backoffBaseMs << shift);
+        long half = delay / 2;
+        return half + (half > 0 ? (long) (random.nextDouble() * half) : 0L);
+    }
+
+    /** Requests that went to the network, including 304s. */
+    public synchronized int networkRequests() {
+        return networkRequests;
+    }
+
+    /** Requests answered 304 Not Modified. */
+    public synchronized int notModifiedResponses() {
+        return notModified;
+    }
+
+    /** Calls answered from the cache without a request. */
+    public synchronized int cacheHits() {
+        return cacheHits;
+    }
+
+    /** Consecutive failed requests. */
+    public synchronized int consecutiveFailures() {
+        return failures;
+    }
+
+    private void load() {
+        if (loaded) {
+            return;
+        }
+        loaded = true;
+        if (cacheFile == null) {
+            return;
+        }
+        Properties props = PropertiesFile.load(cacheFile);
+        failures = (int) PropertiesFile.getLong(props, KEY_FAILURES, 0L);
+        retryAt = PropertiesFile.getLong(props, KEY_RETRY_AT, 0L);
+        String cached = props.getProperty(KEY_BODY);
+        if (cached != null) {
+            try {
+                latest = parseLatest(cached);
+                body = cached;
+                etag = props.getProperty(KEY_ETAG);
+                fetchedAt = PropertiesFile.getLong(props, KEY_FETCHED_AT, 0L);
+            } catch (IOException e) {
+                // Unreadable cache: behave as if there was none
+                latest = null;
+            }
+        }
+    }
+
+    private void save() {
+        if (cacheFile == null) {
+            return;
+        }
+        Properties props = new Properties();
+        props.setProperty(KEY_FAILURES, Integer.toString(failures));
+        props.setProperty(KEY_RETRY_AT, Long.toString(retryAt));
+        if (body != null) {
+            props.setProperty(KEY_BODY, body);
+            props.setProperty(KEY_FETCHED_AT, Long.toString(fetchedAt));
+            if (etag != null) {
+                props.setProperty(KEY_ETAG, etag);
+            }
+        }
+        try {
+            PropertiesFile.store(props, cacheFile);
+        } catch (IOException e) {
+            // The cache is an optimization; the next start simply asks again
+        }
+    }
+
+    static AppVersion parseLatest(String body) throws IOException {
+        try {
+            JSONArray rows = new JSONArray(body);
+            return rows.length() > 0 ? AppVersion.fromJson(rows.getJSONObject(0)) : null;
+        } catch (JSONException e) {
+            throw new IOException("Malformed update response", e);
+        }
+    }
+
+    public static final class Builder {
+        private final String baseUrl;
+        private final String apiKey;
+        private HttpStack.Client http;
+        private int connectTimeoutMs = 10_000;
+        private int readTimeoutMs = 10_000;
+        private File cacheFile;
+        private long ttlMs;
+        private long backoffBaseMs = 60_000;
+        private long backoffMaxMs = 6 * 60 * 60 * 1000L;
+        private Clock clock = Clock.SYSTEM;
+        private Random random = new Random();
+
+        private Builder(String baseUrl, String apiKey) {
+            this.baseUrl = baseUrl;
+            this.apiKey = apiKey;
+        }
+
+        /** Required; the shared stack's client for update checks. */
+        public Builder http(HttpStack.Client http) {
+            this.http = http;
+            return this;
+        }
+
+        public Builder timeouts(int connectTimeoutMs, int readTimeoutMs) {
+            this.connectTimeoutMs = connectTimeoutMs;
+            this.readTimeoutMs = readTimeoutMs;
+            return this;
+        }
+
+        /** Keeps the last good response in {@code file} and skips the network for {@code ttlMs} after it. */
+        public Builder cache(File file, long ttlMs) {
+            this.cacheFile = file;
+            this.ttlMs = ttlMs;
+            return this;
+        }
+
+        public Builder backoff(long baseMs, long maxMs) {
+            this.backoffBaseMs = baseMs;
+            this.backoffMaxMs = maxMs;
+            return this;
+        }
+
+        public Builder clock(Clock clock) {
+            this.clock = clock;
+            return this;
+        }
+
+        public Builder random(Random random) {
+            this.random = random;
+            return this;
+        }
+
+        public UpdateClient build() {
+            if (http == null) {
+                throw new IllegalStateException("No HTTP client");
+            }
+            return new UpdateClient(this);
+        }
+    }
+}
@@ -0,0 +1,79 @@
+package my.tube.core.update;
+
+/**
+ * Decides what an update check means for the running build.
+ *
+ * A build below {@code min_supported_version} is always forced. A newer
+ * version is announced the first time it is seen and forced once it is
+ * mandatory or the grace period since first seeing it has run out.
+ */
+public final class UpdatePolicy {
+
+    private static final long DAY_MS = 24L * 60 * 60 * 1000;
+
+    public enum Action {
+        /** Up to date, or nothing is known. */
+        NONE,
+        /** Newer version available; keep the app usable. */
+        NOTIFY,
+        /** Block the app until the user updates. */
+        FORCE
+    }
+
+    public static final class Decision {
+        public final Action action;
+        /** The version the decision is about, or null when the check failed. */
+        public final AppVersion latest;
+        /** Value to persist as "update first seen"; 0 clears it. */
+        public final long firstSeen;
+        public final String reason;
+
+        Decision(Action action, AppVersion latest, long firstSeen, String reason) {
+            this.action = action;
+            this.latest = latest;
+            this.firstSeen = firstSeen;
+            this.reason = reason;
+        }
+
+        @Override
+        public String toString() {
+            return action + " (" + reason + ")" + (latest != null ? " latest=" + latest : "");
+        }
+    }
+
+    private final int currentVersionCode;
+    private final int graceDays;
+
+    public UpdatePolicy(int currentVersionCode, int graceDays) {
+        this.currentVersionCode = currentVersionCode;
+        this.graceDays = graceDays;
+    }
+
+    /**
+     * @param latest result of the check, or null if it failed or found nothing
+     * @param firstSeen stored time the newer version was first seen, 0 if never
+     * @param now wall clock time in millis
+     */
+    public Decision decide(AppVersion latest, long firstSeen, long now) {
+        if (latest == null) {
+            return new Decision(Action.NONE, null, firstSeen, "no update info");
+        }
+        if (currentVersionCode < latest.minSupportedVersion) {
+            return new Decision(Action.FORCE, latest, firstSeen, "below minimum supported version");
+        }
+        if (latest.versionCode <= currentVersionCode) {
+            return new Decision(Action.NONE, latest, 0L, "up to date");
+        }
+        if (firstSeen == 0L) {
+            return new Decision(Action.NOTIFY, latest, now, "first seen");
+        }
+        if (latest.mandatory) {
+            return new Decision(Action.FORCE, latest, firstSeen, "mandatory");
+        }
+        long days = (now - firstSeen) / DAY_MS;
+        if (days >= graceDays) {
+            return new Decision(Action.FORCE, latest, firstSeen, "grace period over after " + days + " day(s)");
+        }
+        return new Decision(Action.NOTIFY, latest, firstSeen, (graceDays - days) + " day(s) of grace left");
+    }
+}
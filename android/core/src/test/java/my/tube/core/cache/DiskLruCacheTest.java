@@ -0,0 +1,141 @@
+package my.tube.core.cache;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Properties;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class DiskLruCacheTest {
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    private File dir;
+
+    @Before
+    public void setUp() {
+        dir = tmp.getRoot();
+    }
+
+    private static void put(DiskLruCache cache, String key, String body) throws IOException {
+        DiskLruCache.Editor editor = cache.edit(key);
+        editor.stream().write(body.getBytes(StandardCharsets.UTF_8));
+        Properties meta = new Properties();
+        meta.setProperty("name", key);
+        editor.commit(meta);
+    }
+
+    private static String read(DiskLruCache.Snapshot snapshot) throws IOException {
+        try (InputStream in = snapshot.open()) {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[64];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        }
+    }
+
+    @Test
+    public void storesBodyAndMetadata() throws IOException {
+        DiskLruCache cache = new DiskLruCache(dir, 1000);
+        assertNull(cache.get("a"));
+        put(cache, "a", "hello");
+        DiskLruCache.Snapshot snapshot = cache.get("a");
+        assertEquals("hello", read(snapshot));
+        assertEquals("a", snapshot.meta.getProperty("name"));
+        assertEquals(5, snapshot.length);
+        assertEquals(5, cache.size());
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedOverTheLimit() throws IOException {
+        DiskLruCache cache = new DiskLruCache(dir, 10);
+        put(cache, "a", "aaaa");
+        put(cache, "b", "bbbb");
+        assertNotNull(cache.get("a"));
+        put(cache, "c", "cccc");
+        assertNull(cache.get("b"));
+        assertNotNull(cache.get("a"));
+        assertNotNull(cache.get("c"));
+        assertEquals(8, cache.size());
+        assertEquals(1, cache.evictionCount());
+        assertFalse(new File(dir, "b.body").exists());
+    }
+
+    @Test
+    public void replacingAnEntryKeepsSizeRight() throws IOException {
+        DiskLruCache cache = new DiskLruCache(dir, 100);
+        put(cache, "a", "first version");
+        put(cache, "a", "v2");
+        assertEquals("v2", read(cache.get("a")));
+        assertEquals(2, cache.size());
+        assertEquals(1, cache.entryCount());
+    }
+
+    @Test
+    public void abortedEditsLeaveNothing() throws IOException {
+        DiskLruCache cache = new DiskLruCache(dir, 100);
+        DiskLruCache.Editor editor = cache.edit("a");
+        editor.stream().write(1);
+        assertNull("one editor per key", cache.edit("a"));
+        editor.abort();
+        assertNull(cache.get("a"));
+        assertEquals(0, dir.listFiles().length);
+        assertNotNull(cache.edit("a"));
+    }
+
+    @Test
+    public void reopenKeepsEntriesAndDropsDebris() throws IOException {
+        DiskLruCache cache = new DiskLruCache(dir, 100);
+        put(cache, "a", "kept");
+        new FileOutputStream(new File(dir, "b.body")).close();
+        new FileOutputStream(new File(dir, "c.body.tmp")).close();
+
+        DiskLruCache reopened = new DiskLruCache(dir, 100);
+        assertEquals("kept", read(reopened.get("a")));
+        assertEquals(1, reopened.entryCount());
+        assertFalse(new File(dir, "b.body").exists());
+        assertFalse(new File(dir, "c.body.tmp").exists());
+    }
+
+    @Test
+    public void reopenTrimsToASmallerLimitOldestFirst() throws IOException {
+        DiskLruCache cache = new DiskLruCache(dir, 100);
+        put(cache, "a", "aaaa");
+        put(cache, "b", "bbbb");
+        new File(dir, "a.meta").setLastModified(System.currentTimeMillis() - 60_000);
+
+        DiskLruCache reopened = new DiskLruCache(dir, 5);
+        assertNull(reopened.get("a"));
+        assertNotNull(reopened.get("b"));
+    }
+
+    @Test
+    public void updateMetaKeepsBody() throws IOException {
+        DiskLruCache cache = new DiskLruCache(dir, 100);
+        put(cache, "a", "body");
+        Properties meta = new Properties();
+        meta.setProperty("name", "renamed");
+        assertTrue(cache.updateMeta("a", meta));
+        assertFalse(cache.updateMeta("missing", meta));
+        DiskLruCache.Snapshot snapshot = cache.get("a");
+        assertEquals("renamed", snapshot.meta.getProperty("name"));
+        assertEquals("body", read(snapshot));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsKeysThatAreNotFileNames() throws IOException {
+        new DiskLruCache(dir, 100).edit("../x");
+    }
+}
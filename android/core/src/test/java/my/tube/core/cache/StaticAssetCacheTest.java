@@ -0,0 +1,233 @@
+package my.tube.core.cache;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicInteger;
+import my.tube.core.Clock;
+import my.tube.core.metrics.MetricsRegistry;
+import my.tube.core.net.HttpStack;
+import my.tube.core.testing.FakeClock;
+import my.tube.core.testing.StubServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class StaticAssetCacheTest {
+
+    private static final String BASE_JS = "var player = 1;".replace("1", repeat("1", 5000));
+    private static final long REVALIDATE_MS = 7 * 24 * 60 * 60 * 1000L;
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+    @Rule
+    public final StubServer server = new StubServer();
+    private File dir;
+    private final FakeClock clock = new FakeClock(1_700_000_000_000L);
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private final Executor direct = Runnable::run;
+    private final AtomicInteger requests = new AtomicInteger();
+    private final AtomicInteger conditionalRequests = new AtomicInteger();
+    private final AtomicInteger requestsWithCookies = new AtomicInteger();
+    private volatile String body = BASE_JS;
+    private volatile String etag = "\"v1\"";
+    private volatile int status = 200;
+    private volatile String cacheControl = "public, max-age=31536000";
+
+    @Before
+    public void setUp() {
+        dir = tmp.getRoot();
+        server.handle("/s/", exchange -> {
+            requests.incrementAndGet();
+            if (exchange.getRequestHeaders().getFirst("Cookie") != null) {
+                requestsWithCookies.incrementAndGet();
+            }
+            String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+            if (ifNoneMatch != null) {
+                conditionalRequests.incrementAndGet();
+                if (ifNoneMatch.equals(etag)) {
+                    StubServer.respondEmpty(exchange, 304);
+                    return;
+                }
+            }
+            if (status != 200) {
+                StubServer.respondEmpty(exchange, status);
+                return;
+            }
+            exchange.getResponseHeaders().add("Content-Type", "text/javascript; charset=utf-8");
+            exchange.getResponseHeaders().add("ETag", etag);
+            exchange.getResponseHeaders().add("Cache-Control", cacheControl);
+            exchange.getResponseHeaders().add("Access-Control-Allow-Origin", "*");
+            exchange.getResponseHeaders().add("Set-Cookie", "tracking=1");
+            StubServer.respond(exchange, 200, body);
+        });
+    }
+
+    @After
+    public void cookiesAreNeverForwarded() {
+        assertEquals(0, requestsWithCookies.get());
+    }
+
+    private String url(String path) {
+        return server.url(path);
+    }
+
+    private StaticAssetCache cache(long maxBytes) {
+        return new StaticAssetCache(new DiskLruCache(dir, maxBytes), metrics, direct, clock, REVALIDATE_MS,
+            new HttpStack(HttpStack.PLATFORM, metrics, Clock.SYSTEM, 60_000).client("assets", 2000));
+    }
+
+    private static Map<String, String> pageHeaders() {
+        Map<String, String> headers = new HashMap<>();
+        headers.put("User-Agent", "test");
+        headers.put("Cookie", "SID=secret");
+        return headers;
+    }
+
+    private static String readAll(InputStream in) throws IOException {
+        try {
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            byte[] buffer = new byte[1024];
+            int n;
+            while ((n = in.read(buffer)) != -1) {
+                out.write(buffer, 0, n);
+            }
+            return new String(out.toByteArray(), StandardCharsets.UTF_8);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static String repeat(String s, int times) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            sb.append(s);
+        }
+        return sb.toString();
+    }
+
+    @Test
+    public void recognisesVersionedStaticPaths() {
+        assertTrue(StaticAssetCache.isCacheable("GET", "m.youtube.com", "/s/player/6e1dd460/player-plasma-ias-phone-en_US.vflset/base.js"));
+        assertTrue(StaticAssetCache.isCacheable("GET", "m.youtube.com", "/s/_/ytmweb/_/js/k=ytmweb.base_module.en_US/d=1/rs=abc"));
+        assertTrue(StaticAssetCache.isCacheable("GET", "fonts.gstatic.com", "/s/roboto/v30/KFOmCnqEu92Fr1Mu4mxK.woff2"));
+        assertFalse(StaticAssetCache.isCacheable("POST", "m.youtube.com", "/s/player/x/base.js"));
+        assertFalse(StaticAssetCache.isCacheable("GET", "m.youtube.com", "/watch"));
+        assertFalse(StaticAssetCache.isCacheable("GET", "m.youtube.com", "/youtubei/v1/player"));
+        assertFalse(StaticAssetCache.isCacheable("GET", "evil.example", "/s/player/x/base.js"));
+    }
+
+    @Test
+    public void missIsStreamedAndStoredThenServedFromDisk() throws IOException {
+        StaticAssetCache assets = cache(1 << 20);
+        String url = url("/s/player/abc/base.js");
+
+        StaticAssetCache.Response first = assets.open(url, pageHeaders());
+        assertFalse(first.fromCache);
+        assertEquals("text/javascript", first.mimeType);
+        assertEquals("utf-8", first.charset);
+        assertEquals(BASE_JS, readAll(first.body));
+
+        StaticAssetCache.Response second = assets.open(url, pageHeaders());
+        assertTrue(second.fromCache);
+        assertEquals(BASE_JS, readAll(second.body));
+        assertEquals("*", second.headers.get("Access-Control-Allow-Origin"));
+        assertNull("cookies are not replayed", second.headers.get("Set-Cookie"));
+        assertEquals(1, requests.get());
+        assertEquals(1, assets.hits());
+        assertEquals(1, assets.misses());
+        assertEquals(BASE_JS.length(), metrics.counter("assets.bytesFromCache").sum());
+    }
+
+    @Test
+    public void survivesRestart() throws IOException {
+        String url = url("/s/player/abc/base.js");
+        readAll(cache(1 << 20).open(url, pageHeaders()).body);
+        StaticAssetCache restarted = cache(1 << 20);
+        assertTrue(restarted.open(url, pageHeaders()).fromCache);
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void partialReadIsNotCached() throws IOException {
+        StaticAssetCache assets = cache(1 << 20);
+        String url = url("/s/player/abc/base.js");
+        StaticAssetCache.Response first = assets.open(url, pageHeaders());
+        first.body.read(new byte[10]);
+        first.body.close();
+
+        assertFalse(assets.open(url, pageHeaders()).fromCache);
+        assertEquals(0, assets.diskCache().entryCount());
+    }
+
+    @Test
+    public void noStoreResponsesPassThrough() throws IOException {
+        cacheControl = "no-store";
+        StaticAssetCache assets = cache(1 << 20);
+        String url = url("/s/player/abc/base.js");
+        assertEquals(BASE_JS, readAll(assets.open(url, pageHeaders()).body));
+        assertFalse(assets.open(url, pageHeaders()).fromCache);
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void errorsFallBackToTheWebView() {
+        status = 503;
+        assertNull(cache(1 << 20).open(url("/s/player/abc/base.js"), pageHeaders()));
+    }
+
+    @Test
+    public void staleHitsRevalidateInTheBackground() throws IOException {
+        StaticAssetCache assets = cache(1 << 20);
+        String url = url("/s/player/abc/base.js");
+        readAll(assets.open(url, pageHeaders()).body);
+
+        clock.millis += REVALIDATE_MS;
+        assertTrue(assets.open(url, pageHeaders()).fromCache);
+        assertEquals(1, conditionalRequests.get());
+        assertEquals(1, metrics.counter("assets.revalidatedUnchanged").sum());
+
+        // Validated again just now: no further request
+        assertTrue(assets.open(url, pageHeaders()).fromCache);
+        assertEquals(1, conditionalRequests.get());
+
+        clock.millis += REVALIDATE_MS;
+        etag = "\"v2\"";
+        body = "var player = 2;";
+        readAll(assets.open(url, pageHeaders()).body);
+        assertEquals(1, metrics.counter("assets.revalidatedChanged").sum());
+        assertEquals("var player = 2;", readAll(assets.open(url, pageHeaders()).body));
+    }
+
+    @Test
+    public void goneAssetsAreDropped() throws IOException {
+        StaticAssetCache assets = cache(1 << 20);
+        String url = url("/s/player/abc/base.js");
+        readAll(assets.open(url, pageHeaders()).body);
+        clock.millis += REVALIDATE_MS;
+        etag = "\"other\"";
+        status = 404;
+        readAll(assets.open(url, pageHeaders()).body);
+        assertEquals(0, assets.diskCache().entryCount());
+    }
+
+    @Test
+    public void sizeLimitEvictsOldBundles() throws IOException {
+        StaticAssetCache assets = cache(BASE_JS.length() * 2 + 10);
+        for (int i = 0; i < 3; i++) {
+            readAll(assets.open(url("/s/player/v" + i + "/base.js"), Collections.<String, String>emptyMap()).body);
+        }
+        assertEquals(2, assets.diskCache().entryCount());
+        assertFalse(assets.open(url("/s/player/v0/base.js"), null).fromCache);
+    }
+}
@@ -0,0 +1,86 @@
+package my.tube.core.download;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class DownloadJournalTest {
+
+    private File file;
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("journal", ".journal");
+        assertTrue(file.delete());
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+    }
+
+    @Test
+    public void chunkBoundaries() throws IOException {
+        try (DownloadJournal journal = DownloadJournal.open(file, 2500, 1000, "")) {
+            assertEquals(3, journal.chunkCount());
+            assertEquals(0, journal.chunkStart(0));
+            assertEquals(999, journal.chunkEnd(0));
+            assertEquals(2000, journal.chunkStart(2));
+            assertEquals(2499, journal.chunkEnd(2));
+        }
+    }
+
+    @Test
+    public void progressSurvivesReopening() throws IOException {
+        try (DownloadJournal journal = DownloadJournal.open(file, 20_500, 1000, "\"etag\"")) {
+            journal.markDone(0);
+            journal.markDone(9);
+            journal.markDone(20);
+            journal.markDone(9);
+            assertEquals(3, journal.doneCount());
+        }
+        // Header plus three bytes of bits
+        assertTrue(file.length() < 40);
+        try (DownloadJournal journal = DownloadJournal.open(file, 20_500, 1000, "\"etag\"")) {
+            assertEquals(3, journal.doneCount());
+            assertTrue(journal.isDone(0));
+            assertTrue(journal.isDone(9));
+            assertTrue(journal.isDone(20));
+            assertFalse(journal.isDone(8));
+            assertEquals(2500, journal.doneBytes());
+            assertFalse(journal.isComplete());
+        }
+    }
+
+    @Test
+    public void anotherResourceStartsOver() throws IOException {
+        try (DownloadJournal journal = DownloadJournal.open(file, 5000, 1000, "\"v1\"")) {
+            journal.markDone(1);
+        }
+        try (DownloadJournal journal = DownloadJournal.open(file, 5000, 1000, "\"v2\"")) {
+            assertEquals(0, journal.doneCount());
+            journal.markDone(2);
+        }
+        try (DownloadJournal journal = DownloadJournal.open(file, 5000, 500, "\"v2\"")) {
+            assertEquals(0, journal.doneCount());
+        }
+        try (DownloadJournal journal = DownloadJournal.open(file, 6000, 500, "\"v2\"")) {
+            assertEquals(0, journal.doneCount());
+        }
+    }
+
+    @Test
+    public void completes() throws IOException {
+        try (DownloadJournal journal = DownloadJournal.open(file, 3000, 1000, "")) {
+            for (int i = 0; i < 3; i++) {
+                journal.markDone(i);
+            }
+            assertTrue(journal.isComplete());
+            assertEquals(3000, journal.doneBytes());
+        }
+    }
+}
@@ -0,0 +1,259 @@
+package my.tube.core.download;
+
+import static org.junit.Assert.*;
+
+import com.sun.net.httpserver.HttpExchange;
+import java.io.File;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Random;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicInteger;
+import my.tube.core.testing.StubServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RangedDownloaderTest {
+
+    private static final int SIZE = 1_000_000;
+    private static final int CHUNK = 64 * 1024;
+
+    private final ExecutorService serverThreads = Executors.newFixedThreadPool(8);
+    private final ExecutorService workers = Executors.newFixedThreadPool(8);
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+    @Rule
+    public final StubServer server = new StubServer(serverThreads);
+    private File dir;
+    private File target;
+    private volatile byte[] content = content(1);
+    private volatile String etag = "\"v1\"";
+    private volatile boolean rangeSupport = true;
+    // Chunk requests (not the probe) from this count on fail with 500
+    private volatile int failFrom = Integer.MAX_VALUE;
+    // Chunk requests at these counts fail once
+    private volatile int[] failOnce = {};
+    private volatile boolean truncateOnce;
+    private volatile RangedDownloader.Progress cancelAt;
+    private volatile int cancelAfter = Integer.MAX_VALUE;
+    // After this many chunk requests the resource gets a new version
+    private volatile int changeAfter = Integer.MAX_VALUE;
+    private final AtomicInteger chunkRequests = new AtomicInteger();
+    private final AtomicInteger probes = new AtomicInteger();
+
+    private static byte[] content(long seed) {
+        byte[] bytes = new byte[SIZE];
+        new Random(seed).nextBytes(bytes);
+        return bytes;
+    }
+
+    @Before
+    public void setUp() {
+        dir = tmp.getRoot();
+        target = new File(dir, "video.mp4");
+        server.handle("/media", this::serve);
+    }
+
+    @After
+    public void tearDown() {
+        serverThreads.shutdownNow();
+        workers.shutdownNow();
+    }
+
+    private void serve(HttpExchange exchange) throws IOException {
+        if (chunkRequests.get() >= changeAfter) {
+            content = content(2);
+            etag = "\"v2\"";
+        }
+        byte[] body = content;
+        String range = exchange.getRequestHeaders().getFirst("Range");
+        String ifRange = exchange.getRequestHeaders().getFirst("If-Range");
+        exchange.getResponseHeaders().add("ETag", etag);
+        boolean partial = rangeSupport && range != null && (ifRange == null || ifRange.equals(etag));
+        if (!partial) {
+            send(exchange, 200, body, 0, body.length);
+            return;
+        }
+        String[] bounds = range.substring("bytes=".length()).split("-");
+        int start = Integer.parseInt(bounds[0]);
+        int end = Math.min(Integer.parseInt(bounds[1]), body.length - 1);
+        if (start > 0 || end > 0) {
+            int n = chunkRequests.incrementAndGet();
+            RangedDownloader.Progress progress = cancelAt;
+            if (progress != null && n > cancelAfter) {
+                progress.cancel();
+            }
+            if (n >= failFrom || Arrays.binarySearch(failOnce, n) >= 0) {
+                StubServer.respondEmpty(exchange, 500);
+                return;
+            }
+            if (truncateOnce) {
+                truncateOnce = false;
+                exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + end + "/" + body.length);
+                exchange.sendResponseHeaders(206, end - start + 1);
+                exchange.getResponseBody().write(body, start, (end - start + 1) / 2);
+                exchange.close();
+                return;
+            }
+        } else {
+            probes.incrementAndGet();
+        }
+        exchange.getResponseHeaders().add("Content-Range", "bytes " + start + "-" + end + "/" + body.length);
+        send(exchange, 206, body, start, end - start + 1);
+    }
+
+    private static void send(HttpExchange exchange, int code, byte[] body, int offset, int length)
+            throws IOException {
+        exchange.sendResponseHeaders(code, length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body, offset, length);
+        }
+    }
+
+    private String url() {
+        return server.url("/media");
+    }
+
+    private RangedDownloader.Result download(int parallelism, RangedDownloader.Progress progress)
+            throws IOException {
+        return new RangedDownloader(workers, 5000).download(url(), Collections.<String, String>emptyMap(), target,
+            parallelism, CHUNK, progress);
+    }
+
+    private void assertDownloaded() throws IOException {
+        assertArrayEquals(content, Files.readAllBytes(target.toPath()));
+        assertFalse(new File(target.getPath() + ".part").exists());
+        assertFalse(new File(target.getPath() + ".journal").exists());
+    }
+
+    @Test
+    public void fetchesChunksInParallel() throws IOException {
+        RangedDownloader.Progress progress = new RangedDownloader.Progress();
+        RangedDownloader.Result result = download(4, progress);
+        assertDownloaded();
+        assertTrue(result.ranged);
+        assertEquals(16, result.chunks);
+        assertEquals(0, result.resumedChunks);
+        assertEquals(SIZE, result.fetchedBytes);
+        assertEquals(SIZE, progress.totalBytes());
+        assertEquals(SIZE, progress.doneBytes());
+        assertEquals(16, chunkRequests.get());
+    }
+
+    @Test
+    public void resumesAfterAFailure() throws IOException {
+        failFrom = 6;
+        try {
+            download(1, new RangedDownloader.Progress());
+            fail();
+        } catch (IOException expected) {
+            // Chunk 6 failed every attempt
+        }
+        assertFalse(target.exists());
+        assertTrue(new File(target.getPath() + ".journal").exists());
+
+        failFrom = Integer.MAX_VALUE;
+        chunkRequests.set(0);
+        RangedDownloader.Result result = download(3, new RangedDownloader.Progress());
+        assertDownloaded();
+        assertEquals(5, result.resumedChunks);
+        assertEquals(SIZE - 5 * CHUNK, result.fetchedBytes);
+        assertEquals(11, chunkRequests.get());
+    }
+
+    @Test
+    public void retriesFailedAndShortChunks() throws IOException {
+        failOnce = new int[] {2, 7};
+        truncateOnce = true;
+        RangedDownloader.Result result = download(2, new RangedDownloader.Progress());
+        assertDownloaded();
+        assertEquals(0, result.resumedChunks);
+        assertEquals(19, chunkRequests.get());
+    }
+
+    @Test
+    public void cancelKeepsProgressForLater() throws IOException {
+        RangedDownloader.Progress progress = new RangedDownloader.Progress();
+        cancelAt = progress;
+        cancelAfter = 4;
+        try {
+            download(1, progress);
+            fail();
+        } catch (CancellationException expected) {
+            // Cancelled while chunk 5 was requested
+        }
+        cancelAt = null;
+        RangedDownloader.Result result = download(4, new RangedDownloader.Progress());
+        assertDownloaded();
+        assertTrue(result.resumedChunks >= 4);
+    }
+
+    @Test
+    public void changedResourceStartsOver() throws IOException {
+        failFrom = 6;
+        try {
+            download(1, new RangedDownloader.Progress());
+            fail();
+        } catch (IOException expected) {
+            // Leaves five chunks in the journal
+        }
+        failFrom = Integer.MAX_VALUE;
+        content = content(2);
+        etag = "\"v2\"";
+        RangedDownloader.Result result = download(4, new RangedDownloader.Progress());
+        assertDownloaded();
+        assertEquals(0, result.resumedChunks);
+    }
+
+    @Test
+    public void changeDuringDownloadFails() throws IOException {
+        RangedDownloader.Progress progress = new RangedDownloader.Progress();
+        failOnce = new int[] {3};
+        changeAfter = 3;
+        try {
+            download(1, progress);
+            fail();
+        } catch (RangedDownloader.ResourceChangedException expected) {
+            // Nothing from two versions is mixed into one file
+        }
+        assertFalse(target.exists());
+    }
+
+    @Test
+    public void streamsWholeFileWithoutRangeSupport() throws IOException {
+        rangeSupport = false;
+        RangedDownloader.Progress progress = new RangedDownloader.Progress();
+        RangedDownloader.Result result = download(4, progress);
+        assertDownloaded();
+        assertFalse(result.ranged);
+        assertEquals(SIZE, result.fetchedBytes);
+        assertEquals(SIZE, progress.doneBytes());
+    }
+
+    @Test
+    public void contentRangeParsing() {
+        assertEquals(12345, RangedDownloader.totalLength("bytes 0-0/12345"));
+        assertEquals(-1, RangedDownloader.totalLength("bytes 0-0/*"));
+        assertEquals(-1, RangedDownloader.totalLength(null));
+        assertEquals(65536, RangedDownloader.rangeStart("bytes 65536-131071/1000000"));
+        assertEquals(-1, RangedDownloader.rangeStart("items 1-2/3"));
+    }
+
+    @Test
+    public void policyCapsConnectionsByNetwork() {
+        DownloadPolicy policy = DownloadPolicy.DEFAULT;
+        assertEquals(4, policy.parallelism(DownloadPolicy.Network.WIFI, false));
+        assertEquals(2, policy.parallelism(DownloadPolicy.Network.WIFI, true));
+        assertEquals(2, policy.parallelism(DownloadPolicy.Network.CELLULAR, true));
+        assertEquals(6, policy.parallelism(DownloadPolicy.Network.ETHERNET, false));
+        assertEquals(0, policy.parallelism(DownloadPolicy.Network.NONE, false));
+    }
+}
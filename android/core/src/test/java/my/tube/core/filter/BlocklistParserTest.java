@@ -0,0 +1,63 @@
+package my.tube.core.filter;
+
+import static org.junit.Assert.*;
+
+import java.io.StringReader;
+import org.junit.Test;
+
+public class BlocklistParserTest {
+
+    private static HostMatcher parse(String text, int expectedRules) throws Exception {
+        HostMatcher.Builder builder = HostMatcher.builder();
+        assertEquals(expectedRules, BlocklistParser.parse(new StringReader(text), builder));
+        return builder.build();
+    }
+
+    @Test
+    public void parsesHostsFormat() throws Exception {
+        HostMatcher matcher = parse(
+            "# comment\n"
+                + "127.0.0.1 localhost\n"
+                + "0.0.0.0 0.0.0.0\n"
+                + "0.0.0.0 ads.example.com tracker.example.net # trailing comment\n"
+                + ":: ipv6.example.org\r\n"
+                + "\n"
+                + "   \t\n",
+            3);
+        assertTrue(matcher.matches("ads.example.com"));
+        assertTrue(matcher.matches("tracker.example.net"));
+        assertTrue(matcher.matches("ipv6.example.org"));
+        assertFalse(matcher.matches("localhost"));
+        assertFalse(matcher.matches("example.com"));
+    }
+
+    @Test
+    public void parsesBareDomainsAndAbpDomainRules() throws Exception {
+        HostMatcher matcher = parse(
+            "[Adblock Plus 2.0]\n"
+                + "! Title: test\n"
+                + "pagead2.googlesyndication.com\n"
+                + "||doubleclick.net^\n"
+                + "||ads.example.com^$third-party\n"
+                + "||example.com/ads/*\n"
+                + "@@||allowed.example.com^\n"
+                + "##.ad-banner\n"
+                + "example.org##.sponsored",
+            2);
+        assertTrue(matcher.matches("pagead2.googlesyndication.com"));
+        assertTrue(matcher.matches("static.doubleclick.net"));
+        assertFalse(matcher.matches("ads.example.com"));
+        assertFalse(matcher.matches("allowed.example.com"));
+        assertFalse(matcher.matches("example.org"));
+    }
+
+    @Test
+    public void handlesLinesLongerThanTheInitialBuffer() throws Exception {
+        StringBuilder line = new StringBuilder("0.0.0.0");
+        for (int i = 0; i < 100; i++) {
+            line.append(" host").append(i).append(".example.com");
+        }
+        HostMatcher matcher = parse(line.toString(), 100);
+        assertTrue(matcher.matches("host99.example.com"));
+    }
+}
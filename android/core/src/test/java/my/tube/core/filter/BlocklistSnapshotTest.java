@@ -0,0 +1,91 @@
+package my.tube.core.filter;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.io.StringReader;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BlocklistSnapshotTest {
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    private File dir;
+
+    @Before
+    public void setUp() {
+        dir = tmp.getRoot();
+    }
+
+    @Test
+    public void roundTripsThroughMappedFile() throws Exception {
+        HostMatcher.Builder builder = HostMatcher.builder();
+        for (int i = 0; i < 10_000; i++) {
+            builder.add("ads" + i + ".example.com");
+        }
+        File file = new File(dir, "list.bin");
+        BlocklistSnapshot.write(builder.build(), 42L, file);
+
+        BlocklistSnapshot snapshot = BlocklistSnapshot.map(file);
+        assertEquals(42L, snapshot.listVersion());
+        assertEquals(10_000, snapshot.matcher().size());
+        assertTrue(snapshot.matcher().matches("ads9999.example.com"));
+        assertTrue(snapshot.matcher().matches("cdn.ads0.example.com"));
+        assertFalse(snapshot.matcher().matches("m.youtube.com"));
+    }
+
+    @Test
+    public void rejectsTruncatedSnapshot() throws Exception {
+        File file = new File(dir, "list.bin");
+        BlocklistSnapshot.write(HostMatcher.of("ads.example.com"), 1L, file);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.setLength(raf.length() - 8);
+        raf.close();
+        try {
+            BlocklistSnapshot.map(file);
+            fail("expected IOException");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void rejectsUnknownFormatVersion() throws Exception {
+        File file = new File(dir, "list.bin");
+        BlocklistSnapshot.write(HostMatcher.of("ads.example.com"), 1L, file);
+        RandomAccessFile raf = new RandomAccessFile(file, "rw");
+        raf.seek(4);
+        raf.writeInt(0x7f000000);
+        raf.close();
+        try {
+            BlocklistSnapshot.map(file);
+            fail("expected IOException");
+        } catch (IOException expected) {
+        }
+    }
+
+    @Test
+    public void storeReusesSnapshotUntilBundledVersionIsNewer() throws Exception {
+        BlocklistStore store = new BlocklistStore(dir);
+        store.load(() -> new StringReader("ads.example.com"), 1L);
+        assertTrue(store.current().matches("ads.example.com"));
+        assertEquals(1L, store.listVersion());
+
+        // Same version: the snapshot wins and the source is never opened
+        BlocklistStore restarted = new BlocklistStore(dir);
+        restarted.load(() -> {
+            throw new AssertionError("bundled list should not be parsed");
+        }, 1L);
+        assertTrue(restarted.current().matches("ads.example.com"));
+
+        BlocklistStore upgraded = new BlocklistStore(dir);
+        upgraded.load(() -> new StringReader("tracker.example.net"), 2L);
+        assertFalse(upgraded.current().matches("ads.example.com"));
+        assertTrue(upgraded.current().matches("tracker.example.net"));
+    }
+}
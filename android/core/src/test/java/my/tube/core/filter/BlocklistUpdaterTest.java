@@ -0,0 +1,117 @@
+package my.tube.core.filter;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.concurrent.atomic.AtomicInteger;
+import my.tube.core.Clock;
+import my.tube.core.metrics.MetricsRegistry;
+import my.tube.core.net.HttpStack;
+import my.tube.core.testing.StubServer;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class BlocklistUpdaterTest {
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+    @Rule
+    public final StubServer server = new StubServer();
+
+    private File dir;
+    private final AtomicInteger downloads = new AtomicInteger();
+    private volatile String list = "0.0.0.0 ads.example.com\n0.0.0.0 tracker.example.net\n";
+    private volatile String etag = "\"a\"";
+
+    @Before
+    public void setUp() {
+        dir = tmp.getRoot();
+        server.handle("/blocklist.txt", exchange -> {
+            if (etag.equals(exchange.getRequestHeaders().getFirst("If-None-Match"))) {
+                StubServer.respondEmpty(exchange, 304);
+                return;
+            }
+            downloads.incrementAndGet();
+            exchange.getResponseHeaders().set("ETag", etag);
+            StubServer.respond(exchange, 200, list);
+        });
+    }
+
+    private BlocklistUpdater updater(BlocklistStore store, Clock clock) {
+        return new BlocklistUpdater(store, server.url("/blocklist.txt"),
+            new HttpStack(HttpStack.PLATFORM, new MetricsRegistry(), Clock.SYSTEM, 60_000).client("blocklist", 5000),
+            new File(dir, "blocklist-remote.properties"), clock, 2);
+    }
+
+    private static Clock at(final long millis) {
+        return new Clock() {
+            @Override
+            public long currentTimeMillis() {
+                return millis;
+            }
+
+            @Override
+            public long nanoTime() {
+                return millis * 1_000_000;
+            }
+        };
+    }
+
+    private BlocklistStore bundledStore() throws IOException {
+        BlocklistStore store = new BlocklistStore(dir);
+        store.load(() -> new StringReader("0.0.0.0 bundled.example.org\n"), 1000L);
+        return store;
+    }
+
+    @Test
+    public void installsChangedListAndRevalidatesUnchanged() throws IOException {
+        BlocklistStore store = bundledStore();
+        HostMatcher before = store.current();
+        assertTrue(updater(store, at(5000L)).refresh());
+
+        assertTrue(store.current().matches("cdn.ads.example.com"));
+        assertFalse(store.current().matches("bundled.example.org"));
+        assertTrue("old matcher must stay usable for readers holding it", before.matches("bundled.example.org"));
+        assertEquals(5000L, store.listVersion());
+
+        assertFalse(updater(store, at(6000L)).refresh());
+        assertEquals(1, downloads.get());
+        assertEquals(5000L, store.listVersion());
+
+        list = "0.0.0.0 ads.example.com\n0.0.0.0 new.example.com\n";
+        etag = "\"b\"";
+        assertTrue(updater(store, at(7000L)).refresh());
+        assertTrue(store.current().matches("new.example.com"));
+    }
+
+    @Test
+    public void redownloadsWhenBundledListReplacedRefreshedOne() throws IOException {
+        BlocklistStore store = bundledStore();
+        assertTrue(updater(store, at(5000L)).refresh());
+
+        // An app update installs a newer bundled list over the downloaded one
+        BlocklistStore updated = new BlocklistStore(dir);
+        updated.load(() -> new StringReader("0.0.0.0 bundled.example.org\n"), 9000L);
+        assertTrue(updater(updated, at(9500L)).refresh());
+        assertEquals(2, downloads.get());
+        assertTrue(updated.current().matches("ads.example.com"));
+    }
+
+    @Test
+    public void rejectsSuspiciouslySmallList() throws IOException {
+        BlocklistStore store = bundledStore();
+        list = "<html>captive portal</html>\n";
+        try {
+            updater(store, at(5000L)).refresh();
+            fail("expected IOException");
+        } catch (IOException expected) {
+            // keeps the bundled list
+        }
+        assertTrue(store.current().matches("bundled.example.org"));
+        assertEquals(1000L, store.listVersion());
+    }
+}
@@ -0,0 +1,79 @@
+package my.tube.core.filter;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class HostMatcherTest {
+
+    @Test
+    public void matchesExactHost() {
+        HostMatcher matcher = HostMatcher.of("ad.doubleclick.net", "www.google-analytics.com");
+        assertTrue(matcher.matches("ad.doubleclick.net"));
+        assertTrue(matcher.matches("www.google-analytics.com"));
+        assertEquals(2, matcher.size());
+    }
+
+    @Test
+    public void matchesSubdomainsOnLabelBoundary() {
+        HostMatcher matcher = HostMatcher.of("doubleclick.net");
+        assertTrue(matcher.matches("doubleclick.net"));
+        assertTrue(matcher.matches("static.doubleclick.net"));
+        assertTrue(matcher.matches("a.b.c.doubleclick.net"));
+        assertFalse(matcher.matches("notdoubleclick.net"));
+        assertFalse(matcher.matches("doubleclick.net.example.com"));
+        assertFalse(matcher.matches("net"));
+    }
+
+    @Test
+    public void doesNotMatchParentDomains() {
+        HostMatcher matcher = HostMatcher.of("googleads.g.doubleclick.net");
+        assertFalse(matcher.matches("g.doubleclick.net"));
+        assertFalse(matcher.matches("doubleclick.net"));
+    }
+
+    @Test
+    public void isCaseInsensitiveAndNormalizesRules() {
+        HostMatcher matcher = HostMatcher.of("  *.PageAd2.GoogleSyndication.com. ", ".tpc.example.org");
+        assertTrue(matcher.matches("pagead2.googlesyndication.com"));
+        assertTrue(matcher.matches("X.PAGEAD2.GOOGLESYNDICATION.COM"));
+        assertTrue(matcher.matches("tpc.example.org"));
+    }
+
+    @Test
+    public void ignoresBlankRulesAndDuplicates() {
+        HostMatcher matcher = HostMatcher.builder()
+            .add("")
+            .add("   ")
+            .add(null)
+            .add("m.doubleclick.net")
+            .add("M.DOUBLECLICK.NET")
+            .build();
+        assertEquals(1, matcher.size());
+    }
+
+    @Test
+    public void handlesNullAndEmptyHosts() {
+        HostMatcher matcher = HostMatcher.of("doubleclick.net");
+        assertFalse(matcher.matches(null));
+        assertFalse(matcher.matches(""));
+        assertFalse(HostMatcher.of().matches("doubleclick.net"));
+    }
+
+    @Test
+    public void scalesToLargeLists() {
+        List<String> rules = new ArrayList<>();
+        for (int i = 0; i < 50_000; i++) {
+            rules.add("ads" + i + ".tracker" + (i % 97) + ".com");
+        }
+        HostMatcher matcher = HostMatcher.of(rules);
+        assertEquals(50_000, matcher.size());
+        for (int i = 0; i < 50_000; i += 1_111) {
+            assertTrue(matcher.matches("cdn.ads" + i + ".tracker" + (i % 97) + ".com"));
+            assertFalse(matcher.matches("ads" + i + ".tracker" + ((i + 1) % 97) + ".org"));
+        }
+        assertFalse(matcher.matches("m.youtube.com"));
+    }
+}
@@ -0,0 +1,89 @@
+package my.tube.core.filter;
+
+import static org.junit.Assert.*;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Test;
+
+public class RequestFilterTest {
+
+    private static final String RULES =
+        "! YouTube ad and tracking beacons\n"
+            + "||youtube.com/api/stats/ads\n"
+            + "||youtube.com/ptracking\n"
+            + "||youtube.com/api/stats/qoe$query=adformat\n"
+            + "/pagead/\n"
+            + "||googlevideo.com/generate_204$~document,accept=image/\n"
+            + "||example.com^$document\n";
+
+    private static RequestFilter filter() throws Exception {
+        return RequestFilter.parse(new StringReader(RULES));
+    }
+
+    @Test
+    public void parsesSupportedRules() throws Exception {
+        assertEquals(6, filter().size());
+        assertNull(RequestRule.parse("example.com##.ad"));
+        assertNull(RequestRule.parse("||example.com^$third-party"));
+        assertNull(RequestRule.parse("$document"));
+    }
+
+    @Test
+    public void matchesHostAnchoredPathPrefix() throws Exception {
+        RequestFilter filter = filter();
+        assertNotNull(filter.match("m.youtube.com", "/api/stats/ads", "ver=2&cpn=x", false, "*/*"));
+        assertNotNull(filter.match("www.youtube.com", "/ptracking", "html5=1", false, null));
+        assertNull(filter.match("m.youtube.com", "/api/stats/atr", "ns=yt", false, null));
+        assertNull(filter.match("youtube.com.evil.net", "/api/stats/ads", null, false, null));
+    }
+
+    @Test
+    public void matchesPathAnywhereOnAnyHost() throws Exception {
+        RequestFilter filter = filter();
+        assertNotNull(filter.match("www.youtube.com", "/pagead/viewthroughconversion/1", null, false, null));
+        assertNotNull(filter.match("other.example", "/x/pagead/y", null, false, null));
+        assertNull(filter.match("other.example", "/x/pageads/y", null, false, null));
+    }
+
+    @Test
+    public void requiresQueryKey() throws Exception {
+        RequestFilter filter = filter();
+        assertNotNull(filter.match("m.youtube.com", "/api/stats/qoe", "fmt=243&adformat=15_2", false, null));
+        assertNull(filter.match("m.youtube.com", "/api/stats/qoe", "fmt=243&noadformat=1", false, null));
+        assertNull(filter.match("m.youtube.com", "/api/stats/qoe", null, false, null));
+    }
+
+    @Test
+    public void respectsFrameAndAcceptOptions() throws Exception {
+        RequestFilter filter = filter();
+        assertNotNull(filter.match("rr1.googlevideo.com", "/generate_204", null, false, "image/avif,image/webp,*/*"));
+        assertNull(filter.match("rr1.googlevideo.com", "/generate_204", null, true, "image/webp"));
+        assertNull(filter.match("rr1.googlevideo.com", "/generate_204", null, false, "text/html"));
+        assertNotNull(filter.match("www.example.com", "/", null, true, null));
+        assertNull(filter.match("www.example.com", "/", null, false, null));
+    }
+
+    @Test
+    public void leavesOrdinaryYouTubeRequestsAlone() throws Exception {
+        RequestFilter filter = filter();
+        assertNull(filter.match("m.youtube.com", "/watch", "v=dQw4w9WgXcQ", true, "text/html"));
+        assertNull(filter.match("m.youtube.com", "/youtubei/v1/player", "prettyPrint=false", false, "*/*"));
+        assertNull(filter.match("i.ytimg.com", "/vi/dQw4w9WgXcQ/hqdefault.jpg", null, false, "image/webp"));
+        assertNull(filter.match(null, null, null, false, null));
+    }
+
+    @Test
+    public void onlyChecksRulesSharingAToken() throws Exception {
+        List<RequestRule> rules = new ArrayList<>();
+        for (int i = 0; i < 20_000; i++) {
+            rules.add(RequestRule.parse("||tracker" + i + ".example/collect" + i + "/"));
+        }
+        rules.add(RequestRule.parse("||youtube.com/api/stats/ads"));
+        RequestFilter filter = RequestFilter.of(rules);
+        assertNotNull(filter.match("m.youtube.com", "/api/stats/ads", null, false, null));
+        assertNotNull(filter.match("tracker19999.example", "/collect19999/x", null, false, null));
+        assertNull(filter.match("tracker1.example", "/collect2/x", null, false, null));
+    }
+}
@@ -0,0 +1,233 @@
+package my.tube.core.history;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.List;
+import my.tube.core.testing.FakeClock;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+public class EntryStoreTest {
+
+    private File file;
+    private final FakeClock clock = new FakeClock();
+
+    @Before
+    public void setUp() throws IOException {
+        file = File.createTempFile("history", ".log");
+        assertTrue(file.delete());
+    }
+
+    @After
+    public void tearDown() {
+        file.delete();
+        new File(file.getPath() + ".tmp").delete();
+    }
+
+    @Test
+    public void pagesNewestFirst() throws IOException {
+        try (EntryStore store = EntryStore.open(file, 100, clock)) {
+            for (int i = 0; i < 5; i++) {
+                clock.millis += 1000;
+                store.append("v" + i, "{\"title\":\"" + i + "\"}");
+            }
+            EntryStore.Page first = store.newestFirst(2);
+            assertEquals(keys("v4", "v3"), keys(first));
+            assertEquals(5000, first.entries.get(0).time);
+            assertEquals("{\"title\":\"4\"}", first.entries.get(0).payload);
+            EntryStore.Page second = store.newestFirst(first.next, 2);
+            assertEquals(keys("v2", "v1"), keys(second));
+            EntryStore.Page last = store.newestFirst(second.next, 2);
+            assertEquals(keys("v0"), keys(last));
+            assertNull(last.next);
+        }
+    }
+
+    @Test
+    public void pagesOldestFirst() throws IOException {
+        try (EntryStore store = EntryStore.open(file, 100, clock)) {
+            store.append("a", "1");
+            store.append("b", "2");
+            store.append("c", "3");
+            EntryStore.Page first = store.oldestFirst(2);
+            assertEquals(keys("a", "b"), keys(first));
+            EntryStore.Page rest = store.oldestFirst(first.next, 2);
+            assertEquals(keys("c"), keys(rest));
+            assertNull(rest.next);
+        }
+    }
+
+    @Test
+    public void appendingAgainMovesToNewest() throws IOException {
+        try (EntryStore store = EntryStore.open(file, 100, clock)) {
+            store.append("a", "1");
+            store.append("b", "2");
+            store.append("a", "3");
+            assertEquals(2, store.size());
+            assertEquals(keys("a", "b"), keys(store.newestFirst(10)));
+            assertEquals("3", store.get("a").payload);
+        }
+    }
+
+    @Test
+    public void removeAndClear() throws IOException {
+        try (EntryStore store = EntryStore.open(file, 100, clock)) {
+            store.append("a", "1");
+            store.append("b", "2");
+            assertTrue(store.remove("a"));
+            assertFalse(store.remove("a"));
+            assertNull(store.get("a"));
+            assertEquals(keys("b"), keys(store.newestFirst(10)));
+            store.clear();
+            assertEquals(0, store.size());
+            assertTrue(store.newestFirst(10).entries.isEmpty());
+        }
+        try (EntryStore store = EntryStore.open(file, 100, clock)) {
+            assertEquals(0, store.size());
+        }
+    }
+
+    @Test
+    public void survivesReopening() throws IOException {
+        try (EntryStore store = EntryStore.open(file, 100, clock)) {
+            store.append("a", "1");
+            store.append("b", "\u00fcnicode");
+            store.append("c", "3");
+            store.remove("a");
+        }
+        try (EntryStore store = EntryStore.open(file, 100, clock)) {
+            assertEquals(keys("c", "b"), keys(store.newestFirst(10)));
+            assertEquals("\u00fcnicode", store.get("b").payload);
+            store.append("d", "4");
+            assertEquals(keys("d", "c", "b"), keys(store.newestFirst(10)));
+        }
+    }
+
+    @Test
+    public void tornTailIsDropped() throws IOException {
+        try (EntryStore store = EntryStore.open(file, 100, clock)) {
+            store.append("a", "1");
+            store.append("b", "2");
+        }
+        long intact = file.length();
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(intact - 3);
+        }
+        try (EntryStore store = EntryStore.open(file, 100, clock)) {
+            assertEquals(keys("a"), keys(store.newestFirst(10)));
+            store.append("c", "3");
+        }
+        try (EntryStore store = EntryStore.open(file, 100, clock)) {
+            assertEquals(keys("c", "a"), keys(store.newestFirst(10)));
+        }
+    }
+
+    @Test
+    public void corruptRecordEndsTheLog() throws IOException {
+        try (EntryStore store = EntryStore.open(file, 100, clock)) {
+            store.append("a", "1");
+            store.append("b", "2");
+        }
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(raf.length() - 1);
+            raf.write('x');
+        }
+        try (EntryStore store = EntryStore.open(file, 100, clock)) {
+            assertEquals(keys("a"), keys(store.newestFirst(10)));
+        }
+    }
+
+    @Test
+    public void compactionShrinksTheLog() throws IOException {
+        try (EntryStore store = EntryStore.open(file, 100, clock)) {
+            for (int i = 0; i < 3000; i++) {
+                store.append("v" + (i % 10), "payload " + i);
+            }
+            assertEquals(10, store.size());
+            // Compacted on the way: 3000 records would be about 135 KB
+            assertTrue(store.fileLength() < 60_000);
+            long before = store.fileLength();
+            store.compact();
+            assertTrue(store.fileLength() <= before);
+            assertEquals("payload 2999", store.get("v9").payload);
+            assertEquals(keys("v9", "v8"), keys(store.newestFirst(2)));
+        }
+        try (EntryStore store = EntryStore.open(file, 100, clock)) {
+            assertEquals(10, store.size());
+            assertEquals("payload 2990", store.get("v0").payload);
+        }
+    }
+
+    @Test
+    public void evictsOldestBeyondLimit() throws IOException {
+        try (EntryStore store = EntryStore.open(file, 3, clock)) {
+            for (int i = 0; i < 5; i++) {
+                store.append("v" + i, "" + i);
+            }
+            assertEquals(keys("v4", "v3", "v2"), keys(store.newestFirst(10)));
+            // Prepending past the limit keeps the new entry
+            store.prepend("first", "x");
+            assertEquals(keys("v4", "v3", "first"), keys(store.newestFirst(10)));
+        }
+        try (EntryStore store = EntryStore.open(file, 2, clock)) {
+            assertEquals(keys("v4", "v3"), keys(store.newestFirst(10)));
+        }
+    }
+
+    @Test
+    public void prependAndMove() throws IOException {
+        try (EntryStore store = EntryStore.open(file, 100, clock)) {
+            store.append("b", "2");
+            store.append("c", "3");
+            store.prepend("a", "1");
+            assertEquals(keys("a", "b", "c"), keys(store.oldestFirst(10)));
+            assertTrue(store.moveBefore("c", "b"));
+            assertEquals(keys("a", "c", "b"), keys(store.oldestFirst(10)));
+            assertTrue(store.moveBefore("a", null));
+            assertEquals(keys("c", "b", "a"), keys(store.oldestFirst(10)));
+            assertTrue(store.moveBefore("a", "c"));
+            assertEquals(keys("a", "c", "b"), keys(store.oldestFirst(10)));
+            assertFalse(store.moveBefore("a", "missing"));
+            assertFalse(store.moveBefore("missing", "a"));
+            assertEquals("3", store.get("c").payload);
+        }
+    }
+
+    @Test
+    public void repeatedMovesRenumber() throws IOException {
+        try (EntryStore store = EntryStore.open(file, 100, clock)) {
+            store.append("a", "1");
+            store.append("b", "2");
+            store.append("c", "3");
+            // Each move halves the gap in front of b
+            for (int i = 0; i < 40; i++) {
+                store.moveBefore(i % 2 == 0 ? "c" : "a", "b");
+            }
+            assertEquals(keys("c", "a", "b"), keys(store.oldestFirst(10)));
+        }
+        try (EntryStore store = EntryStore.open(file, 100, clock)) {
+            assertEquals(keys("c", "a", "b"), keys(store.oldestFirst(10)));
+        }
+    }
+
+    private static List<String> keys(String... keys) {
+        List<String> list = new ArrayList<>();
+        for (String key : keys) {
+            list.add(key);
+        }
+        return list;
+    }
+
+    private static List<String> keys(EntryStore.Page page) {
+        List<String> list = new ArrayList<>();
+        for (EntryStore.Entry entry : page.entries) {
+            list.add(entry.key);
+        }
+        return list;
+    }
+}
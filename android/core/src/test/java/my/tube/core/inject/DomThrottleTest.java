@@ -0,0 +1,78 @@
+package my.tube.core.inject;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class DomThrottleTest {
+
+    private static DomThrottle.Report report(int batches, double totalMs, double maxMs) {
+        return new DomThrottle.Report(batches, batches * 10, totalMs, maxMs);
+    }
+
+    @Test
+    public void expensiveBatchesDoubleTheIntervalUpToTheMax() {
+        DomThrottle throttle = new DomThrottle(50, 400, 4.0, 100);
+        assertEquals(200, throttle.onReport(report(10, 60, 8)));
+        assertEquals(400, throttle.onReport(report(10, 60, 8)));
+        assertEquals(400, throttle.onReport(report(10, 60, 8)));
+        assertEquals(3, throttle.backoffs());
+    }
+
+    @Test
+    public void singleSlowBatchAlsoBacksOff() {
+        DomThrottle throttle = new DomThrottle(50, 400, 4.0, 100);
+        // Mean 1ms but one batch took a whole frame
+        assertEquals(200, throttle.onReport(report(20, 20, 16)));
+    }
+
+    @Test
+    public void cheapBatchesShrinkTheIntervalToTheMin() {
+        DomThrottle throttle = new DomThrottle(50, 400, 4.0, 200);
+        assertEquals(150, throttle.onReport(report(10, 2, 0.5)));
+        long interval = 150;
+        for (int i = 0; i < 10; i++) {
+            interval = throttle.onReport(report(10, 2, 0.5));
+        }
+        assertEquals(50, interval);
+    }
+
+    @Test
+    public void moderateCostKeepsTheInterval() {
+        DomThrottle throttle = new DomThrottle(50, 400, 4.0, 100);
+        assertEquals(100, throttle.onReport(report(10, 20, 3)));
+        assertEquals(100, throttle.onReport(report(0, 0, 0)));
+    }
+
+    @Test
+    public void overrideWinsUntilCleared() {
+        DomThrottle throttle = new DomThrottle(50, 400, 4.0, 100);
+        throttle.setOverride(1000);
+        assertEquals(1000, throttle.onReport(report(10, 60, 8)));
+        throttle.clearOverride();
+        // Adaptive value kept moving underneath
+        assertEquals(200, throttle.intervalMs());
+    }
+
+    @Test
+    public void accumulatesTotals() {
+        DomThrottle throttle = new DomThrottle(50, 400, 4.0, 100);
+        throttle.onReport(report(4, 8, 3));
+        throttle.onReport(report(6, 12, 5));
+        assertEquals(2, throttle.reports());
+        assertEquals(10, throttle.batches());
+        assertEquals(100, throttle.mutations());
+        assertEquals(2.0, throttle.meanBatchMs(), 1e-9);
+        assertEquals(5.0, throttle.worstBatchMs(), 1e-9);
+    }
+
+    @Test
+    public void parsesWorkerReports() throws Exception {
+        DomThrottle.Report report = DomThrottle.Report.fromJson(
+            "{\"batches\":12,\"mutations\":340,\"totalMs\":18.5,\"maxMs\":4.25,\"throttleMs\":100}");
+        assertEquals(12, report.batches);
+        assertEquals(340, report.mutations);
+        assertEquals(18.5, report.totalMs, 1e-9);
+        assertEquals(4.25, report.maxMs, 1e-9);
+    }
+}
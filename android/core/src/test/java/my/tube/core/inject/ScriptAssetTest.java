@@ -0,0 +1,138 @@
+package my.tube.core.inject;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import org.junit.After;
+import org.junit.Test;
+
+public class ScriptAssetTest {
+
+    /** Hands out at most {@code chunk} bytes per read and reports nothing available, like some asset streams. */
+    private static final class TrickleInputStream extends InputStream {
+        private final byte[] data;
+        private final int chunk;
+        private final int failAt;
+        private int position;
+        boolean closed;
+
+        TrickleInputStream(byte[] data, int chunk, int failAt) {
+            this.data = data;
+            this.chunk = chunk;
+            this.failAt = failAt;
+        }
+
+        @Override
+        public int read() throws IOException {
+            byte[] one = new byte[1];
+            return read(one, 0, 1) == -1 ? -1 : one[0] & 0xff;
+        }
+
+        @Override
+        public int read(byte[] b, int off, int len) throws IOException {
+            if (position >= failAt) {
+                throw new IOException("asset read failed");
+            }
+            if (position == data.length) {
+                return -1;
+            }
+            int n = Math.min(Math.min(len, chunk), data.length - position);
+            System.arraycopy(data, position, b, off, n);
+            position += n;
+            return n;
+        }
+
+        @Override
+        public int available() {
+            return 0;
+        }
+
+        @Override
+        public void close() {
+            closed = true;
+        }
+    }
+
+    // Multi-byte characters so short reads split UTF-8 sequences
+    private static String script() {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < 3000; i++) {
+            sb.append("console.log('\ud83e\udda6 blocked ").append(i).append(" \u2014 ok');\n");
+        }
+        return sb.toString();
+    }
+
+    @After
+    public void clearCache() {
+        ScriptAssetCache.clear();
+    }
+
+    @Test
+    public void readsWholeStreamDespiteShortReadsAndZeroAvailable() throws IOException {
+        String source = script();
+        byte[] bytes = source.getBytes(StandardCharsets.UTF_8);
+        ScriptAsset asset = ScriptAsset.read(new TrickleInputStream(bytes, 7, Integer.MAX_VALUE));
+        assertEquals(source, asset.source());
+        assertEquals(ScriptAsset.of(source).version(), asset.version());
+    }
+
+    @Test
+    public void versionTracksContent() {
+        ScriptAsset a = ScriptAsset.of("let a = 1;");
+        assertEquals(12, a.version().length());
+        assertEquals(a.version(), ScriptAsset.of("let a = 1;").version());
+        assertFalse(a.version().equals(ScriptAsset.of("let a = 2;").version()));
+    }
+
+    @Test
+    public void injectableIsGuardedByVersion() {
+        ScriptAsset asset = ScriptAsset.of("run();");
+        String injectable = asset.injectable();
+        assertTrue(injectable.startsWith("if (window.__mytubeInstalled !== '" + asset.version() + "')"));
+        assertTrue(injectable.contains("run();"));
+        assertEquals("window.__mytubeInstalled === '" + asset.version() + "'", asset.probe());
+        assertEquals("", ScriptAsset.EMPTY.injectable());
+        assertTrue(ScriptAsset.EMPTY.isEmpty());
+    }
+
+    @Test
+    public void cacheReadsOncePerProcess() throws IOException {
+        final byte[] bytes = script().getBytes(StandardCharsets.UTF_8);
+        final int[] opens = new int[1];
+        final TrickleInputStream[] last = new TrickleInputStream[1];
+        ScriptAssetCache.Opener opener = name -> {
+            opens[0]++;
+            last[0] = new TrickleInputStream(bytes, 1024, Integer.MAX_VALUE);
+            return last[0];
+        };
+        ScriptAsset first = ScriptAssetCache.get("noutube.js", opener);
+        ScriptAsset second = ScriptAssetCache.get("noutube.js", opener);
+        assertSame(first, second);
+        assertEquals(1, opens[0]);
+        assertTrue(last[0].closed);
+    }
+
+    @Test
+    public void failedReadIsNotCached() throws IOException {
+        final byte[] bytes = script().getBytes(StandardCharsets.UTF_8);
+        final boolean[] fail = {true};
+        ScriptAssetCache.Opener opener = name ->
+            new TrickleInputStream(bytes, 512, fail[0] ? bytes.length / 2 : Integer.MAX_VALUE);
+        try {
+            ScriptAssetCache.get("noutube.js", opener);
+            fail("truncated read should not produce a script");
+        } catch (IOException expected) {
+            // retried below
+        }
+        fail[0] = false;
+        assertEquals(script(), ScriptAssetCache.get("noutube.js", opener).source());
+    }
+
+    @Test
+    public void emptyStreamGivesEmptyScript() throws IOException {
+        assertTrue(ScriptAsset.read(new ByteArrayInputStream(new byte[0])).isEmpty());
+    }
+}
@@ -0,0 +1,145 @@
+package my.tube.core.inject;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import my.tube.core.testing.FakeClock;
+import org.junit.Test;
+
+public class ScriptInjectorTest {
+
+    private static final ScriptAsset SCRIPT = ScriptAsset.of("/* noutube */");
+    private static final Set<String> ORIGINS = Collections.singleton("https://m.youtube.com");
+
+    /** WebView stand-in that counts evaluations and answers the installed probe. */
+    private static final class FakeHost implements ScriptInjector.Host {
+        final boolean documentStart;
+        int registrations;
+        int scriptEvaluations;
+        int probes;
+        boolean pageHasScript;
+        final List<ScriptInjector.ValueCallback> pendingProbes = new ArrayList<>();
+
+        FakeHost(boolean documentStart) {
+            this.documentStart = documentStart;
+        }
+
+        @Override
+        public boolean supportsDocumentStart() {
+            return documentStart;
+        }
+
+        @Override
+        public void addDocumentStartScript(String script, Set<String> allowedOrigins) {
+            assertEquals(SCRIPT.injectable(), script);
+            assertEquals(ORIGINS, allowedOrigins);
+            registrations++;
+        }
+
+        @Override
+        public void evaluate(String script, ScriptInjector.ValueCallback callback) {
+            if (script.equals(SCRIPT.probe())) {
+                probes++;
+                pendingProbes.add(callback);
+            } else {
+                scriptEvaluations++;
+                pageHasScript = true;
+            }
+        }
+
+        void answerProbes() {
+            List<ScriptInjector.ValueCallback> callbacks = new ArrayList<>(pendingProbes);
+            pendingProbes.clear();
+            for (ScriptInjector.ValueCallback callback : callbacks) {
+                callback.onResult(pageHasScript ? "true" : "false");
+            }
+        }
+    }
+
+    @Test
+    public void registersDocumentStartScriptOnceAndNeverEvaluates() {
+        FakeHost host = new FakeHost(true);
+        ScriptInjector injector = new ScriptInjector(host, SCRIPT, ORIGINS, new FakeClock());
+        injector.install();
+        injector.install();
+        for (int i = 0; i < 5; i++) {
+            injector.onPageStarted("https://m.youtube.com/watch?v=" + i);
+            injector.onPageFinished("https://m.youtube.com/watch?v=" + i);
+        }
+        assertEquals(1, host.registrations);
+        assertEquals(0, host.scriptEvaluations);
+        assertEquals(ScriptInjector.Mode.DOCUMENT_START, injector.mode());
+        assertEquals(5, injector.recentNavigations().size());
+        assertEquals(0, injector.currentNavigation().evaluations());
+    }
+
+    @Test
+    public void fallbackEvaluatesOncePerNavigationWhenScriptSurvives() {
+        FakeHost host = new FakeHost(false);
+        ScriptInjector injector = new ScriptInjector(host, SCRIPT, ORIGINS, new FakeClock());
+        injector.onPageStarted("https://m.youtube.com/");
+        injector.onPageFinished("https://m.youtube.com/");
+        host.answerProbes();
+
+        assertEquals(0, host.registrations);
+        assertEquals(1, host.scriptEvaluations);
+        assertEquals(1, host.probes);
+        assertEquals(1, injector.currentNavigation().evaluations());
+    }
+
+    @Test
+    public void fallbackReinjectsWhenPageLostTheScript() {
+        FakeHost host = new FakeHost(false);
+        ScriptInjector injector = new ScriptInjector(host, SCRIPT, ORIGINS, new FakeClock());
+        injector.onPageStarted("https://m.youtube.com/");
+        host.pageHasScript = false; // evaluation landed in the outgoing document
+        injector.onPageFinished("https://m.youtube.com/");
+        host.answerProbes();
+
+        assertEquals(2, host.scriptEvaluations);
+        assertEquals(2, injector.currentNavigation().evaluations());
+    }
+
+    @Test
+    public void lateProbeAnswerDoesNotTouchTheNextNavigation() {
+        FakeHost host = new FakeHost(false);
+        ScriptInjector injector = new ScriptInjector(host, SCRIPT, ORIGINS, new FakeClock());
+        injector.onPageStarted("https://m.youtube.com/a");
+        injector.onPageFinished("https://m.youtube.com/a");
+        injector.onPageStarted("https://m.youtube.com/b");
+        host.pageHasScript = false;
+        host.answerProbes();
+
+        assertEquals(2, host.scriptEvaluations);
+        assertEquals(1, injector.currentNavigation().evaluations());
+    }
+
+    @Test
+    public void recordsPerNavigationTimings() {
+        FakeClock clock = new FakeClock();
+        FakeHost host = new FakeHost(false);
+        ScriptInjector injector = new ScriptInjector(host, SCRIPT, ORIGINS, clock);
+        clock.millis = 1;
+        injector.onPageStarted("https://m.youtube.com/");
+        clock.millis = 251;
+        injector.onPageFinished("https://m.youtube.com/");
+
+        ScriptInjector.NavigationTiming timing = injector.recentNavigations().get(0);
+        assertEquals(1, timing.navigation);
+        assertEquals(0, timing.injectionDelayMicros());
+        assertEquals(250, timing.pageLoadMillis());
+    }
+
+    @Test
+    public void emptyScriptIsNeverInjected() {
+        FakeHost host = new FakeHost(true);
+        ScriptInjector injector = new ScriptInjector(host, ScriptAsset.EMPTY, ORIGINS, new FakeClock());
+        injector.onPageStarted("https://m.youtube.com/");
+        injector.onPageFinished("https://m.youtube.com/");
+        assertEquals(0, host.registrations);
+        assertEquals(0, host.scriptEvaluations);
+    }
+}
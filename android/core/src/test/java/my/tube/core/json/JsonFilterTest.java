@@ -0,0 +1,136 @@
+package my.tube.core.json;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import org.junit.Test;
+
+public class JsonFilterTest {
+
+    private static String run(JsonFilter filter, String json) throws IOException {
+        StringWriter out = new StringWriter();
+        filter.filter(new StringReader(json), out);
+        return out.toString();
+    }
+
+    @Test
+    public void copiesUntouchedJsonCompacted() throws Exception {
+        JsonFilter filter = JsonFilter.builder().build();
+        assertEquals("{\"a\":[1,2.5e3,true,null,\"x\\\"y\\u00e9\"],\"b\":{}}",
+            run(filter, " { \"a\" : [ 1 , 2.5e3, true,null , \"x\\\"y\\u00e9\" ] ,\n \"b\" : { } } "));
+        assertEquals("[]", run(filter, "[ ]"));
+        assertEquals("\"just a string\"", run(filter, "\"just a string\""));
+    }
+
+    @Test
+    public void dropsPlayerAdKeysAtAnyDepth() throws Exception {
+        String json = "{\"adPlacements\":[{\"adPlacementRenderer\":{\"x\":1}}],"
+            + "\"videoDetails\":{\"videoId\":\"abc\",\"playerAds\":[1,2]},"
+            + "\"streamingData\":{\"formats\":[]},\"adSlots\":{}}";
+        assertEquals("{\"videoDetails\":{\"videoId\":\"abc\"},\"streamingData\":{\"formats\":[]}}",
+            run(YoutubeiFilters.PLAYER, json));
+    }
+
+    @Test
+    public void dropsFirstMemberAndKeepsCommasValid() throws Exception {
+        JsonFilter filter = JsonFilter.builder().dropKeys("ad").build();
+        assertEquals("{\"b\":2}", run(filter, "{\"ad\":1,\"b\":2}"));
+        assertEquals("{\"a\":1}", run(filter, "{\"a\":1,\"ad\":{\"x\":[]}}"));
+        assertEquals("[{},{\"b\":2}]", run(filter, "[{\"ad\":1},{\"ad\":1,\"b\":2}]"));
+    }
+
+    @Test
+    public void dropsShortsShelvesFromSearchResults() throws Exception {
+        String json = "{\"contents\":{\"sectionListRenderer\":{\"contents\":[{\"itemSectionRenderer\":{\"contents\":["
+            + "{\"reelShelfRenderer\":{\"items\":[1,2,3]}},"
+            + "{\"videoWithContextRenderer\":{\"videoId\":\"a\",\"navigationEndpoint\":{\"commandMetadata\":"
+            + "{\"webCommandMetadata\":{\"url\":\"/watch?v=a\"}}}}},"
+            + "{\"videoWithContextRenderer\":{\"videoId\":\"s\",\"navigationEndpoint\":{\"commandMetadata\":"
+            + "{\"webCommandMetadata\":{\"url\":\"/shorts/s\"}}}}},"
+            + "{\"gridShelfViewModel\":{}},"
+            + "{\"compactChannelRenderer\":{\"channelId\":\"c\"}}"
+            + "]}}]}}}";
+        String filtered = run(YoutubeiFilters.SEARCH, json);
+        assertTrue(filtered.contains("\"videoId\":\"a\""));
+        assertTrue(filtered.contains("compactChannelRenderer"));
+        assertFalse(filtered.contains("\"videoId\":\"s\""));
+        assertFalse(filtered.contains("reelShelfRenderer"));
+        assertFalse(filtered.contains("gridShelfViewModel"));
+        assertTrue(filtered.contains("\"contents\":[{\"videoWithContextRenderer\""));
+        assertFalse(filtered.contains(",,"));
+        assertFalse(filtered.contains("[,"));
+    }
+
+    @Test
+    public void dropsEveryElementOfAnArray() throws Exception {
+        JsonFilter filter = JsonFilter.builder().dropElementsWithKey("ad").build();
+        assertEquals("{\"list\":[]}", run(filter, "{\"list\":[{\"ad\":1},{\"ad\":2,\"more\":[{}]}]}"));
+        assertEquals("[1,{\"ok\":true}]", run(filter, "[{\"ad\":0},1,{\"ad\":1},{\"ok\":true}]"));
+    }
+
+    @Test
+    public void readsAcrossBufferBoundaries() throws Exception {
+        StringBuilder json = new StringBuilder("{\"items\":[");
+        for (int i = 0; i < 5_000; i++) {
+            if (i > 0) {
+                json.append(',');
+            }
+            json.append(i % 2 == 0 ? "{\"adSlotRenderer\":{\"i\":" + i + "}}" : "{\"video\":\"v" + i + "\"}");
+        }
+        json.append("]}");
+        // One char per read() call to exercise every refill path
+        Reader slow = new Reader() {
+            private final StringReader delegate = new StringReader(json.toString());
+
+            @Override
+            public int read(char[] cbuf, int off, int len) throws IOException {
+                return delegate.read(cbuf, off, Math.min(len, 1));
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        StringWriter out = new StringWriter();
+        YoutubeiFilters.SEARCH.filter(slow, out);
+        assertFalse(out.toString().contains("adSlotRenderer"));
+        assertTrue(out.toString().startsWith("{\"items\":[{\"video\":\"v1\"},{\"video\":\"v3\"}"));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTruncatedInput() throws Exception {
+        run(YoutubeiFilters.PLAYER, "{\"adPlacements\":[{\"x\":1}],\"a\":\"unterminated");
+    }
+
+    @Test
+    public void picksFilterByPath() {
+        assertSame(YoutubeiFilters.PLAYER, YoutubeiFilters.forPath("/youtubei/v1/player"));
+        assertSame(YoutubeiFilters.SEARCH, YoutubeiFilters.forPath("/youtubei/v1/search"));
+        assertNull(YoutubeiFilters.forPath("/youtubei/v1/browse"));
+        assertNull(YoutubeiFilters.forPath(null));
+    }
+
+    @Test
+    public void arrayFilterSeesFilteredElementsOfTheNamedMember() throws Exception {
+        final List<String> seen = new ArrayList<>();
+        JsonFilter filter = JsonFilter.builder()
+            .dropKeys("ad")
+            .inspectArraysOf("list", (name, elements) -> {
+                seen.add(name + elements);
+                if (!elements.isEmpty()) {
+                    elements.remove(0);
+                }
+            })
+            .build();
+        assertEquals("{\"list\":[2,{\"a\":3}],\"other\":{\"list\":[]}}",
+            run(filter, "{\"list\":[{\"a\":1,\"ad\":0}, 2, {\"ad\":0,\"a\":3}],\"other\":{\"list\":[]}}"));
+        assertEquals(Arrays.asList("list[{\"a\":1}, 2, {\"a\":3}]", "list[]"), seen);
+        assertEquals("{\"list\":\"not an array\"}", run(filter, "{\"list\":\"not an array\"}"));
+    }
+}
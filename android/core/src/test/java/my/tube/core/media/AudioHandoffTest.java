@@ -0,0 +1,99 @@
+package my.tube.core.media;
+
+import static org.junit.Assert.*;
+
+import my.tube.core.testing.FakeClock;
+import org.junit.Test;
+
+public class AudioHandoffTest {
+
+    private final FakeClock clock = new FakeClock(1_700_000_000_000L);
+    private final AudioHandoff handoff = new AudioHandoff(clock, 4);
+
+    private static String audio(String id, int itag) {
+        return StreamUrlTest.AUDIO.replace("id=o-AbCdEf", "id=" + id).replace("itag=251", "itag=" + itag);
+    }
+
+    @Test
+    public void handsOffThePlayingVideoAtItsCurrentPosition() {
+        handoff.onVideo("dQw4w9WgXcQ", "Title", "Artist", "https://i.ytimg.com/vi/dQw4w9WgXcQ/hqdefault.jpg");
+        handoff.onStreamRequest(audio("o-one", 140));
+        handoff.onStreamRequest(StreamUrlTest.AUDIO.replace("mime=audio%2Fwebm", "mime=video%2Fmp4"));
+        handoff.onPlayState(true, 30_000);
+        clock.millis += 2_500;
+
+        AudioHandoff.Request request = handoff.handoffRequest();
+        assertEquals("dQw4w9WgXcQ", request.videoId);
+        assertEquals("Title", request.title);
+        assertEquals("Artist", request.artist);
+        assertEquals(140, request.stream.itag);
+        assertEquals(32_500, request.positionMs);
+    }
+
+    @Test
+    public void positionAdvancesOnlyWhilePlaying() {
+        assertNull(handoff.videoId());
+        handoff.onVideo("dQw4w9WgXcQ", "Title", "Artist", null);
+        handoff.onPlayState(true, 30_000);
+        clock.millis += 2_500;
+        assertEquals("dQw4w9WgXcQ", handoff.videoId());
+        assertEquals(32_500, handoff.positionMs());
+        handoff.onPlayState(false, 33_000);
+        clock.millis += 10_000;
+        assertEquals(33_000, handoff.positionMs());
+    }
+
+    @Test
+    public void nothingToHandOffWhilePausedOrWithoutAStream() {
+        handoff.onVideo("dQw4w9WgXcQ", "Title", "Artist", null);
+        handoff.onPlayState(true, 0);
+        assertNull("no audio seen yet", handoff.handoffRequest());
+        handoff.onStreamRequest(audio("o-one", 251));
+        handoff.onPlayState(false, 10_000);
+        assertNull(handoff.handoffRequest());
+    }
+
+    @Test
+    public void streamsBeforeAnyVideoAreIgnored() {
+        handoff.onStreamRequest(audio("o-one", 251));
+        handoff.onVideo("dQw4w9WgXcQ", "Title", "Artist", null);
+        handoff.onPlayState(true, 0);
+        assertNull(handoff.handoffRequest());
+    }
+
+    @Test
+    public void prefersBetterItagsOfTheSameStream() {
+        handoff.onVideo("dQw4w9WgXcQ", "Title", "Artist", null);
+        handoff.onPlayState(true, 0);
+        handoff.onStreamRequest(audio("o-one", 251));
+        handoff.onStreamRequest(audio("o-one", 249));
+        assertEquals(251, handoff.handoffRequest().stream.itag);
+        // A different stream id is new content and wins regardless
+        handoff.onStreamRequest(audio("o-two", 249));
+        assertEquals("o-two", handoff.handoffRequest().stream.streamId);
+    }
+
+    @Test
+    public void switchingVideosResetsThePlayState() {
+        handoff.onVideo("aaaaaaaaaaa", "A", "Artist", null);
+        handoff.onStreamRequest(audio("o-a", 251));
+        handoff.onPlayState(true, 60_000);
+        handoff.onVideo("bbbbbbbbbbb", "B", "Artist", null);
+        assertNull(handoff.handoffRequest());
+        handoff.onStreamRequest(audio("o-b", 140));
+        handoff.onPlayState(true, 1_000);
+        assertEquals("o-b", handoff.handoffRequest().stream.streamId);
+        // Same video reported again keeps the position
+        handoff.onVideo("bbbbbbbbbbb", "B", "Artist", null);
+        assertEquals(1_000, handoff.handoffRequest().positionMs);
+    }
+
+    @Test
+    public void expiringStreamsAreNotHandedOff() {
+        handoff.onVideo("dQw4w9WgXcQ", "Title", "Artist", null);
+        handoff.onStreamRequest(audio("o-one", 251));
+        handoff.onPlayState(true, 0);
+        clock.millis = 1700019800_000L;
+        assertNull(handoff.handoffRequest());
+    }
+}
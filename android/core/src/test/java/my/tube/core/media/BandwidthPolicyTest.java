@@ -0,0 +1,27 @@
+package my.tube.core.media;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class BandwidthPolicyTest {
+
+    @Test
+    public void unmeteredFastNetworksAreNotCapped() {
+        assertTrue(BandwidthPolicy.DEFAULT.capFor(new BandwidthPolicy.Network(false, false, 50_000)).isNone());
+        assertTrue(BandwidthPolicy.DEFAULT.capFor(new BandwidthPolicy.Network(false, false, 0)).isNone());
+    }
+
+    @Test
+    public void capsCombineToTheStrictest() {
+        BandwidthPolicy.Cap hotspot = BandwidthPolicy.DEFAULT.capFor(new BandwidthPolicy.Network(true, false, 20_000));
+        assertEquals(720, hotspot.maxHeight);
+        BandwidthPolicy.Cap cellular = BandwidthPolicy.DEFAULT.capFor(new BandwidthPolicy.Network(true, true, 20_000));
+        assertEquals(480, cellular.maxHeight);
+        assertEquals(1_500_000, cellular.maxBitrate);
+        BandwidthPolicy.Cap slow = BandwidthPolicy.DEFAULT.capFor(new BandwidthPolicy.Network(false, false, 1_000));
+        assertEquals(360, slow.maxHeight);
+        assertTrue(slow.allows(360, 800_000));
+        assertFalse(slow.allows(360, 800_001));
+    }
+}
@@ -0,0 +1,123 @@
+package my.tube.core.media;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.io.StringReader;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import my.tube.core.json.YoutubeiFilters;
+import my.tube.core.metrics.MetricsRegistry;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class FormatPrunerTest {
+
+    // A /youtubei/v1/player response trimmed to one muxed format, ten video and two audio adaptive formats
+    private static final String FIXTURE = "player-response.json";
+    // The same formats for a Short: portrait, so 720p is 720x1280
+    private static final String SHORT_FIXTURE = "player-response-short.json";
+
+    private static String fixture(String name) throws IOException {
+        InputStream in = FormatPrunerTest.class.getResourceAsStream(name);
+        assertNotNull(name, in);
+        StringBuilder text = new StringBuilder();
+        try (Reader reader = new InputStreamReader(in, StandardCharsets.UTF_8)) {
+            char[] buffer = new char[4096];
+            int n;
+            while ((n = reader.read(buffer)) > 0) {
+                text.append(buffer, 0, n);
+            }
+        }
+        return text.toString();
+    }
+
+    private static JSONObject prune(FormatPruner pruner) throws IOException {
+        return prune(pruner, FIXTURE);
+    }
+
+    private static JSONObject prune(FormatPruner pruner, String fixture) throws IOException {
+        StringWriter out = new StringWriter();
+        YoutubeiFilters.player(pruner).filter(new StringReader(fixture(fixture)), out);
+        return new JSONObject(out.toString());
+    }
+
+    private static List<Integer> itags(JSONObject response, String key) {
+        JSONArray formats = response.getJSONObject("streamingData").getJSONArray(key);
+        List<Integer> itags = new ArrayList<>();
+        for (int i = 0; i < formats.length(); i++) {
+            itags.add(formats.getJSONObject(i).getInt("itag"));
+        }
+        return itags;
+    }
+
+    @Test
+    public void prunesVideoAboveTheCapAndKeepsAudio() throws Exception {
+        MetricsRegistry metrics = new MetricsRegistry();
+        FormatPruner pruner = new FormatPruner(new BandwidthPolicy.Cap(480, 1_000_000), metrics);
+        JSONObject response = prune(pruner);
+
+        // 135 is 480p but over the bitrate; 244 is the VP9 480p under it
+        assertEquals(Arrays.asList(244, 134, 243, 133, 160, 140, 251), itags(response, "adaptiveFormats"));
+        assertEquals(Arrays.asList(18), itags(response, "formats"));
+        assertFalse(response.has("playerAds"));
+        assertFalse(response.has("adPlacements"));
+        assertEquals("dQw4w9WgXcQ", response.getJSONObject("videoDetails").getString("videoId"));
+
+        assertEquals(5, pruner.pruned());
+        assertEquals(80211456L - 14201155L, pruner.bytesSaved());
+        assertEquals(1, metrics.counter("bandwidth.capped").sum());
+        assertEquals(5, metrics.counter("bandwidth.formatsPruned").sum());
+        assertEquals(pruner.bytesSaved(), metrics.counter("bandwidth.bytesSaved").sum());
+    }
+
+    @Test
+    public void keepsTheSmallestVideoWhenEverythingIsOverTheCap() throws Exception {
+        FormatPruner pruner = new FormatPruner(new BandwidthPolicy.Cap(100, 50_000), new MetricsRegistry());
+        JSONObject response = prune(pruner);
+        assertEquals(Arrays.asList(160, 140, 251), itags(response, "adaptiveFormats"));
+        assertEquals(80211456L - 2103114L, pruner.bytesSaved());
+    }
+
+    @Test
+    public void leavesTheResponseAloneUnderTheCap() throws Exception {
+        MetricsRegistry metrics = new MetricsRegistry();
+        FormatPruner pruner = new FormatPruner(new BandwidthPolicy.Cap(1080, 10_000_000), metrics);
+        JSONObject response = prune(pruner);
+        assertEquals(12, itags(response, "adaptiveFormats").size());
+        assertEquals(0, pruner.pruned());
+        assertEquals(0, metrics.counter("bandwidth.capped").sum());
+    }
+
+    @Test
+    public void capsPortraitVideoByItsShortSide() throws Exception {
+        JSONObject cellular = prune(new FormatPruner(BandwidthPolicy.CELLULAR, new MetricsRegistry()), SHORT_FIXTURE);
+        assertEquals(Arrays.asList(135, 244, 134, 243, 133, 160, 140, 251), itags(cellular, "adaptiveFormats"));
+
+        JSONObject metered = prune(new FormatPruner(BandwidthPolicy.METERED, new MetricsRegistry()), SHORT_FIXTURE);
+        assertEquals(Arrays.asList(136, 247, 135, 244, 134, 243, 133, 160, 140, 251),
+            itags(metered, "adaptiveFormats"));
+        assertEquals("aqz-KE-bpKQ", metered.getJSONObject("videoDetails").getString("videoId"));
+    }
+
+    @Test
+    public void readsTopLevelMembersOnly() {
+        String element = "{\"itag\":1,\"initRange\":{\"height\":9,\"end\":\"740\"},\"mimeType\":\"video/mp4; "
+            + "codecs=\\\"avc1\\\"\",\"height\":720,\"contentLength\":\"123\",\"bitrate\":5}";
+        assertEquals(720, FormatPruner.number(element, "height"));
+        assertEquals(123, FormatPruner.number(element, "contentLength"));
+        assertEquals(5, FormatPruner.number(element, "bitrate"));
+        assertEquals(0, FormatPruner.number(element, "width"));
+        assertEquals(720, FormatPruner.shortSide(element));
+        assertEquals(720, FormatPruner.shortSide("{\"width\":720,\"height\":1280}"));
+        assertEquals("\"video/mp4; codecs=\\\"avc1\\\"\"", FormatPruner.member(element, "mimeType"));
+        assertEquals("{\"height\":9,\"end\":\"740\"}", FormatPruner.member(element, "initRange"));
+    }
+}
@@ -0,0 +1,51 @@
+package my.tube.core.media;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class StreamUrlTest {
+
+    static final String AUDIO = "https://rr3---sn-abc.googlevideo.com/videoplayback?expire=1700020000"
+        + "&ei=x&ip=1.2.3.4&id=o-AbCdEf&itag=251&source=youtube&mime=audio%2Fwebm&gir=yes&clen=3456789"
+        + "&dur=215.3&lmt=1&n=decoded&sig=AOq0&pot=token&cpn=abc&range=0-65535&rn=3&rbuf=0&alr=yes";
+
+    @Test
+    public void parsesAudioStreamsAndDropsChunkParams() {
+        StreamUrl stream = StreamUrl.parse(AUDIO);
+        assertTrue(stream.isAudio());
+        assertEquals("audio/webm", stream.mimeType);
+        assertEquals(251, stream.itag);
+        assertEquals("o-AbCdEf-251", stream.cacheKey());
+        assertEquals(1700020000L, stream.expiresAt);
+        assertEquals("https://rr3---sn-abc.googlevideo.com/videoplayback?expire=1700020000"
+            + "&ei=x&ip=1.2.3.4&id=o-AbCdEf&itag=251&source=youtube&mime=audio%2Fwebm&gir=yes&clen=3456789"
+            + "&dur=215.3&lmt=1&n=decoded&sig=AOq0&pot=token&cpn=abc", stream.url);
+    }
+
+    @Test
+    public void cacheKeyIgnoresTheSignature() {
+        StreamUrl a = StreamUrl.parse(AUDIO);
+        StreamUrl b = StreamUrl.parse(AUDIO.replace("sig=AOq0", "sig=other").replace("expire=1700020000", "expire=1700090000"));
+        assertEquals(a.cacheKey(), b.cacheKey());
+    }
+
+    @Test
+    public void rejectsLiveSabrAndOtherUrls() {
+        assertNull(StreamUrl.parse(AUDIO + "&sq=12"));
+        assertNull(StreamUrl.parse(AUDIO + "&live=1"));
+        assertNull(StreamUrl.parse("https://rr3---sn-abc.googlevideo.com/videoplayback?sabr=1&id=o-x"));
+        assertNull(StreamUrl.parse("https://rr3---sn-abc.googlevideo.com/generate_204"));
+        assertNull(StreamUrl.parse("https://rr3---sn-abc.googlevideo.com/videoplayback?id=o-x&mime=audio%2Fmp4"));
+        assertFalse(StreamUrl.parse(AUDIO.replace("mime=audio%2Fwebm", "mime=video%2Fmp4")).isAudio());
+        assertTrue(StreamUrl.isStreamHost("rr3---sn-abc.googlevideo.com"));
+        assertFalse(StreamUrl.isStreamHost("googlevideo.com.evil.example"));
+    }
+
+    @Test
+    public void expiryMargin() {
+        StreamUrl stream = StreamUrl.parse(AUDIO);
+        assertFalse(stream.expiresWithin(1700000000_000L, 600_000));
+        assertTrue(stream.expiresWithin(1700019800_000L, 600_000));
+    }
+}
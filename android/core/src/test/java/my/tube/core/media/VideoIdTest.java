@@ -0,0 +1,25 @@
+package my.tube.core.media;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class VideoIdTest {
+
+    @Test
+    public void acceptsElevenUrlSafeCharacters() {
+        assertTrue(VideoId.isValid("dQw4w9WgXcQ"));
+        assertTrue(VideoId.isValid("aqz-KE-bpKQ"));
+        assertTrue(VideoId.isValid("___________"));
+    }
+
+    @Test
+    public void rejectsEverythingElse() {
+        assertFalse(VideoId.isValid(null));
+        assertFalse(VideoId.isValid(""));
+        assertFalse(VideoId.isValid("dQw4w9WgXc"));
+        assertFalse(VideoId.isValid("dQw4w9WgXcQQ"));
+        assertFalse(VideoId.isValid("dQw4w9WgX/Q"));
+        assertFalse(VideoId.isValid("dQw4w9WgX.Q"));
+    }
+}
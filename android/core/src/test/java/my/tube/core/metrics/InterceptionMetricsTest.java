@@ -0,0 +1,103 @@
+package my.tube.core.metrics;
+
+import static org.junit.Assert.*;
+
+import java.util.Iterator;
+import java.util.Map;
+import my.tube.core.metrics.InterceptionMetrics.Decision;
+import org.json.JSONObject;
+import org.junit.Test;
+
+public class InterceptionMetricsTest {
+
+    @Test
+    public void countsDecisionsHostsAndRules() {
+        InterceptionMetrics metrics = new InterceptionMetrics(new MetricsRegistry());
+        metrics.onRequest("m.youtube.com", Decision.ALLOWED, null, 800);
+        metrics.onRequest("googleads.g.doubleclick.net", Decision.BLOCKED_HOST, null, 300);
+        metrics.onRequest("googleads.g.doubleclick.net", Decision.BLOCKED_HOST, null, 300);
+        metrics.onRequest("m.youtube.com", Decision.BLOCKED_RULE, "m.youtube.com/api/stats/ads", 1200);
+        metrics.onRequest("m.youtube.com", Decision.PROXIED, null, 900);
+
+        assertEquals(5, metrics.requests());
+        assertEquals(1, metrics.count(Decision.ALLOWED));
+        assertEquals(2, metrics.count(Decision.BLOCKED_HOST));
+        assertEquals(1, metrics.count(Decision.BLOCKED_RULE));
+        assertEquals(1, metrics.count(Decision.PROXIED));
+
+        MetricsRegistry registry = metrics.registry();
+        assertEquals(2, registry.keyed("blocked.hosts", 1).get("googleads.g.doubleclick.net"));
+        assertEquals(1, registry.keyed("blocked.hosts", 1).get("m.youtube.com"));
+        assertEquals(1, registry.keyed("blocked.rules", 1).get("m.youtube.com/api/stats/ads"));
+        assertEquals(5, registry.histogram("requests.decision").count());
+    }
+
+    @Test
+    public void keyedCountersCapDistinctKeys() {
+        KeyedCounter counter = new KeyedCounter(3);
+        for (int i = 0; i < 10; i++) {
+            counter.increment("host" + i + ".example");
+        }
+        counter.add("host0.example", 5);
+        assertEquals(4, counter.size());
+        assertEquals(6, counter.get("host0.example"));
+        assertEquals(7, counter.get(KeyedCounter.OTHER));
+
+        Iterator<Map.Entry<String, Long>> top = counter.top(2).entrySet().iterator();
+        assertEquals(KeyedCounter.OTHER, top.next().getKey());
+        assertEquals("host0.example", top.next().getKey());
+        assertFalse(top.hasNext());
+    }
+
+    @Test
+    public void proxiedResponsesTrackSavedChars() {
+        InterceptionMetrics metrics = new InterceptionMetrics(new MetricsRegistry());
+        metrics.onProxied(100_000, 60_000, 5_000_000);
+        metrics.onProxied(1_000, 1_200, 2_000_000);
+        MetricsRegistry registry = metrics.registry();
+        assertEquals(101_000, registry.counter("proxy.charsIn").sum());
+        assertEquals(40_000, registry.counter("proxy.charsSaved").sum());
+        assertEquals(2, registry.histogram("proxy.response").count());
+    }
+
+    @Test
+    public void filterFailuresAreCountedApart() {
+        InterceptionMetrics metrics = new InterceptionMetrics(new MetricsRegistry());
+        metrics.onProxyFilterFailed();
+        MetricsRegistry registry = metrics.registry();
+        assertEquals(1, registry.counter("proxy.filterFailed").sum());
+        assertEquals(0, registry.histogram("proxy.response").count());
+        assertTrue(metrics.summary().contains("failed 1"));
+    }
+
+    @Test
+    public void exportsJson() throws Exception {
+        InterceptionMetrics metrics = new InterceptionMetrics(new MetricsRegistry());
+        metrics.onRequest("googleads.g.doubleclick.net", Decision.BLOCKED_HOST, null, 2000);
+        metrics.onNavigation(true, 500);
+        metrics.onNavigation(false, 700);
+
+        JSONObject json = new JSONObject(metrics.registry().toJson().toString());
+        JSONObject counters = json.getJSONObject("counters");
+        assertEquals(1, counters.getLong("requests"));
+        assertEquals(1, counters.getLong("requests.blocked_host"));
+        assertEquals(0, counters.getLong("requests.allowed"));
+        assertEquals(1, counters.getLong("navigations.inApp"));
+        assertEquals(1, counters.getLong("navigations.external"));
+        assertEquals(1, json.getJSONObject("keyed").getJSONObject("blocked.hosts")
+            .getLong("googleads.g.doubleclick.net"));
+        JSONObject decisions = json.getJSONObject("histograms").getJSONObject("requests.decision");
+        assertEquals(1, decisions.getLong("count"));
+        assertEquals(2000, decisions.getLong("maxNanos"));
+        assertTrue(Math.abs(decisions.getLong("p50Nanos") - 2000) <= 2000 / 32);
+    }
+
+    @Test
+    public void summaryMentionsTopBlockedHost() {
+        InterceptionMetrics metrics = new InterceptionMetrics(new MetricsRegistry());
+        metrics.onRequest("googleads.g.doubleclick.net", Decision.BLOCKED_HOST, null, 2000);
+        String summary = metrics.summary();
+        assertTrue(summary, summary.startsWith("req 1  allow 0  block 1/0"));
+        assertTrue(summary, summary.contains("googleads.g.doubleclick.net=1"));
+    }
+}
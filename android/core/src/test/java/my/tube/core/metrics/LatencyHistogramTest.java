@@ -0,0 +1,104 @@
+package my.tube.core.metrics;
+
+import static org.junit.Assert.*;
+
+import java.util.Random;
+import java.util.concurrent.CountDownLatch;
+import org.junit.Test;
+
+public class LatencyHistogramTest {
+
+    @Test
+    public void bucketsCoverEveryValueWithinThreePercent() {
+        Random random = new Random(42);
+        for (int i = 0; i < 100_000; i++) {
+            long value = (long) Math.pow(10, random.nextDouble() * 11);
+            int index = LatencyHistogram.index(value);
+            long high = LatencyHistogram.highestEquivalent(index);
+            assertTrue(value + " above its bucket", value <= high);
+            if (index > 0) {
+                assertTrue(value + " below its bucket", value > LatencyHistogram.highestEquivalent(index - 1));
+            }
+            assertTrue(value + " bucket too wide", high - value <= Math.max(1, value / 32));
+        }
+    }
+
+    @Test
+    public void smallValuesAreExact() {
+        for (long v = 0; v < 64; v++) {
+            assertEquals(v, LatencyHistogram.highestEquivalent(LatencyHistogram.index(v)));
+        }
+    }
+
+    @Test
+    public void percentilesOfUniformValues() {
+        LatencyHistogram histogram = new LatencyHistogram(60_000_000_000L);
+        for (long v = 1; v <= 10_000; v++) {
+            histogram.record(v * 1000);
+        }
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(10_000, snapshot.count());
+        assertEquals(10_000_000, snapshot.maxNanos());
+        assertEquals(5_000_500, snapshot.meanNanos(), 1.0);
+        assertWithin(5_000_000, snapshot.valueAtPercentile(50));
+        assertWithin(9_900_000, snapshot.valueAtPercentile(99));
+        assertEquals(10_000_000, snapshot.valueAtPercentile(100));
+    }
+
+    @Test
+    public void outOfRangeValuesAreClamped() {
+        LatencyHistogram histogram = new LatencyHistogram(1_000_000);
+        histogram.record(-5);
+        histogram.record(Long.MAX_VALUE);
+        LatencyHistogram.Snapshot snapshot = histogram.snapshot();
+        assertEquals(2, snapshot.count());
+        assertEquals(0, snapshot.valueAtPercentile(50));
+        assertEquals(1_000_000, snapshot.maxNanos());
+    }
+
+    @Test
+    public void emptySnapshot() {
+        LatencyHistogram.Snapshot snapshot = new LatencyHistogram(1_000_000).snapshot();
+        assertEquals(0, snapshot.count());
+        assertEquals(0, snapshot.valueAtPercentile(99));
+        assertEquals(0.0, snapshot.meanNanos(), 0.0);
+    }
+
+    @Test
+    public void concurrentRecordsAreNotLost() throws InterruptedException {
+        final LatencyHistogram histogram = new LatencyHistogram(1_000_000);
+        final StripedCounter counter = new StripedCounter(4);
+        final int threads = 8;
+        final int perThread = 50_000;
+        final CountDownLatch start = new CountDownLatch(1);
+        Thread[] workers = new Thread[threads];
+        for (int t = 0; t < threads; t++) {
+            final long value = 100 + t;
+            workers[t] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException e) {
+                    return;
+                }
+                for (int i = 0; i < perThread; i++) {
+                    histogram.record(value);
+                    counter.add(2);
+                }
+            });
+            workers[t].start();
+        }
+        start.countDown();
+        for (Thread worker : workers) {
+            worker.join();
+        }
+        assertEquals((long) threads * perThread, histogram.count());
+        assertEquals((long) threads * perThread, histogram.snapshot().count());
+        assertEquals(2L * threads * perThread, counter.sum());
+        assertEquals(107, histogram.snapshot().maxNanos());
+    }
+
+    private static void assertWithin(long expected, long actual) {
+        assertTrue("expected ~" + expected + " but was " + actual,
+            Math.abs(actual - expected) <= expected / 32 + 1);
+    }
+}
@@ -0,0 +1,248 @@
+package my.tube.core.net;
+
+import static org.junit.Assert.*;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.SocketTimeoutException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.zip.GZIPOutputStream;
+import my.tube.core.metrics.MetricsRegistry;
+import my.tube.core.testing.FakeClock;
+import my.tube.core.testing.StubServer;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class HttpStackTest {
+
+    private static final long KEEP_ALIVE_MS = 60_000;
+
+    @Rule
+    public final StubServer server = new StubServer();
+    private final FakeClock clock = new FakeClock(1_700_000_000_000L);
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private final HttpStack stack = new HttpStack(HttpStack.PLATFORM, metrics, clock, KEEP_ALIVE_MS);
+    // Client port of each request, in order: the same port means the same connection
+    private final List<Integer> ports = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        server.handle("/", exchange -> {
+            synchronized (ports) {
+                ports.add(exchange.getRemoteAddress().getPort());
+            }
+            String path = exchange.getRequestURI().getPath();
+            byte[] body;
+            int code = 200;
+            if (path.startsWith("/large")) {
+                body = new byte[1 << 20];
+            } else if (path.startsWith("/missing")) {
+                code = 404;
+                body = "{\"error\":\"not found\"}".getBytes(StandardCharsets.UTF_8);
+            } else if (path.startsWith("/gzip")) {
+                ByteArrayOutputStream zipped = new ByteArrayOutputStream();
+                try (GZIPOutputStream out = new GZIPOutputStream(zipped)) {
+                    out.write(repeat("compressible ", 200).getBytes(StandardCharsets.UTF_8));
+                }
+                body = zipped.toByteArray();
+                exchange.getResponseHeaders().set("Content-Encoding", "gzip");
+            } else {
+                body = repeat("x", 1000).getBytes(StandardCharsets.UTF_8);
+            }
+            try {
+                StubServer.respond(exchange, code, body);
+            } catch (IOException e) {
+                // The client hung up on a body it did not want
+            }
+        });
+    }
+
+    private String url(String path) {
+        return server.url(path);
+    }
+
+    private static String repeat(String s, int times) {
+        StringBuilder sb = new StringBuilder();
+        for (int i = 0; i < times; i++) {
+            sb.append(s);
+        }
+        return sb.toString();
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[4096];
+        int n;
+        while ((n = in.read(buffer)) != -1) {
+            out.write(buffer, 0, n);
+        }
+        return out.toByteArray();
+    }
+
+    private long fresh(String component) {
+        return metrics.keyed("http." + component + ".fresh", 32).get("127.0.0.1");
+    }
+
+    private long reused(String component) {
+        return metrics.keyed("http." + component + ".reused", 32).get("127.0.0.1");
+    }
+
+    @Test
+    public void readBodiesLeaveTheConnectionForTheNextCall() throws Exception {
+        HttpStack.Client client = stack.client("test", 2000);
+        for (int i = 0; i < 3; i++) {
+            try (HttpStack.Call call = client.open(url("/small"))) {
+                assertEquals(200, call.code());
+                assertEquals(1000, readAll(call.body()).length);
+            }
+        }
+        // Callers that close the body themselves once it is read keep the connection too
+        try (HttpStack.Call call = client.open(url("/small")); InputStream in = call.body()) {
+            assertEquals(1000, readAll(in).length);
+        }
+        try (HttpStack.Call call = client.open(url("/small"))) {
+            readAll(call.body());
+        }
+        assertEquals(1, new HashSet<>(ports).size());
+        assertEquals(1, fresh("test"));
+        assertEquals(4, reused("test"));
+    }
+
+    @Test
+    public void componentsShareThePool() throws Exception {
+        try (HttpStack.Call call = stack.client("first", 2000).open(url("/small"))) {
+            readAll(call.body());
+        }
+        try (HttpStack.Call call = stack.client("second", 2000).open(url("/small"))) {
+            readAll(call.body());
+        }
+        assertEquals(1, new HashSet<>(ports).size());
+        assertEquals(1, fresh("first"));
+        assertEquals(1, reused("second"));
+    }
+
+    @Test
+    public void shortUnreadBodiesAndErrorsAreDrained() throws Exception {
+        HttpStack.Client client = stack.client("test", 2000);
+        try (HttpStack.Call call = client.open(url("/small"))) {
+            assertEquals(200, call.code());
+        }
+        try (HttpStack.Call call = client.open(url("/missing"))) {
+            assertEquals(404, call.code());
+        }
+        try (HttpStack.Call call = client.open(url("/small"))) {
+            readAll(call.body());
+        }
+        assertEquals(1, new HashSet<>(ports).size());
+        assertEquals(2, reused("test"));
+    }
+
+    @Test
+    public void errorBodiesReadByTheCallerReleaseTheConnection() throws Exception {
+        HttpStack.Client client = stack.client("test", 2000);
+        try (HttpStack.Call call = client.open(url("/missing"))) {
+            assertEquals(404, call.code());
+            try (InputStream body = call.stream()) {
+                assertEquals("{\"error\":\"not found\"}", new String(readAll(body), StandardCharsets.UTF_8));
+            }
+        }
+        try (HttpStack.Call call = client.open(url("/small"))) {
+            readAll(call.body());
+        }
+        assertEquals(1, new HashSet<>(ports).size());
+        assertEquals(1, reused("test"));
+    }
+
+    @Test
+    public void abandonedLargeBodiesDisconnect() throws Exception {
+        HttpStack.Client client = stack.client("test", 2000);
+        try (HttpStack.Call call = client.open(url("/large"))) {
+            assertEquals(200, call.code());
+            assertTrue(call.body().read(new byte[16]) > 0);
+        }
+        try (HttpStack.Call call = client.open(url("/small"))) {
+            readAll(call.body());
+        }
+        assertEquals(2, new HashSet<>(ports).size());
+        assertEquals(2, fresh("test"));
+        assertEquals(0, reused("test"));
+    }
+
+    @Test
+    public void connectionsIdleLongerThanTheKeepAliveAreNotCountedAsReused() throws Exception {
+        HttpStack.Client client = stack.client("test", 2000);
+        try (HttpStack.Call call = client.open(url("/small"))) {
+            readAll(call.body());
+        }
+        clock.millis += KEEP_ALIVE_MS;
+        try (HttpStack.Call call = client.open(url("/small"))) {
+            readAll(call.body());
+        }
+        assertEquals(2, fresh("test"));
+    }
+
+    @Test
+    public void decodesGzipBodies() throws Exception {
+        try (HttpStack.Call call = stack.client("test", 2000).open(url("/gzip"))) {
+            call.connection.setRequestProperty("Accept-Encoding", "gzip");
+            assertEquals(200, call.code());
+            assertEquals(-1, call.contentLength());
+            assertEquals(repeat("compressible ", 200), new String(readAll(call.body()), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void bodyReadsStopAtTheCallBudget() throws Exception {
+        HttpStack.Client client = stack.client("test", 2000);
+        try (HttpStack.Call call = client.open(url("/large"), 1000)) {
+            InputStream body = call.body();
+            assertTrue(body.read(new byte[16]) > 0);
+            clock.millis += 1001;
+            try {
+                body.read(new byte[16]);
+                fail();
+            } catch (SocketTimeoutException expected) {
+                // The budget covers the whole call, not each read
+            }
+        }
+        assertEquals(1, metrics.counter("http.test.budgetExceeded").sum());
+        assertEquals(Arrays.asList(ports.get(0)), ports);
+    }
+
+    @Test
+    public void streamedBodiesOnlyTimeOutWhenAReadStalls() throws Exception {
+        HttpStack.Client client = stack.client("test", 2000);
+        try (HttpStack.Call call = client.open(url("/large"), 1000)) {
+            InputStream body = call.stream();
+            byte[] buffer = new byte[16 * 1024];
+            long total = body.read(buffer);
+            clock.millis += 1001;
+            for (int n; (n = body.read(buffer)) != -1; ) {
+                total += n;
+            }
+            assertEquals(1 << 20, total);
+        }
+        assertEquals(0, metrics.counter("http.test.budgetExceeded").sum());
+    }
+
+    @Test
+    public void streamedCallsStillHoldHeadersToTheBudget() throws Exception {
+        HttpStack.Client client = stack.client("test", 2000);
+        try (HttpStack.Call call = client.open(url("/large"), 1000)) {
+            clock.millis += 1001;
+            try {
+                call.stream();
+                fail();
+            } catch (SocketTimeoutException expected) {
+                // Connect and headers are still on the clock
+            }
+        }
+        assertEquals(1, metrics.counter("http.test.budgetExceeded").sum());
+    }
+}
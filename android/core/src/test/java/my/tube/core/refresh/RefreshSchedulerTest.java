@@ -0,0 +1,139 @@
+package my.tube.core.refresh;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.Map;
+import my.tube.core.testing.FakeClock;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RefreshSchedulerTest {
+
+    private static final long HOUR = 60 * 60 * 1000L;
+    private static final long DAY = 24 * HOUR;
+    private static final RefreshScheduler.Conditions IDEAL = new RefreshScheduler.Conditions(true, true);
+    private static final RefreshScheduler.Conditions METERED = new RefreshScheduler.Conditions(false, false);
+
+    private final FakeClock clock = new FakeClock(1_700_000_000_000L);
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    private File dir;
+    private final FakeJob lists = new FakeJob("blocklist", DAY, 3 * DAY);
+    private final FakeJob versions = new FakeJob("app-version", 12 * HOUR, DAY);
+
+    private static final class FakeJob implements RefreshScheduler.Job {
+        final String name;
+        final long interval;
+        final long maxStale;
+        int runs;
+        boolean fail;
+
+        FakeJob(String name, long interval, long maxStale) {
+            this.name = name;
+            this.interval = interval;
+            this.maxStale = maxStale;
+        }
+
+        @Override
+        public String name() {
+            return name;
+        }
+
+        @Override
+        public long intervalMs() {
+            return interval;
+        }
+
+        @Override
+        public long maxStaleMs() {
+            return maxStale;
+        }
+
+        @Override
+        public void run() throws IOException {
+            runs++;
+            if (fail) {
+                throw new IOException("offline");
+            }
+        }
+    }
+
+    @Before
+    public void setUp() {
+        dir = tmp.getRoot();
+    }
+
+    private RefreshScheduler scheduler() {
+        return new RefreshScheduler(Arrays.<RefreshScheduler.Job>asList(lists, versions),
+            new File(dir, "refresh.properties"), clock, 30 * 60 * 1000L);
+    }
+
+    @Test
+    public void neverRunJobsRunUnderAnyConditions() {
+        Map<String, RefreshScheduler.Outcome> outcomes = scheduler().runDue(METERED);
+        assertEquals(RefreshScheduler.Outcome.SUCCEEDED, outcomes.get("blocklist"));
+        assertEquals(RefreshScheduler.Outcome.SUCCEEDED, outcomes.get("app-version"));
+    }
+
+    @Test
+    public void dueJobsWaitForIdealConditionsUntilStale() {
+        RefreshScheduler scheduler = scheduler();
+        scheduler.runDue(IDEAL);
+
+        clock.millis += DAY;
+        Map<String, RefreshScheduler.Outcome> outcomes = scheduler.runDue(METERED);
+        assertEquals(RefreshScheduler.Outcome.SKIPPED, outcomes.get("blocklist"));
+        // A day old is already stale for version metadata
+        assertEquals(RefreshScheduler.Outcome.SUCCEEDED, outcomes.get("app-version"));
+
+        assertEquals(RefreshScheduler.Outcome.SUCCEEDED, scheduler.runDue(IDEAL).get("blocklist"));
+
+        clock.millis += 3 * DAY;
+        assertEquals(RefreshScheduler.Outcome.SUCCEEDED, scheduler.runDue(METERED).get("blocklist"));
+    }
+
+    @Test
+    public void notDueBeforeInterval() {
+        RefreshScheduler scheduler = scheduler();
+        scheduler.runDue(IDEAL);
+        clock.millis += DAY - 1;
+        assertFalse(scheduler.isDue(lists, IDEAL));
+        assertEquals(clock.millis + 1, scheduler.nextDueAt(lists));
+        assertEquals(1, lists.runs);
+    }
+
+    @Test
+    public void failuresBackOffUpToTheInterval() {
+        RefreshScheduler scheduler = scheduler();
+        lists.fail = true;
+        assertEquals(RefreshScheduler.Outcome.FAILED, scheduler.runDue(IDEAL).get("blocklist"));
+
+        clock.millis += 29 * 60 * 1000L;
+        assertEquals(RefreshScheduler.Outcome.SKIPPED, scheduler.runDue(IDEAL).get("blocklist"));
+        clock.millis += 60 * 1000L;
+        assertEquals(RefreshScheduler.Outcome.FAILED, scheduler.runDue(IDEAL).get("blocklist"));
+
+        // Second failure waits twice as long
+        clock.millis += 59 * 60 * 1000L;
+        assertFalse(scheduler.isDue(lists, IDEAL));
+        clock.millis += 60 * 1000L;
+        assertTrue(scheduler.isDue(lists, IDEAL));
+
+        assertEquals(DAY, scheduler.backoff(lists, 20));
+    }
+
+    @Test
+    public void stateSurvivesRestart() {
+        scheduler().runDue(IDEAL);
+        clock.millis += HOUR;
+        scheduler().runDue(IDEAL);
+        assertEquals(1, lists.runs);
+        assertEquals(1, versions.runs);
+    }
+}
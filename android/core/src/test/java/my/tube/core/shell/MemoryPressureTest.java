@@ -0,0 +1,58 @@
+package my.tube.core.shell;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import my.tube.core.metrics.MetricsRegistry;
+import my.tube.core.shell.MemoryPressure.Level;
+import org.junit.Test;
+
+public class MemoryPressureTest {
+
+    @Test
+    public void mapsTrimLevels() {
+        assertEquals(Level.MODERATE, MemoryPressure.levelOf(MemoryPressure.TRIM_MEMORY_RUNNING_MODERATE));
+        assertEquals(Level.LOW, MemoryPressure.levelOf(MemoryPressure.TRIM_MEMORY_RUNNING_LOW));
+        assertEquals(Level.CRITICAL, MemoryPressure.levelOf(MemoryPressure.TRIM_MEMORY_RUNNING_CRITICAL));
+        assertEquals(Level.NONE, MemoryPressure.levelOf(MemoryPressure.TRIM_MEMORY_UI_HIDDEN));
+        assertEquals(Level.LOW, MemoryPressure.levelOf(MemoryPressure.TRIM_MEMORY_BACKGROUND));
+        assertEquals(Level.CRITICAL, MemoryPressure.levelOf(MemoryPressure.TRIM_MEMORY_MODERATE));
+        assertEquals(Level.CRITICAL, MemoryPressure.levelOf(MemoryPressure.TRIM_MEMORY_COMPLETE));
+        assertEquals(Level.NONE, MemoryPressure.levelOf(0));
+        assertTrue(Level.CRITICAL.atLeast(Level.LOW));
+        assertFalse(Level.MODERATE.atLeast(Level.LOW));
+    }
+
+    @Test
+    public void notifiesListenersAndCounts() {
+        MetricsRegistry metrics = new MetricsRegistry();
+        MemoryPressure pressure = new MemoryPressure(metrics);
+        final List<String> seen = new ArrayList<>();
+        MemoryPressure.Listener listener = new MemoryPressure.Listener() {
+            @Override
+            public void onTrim(Level level, boolean uiHidden) {
+                seen.add(level + (uiHidden ? " hidden" : ""));
+            }
+        };
+        pressure.add(listener);
+        pressure.add(listener);
+        pressure.onTrimMemory(MemoryPressure.TRIM_MEMORY_RUNNING_LOW);
+        pressure.onTrimMemory(MemoryPressure.TRIM_MEMORY_UI_HIDDEN);
+        pressure.onTrimMemory(MemoryPressure.TRIM_MEMORY_COMPLETE);
+        pressure.onLowMemory();
+        pressure.remove(listener);
+        pressure.onTrimMemory(MemoryPressure.TRIM_MEMORY_RUNNING_MODERATE);
+
+        List<String> expected = new ArrayList<>();
+        expected.add("LOW");
+        expected.add("NONE hidden");
+        expected.add("CRITICAL hidden");
+        expected.add("CRITICAL");
+        assertEquals(expected, seen);
+        assertEquals(1, metrics.counter("memory.trim.low").sum());
+        assertEquals(2, metrics.counter("memory.trim.critical").sum());
+        assertEquals(1, metrics.counter("memory.trim.moderate").sum());
+        assertEquals(2, metrics.counter("memory.uiHidden").sum());
+    }
+}
@@ -0,0 +1,41 @@
+package my.tube.core.shell;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class NavigationPolicyTest {
+
+    private final NavigationPolicy policy = NavigationPolicy.YOUTUBE;
+
+    @Test
+    public void keepsYouTubeHostsInApp() {
+        assertTrue(policy.isInApp("youtube.com"));
+        assertTrue(policy.isInApp("m.youtube.com"));
+        assertTrue(policy.isInApp("music.youtube.com"));
+        assertTrue(policy.isInApp("youtu.be"));
+    }
+
+    @Test
+    public void keepsGoogleSignInInApp() {
+        assertTrue(policy.isInApp("accounts.google.com"));
+        assertTrue(policy.isInApp("accounts.google.co.uk"));
+        assertTrue(policy.isInApp("gds.google.de"));
+        assertTrue(policy.isInApp("myaccount.google.com"));
+    }
+
+    @Test
+    public void sendsEverythingElseOut() {
+        assertFalse(policy.isInApp(null));
+        assertFalse(policy.isInApp("example.com"));
+        assertFalse(policy.isInApp("google.com"));
+        assertFalse(policy.isInApp("twitter.com"));
+    }
+
+    @Test
+    public void matchesOnLabelBoundaries() {
+        assertFalse(policy.isInApp("notyoutube.com"));
+        assertFalse(policy.isInApp("youtube.com.evil.net"));
+        assertFalse(policy.isInApp("fakeyoutu.be"));
+    }
+}
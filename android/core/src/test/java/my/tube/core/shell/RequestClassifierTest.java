@@ -0,0 +1,81 @@
+package my.tube.core.shell;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.StringReader;
+import my.tube.core.filter.BlocklistStore;
+import my.tube.core.filter.HostMatcher;
+import my.tube.core.filter.RequestFilter;
+import my.tube.core.shell.RequestClassifier.Route;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class RequestClassifierTest {
+
+    private static final String RULES = "||youtube.com/api/stats/ads$~document\n";
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    private File dir;
+    private BlocklistStore blocklist;
+    private RequestClassifier classifier;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = tmp.getRoot();
+        blocklist = new BlocklistStore(dir);
+        blocklist.install(HostMatcher.of("doubleclick.net"), 1);
+        classifier = new RequestClassifier(blocklist, RequestFilter.parse(new StringReader(RULES)));
+    }
+
+    private Route route(String method, String host, String path) {
+        return classifier.classify(method, host, path, null, false, "*/*").route;
+    }
+
+    @Test
+    public void blocksListedHosts() {
+        RequestClassifier.Result result = classifier.classify("GET", "googleads.g.doubleclick.net", "/pagead/id",
+            null, false, null);
+        assertEquals(Route.BLOCKED_HOST, result.route);
+        assertTrue(result.isBlocked());
+        assertNull(result.rule);
+    }
+
+    @Test
+    public void blocksRuleMatchesWithTheRule() {
+        RequestClassifier.Result result = classifier.classify("GET", "m.youtube.com", "/api/stats/ads",
+            "ver=2", false, "*/*");
+        assertEquals(Route.BLOCKED_RULE, result.route);
+        assertEquals("||youtube.com/api/stats/ads$~document", result.rule.toString());
+        // The rule excludes documents
+        assertEquals(Route.NETWORK,
+            classifier.classify("GET", "m.youtube.com", "/api/stats/ads", null, true, "text/html").route);
+    }
+
+    @Test
+    public void routesCacheableRequests() {
+        assertEquals(Route.THUMBNAIL, route("GET", "i.ytimg.com", "/vi/dQw4w9WgXcQ/hqdefault.jpg"));
+        assertEquals(Route.STATIC_ASSET, route("GET", "m.youtube.com", "/s/player/abc/base.js"));
+        assertEquals(Route.STATIC_ASSET, route("GET", "fonts.gstatic.com", "/s/roboto/v30/x.woff2"));
+        assertEquals(Route.STREAM, route("GET", "rr1---sn-abc.googlevideo.com", "/videoplayback"));
+    }
+
+    @Test
+    public void leavesTheRestToTheNetwork() {
+        assertEquals(Route.NETWORK, route("POST", "m.youtube.com", "/youtubei/v1/player"));
+        assertEquals(Route.NETWORK, route("POST", "i.ytimg.com", "/vi/dQw4w9WgXcQ/hqdefault.jpg"));
+        assertEquals(Route.NETWORK, route("POST", "m.youtube.com", "/s/player/abc/base.js"));
+        assertEquals(Route.NETWORK, route("GET", "m.youtube.com", "/"));
+    }
+
+    @Test
+    public void followsBlocklistRefreshes() throws Exception {
+        assertEquals(Route.NETWORK, route("GET", "ads.example.com", "/x"));
+        blocklist.install(HostMatcher.of("example.com"), 2);
+        assertEquals(Route.BLOCKED_HOST, route("GET", "ads.example.com", "/x"));
+    }
+}
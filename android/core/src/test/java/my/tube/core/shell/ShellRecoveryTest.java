@@ -0,0 +1,95 @@
+package my.tube.core.shell;
+
+import static org.junit.Assert.*;
+
+import my.tube.core.metrics.MetricsRegistry;
+import my.tube.core.testing.FakeClock;
+import org.junit.Test;
+
+public class ShellRecoveryTest {
+
+    private static final class FakePlayback implements ShellRecovery.Playback {
+        String videoId;
+        long positionMs;
+        boolean playing;
+
+        @Override
+        public String videoId() {
+            return videoId;
+        }
+
+        @Override
+        public long positionMs() {
+            return positionMs;
+        }
+
+        @Override
+        public boolean isPlaying() {
+            return playing;
+        }
+    }
+
+    private final FakeClock clock = new FakeClock();
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private final ShellRecovery recovery = new ShellRecovery(NavigationPolicy.YOUTUBE, metrics, clock, 2, 60_000);
+
+    @Test
+    public void tracksUrlScrollAndPlayback() {
+        FakePlayback playback = new FakePlayback();
+        assertNull(recovery.snapshot(playback));
+
+        recovery.onUrl("https://m.youtube.com/");
+        recovery.onScroll(1200);
+        recovery.onUrl("https://m.youtube.com/");
+        assertEquals(1200, recovery.snapshot(playback).scrollY);
+
+        // A new page starts at the top; other hosts are not ours to restore
+        recovery.onUrl("https://m.youtube.com/watch?v=dQw4w9WgXcQ");
+        recovery.onUrl("https://example.com/");
+        playback.videoId = "dQw4w9WgXcQ";
+        playback.positionMs = 61_500;
+        playback.playing = true;
+        ShellRecovery.State state = recovery.snapshot(playback);
+        assertEquals("https://m.youtube.com/watch?v=dQw4w9WgXcQ", state.url);
+        assertEquals(0, state.scrollY);
+        assertEquals("dQw4w9WgXcQ", state.videoId);
+        assertEquals(61_500, state.positionMs);
+        assertTrue(state.playing);
+        assertEquals("window.__mytubeRestore && window.__mytubeRestore(0, \"dQw4w9WgXcQ\", 61.5, true)",
+            state.restoreScript());
+    }
+
+    @Test
+    public void restoresUntilTheRendererKeepsDying() {
+        recovery.onUrl("https://m.youtube.com/watch?v=dQw4w9WgXcQ");
+        assertEquals(ShellRecovery.Action.RESTORE, recovery.onRendererGone(false));
+        clock.millis += 10_000;
+        assertEquals(ShellRecovery.Action.RESTORE, recovery.onRendererGone(true));
+        clock.millis += 10_000;
+        assertEquals(ShellRecovery.Action.HOME, recovery.onRendererGone(true));
+        // Going home forgets the page that kept crashing
+        assertNull(recovery.snapshot(null));
+
+        recovery.onUrl("https://m.youtube.com/");
+        clock.millis += 61_000;
+        assertEquals(ShellRecovery.Action.RESTORE, recovery.onRendererGone(false));
+
+        assertEquals(2, metrics.counter("renderer.killed").sum());
+        assertEquals(2, metrics.counter("renderer.crashed").sum());
+        assertEquals(3, metrics.counter("renderer.restored").sum());
+        assertEquals(1, metrics.counter("renderer.home").sum());
+    }
+
+    @Test
+    public void nothingToRestoreBeforeTheFirstPage() {
+        assertEquals(ShellRecovery.Action.HOME, recovery.onRendererGone(false));
+    }
+
+    @Test
+    public void extractsHosts() {
+        assertEquals("m.youtube.com", ShellRecovery.hostOf("https://m.youtube.com/watch?v=x"));
+        assertEquals("m.youtube.com", ShellRecovery.hostOf("https://m.youtube.com:443"));
+        assertEquals("youtu.be", ShellRecovery.hostOf("https://youtu.be?t=1"));
+        assertNull(ShellRecovery.hostOf("about:blank"));
+    }
+}
@@ -0,0 +1,109 @@
+package my.tube.core.shell;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import my.tube.core.metrics.MetricsRegistry;
+import my.tube.core.testing.FakeClock;
+import org.junit.Test;
+
+public class StandbyPoolTest {
+
+    private static final class FakePages implements StandbyPool.Pages<String> {
+        final List<String> loaded = new ArrayList<>();
+        final List<String> destroyed = new ArrayList<>();
+
+        @Override
+        public String load(String url) {
+            loaded.add(url);
+            return "page:" + url;
+        }
+
+        @Override
+        public void destroy(String page) {
+            destroyed.add(page);
+        }
+    }
+
+    private static final String NEXT = "https://m.youtube.com/watch?v=aaaaaaaaaaa";
+    private static final String OTHER = "https://m.youtube.com/watch?v=bbbbbbbbbbb";
+
+    private final FakeClock clock = new FakeClock();
+    private final FakePages pages = new FakePages();
+    private final MetricsRegistry metrics = new MetricsRegistry();
+
+    private StandbyPool<String> pool(int maxPages) {
+        return new StandbyPool<>(pages, maxPages, 60_000, 300_000, metrics, clock);
+    }
+
+    @Test
+    public void preparesOnceAndHandsThePageOver() {
+        StandbyPool<String> pool = pool(1);
+        assertTrue(pool.prepare(NEXT));
+        assertTrue(pool.prepare(NEXT));
+        assertEquals(1, pages.loaded.size());
+        assertTrue(pool.isPrepared(NEXT));
+
+        assertNull(pool.take(OTHER));
+        assertEquals("page:" + NEXT, pool.take(NEXT));
+        assertEquals(0, pool.size());
+        // Taken pages are the caller's to destroy
+        assertTrue(pages.destroyed.isEmpty());
+        assertEquals(1, metrics.counter("standby.hits").sum());
+        assertEquals(1, metrics.counter("standby.misses").sum());
+    }
+
+    @Test
+    public void budgetEvictsTheOldest() {
+        StandbyPool<String> pool = pool(1);
+        pool.prepare(NEXT);
+        pool.prepare(OTHER);
+        assertEquals(1, pool.size());
+        assertEquals(1, pages.destroyed.size());
+        assertEquals("page:" + NEXT, pages.destroyed.get(0));
+        assertTrue(pool.isPrepared(OTHER));
+    }
+
+    @Test
+    public void zeroBudgetNeverLoads() {
+        StandbyPool<String> pool = pool(0);
+        assertFalse(pool.prepare(NEXT));
+        assertTrue(pages.loaded.isEmpty());
+    }
+
+    @Test
+    public void stalePagesAreReloadedOrDropped() {
+        StandbyPool<String> pool = pool(1);
+        pool.prepare(NEXT);
+        clock.millis += 60_000;
+        assertNull(pool.take(NEXT));
+        assertEquals(1, pages.destroyed.size());
+
+        pool.prepare(NEXT);
+        clock.millis += 60_000;
+        assertTrue(pool.prepare(NEXT));
+        assertEquals(3, pages.loaded.size());
+        assertEquals(2, metrics.counter("standby.expired").sum());
+    }
+
+    @Test
+    public void givesWayToMemoryPressure() {
+        StandbyPool<String> pool = pool(1);
+        pool.prepare(NEXT);
+        pool.onTrim(MemoryPressure.Level.NONE, false);
+        assertEquals(1, pool.size());
+
+        // Hidden: nothing to switch to, but no reason to hold back later
+        pool.onTrim(MemoryPressure.Level.NONE, true);
+        assertEquals(0, pool.size());
+        assertTrue(pool.prepare(NEXT));
+
+        pool.onTrim(MemoryPressure.Level.MODERATE, false);
+        assertEquals(0, pool.size());
+        assertEquals(2, metrics.counter("standby.dropped").sum());
+        assertFalse(pool.prepare(NEXT));
+        clock.millis += 300_000;
+        assertTrue(pool.prepare(NEXT));
+    }
+}
@@ -0,0 +1,39 @@
+package my.tube.core.shell;
+
+import static org.junit.Assert.*;
+
+import my.tube.core.metrics.MetricsRegistry;
+import my.tube.core.testing.FakeClock;
+import org.junit.Test;
+
+public class VideoSwitchTimerTest {
+
+    private final FakeClock clock = new FakeClock();
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private final VideoSwitchTimer timer = new VideoSwitchTimer(metrics, clock, 30_000);
+
+    @Test
+    public void recordsEachKindOfSwitchSeparately() {
+        timer.begin("aaaaaaaaaaa", true);
+        clock.millis += 120;
+        timer.onPlaying("bbbbbbbbbbb");
+        timer.onPlaying("aaaaaaaaaaa");
+        timer.onPlaying("aaaaaaaaaaa");
+
+        timer.begin("bbbbbbbbbbb", false);
+        clock.millis += 1500;
+        timer.onPlaying("bbbbbbbbbbb");
+
+        assertEquals(1, metrics.histogram("switch.standby").count());
+        assertEquals(1, metrics.histogram("switch.navigation").count());
+        assertEquals(1500, metrics.histogram("switch.navigation").snapshot().maxNanos() / 1_000_000, 50);
+    }
+
+    @Test
+    public void abandonedSwitchesAreNotRecorded() {
+        timer.begin("aaaaaaaaaaa", false);
+        clock.millis += 31_000;
+        timer.onPlaying("aaaaaaaaaaa");
+        assertEquals(0, metrics.histogram("switch.navigation").count());
+    }
+}
@@ -0,0 +1,208 @@
+package my.tube.core.shell;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Set;
+import my.tube.core.Clock;
+import my.tube.core.filter.BlocklistStore;
+import my.tube.core.filter.HostMatcher;
+import my.tube.core.filter.RequestFilter;
+import my.tube.core.inject.ScriptAsset;
+import my.tube.core.inject.ScriptInjector;
+import my.tube.core.metrics.InterceptionMetrics;
+import my.tube.core.metrics.InterceptionMetrics.Decision;
+import my.tube.core.metrics.MetricsRegistry;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class WebShellTest {
+
+    private static final class FakeRequest implements WebShell.Request {
+        final String method;
+        final String host;
+        final String path;
+
+        FakeRequest(String method, String host, String path) {
+            this.method = method;
+            this.host = host;
+            this.path = path;
+        }
+
+        @Override
+        public String method() {
+            return method;
+        }
+
+        @Override
+        public String host() {
+            return host;
+        }
+
+        @Override
+        public String path() {
+            return path;
+        }
+
+        @Override
+        public String query() {
+            return null;
+        }
+
+        @Override
+        public boolean isForMainFrame() {
+            return false;
+        }
+
+        @Override
+        public String accept() {
+            return "*/*";
+        }
+    }
+
+    /** Answers with the name of the handler that was asked. */
+    private static final class RecordingHandlers implements WebShell.Handlers<FakeRequest, String> {
+        final List<String> calls = new ArrayList<>();
+        String proxyAnswer;
+
+        @Override
+        public String blocked(FakeRequest request) {
+            calls.add("blocked");
+            return "blocked";
+        }
+
+        @Override
+        public String thumbnail(FakeRequest request) {
+            calls.add("thumbnail");
+            return "thumbnail";
+        }
+
+        @Override
+        public String staticAsset(FakeRequest request) {
+            calls.add("staticAsset");
+            return null;
+        }
+
+        @Override
+        public String proxy(FakeRequest request) {
+            calls.add("proxy");
+            return proxyAnswer;
+        }
+
+        @Override
+        public void onStream(FakeRequest request) {
+            calls.add("stream");
+        }
+    }
+
+    private static final class FakeScriptHost implements ScriptInjector.Host {
+        int registrations;
+
+        @Override
+        public boolean supportsDocumentStart() {
+            return true;
+        }
+
+        @Override
+        public void addDocumentStartScript(String script, Set<String> allowedOrigins) {
+            assertEquals(WebShell.SCRIPT_ORIGINS, allowedOrigins);
+            registrations++;
+        }
+
+        @Override
+        public void evaluate(String script, ScriptInjector.ValueCallback callback) {
+            fail("Document-start hosts never evaluate");
+        }
+    }
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+
+    private File dir;
+    private final MetricsRegistry registry = new MetricsRegistry();
+    private final InterceptionMetrics metrics = new InterceptionMetrics(registry);
+    private final FakeScriptHost scriptHost = new FakeScriptHost();
+    private final RecordingHandlers handlers = new RecordingHandlers();
+    private WebShell shell;
+
+    @Before
+    public void setUp() throws Exception {
+        dir = tmp.getRoot();
+        BlocklistStore blocklist = new BlocklistStore(dir);
+        blocklist.install(HostMatcher.of("doubleclick.net"), 1);
+        RequestFilter filter = RequestFilter.parse(new StringReader("||youtube.com/ptracking\n"));
+        ScriptInjector injector = new ScriptInjector(scriptHost, ScriptAsset.of("/* noutube */"),
+            WebShell.SCRIPT_ORIGINS, Clock.SYSTEM);
+        shell = new WebShell(new RequestClassifier(blocklist, filter), NavigationPolicy.YOUTUBE, injector, metrics,
+            Clock.SYSTEM);
+    }
+
+    private String intercept(String method, String host, String path) {
+        return shell.intercept(new FakeRequest(method, host, path), handlers);
+    }
+
+    @Test
+    public void blockedRequestsNeverReachTheOtherHandlers() {
+        assertEquals("blocked", intercept("GET", "ad.doubleclick.net", "/x"));
+        assertEquals("blocked", intercept("GET", "m.youtube.com", "/ptracking"));
+
+        assertEquals(Arrays.asList("blocked", "blocked"), handlers.calls);
+        assertEquals(1, metrics.count(Decision.BLOCKED_HOST));
+        assertEquals(1, metrics.count(Decision.BLOCKED_RULE));
+    }
+
+    @Test
+    public void cachedRoutesSkipTheProxy() {
+        assertEquals("thumbnail", intercept("GET", "i.ytimg.com", "/vi/dQw4w9WgXcQ/mqdefault.jpg"));
+        // A cache that cannot serve falls back to the WebView's own fetch
+        assertNull(intercept("GET", "m.youtube.com", "/s/player/abc/base.js"));
+
+        assertEquals(Arrays.asList("thumbnail", "staticAsset"), handlers.calls);
+        assertEquals(2, metrics.count(Decision.ALLOWED));
+    }
+
+    @Test
+    public void streamsAreReportedThenLeftToTheNetwork() {
+        assertNull(intercept("GET", "rr1---sn-abc.googlevideo.com", "/videoplayback"));
+
+        assertEquals(Arrays.asList("stream", "proxy"), handlers.calls);
+        assertEquals(1, metrics.count(Decision.ALLOWED));
+    }
+
+    @Test
+    public void proxiedRequestsAreCountedAsProxied() {
+        handlers.proxyAnswer = "proxied";
+        assertEquals("proxied", intercept("POST", "m.youtube.com", "/youtubei/v1/player"));
+
+        assertEquals(Collections.singletonList("proxy"), handlers.calls);
+        assertEquals(1, metrics.count(Decision.PROXIED));
+        assertEquals(1, metrics.requests());
+    }
+
+    @Test
+    public void navigationDecisionsAreCounted() {
+        assertTrue(shell.shouldLoadInApp("m.youtube.com"));
+        assertFalse(shell.shouldLoadInApp("example.com"));
+
+        assertEquals(1, registry.counter("navigations.inApp").sum());
+        assertEquals(1, registry.counter("navigations.external").sum());
+    }
+
+    @Test
+    public void installRegistersTheScriptOnce() {
+        shell.install();
+        shell.install();
+        shell.onPageStarted("https://m.youtube.com/");
+        shell.onPageFinished("https://m.youtube.com/");
+
+        assertEquals(1, scriptHost.registrations);
+        assertEquals("https://m.youtube.com/", shell.injector().currentNavigation().url);
+    }
+}
@@ -0,0 +1,192 @@
+package my.tube.core.sponsor;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import my.tube.core.Clock;
+import my.tube.core.metrics.MetricsRegistry;
+import my.tube.core.net.HttpStack;
+import my.tube.core.testing.FakeClock;
+import my.tube.core.testing.StubServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class SponsorBlockClientTest {
+
+    private static final long TTL = 24 * 60 * 60 * 1000L;
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+    @Rule
+    public final StubServer server = new StubServer();
+    private File dir;
+    private final FakeClock clock = new FakeClock(1_700_000_000_000L);
+    private final List<String> requestedPrefixes = new ArrayList<>();
+    private final List<String> queries = new ArrayList<>();
+    // prefix -> response body; missing prefixes answer 404 like the real API
+    private final Map<String, String> responses = new HashMap<>();
+
+    @Before
+    public void setUp() {
+        dir = tmp.getRoot();
+        server.handle("/api/skipSegments/", exchange -> {
+            String path = exchange.getRequestURI().getPath();
+            String prefix = path.substring(path.lastIndexOf('/') + 1);
+            String body;
+            synchronized (this) {
+                requestedPrefixes.add(prefix);
+                queries.add(exchange.getRequestURI().getQuery());
+                body = responses.get(prefix);
+            }
+            if (body == null) {
+                StubServer.respondEmpty(exchange, 404);
+                return;
+            }
+            StubServer.respond(exchange, 200, body);
+        });
+    }
+
+    @After
+    public synchronized void everyRequestAsksForTheConfiguredCategories() {
+        for (String query : queries) {
+            assertTrue(query, query.contains("categories=[\"sponsor\""));
+        }
+    }
+
+    private SponsorBlockClient client(int memoryEntries) {
+        SegmentCache cache = new SegmentCache(memoryEntries, dir, 1000, TTL, clock);
+        return new SponsorBlockClient(server.url("/api"),
+            SponsorBlockClient.DEFAULT_CATEGORIES, cache,
+            new HttpStack(HttpStack.PLATFORM, new MetricsRegistry(), Clock.SYSTEM, 60_000).client("sponsorblock", 2000));
+    }
+
+    private static String video(String id, String... segments) {
+        StringBuilder sb = new StringBuilder("{\"videoID\":\"").append(id).append("\",\"segments\":[");
+        for (int i = 0; i < segments.length; i++) {
+            if (i > 0) {
+                sb.append(',');
+            }
+            sb.append(segments[i]);
+        }
+        return sb.append("]}").toString();
+    }
+
+    private void serve(String prefix, String... videos) {
+        responses.put(prefix, "[" + String.join(",", videos) + "]");
+    }
+
+    private static final String SPONSOR = "{\"category\":\"sponsor\",\"actionType\":\"skip\","
+        + "\"segment\":[12.5,40.0],\"UUID\":\"u1\"}";
+
+    @Test
+    public void hashPrefixIsFirstFourHexOfSha256() throws Exception {
+        byte[] digest = MessageDigest.getInstance("SHA-256").digest("dQw4w9WgXcQ".getBytes(StandardCharsets.UTF_8));
+        String expected = String.format("%02x%02x", digest[0] & 0xff, digest[1] & 0xff);
+        assertEquals(expected, SponsorBlockClient.hashPrefix("dQw4w9WgXcQ"));
+    }
+
+    @Test
+    public void onePrefixResponseServesEveryVideoInIt() throws IOException {
+        String id = "dQw4w9WgXcQ";
+        String prefix = SponsorBlockClient.hashPrefix(id);
+        String neighbour = "aaaaaaaaaaa";
+        serve(prefix, video(id, SPONSOR), video(neighbour));
+
+        SponsorBlockClient client = client(16);
+        List<Segment> segments = client.segments(id);
+        assertEquals(1, segments.size());
+        assertEquals("sponsor", segments.get(0).category);
+        assertEquals(12.5, segments.get(0).start, 0.0);
+        assertEquals(40.0, segments.get(0).end, 0.0);
+
+        // Listed in the same response: no second request even though its hash differs
+        assertTrue(client.segments(neighbour).isEmpty());
+        assertTrue(client.cached(neighbour).isEmpty());
+        assertEquals(1, client.requests());
+        assertEquals(Arrays.asList(prefix), requestedPrefixes);
+    }
+
+    @Test
+    public void absentVideosAreCachedAsHavingNoSegments() throws IOException {
+        SponsorBlockClient client = client(16);
+        assertTrue(client.segments("zzzzzzzzzzz").isEmpty());
+        assertTrue(client.segments("zzzzzzzzzzz").isEmpty());
+        assertEquals(1, client.requests());
+    }
+
+    @Test
+    public void diskTierServesRevisitsAfterRestart() throws IOException {
+        String id = "dQw4w9WgXcQ";
+        serve(SponsorBlockClient.hashPrefix(id), video(id, SPONSOR));
+        client(16).segments(id);
+
+        SponsorBlockClient restarted = client(16);
+        List<Segment> cached = restarted.cached(id);
+        assertNotNull(cached);
+        assertEquals("u1", cached.get(0).uuid);
+        assertEquals(0, restarted.requests());
+    }
+
+    @Test
+    public void memoryTierIsBoundedLru() throws IOException {
+        SegmentCache cache = new SegmentCache(2, null, 0, TTL, clock);
+        cache.put("aaaaaaaaaaa", new ArrayList<Segment>());
+        cache.put("bbbbbbbbbbb", new ArrayList<Segment>());
+        assertNotNull(cache.get("aaaaaaaaaaa"));
+        cache.put("ccccccccccc", new ArrayList<Segment>());
+        assertNull(cache.get("bbbbbbbbbbb"));
+        assertNotNull(cache.get("aaaaaaaaaaa"));
+        assertEquals(2, cache.memorySize());
+    }
+
+    @Test
+    public void expiredEntriesAreRefetched() throws IOException {
+        SponsorBlockClient client = client(16);
+        client.segments("zzzzzzzzzzz");
+        clock.millis += TTL;
+        assertNull(client.cached("zzzzzzzzzzz"));
+        client.segments("zzzzzzzzzzz");
+        assertEquals(2, client.requests());
+    }
+
+    @Test
+    public void prefetchIssuesOneRequestPerPrefix() throws IOException {
+        String id = "dQw4w9WgXcQ";
+        String prefix = SponsorBlockClient.hashPrefix(id);
+        SponsorBlockClient client = client(16);
+        // Same id twice plus one unrelated id: two distinct prefixes at most
+        client.prefetch(Arrays.asList(id, id, "zzzzzzzzzzz", "../../etc/x"));
+        assertEquals(prefix.equals(SponsorBlockClient.hashPrefix("zzzzzzzzzzz")) ? 1 : 2, client.requests());
+
+        client.prefetch(Arrays.asList(id, "zzzzzzzzzzz"));
+        assertEquals(prefix.equals(SponsorBlockClient.hashPrefix("zzzzzzzzzzz")) ? 1 : 2, client.requests());
+    }
+
+    @Test
+    public void serverErrorsPropagateAndCacheNothing() {
+        server.handle("/api/skipSegments/", exchange -> StubServer.respondEmpty(exchange, 502));
+        SponsorBlockClient client = client(16);
+        try {
+            client.segments("zzzzzzzzzzz");
+            fail("expected IOException");
+        } catch (IOException expected) {
+            assertNull(client.cached("zzzzzzzzzzz"));
+        }
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void rejectsNonVideoIds() throws IOException {
+        client(16).segments("../secret");
+    }
+}
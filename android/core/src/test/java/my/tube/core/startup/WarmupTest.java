@@ -0,0 +1,126 @@
+package my.tube.core.startup;
+
+import static org.junit.Assert.*;
+
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import my.tube.core.Clock;
+import my.tube.core.metrics.MetricsRegistry;
+import my.tube.core.net.HttpStack;
+import my.tube.core.testing.FakeClock;
+import my.tube.core.testing.StubServer;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class WarmupTest {
+
+    @Rule
+    public final StubServer server = new StubServer();
+
+    private static final class RecordingTracer implements Warmup.Tracer {
+        final List<String> events = new ArrayList<>();
+
+        @Override
+        public void begin(String section) {
+            events.add("begin " + section);
+        }
+
+        @Override
+        public void end() {
+            events.add("end");
+        }
+    }
+
+    @Test
+    public void runsStepsInOrderInsideSections() {
+        FakeClock clock = new FakeClock();
+        RecordingTracer tracer = new RecordingTracer();
+        final List<String> ran = new ArrayList<>();
+        new Warmup(clock, tracer)
+            .add("a", () -> ran.add("a"))
+            .add("b", () -> ran.add("b"))
+            .run();
+
+        assertEquals(Arrays.asList("a", "b"), ran);
+        assertEquals(Arrays.asList("begin a", "end", "begin b", "end"), tracer.events);
+    }
+
+    @Test
+    public void failingStepIsRecordedAndTheRestStillRun() {
+        FakeClock clock = new FakeClock();
+        RecordingTracer tracer = new RecordingTracer();
+        final AtomicInteger ran = new AtomicInteger();
+        Warmup warmup = new Warmup(clock, tracer)
+            .add("broken", () -> {
+                throw new IOException("no asset");
+            })
+            .add("fine", ran::incrementAndGet);
+        warmup.run();
+
+        assertEquals(1, ran.get());
+        assertEquals(1, warmup.failures().size());
+        assertEquals("no asset", warmup.failures().get("broken").getMessage());
+        // The section is closed even when the step throws
+        assertEquals(Arrays.asList("begin broken", "end", "begin fine", "end"), tracer.events);
+    }
+
+    @Test
+    public void recordsDurationsInMicros() {
+        final FakeClock clock = new FakeClock();
+        Warmup warmup = new Warmup(clock, Warmup.Tracer.NONE)
+            .add("slow", () -> clock.millis += 3)
+            .add("broken", () -> {
+                clock.millis += 1;
+                throw new IllegalStateException();
+            });
+        warmup.run();
+
+        assertEquals(Long.valueOf(3000), warmup.durationsMicros().get("slow"));
+        assertEquals(Long.valueOf(1000), warmup.durationsMicros().get("broken"));
+        assertEquals("slow=3000us broken=1000us(failed)", warmup.summary());
+    }
+
+    private static HttpStack.Client http(MetricsRegistry metrics, int timeoutMs) {
+        return new HttpStack(HttpStack.PLATFORM, metrics, Clock.SYSTEM, 60_000).client("preconnect", timeoutMs);
+    }
+
+    @Test
+    public void preconnectCompletesAHeadRequest() throws Exception {
+        final List<String> methods = new ArrayList<>();
+        server.handle("/generate_204", exchange -> {
+            synchronized (methods) {
+                methods.add(exchange.getRequestMethod());
+            }
+            StubServer.respondEmpty(exchange, 204);
+        });
+        MetricsRegistry metrics = new MetricsRegistry();
+        HttpStack.Client http = http(metrics, 5000);
+        Warmup warmup = new Warmup(Clock.SYSTEM, Warmup.Tracer.NONE)
+            .add("preconnect", Warmup.preconnect(http, server.url("/generate_204")));
+        warmup.run();
+
+        assertTrue(warmup.failures().isEmpty());
+        synchronized (methods) {
+            assertEquals(Arrays.asList("HEAD"), methods);
+        }
+        assertEquals(1, metrics.keyed("http.preconnect.fresh", 32).get("127.0.0.1"));
+    }
+
+    @Test
+    public void preconnectToAClosedPortFails() throws Exception {
+        // Bound but never started, so nothing answers
+        HttpServer closed = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        int port = closed.getAddress().getPort();
+        Warmup warmup = new Warmup(Clock.SYSTEM, Warmup.Tracer.NONE)
+            .add("preconnect", Warmup.preconnect(http(new MetricsRegistry(), 2000),
+                "http://127.0.0.1:" + port + "/generate_204"));
+        warmup.run();
+
+        assertTrue(warmup.failures().get("preconnect") instanceof IOException);
+    }
+}
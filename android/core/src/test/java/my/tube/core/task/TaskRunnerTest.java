@@ -0,0 +1,155 @@
+package my.tube.core.task;
+
+import static org.junit.Assert.*;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import org.junit.After;
+import org.junit.Test;
+
+public class TaskRunnerTest {
+
+    /** Main-thread stand-in: callbacks wait here until the test runs them. */
+    private final BlockingQueue<Runnable> mainQueue = new LinkedBlockingQueue<>();
+    private final TaskRunner runner = new TaskRunner(2, 2, mainQueue::add);
+    private final Object activity = new Object();
+
+    private static final class Recorder<T> implements TaskRunner.Callback<T> {
+        final List<T> results = new ArrayList<>();
+        final List<Throwable> errors = new ArrayList<>();
+
+        @Override
+        public void onComplete(T result, Throwable error) {
+            if (error != null) {
+                errors.add(error);
+            } else {
+                results.add(result);
+            }
+        }
+    }
+
+    @After
+    public void tearDown() {
+        runner.shutdown();
+    }
+
+    private void runMain() throws InterruptedException {
+        Runnable r = mainQueue.poll(5, TimeUnit.SECONDS);
+        assertNotNull("nothing delivered", r);
+        r.run();
+    }
+
+    @Test
+    public void deliversOnMainExecutor() throws Exception {
+        Recorder<String> callback = new Recorder<>();
+        runner.submit(activity, null, () -> "done", callback);
+        assertTrue(callback.results.isEmpty());
+        runMain();
+        assertEquals("done", callback.results.get(0));
+        assertEquals(0, runner.activeCount());
+        assertEquals(1, runner.completedCount());
+    }
+
+    @Test
+    public void deliversErrors() throws Exception {
+        Recorder<String> callback = new Recorder<>();
+        runner.submit(activity, null, () -> {
+            throw new IllegalStateException("boom");
+        }, callback);
+        runMain();
+        assertEquals("boom", callback.errors.get(0).getMessage());
+    }
+
+    @Test
+    public void sameKeySharesWorkInFlight() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        final AtomicInteger calls = new AtomicInteger();
+        Recorder<Integer> first = new Recorder<>();
+        Recorder<Integer> second = new Recorder<>();
+        Object other = new Object();
+
+        runner.submit(activity, "check", () -> {
+            release.await();
+            return calls.incrementAndGet();
+        }, first);
+        runner.submit(other, "check", () -> calls.incrementAndGet() + 100, second);
+        assertTrue(runner.isInFlight("check"));
+        release.countDown();
+        runMain();
+
+        assertEquals(1, calls.get());
+        assertEquals(Integer.valueOf(1), first.results.get(0));
+        assertEquals(Integer.valueOf(1), second.results.get(0));
+        assertEquals(1, runner.deduplicatedCount());
+        assertFalse(runner.isInFlight("check"));
+    }
+
+    @Test
+    public void cancelledOwnerIsNeverCalledEvenIfResultIsQueued() throws Exception {
+        Recorder<String> callback = new Recorder<>();
+        runner.submit(activity, "check", () -> "late", callback);
+        Runnable delivery = mainQueue.poll(5, TimeUnit.SECONDS);
+        runner.cancel(activity);
+        delivery.run();
+        assertTrue(callback.results.isEmpty());
+    }
+
+    @Test
+    public void unkeyedWorkIsInterruptedWhenNobodyWaits() throws Exception {
+        final CountDownLatch started = new CountDownLatch(1);
+        final CountDownLatch interrupted = new CountDownLatch(1);
+        runner.submit(activity, null, () -> {
+            started.countDown();
+            try {
+                Thread.sleep(10_000);
+            } catch (InterruptedException e) {
+                interrupted.countDown();
+            }
+            return null;
+        }, new Recorder<Object>());
+        assertTrue(started.await(5, TimeUnit.SECONDS));
+        runner.cancel(activity);
+        assertTrue(interrupted.await(5, TimeUnit.SECONDS));
+        assertEquals(0, runner.activeCount());
+        assertNull(mainQueue.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void keyedWorkOutlivesItsOwnerForTheNextSubscriber() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        runner.submit(activity, "check", () -> {
+            release.await();
+            return "shared";
+        }, new Recorder<String>());
+        runner.cancel(activity);
+        assertTrue(runner.isInFlight("check"));
+
+        Recorder<String> recreated = new Recorder<>();
+        runner.submit(new Object(), "check", () -> "second run", recreated);
+        release.countDown();
+        runMain();
+        assertEquals("shared", recreated.results.get(0));
+    }
+
+    @Test
+    public void rejectsBeyondQueueCapacity() throws Exception {
+        final CountDownLatch release = new CountDownLatch(1);
+        for (int i = 0; i < 4; i++) {
+            runner.submit(activity, null, () -> {
+                release.await();
+                return null;
+            }, new Recorder<Object>());
+        }
+        Recorder<Object> overflow = new Recorder<>();
+        runner.submit(activity, null, () -> null, overflow);
+        runMain();
+        assertTrue(overflow.errors.get(0) instanceof RejectedExecutionException);
+        release.countDown();
+    }
+}
@@ -0,0 +1,29 @@
+package my.tube.core.testing;
+
+import my.tube.core.Clock;
+
+/**
+ * A {@link Clock} that only moves when the test sets or advances
+ * {@link #millis}. The field is volatile because server and worker threads
+ * read it too.
+ */
+public final class FakeClock implements Clock {
+
+    public volatile long millis;
+
+    public FakeClock() {}
+
+    public FakeClock(long millis) {
+        this.millis = millis;
+    }
+
+    @Override
+    public long currentTimeMillis() {
+        return millis;
+    }
+
+    @Override
+    public long nanoTime() {
+        return millis * 1_000_000;
+    }
+}
@@ -0,0 +1,77 @@
+package my.tube.core.testing;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.Executor;
+import org.junit.rules.ExternalResource;
+
+/**
+ * A local HTTP server for integration tests, started before each test and
+ * stopped after it. Register handlers with {@link #handle} from a
+ * {@code @Before} method or the test itself.
+ *
+ * Handlers run on the server's threads, where a failed assertion only drops
+ * the exchange: record what the request carried and assert on the test thread.
+ */
+public final class StubServer extends ExternalResource {
+
+    private final Executor executor;
+    private HttpServer server;
+
+    public StubServer() {
+        this(null);
+    }
+
+    /** Serves requests on {@code executor} instead of the server's one dispatch thread. */
+    public StubServer(Executor executor) {
+        this.executor = executor;
+    }
+
+    @Override
+    protected void before() throws IOException {
+        server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+        server.setExecutor(executor);
+        server.start();
+    }
+
+    @Override
+    protected void after() {
+        server.stop(0);
+    }
+
+    /** Serves {@code path} and everything under it; registering a path again replaces its handler. */
+    public void handle(String path, HttpHandler handler) {
+        try {
+            server.removeContext(path);
+        } catch (IllegalArgumentException notRegistered) {
+            // First handler for this path
+        }
+        server.createContext(path, handler);
+    }
+
+    public String url(String path) {
+        return "http://127.0.0.1:" + server.getAddress().getPort() + path;
+    }
+
+    public static void respond(HttpExchange exchange, int code, String body) throws IOException {
+        respond(exchange, code, body.getBytes(StandardCharsets.UTF_8));
+    }
+
+    public static void respond(HttpExchange exchange, int code, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(code, body.length);
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    /** A response without a body, such as a 304 or 404. */
+    public static void respondEmpty(HttpExchange exchange, int code) throws IOException {
+        exchange.sendResponseHeaders(code, -1);
+        exchange.close();
+    }
+}
@@ -0,0 +1,195 @@
+package my.tube.core.thumb;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import my.tube.core.Clock;
+import my.tube.core.cache.DiskLruCache;
+import my.tube.core.metrics.MetricsRegistry;
+import my.tube.core.net.HttpStack;
+import my.tube.core.testing.FakeClock;
+import my.tube.core.testing.StubServer;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class ThumbnailCacheTest {
+
+    private static final long TTL_MS = 3 * 24 * 60 * 60 * 1000L;
+    private static final String HQ720 = "https://i.ytimg.com/vi/dQw4w9WgXcQ/hq720.jpg?sqp=-oaymwEc&rs=AOn4CL";
+    private static final String HQ = "https://i.ytimg.com/vi/dQw4w9WgXcQ/hqdefault.jpg";
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+    @Rule
+    public final StubServer server = new StubServer();
+    private File dir;
+    private final FakeClock clock = new FakeClock(1_700_000_000_000L);
+    private final MetricsRegistry metrics = new MetricsRegistry();
+    private final List<String> requested = new CopyOnWriteArrayList<>();
+    private final Queue<Runnable> queued = new ArrayDeque<>();
+    private final Executor manual = queued::add;
+    private final Executor direct = Runnable::run;
+
+    /** A fake image whose size follows the variant, so resizing is visible in the byte counts. */
+    private static byte[] image(String path) {
+        int size = path.contains("/hq720.") ? 90_000 : path.contains("/hqdefault.") ? 30_000
+            : path.contains("/mqdefault.") ? 15_000 : 4_000;
+        byte[] body = new byte[size];
+        byte[] tag = path.getBytes();
+        System.arraycopy(tag, 0, body, 0, tag.length);
+        return body;
+    }
+
+    @Before
+    public void setUp() {
+        dir = tmp.getRoot();
+        server.handle("/", exchange -> {
+            String path = exchange.getRequestURI().toString();
+            requested.add(path);
+            if (path.contains("missing")) {
+                StubServer.respondEmpty(exchange, 404);
+                return;
+            }
+            byte[] body = image(path);
+            exchange.getResponseHeaders().add("Content-Type", path.endsWith(".webp") ? "image/webp" : "image/jpeg");
+            StubServer.respond(exchange, 200, body);
+        });
+    }
+
+    private ThumbnailCache cache(Executor background, long memoryBytes) {
+        return new ThumbnailCache(new DiskLruCache(dir, 10 << 20), memoryBytes, metrics, background, clock,
+            TTL_MS, new HttpStack(HttpStack.PLATFORM, metrics, Clock.SYSTEM, 60_000).client("thumbs", 2000),
+            server.url(""));
+    }
+
+    private static void runAll(Queue<Runnable> tasks) {
+        Runnable task;
+        while ((task = tasks.poll()) != null) {
+            task.run();
+        }
+    }
+
+    @Test
+    public void largeVariantsAreServedAtTheTargetSize() {
+        ThumbnailCache thumbs = cache(direct, 1 << 20);
+        ThumbnailCache.Response response = thumbs.open(HQ720, 411);
+        assertTrue(response.resized);
+        assertFalse(response.fromCache);
+        assertEquals("image/jpeg", response.mimeType);
+        assertEquals(30_000, response.body.length);
+        assertEquals(Collections.singletonList("/vi/dQw4w9WgXcQ/hqdefault.jpg"), requested);
+        assertTrue(metrics.counter("thumbs.bytesSavedByResize").sum() > 0);
+        assertEquals(30_000, metrics.counter("thumbs.bytesFromNetwork").sum());
+    }
+
+    @Test
+    public void smallVariantsKeepTheirUrl() {
+        ThumbnailCache thumbs = cache(direct, 1 << 20);
+        ThumbnailCache.Response response = thumbs.open("https://i.ytimg.com/vi/dQw4w9WgXcQ/mqdefault.jpg", 411);
+        assertFalse(response.resized);
+        assertEquals(15_000, response.body.length);
+        assertEquals(0, metrics.counter("thumbs.bytesSavedByResize").sum());
+    }
+
+    @Test
+    public void repeatsComeFromMemoryThenDisk() {
+        ThumbnailCache thumbs = cache(direct, 1 << 20);
+        thumbs.open(HQ720, 411);
+        // Signed variants of the same video share the resized entry
+        ThumbnailCache.Response again = thumbs.open("https://i.ytimg.com/vi/dQw4w9WgXcQ/hq720.jpg?sqp=other", 411);
+        assertTrue(again.fromCache);
+        assertEquals(1, metrics.counter("thumbs.memoryHits").sum());
+
+        ThumbnailCache restarted = cache(direct, 1 << 20);
+        assertTrue(restarted.open(HQ, 411).fromCache);
+        assertEquals(1, metrics.counter("thumbs.diskHits").sum());
+        assertEquals(1, requested.size());
+        assertEquals(60_000, restarted.bytesSaved() - metrics.counter("thumbs.bytesSavedByResize").sum());
+    }
+
+    @Test
+    public void memoryTierIsBoundedByBytes() {
+        ThumbnailCache thumbs = cache(direct, 50_000);
+        thumbs.open("https://i.ytimg.com/vi/aaaaaaaaaaa/hqdefault.jpg", 411);
+        thumbs.open("https://i.ytimg.com/vi/bbbbbbbbbbb/hqdefault.jpg", 411);
+        assertEquals(30_000, thumbs.memoryBytes());
+        // The evicted one still comes from disk
+        assertTrue(thumbs.open("https://i.ytimg.com/vi/aaaaaaaaaaa/hqdefault.jpg", 411).fromCache);
+        assertEquals(1, metrics.counter("thumbs.diskHits").sum());
+        assertEquals(2, requested.size());
+    }
+
+    @Test
+    public void trimmingKeepsTheNewest() {
+        ThumbnailCache thumbs = cache(direct, 1 << 20);
+        thumbs.open("https://i.ytimg.com/vi/aaaaaaaaaaa/hqdefault.jpg", 411);
+        thumbs.open("https://i.ytimg.com/vi/bbbbbbbbbbb/hqdefault.jpg", 411);
+        thumbs.trimMemory(40_000);
+        assertEquals(30_000, thumbs.memoryBytes());
+        assertTrue(thumbs.open("https://i.ytimg.com/vi/bbbbbbbbbbb/hqdefault.jpg", 411).fromCache);
+        assertEquals(1, metrics.counter("thumbs.memoryHits").sum());
+        thumbs.trimMemory(0);
+        assertEquals(0, thumbs.memoryBytes());
+    }
+
+    @Test
+    public void expiredThumbnailsAreFetchedAgain() {
+        ThumbnailCache thumbs = cache(direct, 1 << 20);
+        thumbs.open(HQ, 411);
+        clock.millis += TTL_MS;
+        assertFalse(thumbs.open(HQ, 411).fromCache);
+        assertEquals(2, requested.size());
+    }
+
+    @Test
+    public void failuresFallBackToTheWebView() {
+        ThumbnailCache thumbs = cache(direct, 1 << 20);
+        assertNull(thumbs.open("https://i.ytimg.com/vi/missing1234/hqdefault.jpg", 411));
+        assertNull(thumbs.open("https://i.ytimg.com/vi/dQw4w9WgXcQ/oardefault.jpg", 411));
+        assertNull(thumbs.open("https://example.com/a.jpg", 411));
+        assertEquals(1, requested.size());
+    }
+
+    @Test
+    public void prefetchWarmsTheCacheOncePerVideo() {
+        ThumbnailCache thumbs = cache(manual, 1 << 20);
+        int count = thumbs.prefetch(Arrays.asList(HQ720, HQ,
+            "https://i.ytimg.com/vi/bbbbbbbbbbb/hqdefault.jpg?sqp=x",
+            "https://i.ytimg.com/vi/bbbbbbbbbbb/hqdefault.jpg?sqp=y",
+            "not a url"), 411);
+        assertEquals(2, count);
+        assertTrue("nothing fetched until the executor runs", requested.isEmpty());
+        // Already queued: not queued twice
+        assertEquals(0, thumbs.prefetch(Collections.singletonList(HQ), 411));
+        runAll(queued);
+
+        assertTrue(thumbs.open(HQ720, 411).fromCache);
+        assertTrue(thumbs.open("https://i.ytimg.com/vi/bbbbbbbbbbb/hqdefault.jpg?sqp=x", 411).fromCache);
+        assertEquals(2, requested.size());
+        assertEquals(2, metrics.counter("thumbs.prefetched").sum());
+        assertEquals(0, thumbs.prefetch(Collections.singletonList(HQ), 411));
+    }
+
+    @Test
+    public void pageRequestWaitsForARunningPrefetch() throws Exception {
+        ThumbnailCache thumbs = cache(manual, 1 << 20);
+        thumbs.prefetch(Collections.singletonList(HQ), 411);
+        final ThumbnailCache.Response[] result = new ThumbnailCache.Response[1];
+        Thread page = new Thread(() -> result[0] = thumbs.open(HQ, 411));
+        page.start();
+        Thread.sleep(100);
+        runAll(queued);
+        page.join(5000);
+        assertTrue(result[0].fromCache);
+        assertEquals(1, requested.size());
+    }
+}
@@ -0,0 +1,58 @@
+package my.tube.core.thumb;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class ThumbnailUrlTest {
+
+    @Test
+    public void parsesFixedSizeVariants() {
+        ThumbnailUrl thumb = ThumbnailUrl.parse("https://i.ytimg.com/vi/dQw4w9WgXcQ/hqdefault.jpg");
+        assertEquals("dQw4w9WgXcQ", thumb.videoId);
+        assertEquals(ThumbnailUrl.Variant.HIGH, thumb.variant);
+        assertFalse(thumb.webp);
+        assertEquals("image/jpeg", thumb.mimeType());
+
+        ThumbnailUrl webp = ThumbnailUrl.parse("https://i9.ytimg.com/vi_webp/dQw4w9WgXcQ/maxresdefault.webp");
+        assertEquals(ThumbnailUrl.Variant.MAXRES, webp.variant);
+        assertTrue(webp.webp);
+        assertEquals("i9.ytimg.com", webp.host);
+    }
+
+    @Test
+    public void ignoresOtherImages() {
+        assertNull(ThumbnailUrl.parse("https://i.ytimg.com/vi/dQw4w9WgXcQ/oardefault.jpg"));
+        assertNull(ThumbnailUrl.parse("https://i.ytimg.com/an_webp/dQw4w9WgXcQ/mqdefault_6s.webp"));
+        assertNull(ThumbnailUrl.parse("https://i.ytimg.com/vi/dQw4w9WgXcQ/hq1.jpg"));
+        assertNull(ThumbnailUrl.parse("https://i.ytimg.com/vi/short/hqdefault.jpg"));
+        assertNull(ThumbnailUrl.parse("https://i.ytimg.com/vi/dQw4w9WgXcQ/hqdefault.webp"));
+        assertNull(ThumbnailUrl.parse("https://yt3.ggpht.com/vi/dQw4w9WgXcQ/hqdefault.jpg"));
+        assertNull(ThumbnailUrl.parse("https://evilytimg.com/vi/dQw4w9WgXcQ/hqdefault.jpg"));
+        assertFalse(ThumbnailUrl.isThumbnailHost("i10.ytimg.com"));
+        assertTrue(ThumbnailUrl.isThumbnailHost("i1.ytimg.com"));
+    }
+
+    @Test
+    public void fitsTheSmallestVariantThatCoversTheTarget() {
+        ThumbnailUrl hd = ThumbnailUrl.parse("https://i.ytimg.com/vi/dQw4w9WgXcQ/hq720.jpg?sqp=-oaymwEc&rs=AOn4CL");
+        assertEquals("https://i.ytimg.com/vi/dQw4w9WgXcQ/mqdefault.jpg", hd.fitting(300).toString());
+        assertEquals("https://i.ytimg.com/vi/dQw4w9WgXcQ/hqdefault.jpg", hd.fitting(411).toString());
+        // Nothing always available covers a 411dp card at 2.625x, so the HD variant stays
+        assertSame(hd, hd.fitting(1079));
+        ThumbnailUrl standard = ThumbnailUrl.parse("https://i.ytimg.com/vi/dQw4w9WgXcQ/sddefault.jpg");
+        assertSame(standard, standard.fitting(600));
+        assertEquals("https://i.ytimg.com/vi/dQw4w9WgXcQ/default.jpg", hd.fitting(100).toString());
+    }
+
+    @Test
+    public void neverUpscalesOrDropsTheSignatureWithoutResizing() {
+        ThumbnailUrl medium = ThumbnailUrl.parse("https://i.ytimg.com/vi/dQw4w9WgXcQ/mqdefault.jpg");
+        assertSame(medium, medium.fitting(1080));
+        ThumbnailUrl signed = ThumbnailUrl.parse("https://i.ytimg.com/vi/dQw4w9WgXcQ/hqdefault.jpg?sqp=abc&rs=def");
+        assertSame(signed, signed.fitting(411));
+        assertEquals("/vi/dQw4w9WgXcQ/hqdefault.jpg?sqp=abc&rs=def", signed.pathAndQuery());
+        assertEquals("https://i.ytimg.com/vi_webp/dQw4w9WgXcQ/mqdefault.webp",
+            ThumbnailUrl.parse("https://i.ytimg.com/vi_webp/dQw4w9WgXcQ/sddefault.webp").fitting(320).toString());
+    }
+}
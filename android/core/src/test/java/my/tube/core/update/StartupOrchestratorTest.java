@@ -0,0 +1,174 @@
+package my.tube.core.update;
+
+import static org.junit.Assert.*;
+
+import java.io.IOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import my.tube.core.Clock;
+import my.tube.core.metrics.MetricsRegistry;
+import my.tube.core.net.HttpStack;
+import my.tube.core.task.TaskRunner;
+import my.tube.core.testing.StubServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+
+public class StartupOrchestratorTest {
+
+    private static final String ROW = "[{\"version_code\":3,\"version_name\":\"1.2.0\","
+        + "\"download_url\":\"https://example.com/mytube.apk\",\"release_notes\":\"Fixes\","
+        + "\"is_mandatory\":false,\"min_supported_version\":%d}]";
+
+    @Rule
+    public final StubServer server = new StubServer(Executors.newCachedThreadPool());
+    private TaskRunner tasks;
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile int status = 200;
+    private volatile String body = String.format(ROW, 1);
+    private volatile long delayMs;
+    private volatile CountDownLatch release = new CountDownLatch(0);
+
+    @Before
+    public void startServer() {
+        server.handle("/rest/v1/app_versions", exchange -> {
+            requests.incrementAndGet();
+            try {
+                release.await(5, TimeUnit.SECONDS);
+                Thread.sleep(delayMs);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+            try {
+                StubServer.respond(exchange, status, body);
+            } catch (IOException e) {
+                // Client gave up (read timeout)
+            }
+        });
+        tasks = new TaskRunner(2, 8, Runnable::run);
+    }
+
+    @After
+    public void stopServer() {
+        release.countDown();
+        tasks.shutdown();
+    }
+
+    /** Main-thread stand-in: runs nothing until the test drains it. */
+    private static final class RecordingCallbacks implements StartupOrchestrator.Callbacks {
+        final BlockingQueue<UpdatePolicy.Decision> decisions = new LinkedBlockingQueue<>();
+        int loads;
+
+        @Override
+        public void loadPage() {
+            loads++;
+        }
+
+        @Override
+        public void onUpdateDecision(UpdatePolicy.Decision decision) {
+            decisions.add(decision);
+        }
+    }
+
+    private StartupOrchestrator orchestrator(int currentVersion, int readTimeoutMs) {
+        UpdateClient client = UpdateClient.builder(server.url(""), "anon")
+            .http(new HttpStack(HttpStack.PLATFORM, new MetricsRegistry(), Clock.SYSTEM, 60_000).client("update", 10_000))
+            .timeouts(2000, readTimeoutMs)
+            .build();
+        return new StartupOrchestrator(client::fetchLatest, new UpdatePolicy(currentVersion, 1), tasks,
+            Clock.SYSTEM);
+    }
+
+    @Test
+    public void pageLoadsBeforeSlowCheckCompletes() throws Exception {
+        release = new CountDownLatch(1);
+        StartupOrchestrator startup = orchestrator(2, 5000);
+        RecordingCallbacks callbacks = new RecordingCallbacks();
+
+        startup.start(this, 0L, callbacks);
+        assertEquals(1, callbacks.loads);
+        startup.onFirstPaint();
+        assertNull(startup.decision());
+        assertEquals(-1L, startup.timeToDecisionMillis());
+        assertTrue(startup.timeToFirstPaintMillis() >= 0);
+
+        release.countDown();
+        UpdatePolicy.Decision decision = callbacks.decisions.poll(5, TimeUnit.SECONDS);
+        assertEquals(UpdatePolicy.Action.NOTIFY, decision.action);
+        assertEquals(3, decision.latest.versionCode);
+        assertEquals("Fixes", decision.latest.releaseNotes);
+        assertSame(decision, startup.decision());
+        assertTrue(startup.timeToDecisionMillis() >= startup.timeToFirstPaintMillis());
+    }
+
+    @Test
+    public void belowMinimumSupportedVersionForces() throws Exception {
+        body = String.format(ROW, 3);
+        RecordingCallbacks callbacks = new RecordingCallbacks();
+        orchestrator(2, 5000).start(this, 0L, callbacks);
+        assertEquals(1, callbacks.loads);
+        assertEquals(UpdatePolicy.Action.FORCE, callbacks.decisions.poll(5, TimeUnit.SECONDS).action);
+    }
+
+    @Test
+    public void serverErrorLetsUserContinue() throws Exception {
+        status = 503;
+        body = "{\"message\":\"unavailable\"}";
+        StartupOrchestrator startup = orchestrator(2, 5000);
+        RecordingCallbacks callbacks = new RecordingCallbacks();
+        startup.start(this, 123L, callbacks);
+
+        UpdatePolicy.Decision decision = callbacks.decisions.poll(5, TimeUnit.SECONDS);
+        assertEquals(UpdatePolicy.Action.NONE, decision.action);
+        assertEquals(123L, decision.firstSeen);
+        assertTrue(startup.checkError() instanceof IOException);
+    }
+
+    @Test
+    public void readTimeoutLetsUserContinue() throws Exception {
+        delayMs = 1500;
+        StartupOrchestrator startup = orchestrator(2, 200);
+        RecordingCallbacks callbacks = new RecordingCallbacks();
+        startup.start(this, 0L, callbacks);
+
+        assertEquals(1, callbacks.loads);
+        UpdatePolicy.Decision decision = callbacks.decisions.poll(5, TimeUnit.SECONDS);
+        assertEquals(UpdatePolicy.Action.NONE, decision.action);
+        assertNull(decision.latest);
+        assertNotNull(startup.checkError());
+    }
+
+    @Test
+    public void malformedBodyIsACheckFailure() throws Exception {
+        body = "<html>gateway</html>";
+        StartupOrchestrator startup = orchestrator(2, 5000);
+        RecordingCallbacks callbacks = new RecordingCallbacks();
+        startup.start(this, 0L, callbacks);
+        assertEquals(UpdatePolicy.Action.NONE, callbacks.decisions.poll(5, TimeUnit.SECONDS).action);
+        assertTrue(startup.checkError() instanceof IOException);
+    }
+
+    @Test
+    public void recreatedActivityJoinsCheckInFlight() throws Exception {
+        release = new CountDownLatch(1);
+        Object destroyed = new Object();
+        Object recreated = new Object();
+        RecordingCallbacks before = new RecordingCallbacks();
+        RecordingCallbacks after = new RecordingCallbacks();
+
+        orchestrator(2, 5000).start(destroyed, 0L, before);
+        tasks.cancel(destroyed);
+        orchestrator(2, 5000).start(recreated, 0L, after);
+        release.countDown();
+
+        assertEquals(UpdatePolicy.Action.NOTIFY, after.decisions.poll(5, TimeUnit.SECONDS).action);
+        assertNull(before.decisions.poll(100, TimeUnit.MILLISECONDS));
+        assertEquals(1, requests.get());
+        assertEquals(1, tasks.deduplicatedCount());
+    }
+}
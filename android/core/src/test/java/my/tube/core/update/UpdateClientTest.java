@@ -0,0 +1,155 @@
+package my.tube.core.update;
+
+import static org.junit.Assert.*;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+import java.util.concurrent.atomic.AtomicInteger;
+import my.tube.core.Clock;
+import my.tube.core.metrics.MetricsRegistry;
+import my.tube.core.net.HttpStack;
+import my.tube.core.testing.FakeClock;
+import my.tube.core.testing.StubServer;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+public class UpdateClientTest {
+
+    private static final long TTL = 60 * 60 * 1000L;
+    private static final String ETAG = "W/\"v3\"";
+    private static final String BODY = "[{\"version_code\":3,\"version_name\":\"1.2.0\","
+        + "\"download_url\":\"https://example.com/mytube.apk\",\"min_supported_version\":1}]";
+
+    @Rule
+    public final TemporaryFolder tmp = new TemporaryFolder();
+    @Rule
+    public final StubServer server = new StubServer();
+
+    private File dir;
+    private final AtomicInteger requests = new AtomicInteger();
+    private volatile int status = 200;
+    private volatile String lastIfNoneMatch;
+    private final FakeClock clock = new FakeClock(1_700_000_000_000L);
+
+    @Before
+    public void setUp() {
+        dir = tmp.getRoot();
+        server.handle("/rest/v1/app_versions", exchange -> {
+            requests.incrementAndGet();
+            lastIfNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+            if (status == 200 && ETAG.equals(lastIfNoneMatch)) {
+                StubServer.respondEmpty(exchange, 304);
+                return;
+            }
+            exchange.getResponseHeaders().set("ETag", ETAG);
+            StubServer.respond(exchange, status, status == 200 ? BODY : "{}");
+        });
+    }
+
+    private UpdateClient client() {
+        return UpdateClient.builder(server.url(""), "anon")
+            .http(new HttpStack(HttpStack.PLATFORM, new MetricsRegistry(), Clock.SYSTEM, 60_000).client("update", 5000))
+            .timeouts(2000, 2000)
+            .cache(new File(dir, "update.properties"), TTL)
+            .backoff(1000, 60_000)
+            .clock(clock)
+            .random(new Random(7))
+            .build();
+    }
+
+    @Test
+    public void withinTtlSkipsNetworkAcrossRestarts() throws IOException {
+        assertEquals(3, client().fetchLatest().versionCode);
+        assertEquals(1, requests.get());
+
+        clock.millis += TTL - 1;
+        UpdateClient restarted = client();
+        assertEquals("1.2.0", restarted.fetchLatest().versionName);
+        assertEquals(1, requests.get());
+        assertEquals(0, restarted.networkRequests());
+        assertEquals(1, restarted.cacheHits());
+    }
+
+    @Test
+    public void afterTtlRevalidatesWithEtag() throws IOException {
+        UpdateClient client = client();
+        client.fetchLatest();
+        clock.millis += TTL;
+        assertEquals(3, client.fetchLatest().versionCode);
+        assertEquals(2, requests.get());
+        assertEquals(ETAG, lastIfNoneMatch);
+        assertEquals(1, client.notModifiedResponses());
+
+        // The 304 renewed the TTL
+        clock.millis += TTL - 1;
+        client.fetchLatest();
+        assertEquals(2, requests.get());
+    }
+
+    @Test
+    public void failureServesStaleAnswerAndBacksOff() throws IOException {
+        UpdateClient client = client();
+        client.fetchLatest();
+        status = 500;
+        clock.millis += TTL;
+        assertEquals(3, client.fetchLatest().versionCode);
+        assertEquals(1, client.consecutiveFailures());
+        assertEquals(2, requests.get());
+
+        // Inside the backoff window nothing is sent
+        clock.millis += 400;
+        assertEquals(3, client.fetchLatest().versionCode);
+        assertEquals(2, requests.get());
+
+        status = 200;
+        clock.millis += 1000;
+        client.fetchLatest();
+        assertEquals(3, requests.get());
+        assertEquals(0, client.consecutiveFailures());
+    }
+
+    @Test
+    public void failureWithoutCacheThrowsAndPersistsBackoff() {
+        status = 503;
+        try {
+            client().fetchLatest();
+            fail("expected IOException");
+        } catch (IOException expected) {
+            // no answer to fall back to
+        }
+        try {
+            client().fetchLatest();
+            fail("expected IOException while backing off");
+        } catch (IOException expected) {
+            assertTrue(expected.getMessage().contains("backing off"));
+        }
+        assertEquals(1, requests.get());
+    }
+
+    @Test
+    public void backoffGrowsWithJitterUpToCap() {
+        UpdateClient client = client();
+        for (int failures = 1; failures <= 12; failures++) {
+            long nominal = Math.min(60_000L, 1000L << (failures - 1));
+            long delay = client.backoffDelay(failures);
+            assertTrue(delay >= nominal / 2);
+            assertTrue(delay <= nominal);
+        }
+    }
+
+    @Test
+    public void corruptCacheIsIgnored() throws IOException {
+        File cache = new File(dir, "update.properties");
+        try (OutputStream out = new FileOutputStream(cache)) {
+            out.write("body=[{not json\nfetchedAt=1\n".getBytes(StandardCharsets.UTF_8));
+        }
+        assertEquals(3, client().fetchLatest().versionCode);
+        assertEquals(1, requests.get());
+    }
+}
@@ -0,0 +1,54 @@
+package my.tube.core.update;
+
+import static org.junit.Assert.*;
+
+import org.junit.Test;
+
+public class UpdatePolicyTest {
+
+    private static final long DAY = 24L * 60 * 60 * 1000;
+    private static final long NOW = 1_700_000_000_000L;
+
+    private final UpdatePolicy policy = new UpdatePolicy(5, 1);
+
+    private static AppVersion version(int code, int min, boolean mandatory) {
+        return new AppVersion(code, "v" + code, "https://example.com/app.apk", "", mandatory, min);
+    }
+
+    @Test
+    public void failedCheckChangesNothing() {
+        UpdatePolicy.Decision d = policy.decide(null, 42L, NOW);
+        assertEquals(UpdatePolicy.Action.NONE, d.action);
+        assertEquals(42L, d.firstSeen);
+    }
+
+    @Test
+    public void belowMinimumIsForcedEvenWhenFirstSeen() {
+        assertEquals(UpdatePolicy.Action.FORCE, policy.decide(version(7, 6, false), 0L, NOW).action);
+    }
+
+    @Test
+    public void upToDateClearsFirstSeen() {
+        UpdatePolicy.Decision d = policy.decide(version(5, 1, true), NOW - 10 * DAY, NOW);
+        assertEquals(UpdatePolicy.Action.NONE, d.action);
+        assertEquals(0L, d.firstSeen);
+    }
+
+    @Test
+    public void newerVersionNotifiesThenForcesAfterGrace() {
+        AppVersion newer = version(6, 1, false);
+        UpdatePolicy.Decision first = policy.decide(newer, 0L, NOW);
+        assertEquals(UpdatePolicy.Action.NOTIFY, first.action);
+        assertEquals(NOW, first.firstSeen);
+
+        assertEquals(UpdatePolicy.Action.NOTIFY, policy.decide(newer, NOW, NOW + DAY / 2).action);
+        assertEquals(UpdatePolicy.Action.FORCE, policy.decide(newer, NOW, NOW + DAY).action);
+    }
+
+    @Test
+    public void mandatoryForcesOnceSeen() {
+        AppVersion newer = version(6, 1, true);
+        assertEquals(UpdatePolicy.Action.NOTIFY, policy.decide(newer, 0L, NOW).action);
+        assertEquals(UpdatePolicy.Action.FORCE, policy.decide(newer, NOW, NOW + 1).action);
+    }
+}
@@ -0,0 +1,86 @@
+package my.tube.macrobenchmark;
+
+import androidx.annotation.OptIn;
+import androidx.benchmark.macro.CompilationMode;
+import androidx.benchmark.macro.ExperimentalMetricApi;
+import androidx.benchmark.macro.Metric;
+import androidx.benchmark.macro.StartupMode;
+import androidx.benchmark.macro.StartupTimingMetric;
+import androidx.benchmark.macro.TraceSectionMetric;
+import androidx.benchmark.macro.junit4.MacrobenchmarkRule;
+import androidx.test.ext.junit.runners.AndroidJUnit4;
+import androidx.test.platform.app.InstrumentationRegistry;
+import androidx.test.uiautomator.By;
+import androidx.test.uiautomator.UiDevice;
+import androidx.test.uiautomator.Until;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.List;
+import kotlin.Unit;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+
+/**
+ * Cold and warm start of the benchmark build up to the first painted
+ * YouTube page. Besides the system's time to initial display, each run
+ * reports the app's own trace sections: the async {@code MyTube.firstPaint}
+ * from process start to the first committed page, and the main-thread phases
+ * of {@code MainActivity.onCreate}.
+ */
+@RunWith(AndroidJUnit4.class)
+@OptIn(markerClass = ExperimentalMetricApi.class)
+public class StartupBenchmark {
+
+    private static final String PACKAGE = "my.tube.com";
+    private static final int ITERATIONS = 10;
+    private static final long PAGE_TIMEOUT_MS = 30_000;
+
+    @Rule
+    public final MacrobenchmarkRule rule = new MacrobenchmarkRule();
+
+    @Before
+    public void grantNotifications() throws IOException {
+        // Otherwise the deferred permission prompt covers the page from the second frame on
+        UiDevice.getInstance(InstrumentationRegistry.getInstrumentation())
+            .executeShellCommand("pm grant " + PACKAGE + " android.permission.POST_NOTIFICATIONS");
+    }
+
+    @Test
+    public void coldStart() {
+        measure(StartupMode.COLD);
+    }
+
+    @Test
+    public void warmStart() {
+        measure(StartupMode.WARM);
+    }
+
+    private void measure(StartupMode mode) {
+        rule.measureRepeated(PACKAGE, metrics(), CompilationMode.DEFAULT, mode, ITERATIONS,
+            scope -> {
+                scope.pressHome();
+                return Unit.INSTANCE;
+            },
+            scope -> {
+                scope.startActivityAndWait();
+                // The page exposes accessibility nodes once it has content on screen
+                scope.getDevice().wait(Until.hasObject(By.clazz("android.webkit.WebView")
+                    .hasDescendant(By.clickable(true))), PAGE_TIMEOUT_MS);
+                return Unit.INSTANCE;
+            });
+    }
+
+    private static List<Metric> metrics() {
+        return Arrays.asList(
+            new StartupTimingMetric(),
+            new TraceSectionMetric("MyTube.firstPaint"),
+            new TraceSectionMetric("MyTube.appInit"),
+            new TraceSectionMetric("MyTube.onCreate"),
+            new TraceSectionMetric("MyTube.bridge"),
+            new TraceSectionMetric("MyTube.assets"),
+            new TraceSectionMetric("MyTube.webViewSetup"),
+            new TraceSectionMetric("MyTube.load"));
+    }
+}
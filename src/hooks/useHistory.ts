@@ -1,19 +1,45 @@
 import { useState, useCallback, useEffect } from 'react'
 import { getItem, setItem } from '../utils/storage'
+import {
+  WatchStore,
+  hasNativeWatchStore,
+  loadPage,
+  mergeById,
+  migrateFromLocalStorage,
+  persist,
+} from '../utils/watchStore'
 import type { Video } from '../App'
 
 const MAX_HISTORY = 100
 
 export function useHistory() {
+  // Native builds keep the full history on disk and load the newest page
+  const [native] = useState(hasNativeWatchStore)
   const [history, setHistory] = useState<Video[]>(() => 
-    getItem('history', [])
+    native ? [] : getItem('history', [])
   )
 
   useEffect(() => {
-    setItem('history', history)
-  }, [history])
+    if (!native) return
+    let cancelled = false
+    migrateFromLocalStorage<Video>('history', true)
+      .then(() => loadPage<Video>('history', 'newest', MAX_HISTORY))
+      .then(page => {
+        // Videos watched while the page loaded stay newest
+        if (!cancelled) setHistory(prev => mergeById(prev, page).slice(0, MAX_HISTORY))
+      })
+      .catch(error => console.error('Storage error:', error))
+    return () => {
+      cancelled = true
+    }
+  }, [native])
+
+  useEffect(() => {
+    if (!native) setItem('history', history)
+  }, [native, history])
 
   const addToHistory = useCallback((video: Video) => {
+    if (native) persist(WatchStore.append({ store: 'history', key: video.id, value: video }))
     setHistory(prev => {
       // Remove if already exists (to move to front)
       const filtered = prev.filter(v => v.id !== video.id)
@@ -22,15 +48,17 @@ export function useHistory() {
       // Limit to max
       return newHistory.slice(0, MAX_HISTORY)
     })
-  }, [])
+  }, [native])
 
   const removeFromHistory = useCallback((videoId: string) => {
+    if (native) persist(WatchStore.remove({ store: 'history', key: videoId }))
     setHistory(prev => prev.filter(v => v.id !== videoId))
-  }, [])
+  }, [native])
 
   const clearHistory = useCallback(() => {
+    if (native) persist(WatchStore.clear({ store: 'history' }))
     setHistory([])
-  }, [])
+  }, [native])
 
   return {
     history,
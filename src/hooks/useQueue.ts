@@ -1,47 +1,85 @@
-import { useState, useCallback, useEffect } from 'react'
+import { useState, useCallback, useEffect, useRef } from 'react'
 import { getItem, setItem } from '../utils/storage'
+import {
+  WatchStore,
+  hasNativeWatchStore,
+  loadPage,
+  mergeById,
+  migrateFromLocalStorage,
+  persist,
+} from '../utils/watchStore'
 import type { Video } from '../App'
 
+// Matches the native queue's cap, so one page is the whole queue
+const MAX_QUEUE = 500
+
 export function useQueue() {
+  const [native] = useState(hasNativeWatchStore)
   const [queue, setQueue] = useState<Video[]>(() => 
-    getItem('queue', [])
+    native ? [] : getItem('queue', [])
   )
+  // Changes are worked out from this rather than inside setQueue updaters,
+  // which StrictMode runs twice, so each native write happens once
+  const queueRef = useRef(queue)
+
+  const update = useCallback((next: Video[]) => {
+    queueRef.current = next
+    setQueue(next)
+  }, [])
+
+  useEffect(() => {
+    if (!native) return
+    let cancelled = false
+    migrateFromLocalStorage<Video>('queue', false)
+      .then(() => loadPage<Video>('queue', 'oldest', MAX_QUEUE))
+      .then(page => {
+        // Videos queued while the page loaded go after it
+        if (!cancelled) update(mergeById(page, queueRef.current))
+      })
+      .catch(error => console.error('Storage error:', error))
+    return () => {
+      cancelled = true
+    }
+  }, [native, update])
 
   useEffect(() => {
-    setItem('queue', queue)
-  }, [queue])
+    if (!native) setItem('queue', queue)
+  }, [native, queue])
 
   const addToQueue = useCallback((video: Video) => {
-    setQueue(prev => {
-      // Don't add duplicates
-      if (prev.some(v => v.id === video.id)) return prev
-      return [...prev, video]
-    })
-  }, [])
+    const prev = queueRef.current
+    // Don't add duplicates
+    if (prev.some(v => v.id === video.id)) return
+    if (native) persist(WatchStore.append({ store: 'queue', key: video.id, value: video }))
+    update([...prev, video])
+  }, [native, update])
 
   const removeFromQueue = useCallback((videoId: string) => {
-    setQueue(prev => prev.filter(v => v.id !== videoId))
-  }, [])
+    if (native) persist(WatchStore.remove({ store: 'queue', key: videoId }))
+    update(queueRef.current.filter(v => v.id !== videoId))
+  }, [native, update])
 
   const clearQueue = useCallback(() => {
-    setQueue([])
-  }, [])
+    if (native) persist(WatchStore.clear({ store: 'queue' }))
+    update([])
+  }, [native, update])
 
   const moveInQueue = useCallback((fromIndex: number, toIndex: number) => {
-    setQueue(prev => {
-      const newQueue = [...prev]
-      const [removed] = newQueue.splice(fromIndex, 1)
-      newQueue.splice(toIndex, 0, removed)
-      return newQueue
-    })
-  }, [])
+    const newQueue = [...queueRef.current]
+    const [removed] = newQueue.splice(fromIndex, 1)
+    if (!removed) return
+    newQueue.splice(toIndex, 0, removed)
+    if (native) {
+      const before = newQueue[toIndex + 1]
+      persist(WatchStore.moveBefore({ store: 'queue', key: removed.id, before: before ? before.id : null }))
+    }
+    update(newQueue)
+  }, [native, update])
 
   const playNext = useCallback((video: Video) => {
-    setQueue(prev => {
-      const filtered = prev.filter(v => v.id !== video.id)
-      return [video, ...filtered]
-    })
-  }, [])
+    if (native) persist(WatchStore.prepend({ store: 'queue', key: video.id, value: video }))
+    update([video, ...queueRef.current.filter(v => v.id !== video.id)])
+  }, [native, update])
 
   return {
     queue,
@@ -0,0 +1,84 @@
+/**
+ * Native watch history and queue (WatchStorePlugin.java) on Android.
+ * Each change is one append to a log on disk instead of rewriting a
+ * localStorage blob, and lists load a page at a time.
+ */
+
+import { Capacitor, registerPlugin } from '@capacitor/core'
+import { getItem, removeItem } from './storage'
+
+export type WatchStoreName = 'history' | 'queue'
+
+export interface WatchEntry<T> {
+  key: string
+  position: number
+  time: number
+  value: T
+}
+
+export interface WatchPage<T> {
+  entries: WatchEntry<T>[]
+  /** Cursor for the following page; absent after the last one */
+  next?: number
+}
+
+interface WatchStorePlugin {
+  append(options: { store: WatchStoreName; key: string; value: unknown }): Promise<void>
+  prepend(options: { store: WatchStoreName; key: string; value: unknown }): Promise<void>
+  moveBefore(options: { store: WatchStoreName; key: string; before: string | null }): Promise<void>
+  remove(options: { store: WatchStoreName; key: string }): Promise<void>
+  clear(options: { store: WatchStoreName }): Promise<void>
+  page<T>(options: {
+    store: WatchStoreName
+    order: 'newest' | 'oldest'
+    cursor?: number
+    limit: number
+  }): Promise<WatchPage<T>>
+}
+
+export const WatchStore = registerPlugin<WatchStorePlugin>('WatchStore')
+
+export function hasNativeWatchStore(): boolean {
+  return Capacitor.isPluginAvailable('WatchStore')
+}
+
+/** Logs instead of throwing, like the localStorage helpers */
+export function persist(write: Promise<void>): void {
+  write.catch(error => console.error('Storage error:', error))
+}
+
+/**
+ * Moves a list kept in localStorage by an earlier version into the native
+ * store, oldest first so the order survives, then drops the blob.
+ */
+export async function migrateFromLocalStorage<T extends { id: string }>(
+  store: WatchStoreName,
+  newestFirst: boolean
+): Promise<void> {
+  const items = getItem<T[]>(store, [])
+  if (items.length === 0) return
+  const ordered = newestFirst ? [...items].reverse() : items
+  for (const item of ordered) {
+    await WatchStore.append({ store, key: item.id, value: item })
+  }
+  removeItem(store)
+}
+
+/**
+ * Both lists, `first` winning on duplicates, for folding a loaded page
+ * into entries the user added while it was loading
+ */
+export function mergeById<T extends { id: string }>(first: T[], second: T[]): T[] {
+  const seen = new Set(first.map(item => item.id))
+  return [...first, ...second.filter(item => !seen.has(item.id))]
+}
+
+/** The first `limit` values in the given order */
+export async function loadPage<T>(
+  store: WatchStoreName,
+  order: 'newest' | 'oldest',
+  limit: number
+): Promise<T[]> {
+  const page = await WatchStore.page<T>({ store, order, limit })
+  return page.entries.map(entry => entry.value)
+}